@@ -0,0 +1,127 @@
+package main.java.com.linkshortener.benchmarks;
+
+import main.java.com.linkshortener.BulkLinkTransfer;
+import main.java.com.linkshortener.Config;
+import main.java.com.linkshortener.UrlShortener;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+//Скорость массового импорта ссылок с включенным журналом (ссылок в минуту) в сравнении с созданием ссылок
+//по одной через buildShortUrl, которое ждет записи журнала на диск для каждой ссылки. Затем выгружает
+//импортированные ссылки и проверяет их количество.
+//Запуск: java -cp benchmarks.jar main.java.com.linkshortener.benchmarks.BulkImportReport
+//        [ссылки] [ссылки по одной] [map|columnar] [-o файл.json]
+public class BulkImportReport {
+
+    public static void main(String[] args) throws IOException {
+        Path output = Paths.get("bulk-import-result.json");
+        List<String> positional = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if ("-o".equals(args[i]) && i + 1 < args.length) {
+                output = Paths.get(args[++i]);
+            } else {
+                positional.add(args[i]);
+            }
+        }
+        int links = positional.size() > 0 ? Integer.parseInt(positional.get(0)) : 1_000_000;
+        int singleLinks = positional.size() > 1 ? Integer.parseInt(positional.get(1)) : 10_000;
+        String linkStore = positional.size() > 2 ? positional.get(2) : "map";
+
+        Path directory = Files.createTempDirectory("link-bulk");
+        try {
+            Path input = directory.resolve("links.csv");
+            try (Writer writer = Files.newBufferedWriter(input, StandardCharsets.UTF_8)) {
+                writer.write("longUrl,clickLimit,lifetimeSeconds\n");
+                for (int i = 0; i < links; i++) {
+                    writer.write(ShortenerFixture.longUrl(i) + ",1000," + ShortenerFixture.MAX_LIFETIME_SECONDS + '\n');
+                }
+            }
+
+            Config config = new Config(properties(directory.resolve("bulk"), linkStore));
+            UrlShortener shortener = new UrlShortener(config);
+            UUID userId = shortener.createUser();
+            BulkLinkTransfer transfer = new BulkLinkTransfer(shortener, config);
+            long start = System.nanoTime();
+            BulkLinkTransfer.Result result;
+            try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+                 BufferedWriter writer = Files.newBufferedWriter(directory.resolve("result.csv"), StandardCharsets.UTF_8)) {
+                result = transfer.importLinks(userId, reader, writer, BulkLinkTransfer.Format.CSV);
+            }
+            double importSeconds = (System.nanoTime() - start) / 1e9;
+            double importPerMinute = result.getImported() * 60 / importSeconds;
+            System.out.printf("Импорт: %,d ссылок за %.2f с, %,.0f ссылок/мин%n", result.getImported(), importSeconds, importPerMinute);
+            if (result.getImported() != links || result.getRejected() != 0) {
+                throw new IllegalStateException("Импортировано " + result.getImported() + " ссылок вместо " + links + ".");
+            }
+
+            start = System.nanoTime();
+            long exported;
+            try (BufferedWriter writer = Files.newBufferedWriter(directory.resolve("export.csv"), StandardCharsets.UTF_8)) {
+                exported = transfer.exportLinks(userId, writer, BulkLinkTransfer.Format.CSV);
+            }
+            double exportSeconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("Экспорт: %,d ссылок за %.2f с%n", exported, exportSeconds);
+            shortener.shutdown();
+            if (exported != links) {
+                throw new IllegalStateException("Выгружено " + exported + " ссылок вместо " + links + ".");
+            }
+
+            // Для сравнения: ссылки по одной, каждая ждет синхронизации журнала
+            UrlShortener single = new UrlShortener(new Config(properties(directory.resolve("single"), linkStore)));
+            UUID singleUser = single.createUser();
+            start = System.nanoTime();
+            for (int i = 0; i < singleLinks; i++) {
+                single.buildShortUrl(singleUser, ShortenerFixture.longUrl(i), 1000, ShortenerFixture.MAX_LIFETIME_SECONDS);
+            }
+            double singleSeconds = (System.nanoTime() - start) / 1e9;
+            double singlePerMinute = singleLinks * 60 / singleSeconds;
+            single.shutdown();
+            System.out.printf("По одной: %,d ссылок за %.2f с, %,.0f ссылок/мин%n", singleLinks, singleSeconds, singlePerMinute);
+
+            String json = String.format(Locale.ROOT,
+                    "{\"linkStore\": \"%s\", \"links\": %d, \"importSeconds\": %.3f, \"importLinksPerMinute\": %.0f, "
+                            + "\"exportSeconds\": %.3f, \"singleLinks\": %d, \"singleLinksPerMinute\": %.0f}%n",
+                    linkStore, links, importSeconds, importPerMinute, exportSeconds, singleLinks, singlePerMinute);
+            try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(output, StandardCharsets.UTF_8))) {
+                writer.print(json);
+            }
+            System.out.println("Результаты сохранены в " + output.toAbsolutePath());
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    // Настройки сервиса с журналом в указанном каталоге
+    private static Properties properties(Path directory, String linkStore) {
+        Properties properties = new Properties();
+        properties.setProperty("max.click.limit", "1000");
+        properties.setProperty("max.link.lifetime.seconds", Integer.toString(ShortenerFixture.MAX_LIFETIME_SECONDS));
+        properties.setProperty("expiry.sweep.interval.millis", "3600000");
+        properties.setProperty("link.store", linkStore);
+        properties.setProperty("persistence.dir", directory.toString());
+        properties.setProperty("persistence.snapshot.interval.seconds", "3600");
+        return properties;
+    }
+
+    // Удаляет каталог с файлами
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+}
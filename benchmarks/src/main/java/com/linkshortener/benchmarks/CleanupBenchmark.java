@@ -0,0 +1,34 @@
+package main.java.com.linkshortener.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+//Очистка просроченных ссылок: один проход, в котором истекли BATCH ссылок.
+//Время прохода должно зависеть от числа истекших ссылок, а не от размера хранилища.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, batchSize = 1)
+@Measurement(iterations = 5, batchSize = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class CleanupBenchmark extends PreloadedStore {
+
+    @Setup(Level.Iteration)
+    public void createExpired() {
+        ShortenerFixture.createLinks(shortener, users, BATCH, ShortenerFixture.UNLIMITED_CLICKS, 0);
+        ShortenerFixture.awaitExpiry();
+    }
+
+    @Benchmark
+    public void cleanupExpiredLinks() {
+        shortener.cleanupExpiredLinks();
+    }
+}
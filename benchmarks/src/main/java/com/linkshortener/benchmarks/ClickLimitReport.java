@@ -0,0 +1,250 @@
+package main.java.com.linkshortener.benchmarks;
+
+import main.java.com.linkshortener.Config;
+import main.java.com.linkshortener.UrlData;
+import main.java.com.linkshortener.UrlShortener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//Проверка лимита переходов под конкуренцией для каждого хранилища и режима учета переходов.
+//Потоки одновременно переходят по общему набору ссылок, пока отдельный поток непрерывно запускает фоновую очистку,
+//которая удаляет исчерпанные ссылки. Каждый поток делает по лимиту попыток на каждую ссылку, поэтому все ссылки
+//гарантированно исчерпываются: по каждой должно быть выдано ровно столько переходов, сколько позволяет лимит.
+//Затем очистка удаляет все ссылки, и повторный проход не должен выдать ни одного перехода.
+//Второй проход меняет лимит ссылок несколько раз, пока потоки переходят по ним: переходов, которые начались после
+//изменения лимита и закончились до следующего, не может быть больше нового лимита (резервы полос, взятые
+//до изменения, не должны уменьшать новый счетчик), а после последнего изменения выдается ровно новый лимит
+//с точностью до переходов, пересекшихся с изменением. При нарушении отчет завершается ошибкой.
+//Запуск: java -cp benchmarks.jar main.java.com.linkshortener.benchmarks.ClickLimitReport [потоки] [ссылки] [лимит]
+public class ClickLimitReport {
+
+    private static final String[] LINK_STORES = {"map", "columnar"};
+    private static final String[] CLICK_COUNTING = {"exact", "striped"};
+
+    // Количество изменений лимита во втором проходе и пауза между ними
+    private static final int RESETS = 50;
+    private static final long RESET_PAUSE_MILLIS = 2;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int links = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        long clickLimit = args.length > 2 ? Long.parseLong(args[2]) : 500;
+        for (String linkStore : LINK_STORES) {
+            for (String clickCounting : CLICK_COUNTING) {
+                check(linkStore, clickCounting, threads, links, clickLimit);
+                checkReset(linkStore, clickCounting, threads, links, clickLimit);
+            }
+        }
+    }
+
+    // Проверяет лимит переходов для одного хранилища и режима учета переходов
+    private static void check(String linkStore, String clickCounting, int threads, int links, long clickLimit)
+            throws Exception {
+        UrlShortener shortener = newShortener(linkStore, clickCounting, links);
+        try {
+            UUID userId = shortener.createUser();
+            String[] shortUrls = new String[links];
+            for (int i = 0; i < links; i++) {
+                shortUrls[i] = shortener.buildShortUrl(userId, ShortenerFixture.longUrl(i), clickLimit,
+                        ShortenerFixture.MAX_LIFETIME_SECONDS);
+            }
+
+            AtomicBoolean stop = new AtomicBoolean();
+            Thread sweeper = new Thread(() -> {
+                while (!stop.get()) {
+                    shortener.cleanupExpiredLinks();
+                }
+            });
+            sweeper.start();
+            AtomicLongArray accepted = clickAll(shortener, userId, shortUrls, threads, clickLimit);
+            stop.set(true);
+            sweeper.join();
+            for (int i = 0; i < links; i++) {
+                if (accepted.get(i) != clickLimit) {
+                    throw new IllegalStateException(linkStore + "/" + clickCounting + ": по ссылке " + shortUrls[i]
+                            + " выдано " + accepted.get(i) + " переходов при лимите " + clickLimit + ".");
+                }
+            }
+
+            // Исчерпанные ссылки удаляются при очистке в следующую секунду после последнего перехода
+            Thread.sleep(1_100);
+            shortener.cleanupExpiredLinks();
+            Map<String, UrlData> remaining = shortener.getUserLinks(userId);
+            if (!remaining.isEmpty()) {
+                throw new IllegalStateException(linkStore + "/" + clickCounting + ": после очистки осталось "
+                        + remaining.size() + " исчерпанных ссылок.");
+            }
+            accepted = clickAll(shortener, userId, shortUrls, threads, 1);
+            for (int i = 0; i < links; i++) {
+                if (accepted.get(i) != 0) {
+                    throw new IllegalStateException(linkStore + "/" + clickCounting + ": по удаленной ссылке "
+                            + shortUrls[i] + " выдано " + accepted.get(i) + " переходов.");
+                }
+            }
+            System.out.printf("%-9s %-8s лимит соблюден: %d потоков, %d ссылок по %d переходов%n",
+                    linkStore, clickCounting, threads, links, clickLimit);
+        } finally {
+            shortener.shutdown();
+        }
+    }
+
+    // Проверяет лимит переходов при изменении лимита во время переходов для одного хранилища и режима учета
+    private static void checkReset(String linkStore, String clickCounting, int threads, int links, long clickLimit)
+            throws Exception {
+        UrlShortener shortener = newShortener(linkStore, clickCounting, links);
+        try {
+            UUID userId = shortener.createUser();
+            String[] shortUrls = new String[links];
+            for (int i = 0; i < links; i++) {
+                shortUrls[i] = shortener.buildShortUrl(userId, ShortenerFixture.longUrl(i), clickLimit,
+                        ShortenerFixture.MAX_LIFETIME_SECONDS);
+            }
+
+            // Фаза ссылки: нечетная - лимит меняется, четная 2 * (r + 1) - действует лимит r-го изменения.
+            // Переход относится к изменению r, только если фаза до и после перехода равна 2 * (r + 1)
+            AtomicIntegerArray phases = new AtomicIntegerArray(links);
+            AtomicLongArray settled = new AtomicLongArray(links * RESETS); // Переходы внутри одной фазы
+            AtomicLongArray crossing = new AtomicLongArray(links); // Переходы, пересекшиеся с изменением лимита
+            AtomicBoolean stop = new AtomicBoolean();
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    int offset = t;
+                    futures.add(executor.submit(() -> {
+                        while (!stop.get()) {
+                            for (int j = 0; j < links; j++) {
+                                int i = (j + offset) % links;
+                                int before = phases.get(i);
+                                boolean accepted = shortener.restoreLongUrl(userId, shortUrls[i]) != null;
+                                int after = phases.get(i);
+                                if (!accepted) {
+                                    continue;
+                                }
+                                if (before != after || (before & 1) != 0) {
+                                    crossing.incrementAndGet(i);
+                                } else if (before > 0) {
+                                    settled.incrementAndGet(i * RESETS + before / 2 - 1);
+                                }
+                            }
+                        }
+                        return null;
+                    }));
+                }
+
+                for (int r = 0; r < RESETS; r++) {
+                    Thread.sleep(RESET_PAUSE_MILLIS);
+                    for (int i = 0; i < links; i++) {
+                        phases.set(i, 2 * r + 1);
+                        if (!shortener.updateClickLimit(userId, shortUrls[i], (int) clickLimit)) {
+                            throw new IllegalStateException(linkStore + "/" + clickCounting
+                                    + ": не удалось изменить лимит ссылки " + shortUrls[i] + ".");
+                        }
+                        phases.set(i, 2 * r + 2);
+                    }
+                }
+                // После последнего изменения ждем, пока все ссылки исчерпают лимит
+                while (!exhausted(shortener, userId, clickLimit)) {
+                    Thread.sleep(1);
+                }
+                stop.set(true);
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } finally {
+                executor.shutdown();
+            }
+            // Хранилище считает и зарезервированные полосами переходы, поэтому остаток полос забираем после остановки
+            for (int i = 0; i < links; i++) {
+                while (shortener.restoreLongUrl(userId, shortUrls[i]) != null) {
+                    settled.incrementAndGet(i * RESETS + RESETS - 1);
+                }
+            }
+
+            for (int i = 0; i < links; i++) {
+                for (int r = 0; r < RESETS; r++) {
+                    long clicks = settled.get(i * RESETS + r);
+                    if (clicks > clickLimit) {
+                        throw new IllegalStateException(linkStore + "/" + clickCounting + ": по ссылке " + shortUrls[i]
+                                + " после изменения лимита выдано " + clicks + " переходов при лимите "
+                                + clickLimit + ".");
+                    }
+                }
+                long last = settled.get(i * RESETS + RESETS - 1);
+                if (last + crossing.get(i) < clickLimit) {
+                    throw new IllegalStateException(linkStore + "/" + clickCounting + ": по ссылке " + shortUrls[i]
+                            + " после последнего изменения лимита выдано " + last + " переходов при лимите "
+                            + clickLimit + ".");
+                }
+            }
+            System.out.printf("%-9s %-8s лимит соблюден при %d изменениях лимита во время переходов%n",
+                    linkStore, clickCounting, RESETS);
+        } finally {
+            shortener.shutdown();
+        }
+    }
+
+    // Создает сервис; в режиме striped переходы идут через полосатые счетчики кэша горячих ссылок
+    private static UrlShortener newShortener(String linkStore, String clickCounting, int links) {
+        Properties properties = ShortenerFixture.properties(linkStore);
+        properties.setProperty("click.counting", clickCounting);
+        properties.setProperty("cache.hot.links.size", "striped".equals(clickCounting) ? Integer.toString(links) : "0");
+        return new UrlShortener(new Config(properties), null);
+    }
+
+    // Проверяет, что все ссылки пользователя исчерпали лимит
+    private static boolean exhausted(UrlShortener shortener, UUID userId, long clickLimit) {
+        for (UrlData urlData : shortener.getUserLinks(userId).values()) {
+            if (urlData.getClicks() < clickLimit) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Одновременно запускает потоки, каждый из которых делает attempts попыток перехода по каждой ссылке.
+    // Возвращает количество выданных переходов по каждой ссылке
+    private static AtomicLongArray clickAll(UrlShortener shortener, UUID userId, String[] shortUrls, int threads,
+                                            long attempts) throws Exception {
+        AtomicLongArray accepted = new AtomicLongArray(shortUrls.length);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int offset = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    // Потоки начинают с разных ссылок, чтобы за каждую ссылку соревновались все потоки сразу
+                    for (long attempt = 0; attempt < attempts; attempt++) {
+                        for (int j = 0; j < shortUrls.length; j++) {
+                            int i = (j + offset) % shortUrls.length;
+                            if (shortener.restoreLongUrl(userId, shortUrls[i]) != null) {
+                                accepted.incrementAndGet(i);
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return accepted;
+    }
+}
@@ -0,0 +1,103 @@
+package main.java.com.linkshortener.benchmarks;
+
+import main.java.com.linkshortener.UrlData;
+import main.java.com.linkshortener.UrlShortener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//Нагрузочная проверка лимита переходов: 64 потока одновременно переходят по небольшому набору ссылок.
+//После каждой итерации проверяется, что ни по одной ссылке не выдано больше переходов, чем позволяет лимит,
+//и что счетчик ссылки совпадает с числом выданных переходов. При нарушении итерация завершается ошибкой.
+//В режиме striped переходы идут через полосатые счетчики кэша горячих ссылок; их неиспользованные резервы
+//возвращаются в хранилище при остановке сервиса, поэтому счетчики сверяются после нее.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(64)
+@State(Scope.Benchmark)
+public class ClickLimitStressBenchmark {
+
+    // Количество ссылок, за которые соревнуются потоки
+    private static final int LINKS = 16;
+
+    // Лимит переходов каждой ссылки
+    private static final long CLICK_LIMIT = 10_000;
+
+    @Param({"map", "columnar"})
+    public String linkStore;
+
+    // Режим учета переходов
+    @Param({"exact", "striped"})
+    public String clickCounting;
+
+    private UrlShortener shortener;
+    private UUID userId;
+    private String[] shortUrls;
+    private AtomicLongArray accepted;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        ShortenerFixture.silenceConsole();
+        shortener = ShortenerFixture.newShortener(linkStore, "striped".equals(clickCounting) ? LINKS : 0, clickCounting);
+        userId = shortener.createUser();
+        shortUrls = new String[LINKS];
+        for (int i = 0; i < LINKS; i++) {
+            shortUrls[i] = shortener.buildShortUrl(userId, ShortenerFixture.longUrl(i), CLICK_LIMIT, ShortenerFixture.MAX_LIFETIME_SECONDS);
+        }
+        accepted = new AtomicLongArray(LINKS);
+    }
+
+    @TearDown(Level.Iteration)
+    public void verify() {
+        shortener.shutdown();
+        Map<String, UrlData> links = shortener.getUserLinks(userId);
+        for (int i = 0; i < LINKS; i++) {
+            long granted = accepted.get(i);
+            if (granted > CLICK_LIMIT) {
+                throw new IllegalStateException("По ссылке " + shortUrls[i] + " выдано " + granted + " переходов при лимите " + CLICK_LIMIT);
+            }
+            UrlData urlData = links.get(shortUrls[i]);
+            // Удаленной ссылки нет в списке: очистка удаляет только исчерпанные, поэтому лимит должен быть выдан целиком
+            long counted = urlData == null ? CLICK_LIMIT : CLICK_LIMIT - urlData.getRemainingClicks();
+            if (counted != granted) {
+                throw new IllegalStateException("Счетчик ссылки " + shortUrls[i] + " не совпадает с числом выданных переходов.");
+            }
+        }
+    }
+
+    //Генератор случайных номеров ссылок для потока
+    @State(Scope.Thread)
+    public static class Picker {
+        private final SplittableRandom random = new SplittableRandom();
+    }
+
+    @Benchmark
+    public String redirect(Picker picker) {
+        int i = picker.random.nextInt(LINKS);
+        String longUrl = shortener.restoreLongUrl(userId, shortUrls[i]);
+        if (longUrl != null) {
+            accepted.incrementAndGet(i);
+        }
+        return longUrl;
+    }
+}
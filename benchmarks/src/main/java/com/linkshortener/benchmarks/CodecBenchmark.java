@@ -0,0 +1,78 @@
+package main.java.com.linkshortener.benchmarks;
+
+import main.java.com.linkshortener.ShortCodeCodec;
+import main.java.com.linkshortener.UrlShortener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+//Кодирование и декодирование коротких кодов.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CodecBenchmark {
+
+    // Значение первичного ключа: шестисимвольный и одиннадцатисимвольный код
+    @Param({"1000000", "4611686018427387903"})
+    public long value;
+
+    private final char[] buffer = new char[ShortCodeCodec.MAX_LENGTH];
+    private String shortUrl;
+    private ByteBuffer request;
+    private int codeOffset;
+    private int codeLength;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String code = ShortCodeCodec.encode(value);
+        shortUrl = UrlShortener.SHORT_URL_PREFIX + code;
+        // Строка запроса HTTP, из которой код разбирается прямо в буфере
+        request = ByteBuffer.wrap(("GET /" + code + " HTTP/1.1").getBytes(StandardCharsets.US_ASCII));
+        codeOffset = "GET /".length();
+        codeLength = code.length();
+    }
+
+    @Benchmark
+    public String encode() {
+        return ShortCodeCodec.encode(value);
+    }
+
+    @Benchmark
+    public int encodeToBuffer() {
+        return ShortCodeCodec.encodeTo(value, buffer, 0);
+    }
+
+    @Benchmark
+    public long decodeShortUrl() {
+        int offset = UrlShortener.SHORT_URL_PREFIX.length();
+        return ShortCodeCodec.decode(shortUrl, offset, shortUrl.length() - offset);
+    }
+
+    @Benchmark
+    public long decodeFromBytes() {
+        return ShortCodeCodec.decode(request, codeOffset, codeLength);
+    }
+
+    @Benchmark
+    public long roundTrip() {
+        int length = ShortCodeCodec.encodeTo(value, buffer, 0);
+        return ShortCodeCodec.decode(CharBuffer.wrap(buffer, 0, length));
+    }
+}
@@ -0,0 +1,42 @@
+package main.java.com.linkshortener.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+//Создание короткой ссылки. Каждая итерация добавляет BATCH ссылок на поток, поэтому измеряется пакет операций.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, batchSize = PreloadedStore.BATCH)
+@Measurement(iterations = 5, batchSize = PreloadedStore.BATCH)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class CreateBenchmark extends PreloadedStore {
+
+    //Счетчик созданных ссылок потока
+    @State(Scope.Thread)
+    public static class Counter {
+        private int next;
+    }
+
+    @Benchmark
+    public String buildShortUrl(Counter counter) {
+        int i = counter.next++;
+        return shortener.buildShortUrl(users[i % ShortenerFixture.USERS], ShortenerFixture.longUrl(i),
+                ShortenerFixture.UNLIMITED_CLICKS, ShortenerFixture.MAX_LIFETIME_SECONDS);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String buildShortUrlParallel(Counter counter) {
+        return buildShortUrl(counter);
+    }
+}
@@ -0,0 +1,89 @@
+package main.java.com.linkshortener.benchmarks;
+
+import main.java.com.linkshortener.Config;
+import main.java.com.linkshortener.UrlShortener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+//Повторное создание ссылок на одни и те же URL (как у интеграций, которые вызывают buildShortUrl для уже
+//сокращенного URL). Без дедупликации каждый вызов добавляет новую ссылку и хранилище растет,
+//с дедупликацией возвращается код уже созданной ссылки. Количество ссылок после прогона выводится в stderr.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+@State(Scope.Benchmark)
+public class DedupCreateBenchmark {
+
+    // Количество различных URL
+    private static final int DISTINCT_URLS = 65_536;
+
+    @Param({"map", "columnar"})
+    public String linkStore;
+
+    @Param({"false", "true"})
+    public String dedup;
+
+    private UrlShortener shortener;
+    private UUID[] users;
+
+    //Счетчик вызовов потока
+    @State(Scope.Thread)
+    public static class Counter {
+        private int next;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ShortenerFixture.silenceConsole();
+        Properties properties = ShortenerFixture.properties(linkStore);
+        properties.setProperty("links.dedup", dedup);
+        shortener = new UrlShortener(new Config(properties));
+        users = ShortenerFixture.createUsers(shortener);
+        for (int i = 0; i < DISTINCT_URLS; i++) {
+            createRepeated(i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        long links = shortener.getAllUsers().values().stream().mapToLong(user -> user.getLinkCount()).sum();
+        System.err.printf("dedup=%s: %,d ссылок%n", dedup, links);
+        shortener.shutdown();
+    }
+
+    @Benchmark
+    public String buildRepeatedShortUrl(Counter counter) {
+        return createRepeated(counter.next++);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String buildRepeatedShortUrlParallel(Counter counter) {
+        return createRepeated(counter.next++);
+    }
+
+    // Создает ссылку на один из DISTINCT_URLS адресов
+    private String createRepeated(int i) {
+        int url = i & (DISTINCT_URLS - 1);
+        return shortener.buildShortUrl(users[url % ShortenerFixture.USERS], ShortenerFixture.longUrl(url),
+                ShortenerFixture.UNLIMITED_CLICKS, ShortenerFixture.MAX_LIFETIME_SECONDS);
+    }
+}
@@ -0,0 +1,38 @@
+package main.java.com.linkshortener.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+//Удаление ссылки. Перед каждой итерацией создается BATCH ссылок, которые затем удаляются по одной.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, batchSize = PreloadedStore.BATCH)
+@Measurement(iterations = 5, batchSize = PreloadedStore.BATCH)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class DeleteBenchmark extends PreloadedStore {
+
+    private String[] victims;
+    private int next;
+
+    @Setup(Level.Iteration)
+    public void createVictims() {
+        victims = ShortenerFixture.createLinks(shortener, users, BATCH,
+                ShortenerFixture.UNLIMITED_CLICKS, ShortenerFixture.MAX_LIFETIME_SECONDS);
+        next = 0;
+    }
+
+    @Benchmark
+    public boolean deleteLink() {
+        int i = next++;
+        return shortener.deleteLink(users[i % ShortenerFixture.USERS], victims[i]);
+    }
+}
@@ -0,0 +1,39 @@
+package main.java.com.linkshortener.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+//Переход по истекшей ссылке. Первый же переход удаляет такую ссылку, поэтому перед каждой итерацией
+//создается BATCH новых истекших ссылок, и каждая из них используется ровно один раз.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, batchSize = PreloadedStore.BATCH)
+@Measurement(iterations = 5, batchSize = PreloadedStore.BATCH)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class ExpiredRestoreBenchmark extends PreloadedStore {
+
+    private String[] expired;
+    private int next;
+
+    @Setup(Level.Iteration)
+    public void createExpired() {
+        expired = ShortenerFixture.createLinks(shortener, users, BATCH, ShortenerFixture.UNLIMITED_CLICKS, 0);
+        ShortenerFixture.awaitExpiry();
+        next = 0;
+    }
+
+    @Benchmark
+    public String restoreExpired() {
+        int i = next++;
+        return shortener.restoreLongUrl(users[i % ShortenerFixture.USERS], expired[i]);
+    }
+}
@@ -0,0 +1,109 @@
+package main.java.com.linkshortener.benchmarks;
+
+import main.java.com.linkshortener.ColumnarLinkStore;
+import main.java.com.linkshortener.LinkStore;
+import main.java.com.linkshortener.MapLinkStore;
+import main.java.com.linkshortener.UrlData;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.ref.Reference;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+//Сравнение объема кучи на одну ссылку: исходная раскладка HashMap<Long, UrlData>, MapLinkStore и ColumnarLinkStore.
+//Все ссылки используют одну и ту же строку URL, поэтому измеряются только накладные расходы хранилища.
+//Запуск: java -Xmx8g -cp benchmarks.jar main.java.com.linkshortener.benchmarks.FootprintReport [размеры...] [-o файл.json]
+public class FootprintReport {
+
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    public static void main(String[] args) throws IOException {
+        Path output = Paths.get("footprint-result.json");
+        List<Integer> sizes = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if ("-o".equals(args[i]) && i + 1 < args.length) {
+                output = Paths.get(args[++i]);
+            } else {
+                sizes.add(Integer.parseInt(args[i]));
+            }
+        }
+        if (sizes.isEmpty()) {
+            sizes.add(100_000);
+            sizes.add(1_000_000);
+            sizes.add(10_000_000);
+        }
+
+        StringBuilder json = new StringBuilder("[\n");
+        String[] layouts = {"hashmap", "map", "columnar"};
+        for (int size : sizes) {
+            for (String layout : layouts) {
+                double bytesPerLink = measure(layout, size);
+                System.out.printf("%-9s %,12d ссылок: %8.1f байт на ссылку%n", layout, size, bytesPerLink);
+                if (json.length() > 2) {
+                    json.append(",\n");
+                }
+                json.append(String.format(Locale.ROOT,
+                        "  {\"layout\": \"%s\", \"links\": %d, \"bytesPerLink\": %.1f}", layout, size, bytesPerLink));
+            }
+        }
+        json.append("\n]\n");
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(output, StandardCharsets.UTF_8))) {
+            writer.print(json);
+        }
+        System.out.println("Результаты сохранены в " + output.toAbsolutePath());
+    }
+
+    // Заполняет хранилище и возвращает прирост занятой кучи на одну ссылку
+    private static double measure(String layout, int size) {
+        String longUrl = ShortenerFixture.longUrl(0);
+        UUID[] owners = new UUID[ShortenerFixture.USERS];
+        for (int i = 0; i < owners.length; i++) {
+            owners[i] = UUID.randomUUID();
+        }
+
+        long before = usedHeap();
+        Object holder;
+        if ("hashmap".equals(layout)) {
+            // Раскладка до появления LinkStore
+            Map<Long, UrlData> db = new HashMap<>();
+            for (long key = 1; key <= size; key++) {
+                db.put(key, new UrlData(longUrl, owners[(int) (key % owners.length)], 1000, 86400));
+            }
+            holder = db;
+        } else {
+            LinkStore store = "map".equals(layout) ? new MapLinkStore() : new ColumnarLinkStore();
+            for (long key = 1; key <= size; key++) {
+                store.put(key, new UrlData(longUrl, owners[(int) (key % owners.length)], 1000, 86400));
+            }
+            holder = store;
+        }
+        long after = usedHeap();
+        // Хранилище должно оставаться достижимым до замера
+        Reference.reachabilityFence(holder);
+        return (after - before) / (double) size;
+    }
+
+    // Возвращает объем занятой кучи после нескольких сборок мусора
+    private static long usedHeap() {
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return MEMORY.getHeapMemoryUsage().getUsed();
+    }
+}
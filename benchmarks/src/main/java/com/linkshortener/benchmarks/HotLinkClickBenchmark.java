@@ -0,0 +1,81 @@
+package main.java.com.linkshortener.benchmarks;
+
+import main.java.com.linkshortener.Config;
+import main.java.com.linkshortener.UrlShortener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+//Переходы всех потоков по одной горячей ссылке: общий счетчик ссылки (exact) против полосатых счетчиков (striped).
+//В обоих режимах ссылка обслуживается из кэша горячих ссылок, различается только учет переходов.
+//С analytics=true каждый переход еще пишет событие в общее кольцо аналитики (резервирование позиции CAS).
+//Масштабирование по числу потоков: java -jar benchmarks.jar HotLinkClickBenchmark.clickHotLink$ -t 1,2,4,8
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HotLinkClickBenchmark {
+
+    @Param({"map", "columnar"})
+    public String linkStore;
+
+    @Param({"exact", "striped"})
+    public String clickCounting;
+
+    @Param({"false", "true"})
+    public String analytics;
+
+    private UrlShortener shortener;
+    private UUID userId;
+    private String shortUrl;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ShortenerFixture.silenceConsole();
+        Properties properties = ShortenerFixture.properties(linkStore);
+        properties.setProperty("cache.hot.links.size", "1024");
+        properties.setProperty("click.counting", clickCounting);
+        properties.setProperty("analytics.enabled", analytics);
+        shortener = new UrlShortener(new Config(properties));
+        userId = shortener.createUser();
+        shortUrl = shortener.buildShortUrl(userId, ShortenerFixture.longUrl(0),
+                ShortenerFixture.UNLIMITED_CLICKS, ShortenerFixture.MAX_LIFETIME_SECONDS);
+        // Первые переходы добавляют ссылку в кэш
+        for (int i = 0; i < 1000; i++) {
+            shortener.restoreLongUrl(userId, shortUrl);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        shortener.shutdown();
+    }
+
+    @Benchmark
+    public String clickHotLink() {
+        return shortener.restoreLongUrl(userId, shortUrl);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String clickHotLinkParallel() {
+        return shortener.restoreLongUrl(userId, shortUrl);
+    }
+}
@@ -0,0 +1,163 @@
+package main.java.com.linkshortener.benchmarks;
+
+import main.java.com.linkshortener.Config;
+import main.java.com.linkshortener.HttpRedirectServer;
+import main.java.com.linkshortener.UrlShortener;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Локальный нагрузочный тест HTTP-перенаправлений. Поднимает HttpRedirectServer на свободном порту,
+//создает ссылки и в течение заданного времени выполняет GET /{код} из нескольких клиентских потоков,
+//после чего печатает пропускную способность, задержки p50/p99/p999 и число ошибок и сохраняет их в JSON.
+//Запуск: java -cp benchmarks.jar main.java.com.linkshortener.benchmarks.HttpLoadTest [клиенты] [секунды] [ссылки] [-o файл.json]
+public class HttpLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        List<String> positional = new ArrayList<>();
+        Path output = Paths.get("http-load-result.json");
+        for (int i = 0; i < args.length; i++) {
+            if ("-o".equals(args[i]) && i + 1 < args.length) {
+                output = Paths.get(args[++i]);
+            } else {
+                positional.add(args[i]);
+            }
+        }
+        int clients = positional.size() > 0 ? Integer.parseInt(positional.get(0)) : 64;
+        int seconds = positional.size() > 1 ? Integer.parseInt(positional.get(1)) : 30;
+        int links = positional.size() > 2 ? Integer.parseInt(positional.get(2)) : 100_000;
+
+        ShortenerFixture.silenceConsole();
+        UrlShortener shortener = ShortenerFixture.newShortener("map");
+        UUID userId = shortener.createUser();
+        String[] codes = new String[links];
+        for (int i = 0; i < links; i++) {
+            String shortUrl = shortener.buildShortUrl(userId, ShortenerFixture.longUrl(i),
+                    ShortenerFixture.UNLIMITED_CLICKS, ShortenerFixture.MAX_LIFETIME_SECONDS);
+            codes[i] = shortUrl.substring(UrlShortener.SHORT_URL_PREFIX.length());
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty("http.redirect.status", "302");
+        HttpRedirectServer server = new HttpRedirectServer(shortener, new Config(properties), 0);
+        server.start();
+        String base = "http://127.0.0.1:" + server.getPort() + "/";
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .executor(Executors.newFixedThreadPool(4))
+                .build();
+
+        // Прогрев соединений и JIT
+        AtomicLong errors = new AtomicLong();
+        long[][] perClient;
+        try {
+            runLoad(client, base, userId, codes, clients, Math.max(1, seconds / 5), errors);
+            errors.set(0);
+            perClient = runLoad(client, base, userId, codes, clients, seconds, errors);
+        } finally {
+            server.stop();
+            shortener.shutdown();
+        }
+
+        int total = 0;
+        for (long[] latencies : perClient) {
+            total += latencies.length;
+        }
+        long[] all = new long[total];
+        int position = 0;
+        for (long[] latencies : perClient) {
+            System.arraycopy(latencies, 0, all, position, latencies.length);
+            position += latencies.length;
+        }
+        Arrays.sort(all);
+
+        double throughput = total / (double) seconds;
+        String json = String.format(Locale.ROOT,
+                "{\"clients\": %d, \"seconds\": %d, \"requests\": %d, \"errors\": %d, \"throughputPerSecond\": %.1f, "
+                        + "\"p50Micros\": %.1f, \"p99Micros\": %.1f, \"p999Micros\": %.1f, \"maxMicros\": %.1f}%n",
+                clients, seconds, total, errors.get(), throughput,
+                percentile(all, 0.50), percentile(all, 0.99), percentile(all, 0.999),
+                all.length == 0 ? 0.0 : all[all.length - 1] / 1000.0);
+        System.err.print(json);
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(output, StandardCharsets.UTF_8))) {
+            writer.print(json);
+        }
+        System.exit(0);
+    }
+
+    // Выполняет перенаправления из clients потоков в течение seconds секунд и возвращает задержки (нс) по потокам.
+    // Неудачные запросы (сброс соединения, неожиданный код ответа) не учитываются в задержках, а считаются в errors
+    private static long[][] runLoad(HttpClient client, String base, UUID userId, String[] codes, int clients, int seconds,
+                                    AtomicLong errors) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Future<long[]>> futures = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            futures.add(pool.submit(() -> {
+                SplittableRandom random = new SplittableRandom();
+                long[] latencies = new long[1024];
+                int count = 0;
+                while (System.nanoTime() < deadline) {
+                    HttpRequest request = HttpRequest.newBuilder(URI.create(base + codes[random.nextInt(codes.length)]))
+                            .header(HttpRedirectServer.USER_HEADER, userId.toString())
+                            .GET()
+                            .build();
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() != 302) {
+                            errors.incrementAndGet();
+                            continue;
+                        }
+                    } catch (IOException e) {
+                        errors.incrementAndGet();
+                        continue;
+                    }
+                    long elapsed = System.nanoTime() - start;
+                    if (count == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, count * 2);
+                    }
+                    latencies[count++] = elapsed;
+                }
+                return Arrays.copyOf(latencies, count);
+            }));
+        }
+        long[][] result = new long[clients][];
+        for (int c = 0; c < clients; c++) {
+            result[c] = futures.get(c).get();
+        }
+        pool.shutdown();
+        return result;
+    }
+
+    // Возвращает перцентиль отсортированных задержек в микросекундах
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0.0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1000.0;
+    }
+}
@@ -0,0 +1,25 @@
+package main.java.com.linkshortener.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+//Очистка, когда ни одна ссылка не истекла: стоимость фонового прохода в установившемся режиме.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class IdleCleanupBenchmark extends PreloadedStore {
+
+    @Benchmark
+    public void cleanupExpiredLinks() {
+        shortener.cleanupExpiredLinks();
+    }
+}
@@ -0,0 +1,104 @@
+package main.java.com.linkshortener.benchmarks;
+
+import main.java.com.linkshortener.Config;
+import main.java.com.linkshortener.ShortCodeCodec;
+import main.java.com.linkshortener.UrlShortener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+//Перебор кодов: 90% переходов идут по случайным несуществующим кодам из 7 символов, 10% - по настоящим ссылкам.
+//Сравнивается сервис с фильтром выданных кодов (links.filter.enabled) и без него; уведомления отключены.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+@State(Scope.Benchmark)
+public class KeyFilterBenchmark {
+
+    // Доля переходов по несуществующим кодам, в процентах
+    private static final int MISS_PERCENT = 90;
+
+    // Количество подготовленных несуществующих кодов
+    private static final int PROBES = 1 << 20;
+
+    @Param({"1000000"})
+    public int storeSize;
+
+    @Param({"map", "columnar"})
+    public String linkStore;
+
+    @Param({"false", "true"})
+    public String filter;
+
+    private UrlShortener shortener;
+    private UUID[] users;
+    private String[] shortUrls;
+    private String[] probes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ShortenerFixture.silenceConsole();
+        Properties properties = ShortenerFixture.properties(linkStore);
+        properties.setProperty("links.filter.enabled", filter);
+        // Уведомления об отказах выводит фоновый поток; на одном процессоре он конкурирует с измеряемым
+        properties.setProperty("notifications.sink", "none");
+        shortener = new UrlShortener(new Config(properties));
+        users = ShortenerFixture.createUsers(shortener);
+        shortUrls = ShortenerFixture.createLinks(shortener, users, storeSize,
+                ShortenerFixture.UNLIMITED_CLICKS, ShortenerFixture.MAX_LIFETIME_SECONDS);
+        // Фильтр перестраивается фоновой очисткой; вызываем ее сразу, чтобы не зависеть от времени прогрева
+        shortener.cleanupExpiredLinks();
+
+        // Случайные коды из 7 символов, которые сервис не выдавал (как при переборе)
+        SplittableRandom random = new SplittableRandom(42);
+        long first = (long) Math.pow(62, 6);
+        probes = new String[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            probes[i] = UrlShortener.SHORT_URL_PREFIX + ShortCodeCodec.encode(first + random.nextLong(first * 61));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        shortener.shutdown();
+    }
+
+    //Позиция потока в наборе ссылок
+    @State(Scope.Thread)
+    public static class Cursor {
+        private final SplittableRandom random = new SplittableRandom();
+    }
+
+    @Benchmark
+    public String restoreMostlyMissing(Cursor cursor) {
+        int i = cursor.random.nextInt(storeSize);
+        if (cursor.random.nextInt(100) < MISS_PERCENT) {
+            return shortener.restoreLongUrl(users[i % ShortenerFixture.USERS], probes[i & (PROBES - 1)]);
+        }
+        return shortener.restoreLongUrl(users[i % ShortenerFixture.USERS], shortUrls[i]);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String restoreMostlyMissingParallel(Cursor cursor) {
+        return restoreMostlyMissing(cursor);
+    }
+}
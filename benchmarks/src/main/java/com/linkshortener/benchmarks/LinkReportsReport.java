@@ -0,0 +1,132 @@
+package main.java.com.linkshortener.benchmarks;
+
+import main.java.com.linkshortener.Config;
+import main.java.com.linkshortener.LinkReports;
+import main.java.com.linkshortener.UrlData;
+import main.java.com.linkshortener.UrlShortener;
+import main.java.com.linkshortener.User;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+//Отчеты по ссылкам: время снятия снимка и построения каждого отчета при заданном числе потоков, и сверка
+//результатов с однопоточным обходом getAllUsers/getUserLinks. Сравнивайте время при 1 потоке и по числу процессоров.
+//При расхождении отчет завершается ошибкой.
+//Запуск: java -Xmx8g -cp benchmarks.jar main.java.com.linkshortener.benchmarks.LinkReportsReport
+//        [ссылки] [потоки (0 - по числу процессоров)] [map|columnar]
+public class LinkReportsReport {
+
+    // Повторы каждого отчета (берется лучшее время)
+    private static final int ROUNDS = 5;
+
+    // Лимит переходов ссылок; по каждой ссылке совершается от 0 до CLICK_LIMIT переходов
+    private static final int CLICK_LIMIT = 8;
+
+    // Окно истекающих ссылок, размер отбора и доля лимита в отчетах
+    private static final long EXPIRING_SECONDS = 3600;
+    private static final int TOP = 10;
+    private static final double NEAR_LIMIT = 0.9;
+
+    public static void main(String[] args) {
+        int links = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        String parallelism = args.length > 1 ? args[1] : "0";
+        String linkStore = args.length > 2 ? args[2] : "map";
+
+        Properties properties = ShortenerFixture.properties(linkStore);
+        properties.setProperty("reports.parallelism", parallelism);
+        properties.setProperty("notifications.sink", "none");
+        properties.setProperty("metrics.jmx.enabled", "false");
+        UrlShortener shortener = new UrlShortener(new Config(properties));
+        UUID[] users = ShortenerFixture.createUsers(shortener);
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < links; i++) {
+            String shortUrl = shortener.buildShortUrl(users[i % ShortenerFixture.USERS], ShortenerFixture.longUrl(i),
+                    CLICK_LIMIT, 60 + random.nextInt(86400));
+            int clicks = random.nextInt(CLICK_LIMIT + 1);
+            for (int c = 0; c < clicks; c++) {
+                shortener.restoreLongUrl(users[i % ShortenerFixture.USERS], shortUrl);
+            }
+        }
+
+        long start = System.nanoTime();
+        LinkReports reports = shortener.captureReports();
+        report(links, parallelism, "снимок", System.nanoTime() - start);
+        List<LinkReports.Link> expiring = null;
+        Map<UUID, List<LinkReports.Link>> top = null;
+        List<LinkReports.UserUsage> nearLimit = null;
+        long[] distribution = null;
+        long[] best = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE};
+        for (int round = 0; round < ROUNDS; round++) {
+            start = System.nanoTime();
+            expiring = reports.expiringWithin(EXPIRING_SECONDS, TOP);
+            best[0] = Math.min(best[0], System.nanoTime() - start);
+            start = System.nanoTime();
+            top = reports.topClickedPerUser(TOP);
+            best[1] = Math.min(best[1], System.nanoTime() - start);
+            start = System.nanoTime();
+            nearLimit = reports.usersNearLimit(NEAR_LIMIT);
+            best[2] = Math.min(best[2], System.nanoTime() - start);
+            start = System.nanoTime();
+            distribution = reports.remainingClicksDistribution();
+            best[3] = Math.min(best[3], System.nanoTime() - start);
+        }
+        report(links, parallelism, "истекающие", best[0]);
+        report(links, parallelism, "самые посещаемые", best[1]);
+        report(links, parallelism, "пользователи у лимита", best[2]);
+        report(links, parallelism, "распределение остатка", best[3]);
+
+        verify(shortener, reports.getCapturedEpochSecond(), expiring, top, nearLimit, distribution);
+        System.out.println("Отчеты совпадают с однопоточным обходом пользователей");
+        shortener.shutdown();
+    }
+
+    // Сверяет отчеты с обходом ссылок каждого пользователя (переходов во время сверки нет, поэтому данные те же)
+    private static void verify(UrlShortener shortener, long now, List<LinkReports.Link> expiring,
+                               Map<UUID, List<LinkReports.Link>> top, List<LinkReports.UserUsage> nearLimit,
+                               long[] distribution) {
+        long[] expectedDistribution = new long[Long.SIZE];
+        long earliestExpiration = Long.MAX_VALUE;
+        long nearLimitUsers = 0;
+        for (User user : shortener.getAllUsers().values()) {
+            long maxClicks = -1;
+            long near = 0;
+            for (UrlData urlData : shortener.getUserLinks(user.getUserId()).values()) {
+                maxClicks = Math.max(maxClicks, urlData.getClicks());
+                boolean active = now < urlData.getExpirationEpochSecond() && urlData.getClicks() < urlData.getClickLimit();
+                if (!active) {
+                    continue;
+                }
+                expectedDistribution[Long.SIZE - Long.numberOfLeadingZeros(urlData.getRemainingClicks())]++;
+                earliestExpiration = Math.min(earliestExpiration, urlData.getExpirationEpochSecond());
+                if (urlData.getClicks() >= NEAR_LIMIT * urlData.getClickLimit()) {
+                    near++;
+                }
+            }
+            List<LinkReports.Link> userTop = top.get(user.getUserId());
+            if (maxClicks >= 0 && (userTop == null || userTop.get(0).getClicks() != maxClicks)) {
+                throw new IllegalStateException("Самая посещаемая ссылка пользователя " + user.getUserId() + " не совпадает.");
+            }
+            if (near > 0) {
+                nearLimitUsers++;
+            }
+        }
+        if (!Arrays.equals(distribution, expectedDistribution)) {
+            throw new IllegalStateException("Распределение оставшихся переходов не совпадает.");
+        }
+        if (nearLimit.size() != nearLimitUsers) {
+            throw new IllegalStateException("Количество пользователей у лимита не совпадает: " + nearLimit.size() + " и " + nearLimitUsers + ".");
+        }
+        if (!expiring.isEmpty() && expiring.get(0).getExpirationEpochSecond() != earliestExpiration) {
+            throw new IllegalStateException("Ближайшая истекающая ссылка не совпадает.");
+        }
+    }
+
+    // Печатает время этапа в миллисекундах
+    private static void report(int links, String parallelism, String stage, long nanos) {
+        System.out.printf("%,12d ссылок, потоков %s: %-24s %8.1f мс%n", links, parallelism, stage, nanos / 1e6);
+    }
+}
@@ -0,0 +1,79 @@
+package main.java.com.linkshortener.benchmarks;
+
+import main.java.com.linkshortener.LinkPage;
+import main.java.com.linkshortener.UrlData;
+import main.java.com.linkshortener.UrlShortener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+//Просмотр ссылок пользователя с userLinks ссылками: страница из PAGE ссылок со случайной позиции (listUserLinks)
+//против копии всех ссылок пользователя (getUserLinks). Время страницы не должно зависеть от числа ссылок.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@State(Scope.Benchmark)
+public class ListingBenchmark {
+
+    // Размер страницы
+    private static final int PAGE = 100;
+
+    @Param({"1000", "100000", "1000000"})
+    public int userLinks;
+
+    @Param({"map", "columnar"})
+    public String linkStore;
+
+    private UrlShortener shortener;
+    private UUID userId;
+    private String[] cursors;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ShortenerFixture.silenceConsole();
+        shortener = ShortenerFixture.newShortener(linkStore);
+        userId = shortener.createUser();
+        for (int i = 0; i < userLinks; i++) {
+            shortener.buildShortUrl(userId, ShortenerFixture.longUrl(i), 1000, ShortenerFixture.MAX_LIFETIME_SECONDS);
+        }
+        // Курсоры всех страниц, чтобы читать страницы с разных позиций
+        cursors = new String[userLinks / PAGE];
+        String cursor = null;
+        for (int i = 0; i < cursors.length; i++) {
+            cursors[i] = cursor;
+            cursor = shortener.listUserLinks(userId, null, cursor, PAGE).getNextCursor();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        shortener.shutdown();
+    }
+
+    @Benchmark
+    public LinkPage listPage() {
+        return shortener.listUserLinks(userId, null, cursors[next++ % cursors.length], PAGE);
+    }
+
+    @Benchmark
+    public Map<String, UrlData> copyAllLinks() {
+        return shortener.getUserLinks(userId);
+    }
+}
@@ -0,0 +1,88 @@
+package main.java.com.linkshortener.benchmarks;
+
+import main.java.com.linkshortener.Config;
+import main.java.com.linkshortener.UrlShortener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+//Стоимость метрик на пути перехода: restoreLongUrl с включенными и отключенными метриками
+//(замер времени, запись в гистограмму и счетчик исхода). Запускайте с -prof gc, чтобы убедиться,
+//что метрики не создают объектов.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+@State(Scope.Benchmark)
+public class MetricsOverheadBenchmark {
+
+    @Param({"100000"})
+    public int storeSize;
+
+    @Param({"map", "columnar"})
+    public String linkStore;
+
+    @Param({"false", "true"})
+    public String metrics;
+
+    private UrlShortener shortener;
+    private UUID[] users;
+    private String[] shortUrls;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ShortenerFixture.silenceConsole();
+        Properties properties = ShortenerFixture.properties(linkStore);
+        properties.setProperty("metrics.enabled", metrics);
+        properties.setProperty("metrics.jmx.enabled", "false");
+        shortener = new UrlShortener(new Config(properties));
+        users = ShortenerFixture.createUsers(shortener);
+        shortUrls = ShortenerFixture.createLinks(shortener, users, storeSize,
+                ShortenerFixture.UNLIMITED_CLICKS, ShortenerFixture.MAX_LIFETIME_SECONDS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        shortener.shutdown();
+    }
+
+    //Позиция потока в наборе ссылок
+    @State(Scope.Thread)
+    public static class Cursor {
+        private final SplittableRandom random = new SplittableRandom();
+
+        // Возвращает случайный номер ссылки
+        int next(int bound) {
+            return random.nextInt(bound);
+        }
+    }
+
+    @Benchmark
+    public String restoreHit(Cursor cursor) {
+        int i = cursor.next(storeSize);
+        return shortener.restoreLongUrl(users[i % ShortenerFixture.USERS], shortUrls[i]);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String restoreHitParallel(Cursor cursor) {
+        return restoreHit(cursor);
+    }
+}
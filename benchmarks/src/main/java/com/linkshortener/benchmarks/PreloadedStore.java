@@ -0,0 +1,42 @@
+package main.java.com.linkshortener.benchmarks;
+
+import main.java.com.linkshortener.UrlShortener;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.UUID;
+
+//Общее состояние бенчмарков операций записи: сервис, заранее заполненный storeSize ссылками.
+@State(Scope.Benchmark)
+public abstract class PreloadedStore {
+
+    // Количество операций в одной итерации измерения
+    static final int BATCH = 100_000;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int storeSize;
+
+    @Param({"map", "columnar"})
+    public String linkStore;
+
+    protected UrlShortener shortener;
+    protected UUID[] users;
+
+    @Setup(Level.Trial)
+    public void preload() {
+        ShortenerFixture.silenceConsole();
+        shortener = ShortenerFixture.newShortener(linkStore);
+        users = ShortenerFixture.createUsers(shortener);
+        ShortenerFixture.createLinks(shortener, users, storeSize,
+                ShortenerFixture.UNLIMITED_CLICKS, ShortenerFixture.MAX_LIFETIME_SECONDS);
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdown() {
+        shortener.shutdown();
+    }
+}
@@ -0,0 +1,124 @@
+package main.java.com.linkshortener.benchmarks;
+
+import main.java.com.linkshortener.ColumnarLinkStore;
+import main.java.com.linkshortener.Config;
+import main.java.com.linkshortener.LinkJournal;
+import main.java.com.linkshortener.LinkPersistence;
+import main.java.com.linkshortener.LinkStore;
+import main.java.com.linkshortener.MapLinkStore;
+import main.java.com.linkshortener.UrlData;
+import main.java.com.linkshortener.UrlShortener;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+//Время записи снимка, скорость записи переходов в журнал и время перезапуска сервиса
+//(загрузка снимка и воспроизведение хвоста журнала) для заданного количества ссылок.
+//Запуск: java -Xmx8g -cp benchmarks.jar main.java.com.linkshortener.benchmarks.RecoveryReport
+//        [ссылки] [переходы в хвосте журнала] [map|columnar] [-o файл.json]
+public class RecoveryReport {
+
+    public static void main(String[] args) throws IOException {
+        Path output = Paths.get("recovery-result.json");
+        List<String> positional = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if ("-o".equals(args[i]) && i + 1 < args.length) {
+                output = Paths.get(args[++i]);
+            } else {
+                positional.add(args[i]);
+            }
+        }
+        int links = positional.size() > 0 ? Integer.parseInt(positional.get(0)) : 10_000_000;
+        int tailClicks = positional.size() > 1 ? Integer.parseInt(positional.get(1)) : 1_000_000;
+        String linkStore = positional.size() > 2 ? positional.get(2) : "columnar";
+
+        Path directory = Files.createTempDirectory("link-recovery");
+        try {
+            // Снимок пишется из заполненного напрямую хранилища: создание 10 миллионов ссылок через сервис
+            // ждало бы fsync на каждую ссылку
+            UUID[] users = new UUID[ShortenerFixture.USERS];
+            for (int i = 0; i < users.length; i++) {
+                users[i] = UUID.randomUUID();
+            }
+            LinkStore store = "map".equals(linkStore) ? new MapLinkStore() : new ColumnarLinkStore();
+            for (int i = 1; i <= links; i++) {
+                store.put(i, new UrlData(ShortenerFixture.longUrl(i), users[i % users.length], 1000, ShortenerFixture.MAX_LIFETIME_SECONDS));
+            }
+
+            LinkPersistence persistence = new LinkPersistence(directory, 10, 0);
+            persistence.recover(LinkJournal.NONE);
+            long start = System.nanoTime();
+            Path snapshot = persistence.snapshot(() -> links, List.of(users), store);
+            double snapshotSeconds = (System.nanoTime() - start) / 1e9;
+            long snapshotBytes = Files.size(snapshot);
+            System.out.printf("Снимок: %,d ссылок, %,d байт, %.2f с%n", links, snapshotBytes, snapshotSeconds);
+
+            // Хвост журнала: переходы после снимка, которые придется воспроизвести при запуске
+            LinkJournal journal = persistence.getJournal();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            start = System.nanoTime();
+            for (int i = 0; i < tailClicks; i++) {
+                journal.clicked(1 + random.nextInt(links), 1 + random.nextInt(999));
+            }
+            journal.sync();
+            double appendSeconds = (System.nanoTime() - start) / 1e9;
+            persistence.close();
+            System.out.printf("Журнал: %,d переходов, %,.0f записей/с%n", tailClicks, tailClicks / appendSeconds);
+
+            store = null;
+            System.gc();
+
+            start = System.nanoTime();
+            UrlShortener restored = new UrlShortener(new Config(properties(directory, linkStore)));
+            double recoverySeconds = (System.nanoTime() - start) / 1e9;
+            long restoredLinks = restored.getAllUsers().values().stream().mapToLong(user -> user.getLinkCount()).sum();
+            System.out.printf("Восстановление: %,d ссылок, %.2f с%n", restoredLinks, recoverySeconds);
+            if (restoredLinks != links) {
+                throw new IllegalStateException("Восстановлено " + restoredLinks + " ссылок вместо " + links + ".");
+            }
+
+            String json = String.format(Locale.ROOT,
+                    "{\"linkStore\": \"%s\", \"links\": %d, \"snapshotBytes\": %d, \"snapshotSeconds\": %.3f, "
+                            + "\"tailClicks\": %d, \"clickAppendsPerSecond\": %.0f, \"recoverySeconds\": %.3f}%n",
+                    linkStore, links, snapshotBytes, snapshotSeconds, tailClicks, tailClicks / appendSeconds, recoverySeconds);
+            try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(output, StandardCharsets.UTF_8))) {
+                writer.print(json);
+            }
+            System.out.println("Результаты сохранены в " + output.toAbsolutePath());
+        } finally {
+            deleteRecursively(directory);
+        }
+        // Фоновые потоки восстановленного сервиса не мешают завершению: все они демоны
+    }
+
+    // Настройки сервиса, который восстанавливается из каталога
+    private static Properties properties(Path directory, String linkStore) {
+        Properties properties = new Properties();
+        properties.setProperty("max.click.limit", "1000");
+        properties.setProperty("max.link.lifetime.seconds", Integer.toString(ShortenerFixture.MAX_LIFETIME_SECONDS));
+        properties.setProperty("expiry.sweep.interval.millis", "3600000");
+        properties.setProperty("link.store", linkStore);
+        properties.setProperty("persistence.dir", directory.toString());
+        properties.setProperty("persistence.snapshot.interval.seconds", "3600");
+        return properties;
+    }
+
+    // Удаляет каталог с файлами
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package main.java.com.linkshortener.benchmarks;
+
+import main.java.com.linkshortener.Config;
+import main.java.com.linkshortener.ReplicationServer;
+import main.java.com.linkshortener.UrlShortener;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Репликация на нескольких процессах: ведущий узел работает в этом процессе, каждая реплика - в отдельном процессе
+//на том же classpath. Реплики получают снимок, затем в течение заданного времени выполняют переходы по случайным
+//ссылкам из нескольких потоков, пока ведущий узел создает ссылки. Для каждой реплики печатаются время получения
+//снимка, пропускная способность переходов и отставание (среднее и наибольшее время от закрытия пакета на ведущем
+//узле до его применения). Затем проверяется, что каждая реплика догнала ведущий узел и содержит столько же ссылок,
+//а переходов по ссылкам с лимитом на всех узлах вместе принято не больше лимита. При расхождении отчет завершается ошибкой.
+//Запуск: java -cp benchmarks.jar main.java.com.linkshortener.benchmarks.ReplicationReport
+//        [реплики] [секунды] [ссылки] [потоки реплики] [квота переходов]
+public class ReplicationReport {
+
+    // Ссылки с малым лимитом для проверки квот и их лимит
+    private static final int LIMITED_LINKS = 1_000;
+    private static final int LIMIT = 10;
+
+    // Скорость создания ссылок на ведущем узле во время замера (ссылок в секунду)
+    private static final int CREATES_PER_SECOND = 2_000;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && "--follower".equals(args[0])) {
+            runFollower(args);
+            return;
+        }
+        int followers = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int links = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+        String quota = args.length > 4 ? args[4] : "1024";
+
+        UrlShortener leader = new UrlShortener(new Config(properties()).with("replication.role", "leader"));
+        ReplicationServer server = new ReplicationServer(leader, 0);
+        server.start();
+        Path codesFile = Files.createTempFile("replication-codes", ".txt");
+        List<Process> processes = new ArrayList<>();
+        try {
+            UUID userId = leader.createUser();
+            List<String> lines = new ArrayList<>(links + LIMITED_LINKS + 1);
+            lines.add(userId.toString());
+            for (int i = 0; i < links; i++) {
+                lines.add(leader.buildShortUrl(userId, ShortenerFixture.longUrl(i),
+                        ShortenerFixture.UNLIMITED_CLICKS, ShortenerFixture.MAX_LIFETIME_SECONDS));
+            }
+            String[] limited = new String[LIMITED_LINKS];
+            for (int i = 0; i < LIMITED_LINKS; i++) {
+                limited[i] = leader.buildShortUrl(userId, ShortenerFixture.longUrl(links + i), LIMIT, 3600);
+                lines.add(limited[i]);
+            }
+            Files.write(codesFile, lines, StandardCharsets.UTF_8);
+
+            String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+            for (int i = 0; i < followers; i++) {
+                processes.add(new ProcessBuilder(java, "-Dfile.encoding=UTF-8", "-cp", System.getProperty("java.class.path"),
+                        ReplicationReport.class.getName(), "--follower", Integer.toString(server.getPort()),
+                        codesFile.toString(), Integer.toString(seconds), Integer.toString(threads), quota,
+                        Integer.toString(LIMITED_LINKS))
+                        .redirectErrorStream(true).start());
+            }
+
+            // Ведущий узел создает ссылки, пока реплики читают: изменения идут потоком во время замера.
+            // Реплики начинают замер после снимка, поэтому создание заканчивается раньше их замера
+            long created = 0;
+            long start = System.nanoTime();
+            long end = start + TimeUnit.SECONDS.toNanos(seconds);
+            while (System.nanoTime() < end && processes.stream().anyMatch(Process::isAlive)) {
+                long due = (System.nanoTime() - start) * CREATES_PER_SECOND / 1_000_000_000L;
+                for (; created < due; created++) {
+                    leader.buildShortUrl(userId, "https://example.org/live/" + created, 1_000, 3600);
+                }
+                Thread.sleep(1);
+            }
+
+            // Реплики вместе не должны принять по ссылке с лимитом больше LIMIT переходов; оставшиеся переходы
+            // совершаются на ведущем узле
+            long overLimit = 0;
+            long leaderAccepted = 0;
+            long[] followerAccepted = new long[LIMITED_LINKS];
+            for (int i = 0; i < processes.size(); i++) {
+                Process process = processes.get(i);
+                try (BufferedReader output = new BufferedReader(
+                        new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                    String line;
+                    while ((line = output.readLine()) != null) {
+                        if (line.startsWith("LINKS ")) {
+                            long replicated = Long.parseLong(line.substring("LINKS ".length()));
+                            if (replicated != leader.getLinkCount()) {
+                                throw new IllegalStateException("На реплике " + i + " " + replicated + " ссылок, на ведущем узле "
+                                        + leader.getLinkCount() + ".");
+                            }
+                        } else if (line.startsWith("ACCEPTED ")) {
+                            String[] counts = line.substring("ACCEPTED ".length()).split(",");
+                            for (int k = 0; k < LIMITED_LINKS; k++) {
+                                followerAccepted[k] += Long.parseLong(counts[k]);
+                            }
+                        } else {
+                            System.out.println("реплика " + i + ": " + line);
+                        }
+                    }
+                }
+                if (process.waitFor() != 0) {
+                    throw new IllegalStateException("Реплика " + i + " завершилась с ошибкой.");
+                }
+            }
+            for (int k = 0; k < LIMITED_LINKS; k++) {
+                long accepted = followerAccepted[k];
+                for (int c = 0; c < LIMIT; c++) {
+                    if (leader.restoreLongUrl(userId, limited[k]) != null) {
+                        accepted++;
+                        leaderAccepted++;
+                    }
+                }
+                if (accepted > LIMIT) {
+                    overLimit++;
+                }
+            }
+            System.out.printf("Ведущий узел: создано во время замера %,d ссылок, позиция журнала %,d байт, "
+                    + "принято переходов по ссылкам с лимитом после реплик %,d%n", created, leader.getReplicationPosition(), leaderAccepted);
+            if (overLimit > 0) {
+                throw new IllegalStateException("Лимит переходов превышен у " + overLimit + " ссылок.");
+            }
+            System.out.println("Реплики применили все изменения; лимит переходов не превышен ни у одной ссылки");
+        } finally {
+            for (Process process : processes) {
+                process.destroyForcibly();
+            }
+            server.stop();
+            leader.shutdown();
+            Files.deleteIfExists(codesFile);
+        }
+    }
+
+    // Процесс реплики: получение снимка, замер переходов с отставанием, проверка, что реплика догнала ведущий узел
+    private static void runFollower(String[] args) throws Exception {
+        int port = Integer.parseInt(args[1]);
+        List<String> lines = Files.readAllLines(Paths.get(args[2]), StandardCharsets.UTF_8);
+        int seconds = Integer.parseInt(args[3]);
+        int threads = Integer.parseInt(args[4]);
+        String quota = args[5];
+        int limitedLinks = Integer.parseInt(args[6]);
+        UUID userId = UUID.fromString(lines.get(0));
+        String[] codes = lines.subList(1, lines.size() - limitedLinks).toArray(new String[0]);
+        String[] limited = lines.subList(lines.size() - limitedLinks, lines.size()).toArray(new String[0]);
+
+        Config config = new Config(properties())
+                .with("replication.role", "follower")
+                .with("replication.leader", "127.0.0.1:" + port)
+                .with("replication.quota.batch", quota)
+                .with("cache.hot.links.size", Integer.toString(codes.length + limitedLinks));
+        long start = System.nanoTime();
+        UrlShortener follower = new UrlShortener(config);
+        while (!follower.isReplicaSynced() || follower.getLinkCount() < codes.length + limitedLinks) {
+            Thread.sleep(1);
+        }
+        System.out.printf("снимок: %,d ссылок за %.1f мс%n", follower.getLinkCount(), (System.nanoTime() - start) / 1e6);
+
+        // Отставание снимается каждую миллисекунду, пока идут переходы
+        AtomicLong lagSamples = new AtomicLong();
+        AtomicLong lagTotal = new AtomicLong();
+        AtomicLong lagMax = new AtomicLong();
+        AtomicLong reads = new AtomicLong();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        Thread sampler = new Thread(() -> {
+            while (System.nanoTime() < deadline) {
+                long lag = follower.getReplicationLagMillis();
+                lagSamples.incrementAndGet();
+                lagTotal.addAndGet(lag);
+                lagMax.accumulateAndGet(lag, Math::max);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+        sampler.start();
+        List<Thread> readers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread reader = new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(ThreadLocalRandom.current().nextLong());
+                long count = 0;
+                while (System.nanoTime() < deadline) {
+                    for (int i = 0; i < 256; i++) {
+                        if (follower.restoreLongUrl(userId, codes[random.nextInt(codes.length)]) == null) {
+                            throw new IllegalStateException("Ссылка не открылась на реплике.");
+                        }
+                    }
+                    count += 256;
+                }
+                reads.addAndGet(count);
+            });
+            reader.start();
+            readers.add(reader);
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        sampler.join();
+        System.out.printf("переходов %,d за %d с (%,.0f в секунду, потоков %d); отставание: среднее %.1f мс, наибольшее %d мс%n",
+                reads.get(), seconds, reads.get() / (double) seconds, threads,
+                lagTotal.get() / (double) Math.max(1, lagSamples.get()), lagMax.get());
+
+        // Ведущий узел больше не меняет данные: реплика должна применить все изменения
+        start = System.nanoTime();
+        while (follower.getReplicationLagBytes() > 0 || follower.getReplicationLagMillis() > 0) {
+            Thread.sleep(1);
+        }
+        System.out.printf("догнала ведущий узел за %.1f мс после замера%n", (System.nanoTime() - start) / 1e6);
+        System.out.println("LINKS " + follower.getLinkCount());
+
+        // Переходы по ссылкам с лимитом: реплика расходует квоты ведущего узла
+        StringBuilder accepted = new StringBuilder("ACCEPTED ");
+        for (int k = 0; k < limited.length; k++) {
+            int count = 0;
+            for (int c = 0; c < LIMIT; c++) {
+                if (follower.restoreLongUrl(userId, limited[k]) != null) {
+                    count++;
+                }
+            }
+            accepted.append(k == 0 ? "" : ",").append(count);
+        }
+        System.out.println(accepted);
+        follower.shutdown();
+    }
+
+    // Настройки узлов: хранилище в памяти, без уведомлений и JMX
+    private static Properties properties() {
+        Properties properties = ShortenerFixture.properties("map");
+        properties.setProperty("notifications.sink", "none");
+        properties.setProperty("metrics.jmx.enabled", "false");
+        properties.setProperty("analytics.enabled", "false");
+        return properties;
+    }
+}
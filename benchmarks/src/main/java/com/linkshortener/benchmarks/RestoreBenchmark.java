@@ -0,0 +1,120 @@
+package main.java.com.linkshortener.benchmarks;
+
+import main.java.com.linkshortener.ShortCodeCodec;
+import main.java.com.linkshortener.UrlShortener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+//Переход по короткой ссылке: попадание, промах и исчерпанный лимит, в одном потоке и во всех доступных.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+@State(Scope.Benchmark)
+public class RestoreBenchmark {
+
+    // Количество ссылок с исчерпанным лимитом
+    private static final int EXHAUSTED_LINKS = 1024;
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    public int storeSize;
+
+    @Param({"map", "columnar"})
+    public String linkStore;
+
+    private UrlShortener shortener;
+    private UUID[] users;
+    private String[] shortUrls;
+    private String[] exhaustedShortUrls;
+    private String[] missingShortUrls;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ShortenerFixture.silenceConsole();
+        shortener = ShortenerFixture.newShortener(linkStore);
+        users = ShortenerFixture.createUsers(shortener);
+        shortUrls = ShortenerFixture.createLinks(shortener, users, storeSize,
+                ShortenerFixture.UNLIMITED_CLICKS, ShortenerFixture.MAX_LIFETIME_SECONDS);
+
+        // Ссылки с лимитом в один переход, который сразу расходуем
+        exhaustedShortUrls = ShortenerFixture.createLinks(shortener, users, EXHAUSTED_LINKS, 1, ShortenerFixture.MAX_LIFETIME_SECONDS);
+        for (int i = 0; i < EXHAUSTED_LINKS; i++) {
+            shortener.restoreLongUrl(users[i % ShortenerFixture.USERS], exhaustedShortUrls[i]);
+        }
+
+        // Корректные коды, которые сервис еще не выдавал
+        missingShortUrls = new String[storeSize];
+        for (int i = 0; i < storeSize; i++) {
+            missingShortUrls[i] = UrlShortener.SHORT_URL_PREFIX + ShortCodeCodec.encode(Long.MAX_VALUE / 2 + i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        shortener.shutdown();
+    }
+
+    //Позиция потока в наборе ссылок
+    @State(Scope.Thread)
+    public static class Cursor {
+        private final SplittableRandom random = new SplittableRandom();
+
+        // Возвращает случайный номер ссылки
+        int next(int bound) {
+            return random.nextInt(bound);
+        }
+    }
+
+    @Benchmark
+    public String restoreHit(Cursor cursor) {
+        int i = cursor.next(storeSize);
+        return shortener.restoreLongUrl(users[i % ShortenerFixture.USERS], shortUrls[i]);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String restoreHitParallel(Cursor cursor) {
+        return restoreHit(cursor);
+    }
+
+    @Benchmark
+    public String restoreMiss(Cursor cursor) {
+        int i = cursor.next(storeSize);
+        return shortener.restoreLongUrl(users[i % ShortenerFixture.USERS], missingShortUrls[i]);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String restoreMissParallel(Cursor cursor) {
+        return restoreMiss(cursor);
+    }
+
+    @Benchmark
+    public String restoreLimitExhausted(Cursor cursor) {
+        int i = cursor.next(EXHAUSTED_LINKS);
+        return shortener.restoreLongUrl(users[i % ShortenerFixture.USERS], exhaustedShortUrls[i]);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String restoreLimitExhaustedParallel(Cursor cursor) {
+        return restoreLimitExhausted(cursor);
+    }
+}
@@ -0,0 +1,128 @@
+package main.java.com.linkshortener.benchmarks;
+
+import main.java.com.linkshortener.Config;
+import main.java.com.linkshortener.ShardRouter;
+import main.java.com.linkshortener.ShardServer;
+import main.java.com.linkshortener.UrlShortener;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+
+//Шардирование: шарды в этом же процессе на локальных портах и маршрутизатор. Измеряются создание ссылок
+//и переходы через маршрутизатор, затем добавляется шард с переносом слотов. После переноса каждая ссылка
+//должна открываться по прежнему коду, а оставшиеся переходы - сохраниться: по ссылке с лимитом CLICK_LIMIT
+//до переноса совершается CLICKS_BEFORE переходов, после - ровно CLICK_LIMIT - CLICKS_BEFORE.
+//При расхождении отчет завершается ошибкой.
+//Запуск: java -cp benchmarks.jar main.java.com.linkshortener.benchmarks.ShardingReport [ссылки] [шарды]
+public class ShardingReport {
+
+    // Количество пользователей
+    private static final int USERS = 256;
+
+    // Лимит переходов ссылки и количество переходов до переноса слотов
+    private static final int CLICK_LIMIT = 5;
+    private static final int CLICKS_BEFORE = 2;
+
+    public static void main(String[] args) throws IOException {
+        int links = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int shardCount = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        Properties properties = ShortenerFixture.properties("map");
+        properties.setProperty("notifications.sink", "none");
+        properties.setProperty("metrics.jmx.enabled", "false");
+        properties.setProperty("analytics.enabled", "false");
+        Config config = new Config(properties).with("shard.enabled", "true");
+
+        List<UrlShortener> shorteners = new ArrayList<>();
+        List<ShardServer> servers = new ArrayList<>();
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            addresses.add(startShard(config, shorteners, servers));
+        }
+
+        try (ShardRouter router = new ShardRouter(config, addresses)) {
+            UUID[] users = new UUID[USERS];
+            for (int i = 0; i < USERS; i++) {
+                users[i] = router.createUser();
+            }
+            String[] shortUrls = new String[links];
+            long start = System.nanoTime();
+            for (int i = 0; i < links; i++) {
+                shortUrls[i] = router.buildShortUrl(users[i % USERS], ShortenerFixture.longUrl(i), CLICK_LIMIT, 86400);
+            }
+            report("создание ссылок", links, System.nanoTime() - start);
+            start = System.nanoTime();
+            for (int c = 0; c < CLICKS_BEFORE; c++) {
+                for (int i = 0; i < links; i++) {
+                    if (!ShortenerFixture.longUrl(i).equals(router.restoreLongUrl(users[i % USERS], shortUrls[i]))) {
+                        throw new IllegalStateException("Ссылка " + shortUrls[i] + " не открылась до переноса слотов.");
+                    }
+                }
+            }
+            report("переходы", (long) links * CLICKS_BEFORE, System.nanoTime() - start);
+            printCounts(router);
+
+            start = System.nanoTime();
+            int moved = router.addShard(startShard(config, shorteners, servers));
+            System.out.printf("Добавлен шард: перенесено слотов %d за %.1f мс%n", moved, (System.nanoTime() - start) / 1e6);
+            printCounts(router);
+
+            long total = 0;
+            for (int shard = 0; shard <= shardCount; shard++) {
+                total += router.getLinkCount(shard);
+            }
+            if (total != links) {
+                throw new IllegalStateException("После переноса на шардах " + total + " ссылок вместо " + links + ".");
+            }
+            for (int i = 0; i < links; i++) {
+                for (int c = CLICKS_BEFORE; c < CLICK_LIMIT; c++) {
+                    if (!ShortenerFixture.longUrl(i).equals(router.restoreLongUrl(users[i % USERS], shortUrls[i]))) {
+                        throw new IllegalStateException("Ссылка " + shortUrls[i] + " не открылась после переноса слотов.");
+                    }
+                }
+                if (router.restoreLongUrl(users[i % USERS], shortUrls[i]) != null) {
+                    throw new IllegalStateException("Ссылка " + shortUrls[i] + " открылась сверх лимита переходов.");
+                }
+            }
+            System.out.println("Все ссылки открываются по прежним кодам, оставшиеся переходы сохранены");
+        } finally {
+            for (ShardServer server : servers) {
+                server.stop();
+            }
+            for (UrlShortener shortener : shorteners) {
+                shortener.shutdown();
+            }
+        }
+    }
+
+    // Запускает шард на свободном порту и возвращает его адрес
+    private static InetSocketAddress startShard(Config config, List<UrlShortener> shorteners,
+                                                List<ShardServer> servers) throws IOException {
+        UrlShortener shortener = new UrlShortener(config);
+        ShardServer server = new ShardServer(shortener, 0);
+        server.start();
+        shorteners.add(shortener);
+        servers.add(server);
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort());
+    }
+
+    // Печатает количество ссылок на каждом шарде
+    private static void printCounts(ShardRouter router) {
+        StringBuilder counts = new StringBuilder("Ссылок на шардах:");
+        for (int shard = 0; shard < router.getShardAddresses().size(); shard++) {
+            counts.append(' ').append(router.getLinkCount(shard));
+        }
+        System.out.println(counts);
+    }
+
+    // Печатает время и пропускную способность этапа
+    private static void report(String stage, long operations, long nanos) {
+        System.out.printf("%-16s %,10d операций за %8.1f мс (%,.0f в секунду)%n",
+                stage, operations, nanos / 1e6, operations * 1e9 / nanos);
+    }
+}
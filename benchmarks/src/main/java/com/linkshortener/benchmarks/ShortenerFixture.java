@@ -0,0 +1,95 @@
+package main.java.com.linkshortener.benchmarks;
+
+import main.java.com.linkshortener.Config;
+import main.java.com.linkshortener.UrlShortener;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Properties;
+import java.util.UUID;
+
+//Общая подготовка данных для бенчмарков: сервис с нужным хранилищем и заранее созданные ссылки.
+final class ShortenerFixture {
+
+    // Количество пользователей, между которыми распределяются ссылки
+    static final int USERS = 1024;
+
+    // Лимит переходов, который не исчерпывается за время измерения
+    static final long UNLIMITED_CLICKS = 1_000_000_000L;
+
+    // Максимальное время жизни ссылки
+    static final int MAX_LIFETIME_SECONDS = 2_592_000;
+
+    private ShortenerFixture() {
+    }
+
+    // Создает сервис с указанным хранилищем. Фоновая очистка почти отключена, чтобы не мешать измерениям
+    static UrlShortener newShortener(String linkStore) {
+        return newShortener(linkStore, 0);
+    }
+
+    // Создает сервис с указанным хранилищем и кэшем горячих ссылок (0 - без кэша)
+    static UrlShortener newShortener(String linkStore, int hotLinkCacheSize) {
+        return newShortener(linkStore, hotLinkCacheSize, "exact");
+    }
+
+    // Создает сервис с указанным хранилищем, кэшем горячих ссылок и режимом учета переходов (exact или striped)
+    static UrlShortener newShortener(String linkStore, int hotLinkCacheSize, String clickCounting) {
+        Properties properties = properties(linkStore);
+        properties.setProperty("cache.hot.links.size", Integer.toString(hotLinkCacheSize));
+        properties.setProperty("click.counting", clickCounting);
+        return new UrlShortener(new Config(properties));
+    }
+
+    // Настройки сервиса с указанным хранилищем, которые бенчмарк может дополнить
+    static Properties properties(String linkStore) {
+        Properties properties = new Properties();
+        properties.setProperty("max.click.limit", Long.toString(UNLIMITED_CLICKS));
+        properties.setProperty("max.link.lifetime.seconds", Integer.toString(MAX_LIFETIME_SECONDS));
+        properties.setProperty("default.click.limit", "1000");
+        properties.setProperty("default.link.lifetime.seconds", "86400");
+        properties.setProperty("expiry.sweep.interval.millis", "3600000");
+        properties.setProperty("link.store", linkStore);
+        // Как и по умолчанию, аналитика переходов отключена; ее стоимость измеряют ClickAnalyticsBenchmark
+        // и HotLinkClickBenchmark (analytics=true)
+        properties.setProperty("analytics.enabled", "false");
+        return properties;
+    }
+
+    // Отключает вывод уведомлений в консоль, чтобы измерялась логика сервиса, а не ввод-вывод
+    static void silenceConsole() {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    // Создает пользователей
+    static UUID[] createUsers(UrlShortener shortener) {
+        UUID[] users = new UUID[USERS];
+        for (int i = 0; i < USERS; i++) {
+            users[i] = shortener.createUser();
+        }
+        return users;
+    }
+
+    // Создает count ссылок; ссылка с номером i принадлежит пользователю users[i % USERS]
+    static String[] createLinks(UrlShortener shortener, UUID[] users, int count, long clickLimit, int lifetimeSeconds) {
+        String[] shortUrls = new String[count];
+        for (int i = 0; i < count; i++) {
+            shortUrls[i] = shortener.buildShortUrl(users[i % USERS], longUrl(i), clickLimit, lifetimeSeconds);
+        }
+        return shortUrls;
+    }
+
+    // Возвращает правдоподобный длинный URL для ссылки с номером i
+    static String longUrl(int i) {
+        return "https://example.com/catalog/item/" + i + "?utm_source=benchmark";
+    }
+
+    // Ждет, пока ссылки с нулевым временем жизни гарантированно истекут (с точностью до секунды)
+    static void awaitExpiry() {
+        try {
+            Thread.sleep(2_100);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package main.java.com.linkshortener.benchmarks;
+
+import main.java.com.linkshortener.ClickCounter;
+import main.java.com.linkshortener.ClickStatus;
+import main.java.com.linkshortener.LinkStore;
+import main.java.com.linkshortener.MapLinkStore;
+import main.java.com.linkshortener.TieredLinkStore;
+import main.java.com.linkshortener.UrlData;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+//Многоуровневое хранилище: объем кучи на ссылку, когда в куче остается только бюджет heapLinks, в сравнении
+//с MapLinkStore, и проверка лимита переходов и срока жизни на обоих уровнях. Проверка лимита: потоки переходят
+//по ссылкам (напрямую и через счетчики, как кэш горячих ссылок), пока отдельный поток непрерывно вытесняет все
+//ссылки в файл; по каждой ссылке должно быть выдано ровно столько переходов, сколько позволяет лимит.
+//Первичный ключ 0 (его дает один из допустимых кодов) не должен находить ни одну ссылку ни в куче, ни в файле.
+//При нарушении отчет завершается ошибкой.
+//Запуск: java -Xmx8g -cp benchmarks.jar main.java.com.linkshortener.benchmarks.TieredStoreReport [ссылки] [бюджет кучи]
+public class TieredStoreReport {
+
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    // Ссылки, потоки и лимит проверки переходов
+    private static final int CLICK_LINKS = 2_000;
+    private static final int CLICK_THREADS = 8;
+    private static final long CLICK_LIMIT = 50;
+
+    public static void main(String[] args) throws Exception {
+        int links = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        long heapLinks = args.length > 1 ? Long.parseLong(args[1]) : links / 10;
+        Path directory = Files.createTempDirectory("tiered-store");
+        try {
+            System.out.printf("map      %,12d ссылок: %8.1f байт кучи на ссылку%n", links, measure(null, links, heapLinks));
+            System.out.printf("tiered   %,12d ссылок: %8.1f байт кучи на ссылку (в куче %,d)%n", links,
+                    measure(directory.resolve("footprint.seg"), links, heapLinks), heapLinks);
+            checkClickLimits(directory.resolve("limits.seg"));
+            checkExpiry(directory.resolve("expiry.seg"));
+            checkZeroKey(directory.resolve("zero.seg"));
+        } finally {
+            try (Stream<Path> files = Files.list(directory)) {
+                files.forEach(file -> file.toFile().delete());
+            }
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    // Заполняет хранилище, вытесняет ссылки сверх бюджета и возвращает прирост занятой кучи на одну ссылку
+    private static double measure(Path segmentFile, int links, long heapLinks) throws IOException {
+        UUID[] owners = new UUID[ShortenerFixture.USERS];
+        for (int i = 0; i < owners.length; i++) {
+            owners[i] = UUID.randomUUID();
+        }
+        long before = usedHeap();
+        LinkStore store = segmentFile == null ? new MapLinkStore() : new TieredLinkStore(segmentFile, heapLinks, Long.MAX_VALUE / 2);
+        for (int i = 1; i <= links; i++) {
+            store.put(i, new UrlData(UrlFootprintReport.url(i), owners[i % owners.length], 1000, 86400));
+        }
+        if (store instanceof TieredLinkStore) {
+            ((TieredLinkStore) store).demoteIdle();
+        }
+        long after = usedHeap();
+        Reference.reachabilityFence(store);
+        if (store instanceof TieredLinkStore) {
+            ((TieredLinkStore) store).close();
+        }
+        return (after - before) / (double) links;
+    }
+
+    // Проверяет, что переходы, идущие одновременно с вытеснением и возвратом ссылок, не превышают лимит
+    private static void checkClickLimits(Path segmentFile) throws Exception {
+        TieredLinkStore store = new TieredLinkStore(segmentFile, 0, 0);
+        UUID userId = UUID.randomUUID();
+        for (int i = 1; i <= CLICK_LINKS; i++) {
+            store.put(i, new UrlData(UrlFootprintReport.url(i), userId, CLICK_LIMIT, 86400));
+        }
+        AtomicLongArray accepted = new AtomicLongArray(CLICK_LINKS + 1);
+        AtomicBoolean stop = new AtomicBoolean();
+        Thread demoter = new Thread(() -> {
+            while (!stop.get()) {
+                store.demoteIdle();
+            }
+        });
+        demoter.start();
+        ExecutorService executor = Executors.newFixedThreadPool(CLICK_THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < CLICK_THREADS; t++) {
+            int seed = t;
+            futures.add(executor.submit(() -> {
+                SplittableRandom random = new SplittableRandom(seed);
+                for (int i = 0; i < CLICK_LINKS * CLICK_LIMIT; i++) {
+                    int primaryKey = 1 + random.nextInt(CLICK_LINKS);
+                    ClickStatus status;
+                    if (random.nextInt(4) == 0) {
+                        ClickCounter counter = store.getClickCounter(primaryKey);
+                        status = counter == null ? ClickStatus.NOT_FOUND : counter.tryClick();
+                    } else {
+                        status = store.tryClick(primaryKey, userId);
+                    }
+                    if (status.isAccepted()) {
+                        accepted.incrementAndGet(primaryKey);
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        stop.set(true);
+        demoter.join();
+        executor.shutdown();
+        for (int i = 1; i <= CLICK_LINKS; i++) {
+            if (accepted.get(i) != CLICK_LIMIT || store.getClicks(i) != CLICK_LIMIT || !store.isExpiredOrExhausted(i)) {
+                throw new IllegalStateException("По ссылке " + i + " выдано " + accepted.get(i) + " переходов, счетчик "
+                        + store.getClicks(i) + ", лимит " + CLICK_LIMIT);
+            }
+        }
+        System.out.printf("Лимит соблюден: %,d ссылок, вытеснено %,d, возвращено в кучу %,d%n",
+                CLICK_LINKS, store.getDemotedCount(), store.getPromotedCount());
+        store.close();
+    }
+
+    // Проверяет, что срок жизни ссылки соблюдается в файле и после возврата в кучу
+    private static void checkExpiry(Path segmentFile) throws Exception {
+        TieredLinkStore store = new TieredLinkStore(segmentFile, 0, 0);
+        UUID userId = UUID.randomUUID();
+        store.put(1, new UrlData(UrlFootprintReport.url(1), userId, CLICK_LIMIT, 1));
+        store.put(2, new UrlData(UrlFootprintReport.url(2), userId, CLICK_LIMIT, 1));
+        store.demoteIdle();
+        if (store.getColdSize() != 2 || store.tryClick(1, userId) != ClickStatus.ACCEPTED || store.getColdSize() != 1) {
+            throw new IllegalStateException("Переход по вытесненной ссылке не вернул ее в кучу.");
+        }
+        ShortenerFixture.awaitExpiry();
+        if (store.tryClick(1, userId) != ClickStatus.EXPIRED || store.tryClick(2, userId) != ClickStatus.EXPIRED
+                || !store.isExpiredOrExhausted(2) || !store.get(2).isExpired()) {
+            throw new IllegalStateException("Истекшая ссылка принимает переходы.");
+        }
+        System.out.println("Срок жизни соблюден в куче и в файле");
+        store.close();
+    }
+
+    // Проверяет, что первичный ключ 0 не совпадает с пустыми ячейками индекса и не находит чужую ссылку
+    private static void checkZeroKey(Path segmentFile) throws Exception {
+        TieredLinkStore store = new TieredLinkStore(segmentFile, 0, 0);
+        UUID userId = UUID.randomUUID();
+        for (int i = 1; i <= CLICK_LINKS; i++) {
+            store.put(i, new UrlData(UrlFootprintReport.url(i), userId, CLICK_LIMIT, 86400));
+        }
+        for (int pass = 0; pass < 2; pass++) {
+            if (store.get(0) != null || store.getLongUrl(0) != null || store.getUserId(0) != null
+                    || store.getClicks(0) != -1 || store.getClickCounter(0) != null
+                    || store.tryClick(0, userId) != ClickStatus.NOT_FOUND || store.isExpiredOrExhausted(0)
+                    || store.updateClickLimit(0, 1) || store.raiseClicks(0, CLICK_LIMIT) || store.remove(0)) {
+                throw new IllegalStateException("Первичный ключ 0 нашел ссылку " + (pass == 0 ? "в куче." : "в файле."));
+            }
+            store.demoteIdle();
+        }
+        for (int i = 1; i <= CLICK_LINKS; i++) {
+            if (store.getClicks(i) != 0) {
+                throw new IllegalStateException("Обращение по ключу 0 изменило счетчик ссылки " + i + ".");
+            }
+        }
+        System.out.println("Первичный ключ 0 не находит ссылок в куче и в файле");
+        store.close();
+    }
+
+    // Возвращает объем занятой кучи после нескольких сборок мусора
+    private static long usedHeap() {
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return MEMORY.getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,180 @@
+package main.java.com.linkshortener.benchmarks;
+
+import main.java.com.linkshortener.ColumnarLinkStore;
+import main.java.com.linkshortener.CompactUrlPool;
+import main.java.com.linkshortener.LinkStore;
+import main.java.com.linkshortener.MapLinkStore;
+import main.java.com.linkshortener.UrlData;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+//Объем кучи на ссылку при правдоподобном наборе разных URL: большая часть ссылок ведет на десяток популярных
+//хостов, остальные - на длинный хвост случайных. Сравниваются отдельные строки URL (как в UrlData и MapLinkStore)
+//и CompactUrlPool, а также хранилища целиком: MapLinkStore и ColumnarLinkStore с пулом URL.
+//Запуск: java -Xmx8g -cp benchmarks.jar main.java.com.linkshortener.benchmarks.UrlFootprintReport [размеры...] [-o файл.json]
+public class UrlFootprintReport {
+
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    // Доля ссылок на случайные хосты длинного хвоста, в процентах
+    private static final int LONG_TAIL_PERCENT = 10;
+
+    // Символы случайных идентификаторов в URL
+    private static final String ID_ALPHABET = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ_-";
+
+    public static void main(String[] args) throws IOException {
+        Path output = Paths.get("url-footprint-result.json");
+        List<Integer> sizes = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if ("-o".equals(args[i]) && i + 1 < args.length) {
+                output = Paths.get(args[++i]);
+            } else {
+                sizes.add(Integer.parseInt(args[i]));
+            }
+        }
+        if (sizes.isEmpty()) {
+            sizes.add(1_000_000);
+        }
+
+        StringBuilder json = new StringBuilder("[\n");
+        String[] layouts = {"strings", "pool", "map", "columnar"};
+        for (int size : sizes) {
+            System.out.printf("Средняя длина URL: %.1f символов%n", averageLength(size));
+            for (String layout : layouts) {
+                double bytesPerLink = measure(layout, size);
+                System.out.printf("%-9s %,12d ссылок: %8.1f байт на ссылку%n", layout, size, bytesPerLink);
+                if (json.length() > 2) {
+                    json.append(",\n");
+                }
+                json.append(String.format(Locale.ROOT,
+                        "  {\"layout\": \"%s\", \"links\": %d, \"bytesPerLink\": %.1f}", layout, size, bytesPerLink));
+            }
+        }
+        json.append("\n]\n");
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(output, StandardCharsets.UTF_8))) {
+            writer.print(json);
+        }
+        System.out.println("Результаты сохранены в " + output.toAbsolutePath());
+    }
+
+    // Заполняет структуру size URL и возвращает прирост занятой кучи на одну ссылку
+    private static double measure(String layout, int size) {
+        UUID[] owners = new UUID[ShortenerFixture.USERS];
+        for (int i = 0; i < owners.length; i++) {
+            owners[i] = UUID.randomUUID();
+        }
+
+        long before = usedHeap();
+        Object holder;
+        if ("strings".equals(layout)) {
+            String[] urls = new String[size];
+            for (int i = 0; i < size; i++) {
+                urls[i] = url(i);
+            }
+            holder = urls;
+        } else if ("pool".equals(layout)) {
+            CompactUrlPool pool = new CompactUrlPool();
+            long[] handles = new long[size];
+            for (int i = 0; i < size; i++) {
+                handles[i] = pool.add(url(i));
+            }
+            holder = new Object[]{pool, handles};
+        } else {
+            LinkStore store = "map".equals(layout) ? new MapLinkStore() : new ColumnarLinkStore();
+            for (int i = 0; i < size; i++) {
+                store.put(i + 1, new UrlData(url(i), owners[i % owners.length], 1000, 86400));
+            }
+            holder = store;
+        }
+        long after = usedHeap();
+        // Структура должна оставаться достижимой до замера
+        Reference.reachabilityFence(holder);
+        return (after - before) / (double) size;
+    }
+
+    // Средняя длина URL набора
+    private static double averageLength(int size) {
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            total += url(i).length();
+        }
+        return total / (double) size;
+    }
+
+    // Возвращает URL ссылки с номером i (один и тот же при каждом вызове)
+    static String url(int i) {
+        SplittableRandom random = new SplittableRandom(i * 0x9E3779B97F4A7C15L);
+        if (random.nextInt(100) < LONG_TAIL_PERCENT) {
+            return "https://" + word(random, 5 + random.nextInt(10)) + ".com/" + word(random, 4 + random.nextInt(8))
+                    + "/" + word(random, 6 + random.nextInt(20));
+        }
+        switch (random.nextInt(10)) {
+            case 0:
+                return "https://www.youtube.com/watch?v=" + id(random, 11);
+            case 1:
+                return "https://github.com/" + word(random, 8) + "/" + word(random, 10) + "/blob/main/src/"
+                        + word(random, 12) + ".java";
+            case 2:
+                return "https://docs.google.com/document/d/" + id(random, 44) + "/edit?usp=sharing";
+            case 3:
+                return "https://www.ozon.ru/product/" + word(random, 20) + "-" + random.nextInt(1_000_000_000) + "/";
+            case 4:
+                return "https://en.wikipedia.org/wiki/" + word(random, 6 + random.nextInt(12));
+            case 5:
+                return "https://habr.com/ru/articles/" + (500_000 + random.nextInt(400_000)) + "/";
+            case 6:
+                return "https://www.wildberries.ru/catalog/" + random.nextInt(200_000_000) + "/detail.aspx";
+            case 7:
+                return "https://t.me/" + word(random, 10) + "/" + random.nextInt(100_000);
+            case 8:
+                return "https://drive.google.com/file/d/" + id(random, 33) + "/view?usp=sharing";
+            default:
+                return "https://example.com/catalog/item/" + random.nextInt(10_000_000)
+                        + "?utm_source=newsletter&utm_medium=email&utm_campaign=" + word(random, 8);
+        }
+    }
+
+    // Случайное слово из строчных латинских букв
+    private static String word(SplittableRandom random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+
+    // Случайный идентификатор из букв, цифр, "_" и "-"
+    private static String id(SplittableRandom random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = ID_ALPHABET.charAt(random.nextInt(ID_ALPHABET.length()));
+        }
+        return new String(chars);
+    }
+
+    // Возвращает объем занятой кучи после нескольких сборок мусора
+    private static long usedHeap() {
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return MEMORY.getHeapMemoryUsage().getUsed();
+    }
+}
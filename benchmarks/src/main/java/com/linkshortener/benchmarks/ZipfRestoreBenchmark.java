@@ -0,0 +1,105 @@
+package main.java.com.linkshortener.benchmarks;
+
+import main.java.com.linkshortener.HotLinkCache;
+import main.java.com.linkshortener.UrlShortener;
+import main.java.com.linkshortener.ZipfianGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+//Переходы с распределением популярности по Ципфу (несколько ссылок получают большую часть переходов)
+//с кэшем горячих ссылок и без него. Доля попаданий в кэш выводится в stderr после каждого запуска.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+@State(Scope.Benchmark)
+public class ZipfRestoreBenchmark {
+
+    // Количество заранее сгенерированных номеров ссылок (степень двойки)
+    private static final int SAMPLES = 1 << 20;
+
+    @Param({"100000", "1000000", "10000000"})
+    public int storeSize;
+
+    @Param({"map", "columnar"})
+    public String linkStore;
+
+    // Размер кэша горячих ссылок (0 - без кэша)
+    @Param({"0", "10000"})
+    public int cacheSize;
+
+    // Показатель распределения Ципфа
+    @Param({"0.99"})
+    public double exponent;
+
+    private UrlShortener shortener;
+    private UUID[] users;
+    private String[] shortUrls;
+    private int[] samples;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ShortenerFixture.silenceConsole();
+        shortener = ShortenerFixture.newShortener(linkStore, cacheSize);
+        users = ShortenerFixture.createUsers(shortener);
+        shortUrls = ShortenerFixture.createLinks(shortener, users, storeSize,
+                ShortenerFixture.UNLIMITED_CLICKS, ShortenerFixture.MAX_LIFETIME_SECONDS);
+        ZipfianGenerator generator = new ZipfianGenerator(storeSize, exponent);
+        SplittableRandom random = new SplittableRandom(42);
+        samples = new int[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            samples[i] = generator.next(random) - 1;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        HotLinkCache cache = shortener.getHotLinkCache();
+        if (cache != null) {
+            System.err.printf("Кэш: %d записей, доля попаданий %.3f, вытеснено %d%n",
+                    cache.size(), cache.getHitRatio(), cache.getEvictions());
+        }
+        shortener.shutdown();
+    }
+
+    //Позиция потока в последовательности номеров
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int position = new SplittableRandom().nextInt(SAMPLES);
+
+        // Возвращает следующую позицию
+        int next() {
+            position = (position + 1) & (SAMPLES - 1);
+            return position;
+        }
+    }
+
+    @Benchmark
+    public String restoreZipf(Cursor cursor) {
+        int i = samples[cursor.next()];
+        return shortener.restoreLongUrl(users[i % ShortenerFixture.USERS], shortUrls[i]);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String restoreZipfParallel(Cursor cursor) {
+        return restoreZipf(cursor);
+    }
+}
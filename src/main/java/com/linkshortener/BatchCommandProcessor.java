@@ -0,0 +1,268 @@
+package main.java.com.linkshortener;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.UUID;
+
+//Неинтерактивный режим: выполняет поток команд по одной в строке (из файла или стандартного ввода) и пишет
+//по строке результата на каждую команду: "OK [результат]" или "ERROR причина". Пустые строки и строки,
+//начинающиеся с #, пропускаются. Команды выполняются по порядку от имени текущего пользователя:
+//  user                                        - создать пользователя и сделать его текущим (OK UUID)
+//  use <UUID>                                  - сделать текущим существующего пользователя
+//  create <longUrl> [лимит переходов] [секунды] - создать ссылку (OK короткая ссылка); без лимита и времени
+//                                                жизни берутся default.click.limit и default.link.lifetime.seconds
+//  restore <короткая ссылка>                   - перейти по ссылке (OK longUrl)
+//  delete <короткая ссылка>                    - удалить ссылку
+//  update <короткая ссылка> <лимит>            - изменить лимит переходов
+//  list [all|active|expired|exhausted]         - OK количество, затем по строке на ссылку с отступом
+//Строки читаются пакетами по bulk.batch.size: для создаваемых в пакете ссылок заранее выделяется блок первичных
+//ключей, а журнал синхронизируется один раз на пакет, перед выводом результатов (как в BulkLinkTransfer),
+//поэтому коды не выдаются до записи журнала, а создание не ждет фиксации журнала на каждую ссылку.
+public class BatchCommandProcessor {
+
+    // Итог выполнения потока команд
+    public static final class Result {
+        private final long commands; // Выполненные команды
+        private final long failed; // Команды с ошибкой
+
+        Result(long commands, long failed) {
+            this.commands = commands;
+            this.failed = failed;
+        }
+
+        public long getCommands() {
+            return commands;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+    }
+
+    private final UrlShortener urlShortener; // Сервис сокращения ссылок
+    private final Config config; // Конфигурация сервиса
+    private final int batchSize; // Количество строк в пакете
+    private UUID currentUserId; // Текущий пользователь
+
+    // Конструктор класса BatchCommandProcessor
+    public BatchCommandProcessor(UrlShortener urlShortener, Config config) {
+        this.urlShortener = urlShortener;
+        this.config = config;
+        this.batchSize = config.getBulkBatchSize();
+    }
+
+    // Выполняет команды из input и пишет в output результат каждой команды
+    public Result run(BufferedReader input, Writer output) throws IOException {
+        long[] totals = new long[2];
+        String[][] batch = new String[batchSize][];
+        int count = 0;
+        String line;
+        while ((line = input.readLine()) != null) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            batch[count++] = trimmed.split("\\s+");
+            if (count == batchSize) {
+                runBatch(batch, count, output, totals);
+                count = 0;
+            }
+        }
+        if (count > 0) {
+            runBatch(batch, count, output, totals);
+        }
+        output.flush();
+        return new Result(totals[0], totals[1]);
+    }
+
+    // Выполняет пакет команд по порядку, синхронизирует журнал и выводит результаты
+    private void runBatch(String[][] batch, int count, Writer output, long[] totals) throws IOException {
+        int creates = 0;
+        for (int i = 0; i < count; i++) {
+            if ("create".equals(batch[i][0])) {
+                creates++;
+            }
+        }
+        // Ключи из блока раздаются по порядку создаваемых ссылок, ключи отклоненных команд не используются
+        long nextSequence = 0;
+        RuntimeException allocationError = null;
+        if (creates > 0) {
+            try {
+                nextSequence = urlShortener.allocatePrimaryKeys(creates);
+            } catch (RuntimeException e) {
+                allocationError = e;
+            }
+        }
+        StringBuilder results = new StringBuilder();
+        ConfigSnapshot limits = config.snapshot(); // Один снимок на пакет: команды пакета проверяются по одним лимитам
+        for (int i = 0; i < count; i++) {
+            String[] command = batch[i];
+            batch[i] = null;
+            try {
+                if ("create".equals(command[0])) {
+                    if (allocationError != null) {
+                        throw allocationError;
+                    }
+                    String shortUrl = create(command, nextSequence++, limits);
+                    results.append("OK ").append(shortUrl).append('\n');
+                } else {
+                    execute(command, limits, results);
+                }
+            } catch (RuntimeException e) {
+                totals[1]++;
+                results.append("ERROR ").append(e.getMessage()).append('\n');
+            }
+            totals[0]++;
+        }
+        urlShortener.syncJournal();
+        output.write(results.toString());
+        output.flush();
+    }
+
+    // Создает ссылку текущего пользователя с заранее выделенным порядковым номером ключа
+    private String create(String[] command, long sequence, ConfigSnapshot limits) {
+        UUID userId = requireUser();
+        arguments(command, 1, 3);
+        long clickLimit = command.length > 2 ? parsePositive(command[2], "лимит переходов") : limits.getDefaultClickLimit();
+        long lifetimeSeconds = command.length > 3 ? parsePositive(command[3], "время жизни") : limits.getDefaultLinkLifetimeSeconds();
+        if (clickLimit > limits.getMaxClickLimit()) {
+            throw new IllegalArgumentException("Лимит переходов не может превышать " + limits.getMaxClickLimit() + ".");
+        }
+        if (lifetimeSeconds > limits.getMaxLinkLifetimeSeconds()) {
+            throw new IllegalArgumentException("Время жизни ссылки не может превышать " + limits.getMaxLinkLifetimeSeconds() + ".");
+        }
+        long[] primaryKeys = {urlShortener.toPrimaryKey(sequence, userId)};
+        UrlData[] links = {urlShortener.newUrlData(userId, command[1], clickLimit, (int) lifetimeSeconds)};
+        return urlShortener.addLinks(userId, primaryKeys, links, 1)[0];
+    }
+
+    // Выполняет команду, кроме create, и добавляет ее результат
+    private void execute(String[] command, ConfigSnapshot limits, StringBuilder results) {
+        switch (command[0]) {
+            case "user":
+                arguments(command, 0, 0);
+                currentUserId = urlShortener.createUser();
+                results.append("OK ").append(currentUserId).append('\n');
+                return;
+            case "use": {
+                arguments(command, 1, 1);
+                UUID userId = parseUser(command[1]);
+                if (!urlShortener.getAllUsers().containsKey(userId)) {
+                    throw new IllegalArgumentException("Пользователь не найден.");
+                }
+                currentUserId = userId;
+                results.append("OK\n");
+                return;
+            }
+            case "restore": {
+                arguments(command, 1, 1);
+                ClickResult result = urlShortener.resolveClick(requireUser(), urlShortener.decodeShortUrl(command[1]));
+                if (result.getLongUrl() == null) {
+                    throw new IllegalArgumentException(describe(result.getStatus()));
+                }
+                results.append("OK ").append(result.getLongUrl()).append('\n');
+                return;
+            }
+            case "delete":
+                arguments(command, 1, 1);
+                if (!urlShortener.deleteLink(requireUser(), command[1])) {
+                    throw new IllegalArgumentException("Ссылка не найдена или не принадлежит пользователю.");
+                }
+                results.append("OK\n");
+                return;
+            case "update": {
+                arguments(command, 2, 2);
+                long clickLimit = parsePositive(command[2], "лимит переходов");
+                if (clickLimit > limits.getMaxClickLimit() || clickLimit > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("Лимит переходов не может превышать "
+                            + Math.min(limits.getMaxClickLimit(), Integer.MAX_VALUE) + ".");
+                }
+                if (!urlShortener.updateClickLimit(requireUser(), command[1], (int) clickLimit)) {
+                    throw new IllegalArgumentException("Ссылка не найдена или не принадлежит пользователю.");
+                }
+                results.append("OK\n");
+                return;
+            }
+            case "list":
+                arguments(command, 0, 1);
+                list(command.length > 1 ? command[1] : "all", limits, results);
+                return;
+            default:
+                throw new IllegalArgumentException("Неизвестная команда: " + command[0] + ".");
+        }
+    }
+
+    // Выводит ссылки текущего пользователя в выбранном состоянии: количество, затем ссылки постранично
+    private void list(String stateName, ConfigSnapshot limits, StringBuilder results) {
+        UUID userId = requireUser();
+        LinkState state = "all".equalsIgnoreCase(stateName) ? null : LinkState.parse(stateName);
+        StringBuilder links = new StringBuilder();
+        long found = 0;
+        String cursor = null;
+        do {
+            LinkPage page = urlShortener.listUserLinks(userId, state, cursor, limits.getListingPageSize());
+            for (LinkPage.Link link : page.getLinks()) {
+                links.append("  ").append(link.getShortUrl()).append(' ').append(link.getLongUrl())
+                        .append(' ').append(link.getRemainingClicks())
+                        .append(' ').append(link.getRemainingLifetimeSeconds()).append('\n');
+                found++;
+            }
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        results.append("OK ").append(found).append('\n').append(links);
+    }
+
+    // Возвращает текущего пользователя или бросает исключение, если он не выбран
+    private UUID requireUser() {
+        if (currentUserId == null) {
+            throw new IllegalArgumentException("Пользователь не выбран: выполните user или use <UUID>.");
+        }
+        return currentUserId;
+    }
+
+    // Проверяет количество аргументов команды
+    private static void arguments(String[] command, int min, int max) {
+        int count = command.length - 1;
+        if (count < min || count > max) {
+            throw new IllegalArgumentException("Неверное количество аргументов команды " + command[0] + ".");
+        }
+    }
+
+    // Разбирает UUID пользователя
+    private static UUID parseUser(String value) {
+        try {
+            return UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Неверный UUID пользователя: " + value + ".");
+        }
+    }
+
+    // Разбирает положительное число
+    private static long parsePositive(String value, String name) {
+        long number;
+        try {
+            number = Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Неверное значение (" + name + "): " + value + ".");
+        }
+        if (number <= 0) {
+            throw new IllegalArgumentException("Значение (" + name + ") должно быть положительным числом.");
+        }
+        return number;
+    }
+
+    // Возвращает причину отказа в переходе
+    private static String describe(ClickStatus status) {
+        switch (status) {
+            case NOT_OWNER:
+                return "Ссылка не принадлежит пользователю.";
+            case EXPIRED:
+                return "Ссылка истекла.";
+            case LIMIT_EXHAUSTED:
+                return "Лимит переходов исчерпан.";
+            default:
+                return "Ссылка не найдена.";
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package main.java.com.linkshortener;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Потоковый массовый импорт и экспорт ссылок в форматах CSV и NDJSON (по одному JSON-объекту в строке).
+//Импорт: строки (longUrl, clickLimit, lifetimeSeconds) читаются пакетами; для каждого пакета заранее выделяется
+//блок первичных ключей, после чего пакет разбирается и добавляется в хранилище в пуле потоков. Одновременно
+//обрабатывается не больше 2 * parallelism пакетов, поэтому файл никогда не читается в память целиком.
+//Результаты (longUrl, shortUrl или ошибка) пишутся в порядке входных строк после одной синхронизации журнала
+//на пакет. Экспорт выводит ссылки пользователя страницами в порядке создания в формате, который можно снова импортировать.
+public class BulkLinkTransfer {
+
+    // Формат файла
+    public enum Format {
+        CSV, NDJSON;
+
+        // Определяет формат по имени файла: .ndjson и .jsonl - NDJSON, остальные - CSV
+        public static Format forFileName(String fileName) {
+            String lowerCase = fileName.toLowerCase();
+            return lowerCase.endsWith(".ndjson") || lowerCase.endsWith(".jsonl") ? NDJSON : CSV;
+        }
+    }
+
+    // Итог импорта
+    public static final class Result {
+        private final long imported; // Созданные ссылки
+        private final long rejected; // Отклоненные строки
+
+        Result(long imported, long rejected) {
+            this.imported = imported;
+            this.rejected = rejected;
+        }
+
+        public long getImported() {
+            return imported;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+    }
+
+    // Заголовок CSV-файла результатов импорта и CSV-файла экспорта
+    private static final String IMPORT_RESULT_HEADER = "longUrl,shortUrl,error";
+    private static final String EXPORT_HEADER = "longUrl,clickLimit,lifetimeSeconds,shortUrl";
+
+    private final UrlShortener urlShortener; // Сервис сокращения ссылок
+    private final Config config; // Конфигурация сервиса
+    private final int batchSize; // Количество строк в пакете
+    private final int parallelism; // Количество потоков обработки пакетов
+
+    // Конструктор класса BulkLinkTransfer
+    public BulkLinkTransfer(UrlShortener urlShortener, Config config) {
+        this.urlShortener = urlShortener;
+        this.config = config;
+        this.batchSize = config.getBulkBatchSize();
+        this.parallelism = config.getBulkParallelism() > 0
+                ? config.getBulkParallelism() : Runtime.getRuntime().availableProcessors();
+    }
+
+    // Импортирует ссылки для пользователя из input и пишет в output результат по каждой строке
+    public Result importLinks(UUID userId, BufferedReader input, Writer output, Format format) throws IOException {
+        if (!urlShortener.getAllUsers().containsKey(userId)) {
+            throw new IllegalArgumentException("Пользователь не найден.");
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "bulk-import-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        ArrayDeque<Future<Batch>> inFlight = new ArrayDeque<>();
+        long[] totals = new long[2];
+        try {
+            if (format == Format.CSV) {
+                output.write(IMPORT_RESULT_HEADER);
+                output.write('\n');
+            }
+            String[] lines = new String[batchSize];
+            int count = 0;
+            boolean first = true;
+            String line;
+            while ((line = input.readLine()) != null) {
+                if (line.isBlank() || (first && format == Format.CSV && isHeader(line))) {
+                    first = false;
+                    continue;
+                }
+                first = false;
+                lines[count++] = line;
+                if (count == batchSize) {
+                    submit(workers, inFlight, userId, lines, count, format, output, totals);
+                    lines = new String[batchSize];
+                    count = 0;
+                }
+            }
+            if (count > 0) {
+                submit(workers, inFlight, userId, lines, count, format, output, totals);
+            }
+            while (!inFlight.isEmpty()) {
+                writeBatch(inFlight.poll(), output, format, totals);
+            }
+            output.flush();
+            return new Result(totals[0], totals[1]);
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    // Экспортирует ссылки пользователя: longUrl, оставшиеся переходы и время жизни (для повторного импорта)
+    // и короткую ссылку. Возвращает количество выгруженных ссылок
+    public long exportLinks(UUID userId, Writer output, Format format) throws IOException {
+        if (!urlShortener.getAllUsers().containsKey(userId)) {
+            throw new IllegalArgumentException("Пользователь не найден.");
+        }
+        if (format == Format.CSV) {
+            output.write(EXPORT_HEADER);
+            output.write('\n');
+        }
+        long exported = 0;
+        // Ссылки читаются страницами в порядке создания; ссылки, удаленные во время экспорта, пропускаются
+        String cursor = null;
+        do {
+            LinkPage page = urlShortener.listUserLinks(userId, null, cursor, batchSize);
+            for (LinkPage.Link link : page.getLinks()) {
+                String longUrl = link.getLongUrl();
+                long clickLimit = link.getRemainingClicks();
+                long lifetimeSeconds = link.getRemainingLifetimeSeconds();
+                if (format == Format.CSV) {
+                    output.write(csvField(longUrl) + ',' + clickLimit + ',' + lifetimeSeconds + ',' + csvField(link.getShortUrl()) + '\n');
+                } else {
+                    output.write("{\"longUrl\":" + Json.quote(longUrl) + ",\"clickLimit\":" + clickLimit
+                            + ",\"lifetimeSeconds\":" + lifetimeSeconds + ",\"shortUrl\":" + Json.quote(link.getShortUrl()) + "}\n");
+                }
+                exported++;
+            }
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        output.flush();
+        return exported;
+    }
+
+    // Пакет строк и результат его обработки
+    private static final class Batch {
+        final String[] longUrls; // URL из строк (null, если строку не удалось разобрать)
+        final String[] shortUrls; // Созданные короткие ссылки (null для отклоненных строк)
+        final String[] errors; // Причины отклонения
+        final int count; // Количество строк
+
+        Batch(int count) {
+            this.longUrls = new String[count];
+            this.shortUrls = new String[count];
+            this.errors = new String[count];
+            this.count = count;
+        }
+    }
+
+    // Выделяет ключи и отправляет пакет в обработку. Если в обработке уже максимум пакетов,
+    // сначала дожидается самого старого и выводит его результат
+    private void submit(ExecutorService workers, ArrayDeque<Future<Batch>> inFlight, UUID userId, String[] lines,
+                        int count, Format format, Writer output, long[] totals) throws IOException {
+        if (inFlight.size() >= 2 * parallelism) {
+            writeBatch(inFlight.poll(), output, format, totals);
+        }
+        long firstSequence = urlShortener.allocatePrimaryKeys(count);
+        inFlight.add(workers.submit(() -> processBatch(userId, firstSequence, lines, count, format)));
+    }
+
+    // Разбирает строки пакета и добавляет корректные ссылки в сервис
+    private Batch processBatch(UUID userId, long firstSequence, String[] lines, int count, Format format) {
+        Batch batch = new Batch(count);
+        long[] primaryKeys = new long[count];
+        UrlData[] links = new UrlData[count];
+        int[] positions = new int[count];
+        int accepted = 0;
+        String[] fields = new String[3];
+        ConfigSnapshot limits = config.snapshot(); // Один снимок на пакет: строки пакета проверяются по одним лимитам
+        for (int i = 0; i < count; i++) {
+            try {
+                if (format == Format.CSV) {
+                    parseCsvLine(lines[i], fields);
+                } else {
+                    Map<String, String> object = Json.parseObject(lines[i]);
+                    fields[0] = object.get("longUrl");
+                    fields[1] = object.get("clickLimit");
+                    fields[2] = object.get("lifetimeSeconds");
+                }
+                batch.longUrls[i] = fields[0];
+                if (fields[0] == null || fields[0].isEmpty()) {
+                    throw new IllegalArgumentException("Не указан longUrl.");
+                }
+                long clickLimit = parsePositive(fields[1], "clickLimit");
+                long lifetimeSeconds = parsePositive(fields[2], "lifetimeSeconds");
+                if (clickLimit > limits.getMaxClickLimit()) {
+                    throw new IllegalArgumentException("Лимит переходов не может превышать " + limits.getMaxClickLimit() + ".");
+                }
+                if (lifetimeSeconds > limits.getMaxLinkLifetimeSeconds()) {
+                    throw new IllegalArgumentException("Время жизни ссылки не может превышать " + limits.getMaxLinkLifetimeSeconds() + ".");
+                }
+                // Ключи из блока раздаются по номеру строки, ключи отклоненных строк не используются
+                primaryKeys[accepted] = urlShortener.toPrimaryKey(firstSequence + i, userId);
+                links[accepted] = urlShortener.newUrlData(userId, fields[0], clickLimit, (int) lifetimeSeconds);
+                positions[accepted++] = i;
+            } catch (IllegalArgumentException e) {
+                batch.errors[i] = e.getMessage();
+            }
+            Arrays.fill(fields, null);
+        }
+        String[] shortUrls = urlShortener.addLinks(userId, primaryKeys, links, accepted);
+        for (int i = 0; i < accepted; i++) {
+            batch.shortUrls[positions[i]] = shortUrls[i];
+        }
+        return batch;
+    }
+
+    // Дожидается обработки пакета и выводит его результат. Коды выводятся только после записи журнала на диск
+    private void writeBatch(Future<Batch> future, Writer output, Format format, long[] totals) throws IOException {
+        Batch batch;
+        try {
+            batch = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Импорт прерван.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new UncheckedIOException(new IOException(e.getCause()));
+        }
+        urlShortener.syncJournal();
+        for (int i = 0; i < batch.count; i++) {
+            String longUrl = batch.longUrls[i];
+            String shortUrl = batch.shortUrls[i];
+            if (shortUrl != null) {
+                totals[0]++;
+            } else {
+                totals[1]++;
+            }
+            if (format == Format.CSV) {
+                output.write(csvField(longUrl) + ',' + csvField(shortUrl) + ',' + csvField(batch.errors[i]) + '\n');
+            } else if (shortUrl != null) {
+                output.write("{\"longUrl\":" + Json.quote(longUrl) + ",\"shortUrl\":" + Json.quote(shortUrl) + "}\n");
+            } else {
+                output.write("{\"longUrl\":" + Json.quote(longUrl) + ",\"error\":" + Json.quote(batch.errors[i]) + "}\n");
+            }
+        }
+    }
+
+    // Проверяет, является ли строка заголовком CSV (первое поле - longUrl)
+    private static boolean isHeader(String line) {
+        return line.regionMatches(true, 0, "longUrl", 0, "longUrl".length())
+                || line.regionMatches(true, 0, "\"longUrl\"", 0, "\"longUrl\"".length());
+    }
+
+    // Разбирает строку CSV из трех полей (longUrl, clickLimit, lifetimeSeconds). Поля в кавычках могут содержать
+    // запятые, кавычка внутри них удваивается
+    static void parseCsvLine(String line, String[] fields) {
+        int field = 0;
+        int i = 0;
+        StringBuilder value = new StringBuilder();
+        while (true) {
+            value.setLength(0);
+            if (i < line.length() && line.charAt(i) == '"') {
+                i++;
+                while (true) {
+                    if (i >= line.length()) {
+                        throw new IllegalArgumentException("Незакрытые кавычки в строке CSV.");
+                    }
+                    char c = line.charAt(i++);
+                    if (c == '"') {
+                        if (i < line.length() && line.charAt(i) == '"') {
+                            value.append('"');
+                            i++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        value.append(c);
+                    }
+                }
+            } else {
+                while (i < line.length() && line.charAt(i) != ',') {
+                    value.append(line.charAt(i++));
+                }
+            }
+            if (field >= fields.length) {
+                throw new IllegalArgumentException("Строка CSV должна содержать " + fields.length + " поля.");
+            }
+            fields[field++] = field == 1 ? value.toString() : value.toString().trim();
+            if (i >= line.length()) {
+                break;
+            }
+            if (line.charAt(i) != ',') {
+                throw new IllegalArgumentException("После закрывающей кавычки ожидалась запятая.");
+            }
+            i++;
+        }
+        if (field != fields.length) {
+            throw new IllegalArgumentException("Строка CSV должна содержать " + fields.length + " поля.");
+        }
+    }
+
+    // Экранирует поле CSV: поля с запятыми, кавычками и переводами строк заключаются в кавычки
+    static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return '"' + value.replace("\"", "\"\"") + '"';
+            }
+        }
+        return value;
+    }
+
+    // Разбирает положительное целое число из поля строки
+    private static long parsePositive(String value, String field) {
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Не указано поле " + field + ".");
+        }
+        long number;
+        try {
+            number = Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Поле " + field + " должно быть целым числом.");
+        }
+        if (number <= 0) {
+            throw new IllegalArgumentException("Поле " + field + " должно быть положительным числом.");
+        }
+        return number;
+    }
+}
@@ -0,0 +1,336 @@
+package main.java.com.linkshortener;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.StampedLock;
+
+//Аналитика переходов: поминутные гистограммы принятых переходов по каждой ссылке за последние windowMinutes минут.
+//Поток перехода только записывает событие фиксированного размера (первичный ключ и время в миллисекундах)
+//в заранее выделенный кольцевой буфер без блокировок для многих писателей (как в NotificationQueue) - без создания
+//объектов. Фоновый поток забирает события и складывает их в скользящие поминутные корзины ссылок; ряды ищутся
+//по индексу с открытой адресацией без упакованных Long, который меняет только фоновый поток (под блокировкой
+//записи StampedLock, как в HotLinkCache), а ряды ссылок без переходов за все окно удаляются раз в минуту
+//перестроением индекса. Запрос гистограммы ищет ряд под блокировкой чтения и читает его под монитором ряда.
+//При переполнении буфера событие отбрасывается (DROP, учитывается в getDropped) или поток перехода ждет места
+//(BLOCK). Переходы, случившиеся за миллисекунды до запроса, могут еще не попасть в гистограмму.
+final class ClickAnalytics {
+
+    // Пауза фонового потока, когда буфер пуст
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    // Пауза писателя, ожидающего места в режиме BLOCK
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+
+    // Миллисекунд в минуте
+    private static final long MINUTE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    // Начальная емкость индекса рядов (степень двойки)
+    private static final int INITIAL_INDEX_CAPACITY = 1024;
+
+    // Пустая ячейка индекса (первичные ключи всегда положительные)
+    private static final long EMPTY = 0L;
+
+    //Скользящий ряд поминутных переходов ссылки: корзина минуты m - counts[m % counts.length]
+    private static final class LinkSeries {
+        private final int[] counts; // Переходы по минутам окна
+        private long lastMinute; // Последняя минута, в которую были переходы
+
+        LinkSeries(int windowMinutes, long minute) {
+            this.counts = new int[windowMinutes];
+            this.lastMinute = minute;
+        }
+
+        // Учитывает count переходов в минуте minute. Переходы старше окна не учитываются
+        synchronized void add(long minute, int count) {
+            int window = counts.length;
+            if (minute > lastMinute) {
+                // Корзины пропущенных минут освобождаются для новых минут
+                long cleared = Math.min(minute - lastMinute, window);
+                for (long m = minute - cleared + 1; m <= minute; m++) {
+                    counts[(int) (m % window)] = 0;
+                }
+                lastMinute = minute;
+            } else if (minute <= lastMinute - window) {
+                return;
+            }
+            counts[(int) (minute % window)] += count;
+        }
+
+        // Копирует в destination переходы минут с startMinute подряд
+        synchronized void copy(long startMinute, int[] destination) {
+            int window = counts.length;
+            for (int i = 0; i < destination.length; i++) {
+                long minute = startMinute + i;
+                destination[i] = minute <= lastMinute && minute > lastMinute - window ? counts[(int) (minute % window)] : 0;
+            }
+        }
+
+        // Последняя минута с переходами
+        synchronized long lastMinute() {
+            return lastMinute;
+        }
+    }
+
+    private final long[] events; // События: [2i] - первичный ключ, [2i + 1] - время в миллисекундах
+    private final AtomicLongArray sequences; // Поколения ячеек: pos - свободна для записи pos, pos + 1 - заполнена
+    private final int mask; // Маска номера ячейки
+    private final AtomicLong tail = new AtomicLong(); // Позиция следующей записи
+    private long head; // Позиция следующего чтения (только для фонового потока)
+    private volatile long processed; // Количество событий, учтенных в гистограммах
+    private final LongAdder dropped = new LongAdder(); // Отброшенные события
+    private final NotificationQueue.Overflow overflow; // Действие при переполнении
+    private final int windowMinutes; // Длина окна гистограмм в минутах
+    private long[] indexKeys = new long[INITIAL_INDEX_CAPACITY]; // Индекс первичный ключ -> ряд (линейное пробирование)
+    private LinkSeries[] indexSeries = new LinkSeries[INITIAL_INDEX_CAPACITY]; // Ряды в ячейках индекса
+    private volatile int indexSize; // Количество рядов; индекс заполнен не больше чем наполовину
+    private final StampedLock indexLock = new StampedLock(); // Изменение индекса фоновым потоком и чтение запросами
+    private final Thread consumer; // Фоновый поток агрегации
+    private volatile boolean running = true; // false после close
+
+    // Конструктор класса ClickAnalytics. Емкость буфера округляется вверх до степени двойки
+    ClickAnalytics(int capacity, NotificationQueue.Overflow overflow, int windowMinutes) {
+        if (capacity <= 0 || windowMinutes <= 0) {
+            throw new IllegalArgumentException("Емкость буфера событий и окно аналитики должны быть положительными.");
+        }
+        int size = Integer.highestOneBit(Math.min(capacity, 1 << 29) * 2 - 1);
+        this.events = new long[size * 2];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+        this.overflow = overflow;
+        this.windowMinutes = windowMinutes;
+        this.consumer = new Thread(this::aggregateLoop, "click-analytics");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    // Записывает событие принятого перехода по ссылке с положительным первичным ключом. Возвращает false, если оно отброшено из-за переполнения или закрытия
+    boolean record(long primaryKey) {
+        long position = tail.get();
+        while (true) {
+            if (!running) {
+                dropped.increment();
+                return false;
+            }
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // Ячейка еще не прочитана с прошлого круга: буфер заполнен
+                if (overflow == NotificationQueue.Overflow.DROP) {
+                    dropped.increment();
+                    return false;
+                }
+                LockSupport.unpark(consumer);
+                LockSupport.parkNanos(FULL_PARK_NANOS);
+                position = tail.get();
+            } else {
+                position = tail.get(); // Ячейку занял другой писатель
+            }
+        }
+        int index = (int) position & mask;
+        events[index * 2] = primaryKey;
+        events[index * 2 + 1] = System.currentTimeMillis();
+        sequences.lazySet(index, position + 1);
+        return true;
+    }
+
+    // Возвращает гистограмму переходов ссылки за последние minutes минут, включая текущую
+    ClickHistogram histogram(long primaryKey, int minutes) {
+        if (minutes <= 0 || minutes > windowMinutes) {
+            throw new IllegalArgumentException("Количество минут должно быть от 1 до " + windowMinutes + ".");
+        }
+        long startMinute = System.currentTimeMillis() / MINUTE_MILLIS - minutes + 1;
+        int[] counts = new int[minutes];
+        LinkSeries linkSeries;
+        long stamp = indexLock.readLock();
+        try {
+            linkSeries = probe(primaryKey);
+        } finally {
+            indexLock.unlockRead(stamp);
+        }
+        if (linkSeries != null) {
+            linkSeries.copy(startMinute, counts);
+        }
+        return new ClickHistogram(startMinute, counts);
+    }
+
+    // Возвращает длину окна гистограмм в минутах
+    int getWindowMinutes() {
+        return windowMinutes;
+    }
+
+    // Возвращает количество отброшенных событий
+    long getDropped() {
+        return dropped.sum();
+    }
+
+    // Возвращает количество ссылок, у которых были переходы в окне
+    long getTrackedLinks() {
+        return indexSize;
+    }
+
+    // Ждет, пока фоновый поток учтет события, записанные до вызова (не дольше timeoutMillis)
+    void flush(long timeoutMillis) {
+        long target = tail.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (processed < target && consumer.isAlive() && System.nanoTime() < deadline) {
+            LockSupport.unpark(consumer);
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+        }
+    }
+
+    // Останавливает прием событий и дожидается учета оставшихся
+    void close() {
+        running = false;
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Цикл фонового потока: забирает события, пока буфер не закрыт и не опустел; раз в минуту удаляет ряды,
+    // в окне которых не осталось переходов
+    private void aggregateLoop() {
+        long nextEviction = System.currentTimeMillis() + MINUTE_MILLIS;
+        while (true) {
+            // Флаг читается до выборки, поэтому после закрытия буфер выбирается до конца
+            boolean closing = !running;
+            boolean drained = drain();
+            long now = System.currentTimeMillis();
+            if (now >= nextEviction) {
+                rebuildIndex(indexKeys.length, now / MINUTE_MILLIS);
+                nextEviction = now + MINUTE_MILLIS;
+            }
+            if (!drained) {
+                if (closing) {
+                    return;
+                }
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    // Учитывает заполненные ячейки подряд. Подряд идущие события одной ссылки в одной минуте складываются
+    // до обращения к ряду. Возвращает false, если буфер был пуст
+    private boolean drain() {
+        long position = head;
+        long start = position;
+        long pendingKey = 0;
+        long pendingMinute = 0;
+        int pendingCount = 0;
+        while (true) {
+            int index = (int) position & mask;
+            if (sequences.get(index) != position + 1) {
+                break; // Ячейка пуста или писатель еще не закончил запись
+            }
+            long primaryKey = events[index * 2];
+            long minute = events[index * 2 + 1] / MINUTE_MILLIS;
+            sequences.lazySet(index, position + mask + 1);
+            position++;
+            if (pendingCount > 0 && primaryKey == pendingKey && minute == pendingMinute) {
+                pendingCount++;
+                continue;
+            }
+            if (pendingCount > 0) {
+                addClicks(pendingKey, pendingMinute, pendingCount);
+            }
+            pendingKey = primaryKey;
+            pendingMinute = minute;
+            pendingCount = 1;
+        }
+        if (pendingCount > 0) {
+            addClicks(pendingKey, pendingMinute, pendingCount);
+        }
+        head = position;
+        processed = position;
+        return position != start;
+    }
+
+    // Добавляет переходы в ряд ссылки, создавая его при первом переходе. Индекс меняет только фоновый поток,
+    // поэтому сам он ищет ряд без блокировки
+    private void addClicks(long primaryKey, long minute, int count) {
+        LinkSeries linkSeries = probe(primaryKey);
+        if (linkSeries == null) {
+            if ((indexSize + 1) * 2 > indexKeys.length) {
+                rebuildIndex(indexKeys.length * 2, minute);
+            }
+            linkSeries = new LinkSeries(windowMinutes, minute);
+            int index = (int) mix(primaryKey) & (indexKeys.length - 1);
+            while (indexKeys[index] != EMPTY) {
+                index = (index + 1) & (indexKeys.length - 1);
+            }
+            long stamp = indexLock.writeLock();
+            indexSeries[index] = linkSeries;
+            indexKeys[index] = primaryKey;
+            indexSize++;
+            indexLock.unlockWrite(stamp);
+        }
+        linkSeries.add(minute, count);
+    }
+
+    // Ищет ряд ссылки по индексу. Вызывается фоновым потоком или под блокировкой чтения
+    private LinkSeries probe(long primaryKey) {
+        long[] keys = indexKeys;
+        int mask = keys.length - 1;
+        int index = (int) mix(primaryKey) & mask;
+        while (keys[index] != EMPTY) {
+            if (keys[index] == primaryKey) {
+                return indexSeries[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    // Перестраивает индекс с емкостью не меньше capacity, оставляя только ряды, в окне которых еще есть переходы
+    // на минуту nowMinute. Емкость уменьшается, пока индекс остается заполненным не больше чем на четверть
+    private void rebuildIndex(int capacity, long nowMinute) {
+        LinkSeries[] oldSeries = indexSeries;
+        long[] oldKeys = indexKeys;
+        int live = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY && oldSeries[i].lastMinute() > nowMinute - windowMinutes) {
+                live++;
+            }
+        }
+        while (capacity > INITIAL_INDEX_CAPACITY && live * 4 < capacity / 2) {
+            capacity /= 2;
+        }
+        long[] keys = new long[capacity];
+        LinkSeries[] series = new LinkSeries[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY && oldSeries[i].lastMinute() > nowMinute - windowMinutes) {
+                int index = (int) mix(oldKeys[i]) & mask;
+                while (keys[index] != EMPTY) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                series[index] = oldSeries[i];
+            }
+        }
+        long stamp = indexLock.writeLock();
+        indexKeys = keys;
+        indexSeries = series;
+        indexSize = live;
+        indexLock.unlockWrite(stamp);
+    }
+
+    // Перемешивает биты ключа для равномерного распределения по ячейкам
+    private static long mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+}
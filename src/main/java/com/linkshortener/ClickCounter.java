@@ -0,0 +1,26 @@
+package main.java.com.linkshortener;
+
+//Счетчик переходов одной ссылки, полученный из хранилища. Позволяет учитывать переходы без повторного поиска
+//ссылки по ключу (например, из кэша горячих ссылок). Владельца и срок жизни счетчик не проверяет.
+public interface ClickCounter {
+
+    // Атомарно проверяет лимит и учитывает переход. Возвращает ACCEPTED, ACCEPTED_LAST, LIMIT_EXHAUSTED
+    // или NOT_FOUND, если ссылку уже удалили из хранилища
+    ClickStatus tryClick();
+
+    // Возвращает количество совершенных переходов или -1, если ссылку уже удалили
+    long getClicks();
+
+    // Атомарно резервирует до requested переходов в пределах лимита: они сразу учитываются в счетчике.
+    // Возвращает резерв в формате ClickWord: количество зарезервированных переходов (0, если лимит исчерпан)
+    // и поколение счетчика, в котором они взяты, или -1, если ссылку уже удалили
+    long reserve(long requested);
+
+    // Возвращает неиспользованную часть резерва (в формате ClickWord, количество - сколько вернуть).
+    // Если счетчик сбросили после резервирования (поколение изменилось), ничего не делает
+    void release(long reservation);
+
+    // Вызывается, когда счетчик перестают использовать (запись кэша удалена или вытеснена)
+    default void close() {
+    }
+}
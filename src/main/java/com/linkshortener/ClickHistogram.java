@@ -0,0 +1,50 @@
+package main.java.com.linkshortener;
+
+import java.util.Arrays;
+
+//Поминутная гистограмма переходов по ссылке: количество принятых переходов в каждой минуте подряд, начиная
+//с минуты startEpochMinute (номер минуты от начала эпохи UTC). Неизменяемый снимок на момент запроса.
+public final class ClickHistogram {
+    private final long startEpochMinute; // Первая минута гистограммы
+    private final int[] counts; // Переходы по минутам, от старых к новым
+
+    // Конструктор класса ClickHistogram (массив не копируется)
+    ClickHistogram(long startEpochMinute, int[] counts) {
+        this.startEpochMinute = startEpochMinute;
+        this.counts = counts;
+    }
+
+    // Возвращает первую минуту гистограммы (минуты от начала эпохи UTC)
+    public long getStartEpochMinute() {
+        return startEpochMinute;
+    }
+
+    // Возвращает количество минут в гистограмме
+    public int getMinutes() {
+        return counts.length;
+    }
+
+    // Возвращает количество переходов в минуте с номером index (0 - самая старая)
+    public int getCount(int index) {
+        return counts[index];
+    }
+
+    // Возвращает копию количеств переходов по минутам
+    public int[] getCounts() {
+        return counts.clone();
+    }
+
+    // Возвращает общее количество переходов за все минуты гистограммы
+    public long getTotal() {
+        long total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return "ClickHistogram{startEpochMinute=" + startEpochMinute + ", counts=" + Arrays.toString(counts) + "}";
+    }
+}
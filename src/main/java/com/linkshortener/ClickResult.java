@@ -0,0 +1,21 @@
+package main.java.com.linkshortener;
+
+//Результат перехода по ссылке вместе с оригинальным URL. URL читается в том же шаге, что и переход,
+//поэтому переход, принятый перед одновременным удалением ссылки, все равно получает свой URL
+public final class ClickResult {
+    private final ClickStatus status; // Результат попытки перехода
+    private final String longUrl; // Оригинальный URL (null, если переход не принят)
+
+    ClickResult(ClickStatus status, String longUrl) {
+        this.status = status;
+        this.longUrl = status.isAccepted() ? longUrl : null;
+    }
+
+    public ClickStatus getStatus() {
+        return status;
+    }
+
+    public String getLongUrl() {
+        return longUrl;
+    }
+}
@@ -0,0 +1,16 @@
+package main.java.com.linkshortener;
+
+//Результат попытки перехода по ссылке
+public enum ClickStatus {
+    ACCEPTED, // Переход учтен, лимит еще не исчерпан
+    ACCEPTED_LAST, // Переход учтен и был последним доступным
+    NOT_FOUND, // Ссылка не найдена
+    NOT_OWNER, // Ссылка не принадлежит пользователю
+    EXPIRED, // Время жизни ссылки истекло
+    LIMIT_EXHAUSTED; // Лимит переходов исчерпан
+
+    // Проверяет, был ли переход учтен
+    public boolean isAccepted() {
+        return this == ACCEPTED || this == ACCEPTED_LAST;
+    }
+}
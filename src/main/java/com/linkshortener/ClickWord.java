@@ -0,0 +1,59 @@
+package main.java.com.linkshortener;
+
+//Слово счетчика переходов: количество переходов и поколение счетчика в одном long, чтобы хранилища меняли их
+//одной атомарной операцией. Младшие CLICK_BITS бит - переходы, следующие 15 бит - поколение (слово неотрицательно).
+//Поколение увеличивается, когда счетчик сбрасывают (изменение лимита) или слот отдают другой ссылке, поэтому резерв,
+//взятый до сброса, не возвращается в новый счетчик (см. ClickCounter.release). В том же формате ClickCounter.reserve
+//возвращает резерв: количество зарезервированных переходов и поколение, в котором они взяты.
+//Лимиты больше MAX_CLICKS хранилища применяют как MAX_CLICKS (практически без ограничения).
+final class ClickWord {
+
+    // Разрядность количества переходов и наибольшее количество переходов
+    static final int CLICK_BITS = 48;
+    static final long MAX_CLICKS = (1L << CLICK_BITS) - 1;
+
+    // Маска поколения (после сдвига на CLICK_BITS)
+    private static final long GENERATION_MASK = 0x7FFF;
+
+    private ClickWord() {
+    }
+
+    // Собирает слово из поколения и количества переходов (количество ограничивается MAX_CLICKS)
+    static long of(long generation, long clicks) {
+        return (generation & GENERATION_MASK) << CLICK_BITS | Math.min(clicks, MAX_CLICKS);
+    }
+
+    // Количество переходов слова
+    static long clicks(long word) {
+        return word & MAX_CLICKS;
+    }
+
+    // Поколение слова
+    static long generation(long word) {
+        return word >>> CLICK_BITS;
+    }
+
+    // Слово сброшенного счетчика: следующее поколение без переходов
+    static long reset(long word) {
+        return of(generation(word) + 1, 0);
+    }
+
+    // Слово с тем же поколением и другим количеством переходов
+    static long withClicks(long word, long clicks) {
+        return of(generation(word), clicks);
+    }
+
+    // Лимит, который применяет хранилище: не больше MAX_CLICKS
+    static long limit(long clickLimit) {
+        return Math.min(clickLimit, MAX_CLICKS);
+    }
+
+    // Слово после возврата резерва reservation: если поколения совпадают, переходы резерва вычитаются
+    // (не ниже нуля), иначе счетчик сбросили после резервирования и слово не меняется
+    static long release(long word, long reservation) {
+        if (generation(word) != generation(reservation)) {
+            return word;
+        }
+        return withClicks(word, Math.max(0, clicks(word) - clicks(reservation)));
+    }
+}
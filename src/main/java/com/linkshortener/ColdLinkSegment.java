@@ -0,0 +1,491 @@
+package main.java.com.linkshortener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.UUID;
+
+//Холодный уровень многоуровневого хранилища: ссылки в записях фиксированной ширины (64 байта, одна кэш-линия)
+//в файле, отображенном в память блоками, которые никогда не перемещаются. Текст URL переменной длины лежит
+//в соседнем файле (<файл>.urls), в записи - его смещение и длина. Переходы, изменение лимита и восстановление
+//счетчика меняют запись на месте, без переноса ссылки в кучу. На куче остаются только индекс первичный ключ -> запись
+//(примитивные массивы с открытой адресацией) и список свободных записей.
+//Файлы - временная область вытеснения, а не хранилище данных: при открытии они очищаются, при закрытии удаляются
+//(данные сохраняются журналом и снимками LinkPersistence). Все методы синхронизированы.
+final class ColdLinkSegment implements Closeable {
+
+    // Размер записи и смещения полей в ней
+    private static final int RECORD_SIZE = 64;
+    private static final int PRIMARY_KEY = 0; // Первичный ключ (0 - запись свободна)
+    private static final int USER_MOST = 8; // Старшие биты UUID владельца
+    private static final int USER_LEAST = 16; // Младшие биты UUID владельца
+    private static final int CLICK_LIMIT = 24; // Лимит переходов
+    private static final int CLICKS = 32; // Количество совершенных переходов с поколением (ClickWord)
+    private static final int EXPIRATION = 40; // Секунда, начиная с которой ссылка истекла
+    private static final int LIFETIME = 48; // Время жизни ссылки в секундах
+    private static final int URL_LENGTH = 52; // Длина URL в байтах UTF-8
+    private static final int URL_OFFSET = 56; // Смещение URL в файле текста
+
+    // Записей в одном отображенном блоке (4 МБ), степень двойки
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_RECORDS = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_RECORDS - 1;
+
+    // Начальная емкость индекса, степень двойки
+    private static final int INITIAL_INDEX_CAPACITY = 1024;
+
+    // Пустая ячейка индекса и удаленная ячейка (первичные ключи всегда положительные)
+    private static final long EMPTY = 0L;
+    private static final long TOMBSTONE = -1L;
+
+    // Удаленных байтов текста, после которых файл текста переписывается (если их больше, чем живых)
+    private static final long URL_COMPACTION_THRESHOLD = 16L << 20;
+
+    private final Path recordsPath; // Файл записей
+    private final Path urlsPath; // Файл текста URL
+    private final FileChannel records; // Канал файла записей
+    private FileChannel urls; // Канал файла текста URL
+    private MappedByteBuffer[] chunks = new MappedByteBuffer[0]; // Отображенные блоки записей
+
+    // Индекс первичный ключ -> номер записи (открытая адресация, линейное пробирование)
+    private long[] indexKeys = new long[INITIAL_INDEX_CAPACITY];
+    private int[] indexSlots = new int[INITIAL_INDEX_CAPACITY];
+    private int indexOccupied; // Занятые ячейки индекса вместе с удаленными
+
+    private int[] freeSlots = new int[16]; // Освобожденные записи
+    private int freeCount;
+    private int nextSlot; // Следующая никогда не использованная запись
+    private long size; // Количество ссылок
+
+    private long urlEnd; // Конец файла текста
+    private long urlGarbage; // Байты текста удаленных ссылок
+
+    // Открывает (очищая) файлы холодного уровня
+    ColdLinkSegment(Path path) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.recordsPath = path;
+        this.urlsPath = Paths.get(path + ".urls");
+        this.records = FileChannel.open(recordsPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.urls = FileChannel.open(urlsPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    // Добавляет ссылку, которой нет в сегменте
+    synchronized void put(long primaryKey, UrlData urlData) {
+        byte[] url = urlData.getLongUrl().getBytes(StandardCharsets.UTF_8);
+        long urlOffset = writeUrl(url);
+        int slot = allocateSlot();
+        ByteBuffer chunk = chunks[slot >>> CHUNK_BITS];
+        int base = (slot & CHUNK_MASK) * RECORD_SIZE;
+        UUID userId = urlData.getUserId();
+        chunk.putLong(base + USER_MOST, userId.getMostSignificantBits());
+        chunk.putLong(base + USER_LEAST, userId.getLeastSignificantBits());
+        chunk.putLong(base + CLICK_LIMIT, urlData.getClickLimit());
+        chunk.putLong(base + CLICKS, urlData.getClickWord());
+        chunk.putLong(base + EXPIRATION, urlData.getExpirationEpochSecond());
+        chunk.putInt(base + LIFETIME, urlData.getLifetimeSeconds());
+        chunk.putInt(base + URL_LENGTH, url.length);
+        chunk.putLong(base + URL_OFFSET, urlOffset);
+        chunk.putLong(base + PRIMARY_KEY, primaryKey);
+        insertIntoIndex(primaryKey, slot);
+        size++;
+    }
+
+    // Возвращает снимок ссылки или null, если ее нет
+    synchronized UrlData get(long primaryKey) {
+        int slot = findSlot(primaryKey);
+        return slot < 0 ? null : snapshot(slot);
+    }
+
+    // Удаляет ссылку и возвращает ее снимок (для переноса в кучу) или null, если ее не было
+    synchronized UrlData remove(long primaryKey) {
+        if (primaryKey <= 0) {
+            return null;
+        }
+        int mask = indexKeys.length - 1;
+        int index = mix(primaryKey) & mask;
+        while (indexKeys[index] != EMPTY) {
+            if (indexKeys[index] == primaryKey) {
+                int slot = indexSlots[index];
+                UrlData urlData = snapshot(slot);
+                indexKeys[index] = TOMBSTONE;
+                releaseSlot(slot);
+                size--;
+                return urlData;
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    // Проверяет, есть ли ссылка в сегменте
+    synchronized boolean contains(long primaryKey) {
+        return findSlot(primaryKey) >= 0;
+    }
+
+    // Возвращает идентификатор владельца или null, если ссылки нет
+    synchronized UUID getUserId(long primaryKey) {
+        int slot = findSlot(primaryKey);
+        if (slot < 0) {
+            return null;
+        }
+        ByteBuffer chunk = chunks[slot >>> CHUNK_BITS];
+        int base = (slot & CHUNK_MASK) * RECORD_SIZE;
+        return new UUID(chunk.getLong(base + USER_MOST), chunk.getLong(base + USER_LEAST));
+    }
+
+    // Возвращает оригинальный URL или null, если ссылки нет
+    synchronized String getLongUrl(long primaryKey) {
+        int slot = findSlot(primaryKey);
+        return slot < 0 ? null : readUrl(slot);
+    }
+
+    // Возвращает количество совершенных переходов или -1, если ссылки нет
+    synchronized long getClicks(long primaryKey) {
+        int slot = findSlot(primaryKey);
+        return slot < 0 ? -1
+                : ClickWord.clicks(chunks[slot >>> CHUNK_BITS].getLong((slot & CHUNK_MASK) * RECORD_SIZE + CLICKS));
+    }
+
+    // Проверяет владельца, срок жизни и лимит, и при успехе учитывает переход в записи
+    synchronized ClickStatus tryClick(long primaryKey, UUID userId) {
+        int slot = findSlot(primaryKey);
+        if (slot < 0) {
+            return ClickStatus.NOT_FOUND;
+        }
+        ByteBuffer chunk = chunks[slot >>> CHUNK_BITS];
+        int base = (slot & CHUNK_MASK) * RECORD_SIZE;
+        if (chunk.getLong(base + USER_MOST) != userId.getMostSignificantBits()
+                || chunk.getLong(base + USER_LEAST) != userId.getLeastSignificantBits()) {
+            return ClickStatus.NOT_OWNER;
+        }
+        if (System.currentTimeMillis() / 1000 >= chunk.getLong(base + EXPIRATION)) {
+            return ClickStatus.EXPIRED;
+        }
+        return incrementClicks(chunk, base);
+    }
+
+    // Проверяет лимит и учитывает переход (счетчик переходов ссылки, без проверки владельца и срока)
+    synchronized ClickStatus incrementClicks(long primaryKey) {
+        int slot = findSlot(primaryKey);
+        return slot < 0 ? ClickStatus.NOT_FOUND
+                : incrementClicks(chunks[slot >>> CHUNK_BITS], (slot & CHUNK_MASK) * RECORD_SIZE);
+    }
+
+    // Резервирует до requested переходов в пределах лимита. Возвращает -1, если ссылки нет
+    synchronized long reserve(long primaryKey, long requested) {
+        int slot = findSlot(primaryKey);
+        if (slot < 0) {
+            return -1;
+        }
+        ByteBuffer chunk = chunks[slot >>> CHUNK_BITS];
+        int base = (slot & CHUNK_MASK) * RECORD_SIZE;
+        long current = chunk.getLong(base + CLICKS);
+        long granted = Math.min(requested,
+                ClickWord.limit(chunk.getLong(base + CLICK_LIMIT)) - ClickWord.clicks(current));
+        if (granted <= 0) {
+            return ClickWord.withClicks(current, 0);
+        }
+        chunk.putLong(base + CLICKS, current + granted);
+        return ClickWord.withClicks(current, granted);
+    }
+
+    // Возвращает неиспользованные зарезервированные переходы, не опуская счетчик ниже нуля.
+    // Резерв, взятый до сброса счетчика, не возвращается (см. ClickWord.release)
+    synchronized void release(long primaryKey, long reservation) {
+        int slot = findSlot(primaryKey);
+        if (slot >= 0) {
+            ByteBuffer chunk = chunks[slot >>> CHUNK_BITS];
+            int base = (slot & CHUNK_MASK) * RECORD_SIZE;
+            chunk.putLong(base + CLICKS, ClickWord.release(chunk.getLong(base + CLICKS), reservation));
+        }
+    }
+
+    // Устанавливает новый лимит переходов и сбрасывает счетчик. Возвращает false, если ссылки нет
+    synchronized boolean updateClickLimit(long primaryKey, long newClickLimit) {
+        int slot = findSlot(primaryKey);
+        if (slot < 0) {
+            return false;
+        }
+        ByteBuffer chunk = chunks[slot >>> CHUNK_BITS];
+        int base = (slot & CHUNK_MASK) * RECORD_SIZE;
+        chunk.putLong(base + CLICK_LIMIT, newClickLimit);
+        chunk.putLong(base + CLICKS, ClickWord.reset(chunk.getLong(base + CLICKS)));
+        return true;
+    }
+
+    // Увеличивает счетчик переходов до указанного значения, если он меньше. Возвращает false, если ссылки нет
+    synchronized boolean raiseClicks(long primaryKey, long value) {
+        int slot = findSlot(primaryKey);
+        if (slot < 0) {
+            return false;
+        }
+        ByteBuffer chunk = chunks[slot >>> CHUNK_BITS];
+        int base = (slot & CHUNK_MASK) * RECORD_SIZE + CLICKS;
+        long current = chunk.getLong(base);
+        if (ClickWord.clicks(current) < value) {
+            chunk.putLong(base, ClickWord.withClicks(current, value));
+        }
+        return true;
+    }
+
+    // Проверяет, что ссылка истекла или исчерпала лимит. Для отсутствующей ссылки возвращает false
+    synchronized boolean isExpiredOrExhausted(long primaryKey) {
+        int slot = findSlot(primaryKey);
+        if (slot < 0) {
+            return false;
+        }
+        ByteBuffer chunk = chunks[slot >>> CHUNK_BITS];
+        int base = (slot & CHUNK_MASK) * RECORD_SIZE;
+        return System.currentTimeMillis() / 1000 >= chunk.getLong(base + EXPIRATION)
+                || ClickWord.clicks(chunk.getLong(base + CLICKS)) >= ClickWord.limit(chunk.getLong(base + CLICK_LIMIT));
+    }
+
+    // Возвращает количество ссылок
+    synchronized long size() {
+        return size;
+    }
+
+    // Обходит ссылки: блок записей копируется под монитором, посетитель вызывается без него
+    void forEach(LinkStore.LinkVisitor visitor) {
+        long[] chunkKeys = new long[CHUNK_RECORDS];
+        UrlData[] chunkData = new UrlData[CHUNK_RECORDS];
+        for (int chunk = 0; ; chunk++) {
+            int count = 0;
+            synchronized (this) {
+                if (chunk >= chunks.length) {
+                    return;
+                }
+                int end = Math.min(CHUNK_RECORDS, nextSlot - chunk * CHUNK_RECORDS);
+                for (int offset = 0; offset < end; offset++) {
+                    long primaryKey = chunks[chunk].getLong(offset * RECORD_SIZE + PRIMARY_KEY);
+                    if (primaryKey != 0) {
+                        chunkKeys[count] = primaryKey;
+                        chunkData[count++] = snapshot((chunk << CHUNK_BITS) | offset);
+                    }
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                visitor.visit(chunkKeys[i], chunkData[i]);
+                chunkData[i] = null;
+            }
+        }
+    }
+
+    // Закрывает и удаляет файлы сегмента
+    @Override
+    public synchronized void close() throws IOException {
+        chunks = new MappedByteBuffer[0];
+        records.close();
+        urls.close();
+        Files.deleteIfExists(recordsPath);
+        Files.deleteIfExists(urlsPath);
+    }
+
+    // Проверяет лимит и увеличивает счетчик переходов записи
+    private static ClickStatus incrementClicks(ByteBuffer chunk, int base) {
+        long current = chunk.getLong(base + CLICKS);
+        long clicks = ClickWord.clicks(current);
+        long limit = ClickWord.limit(chunk.getLong(base + CLICK_LIMIT));
+        if (clicks >= limit) {
+            return ClickStatus.LIMIT_EXHAUSTED;
+        }
+        chunk.putLong(base + CLICKS, current + 1);
+        return clicks + 1 < limit ? ClickStatus.ACCEPTED : ClickStatus.ACCEPTED_LAST;
+    }
+
+    // Собирает снимок ссылки из записи
+    private UrlData snapshot(int slot) {
+        ByteBuffer chunk = chunks[slot >>> CHUNK_BITS];
+        int base = (slot & CHUNK_MASK) * RECORD_SIZE;
+        int lifetime = chunk.getInt(base + LIFETIME);
+        // Время создания восстанавливается по секунде истечения (см. UrlData.getExpirationEpochSecond)
+        Instant creationTime = Instant.ofEpochSecond(chunk.getLong(base + EXPIRATION) - 1 - lifetime);
+        long word = chunk.getLong(base + CLICKS);
+        UrlData urlData = new UrlData(readUrl(slot),
+                new UUID(chunk.getLong(base + USER_MOST), chunk.getLong(base + USER_LEAST)),
+                chunk.getLong(base + CLICK_LIMIT), ClickWord.clicks(word), creationTime, lifetime);
+        urlData.setClickWord(word); // Поколение счетчика переносится вместе со ссылкой
+        return urlData;
+    }
+
+    // Читает URL записи из файла текста
+    private String readUrl(int slot) {
+        ByteBuffer chunk = chunks[slot >>> CHUNK_BITS];
+        int base = (slot & CHUNK_MASK) * RECORD_SIZE;
+        ByteBuffer url = ByteBuffer.allocate(chunk.getInt(base + URL_LENGTH));
+        long position = chunk.getLong(base + URL_OFFSET);
+        try {
+            while (url.hasRemaining()) {
+                if (urls.read(url, position + url.position()) < 0) {
+                    throw new IOException("Файл текста URL обрезан.");
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать URL из " + urlsPath + ".", e);
+        }
+        return new String(url.array(), StandardCharsets.UTF_8);
+    }
+
+    // Дописывает текст URL в конец файла текста и возвращает его смещение
+    private long writeUrl(byte[] url) {
+        long position = urlEnd;
+        ByteBuffer buffer = ByteBuffer.wrap(url);
+        try {
+            while (buffer.hasRemaining()) {
+                urls.write(buffer, position + buffer.position());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать URL в " + urlsPath + ".", e);
+        }
+        urlEnd += url.length;
+        return position;
+    }
+
+    // Переписывает файл текста без текста удаленных ссылок и обновляет смещения в записях
+    private void compactUrls() {
+        Path compacted = Paths.get(urlsPath + ".tmp");
+        try (FileChannel target = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long end = 0;
+            for (int slot = 0; slot < nextSlot; slot++) {
+                ByteBuffer chunk = chunks[slot >>> CHUNK_BITS];
+                int base = (slot & CHUNK_MASK) * RECORD_SIZE;
+                if (chunk.getLong(base + PRIMARY_KEY) == 0) {
+                    continue;
+                }
+                ByteBuffer url = ByteBuffer.wrap(readUrl(slot).getBytes(StandardCharsets.UTF_8));
+                chunk.putLong(base + URL_OFFSET, end);
+                while (url.hasRemaining()) {
+                    end += target.write(url, end);
+                }
+            }
+            urls.close();
+            Files.move(compacted, urlsPath, StandardCopyOption.REPLACE_EXISTING);
+            urls = FileChannel.open(urlsPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            urlEnd = end;
+            urlGarbage = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось сжать файл текста URL " + urlsPath + ".", e);
+        }
+    }
+
+    // Ищет запись по первичному ключу. Возвращает -1, если ключа нет
+    private int findSlot(long primaryKey) {
+        // Неположительный ключ совпал бы с пустой или удаленной ячейкой индекса и вернул чужую запись
+        if (primaryKey <= 0) {
+            return -1;
+        }
+        int mask = indexKeys.length - 1;
+        int index = mix(primaryKey) & mask;
+        while (true) {
+            long key = indexKeys[index];
+            if (key == EMPTY) {
+                return -1;
+            }
+            if (key == primaryKey) {
+                return indexSlots[index];
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    // Добавляет ключ в индекс, при необходимости увеличивая его
+    private void insertIntoIndex(long primaryKey, int slot) {
+        // Держим заполнение (вместе с удаленными ячейками) не выше 2/3
+        if ((indexOccupied + 1) * 3L > indexKeys.length * 2L) {
+            rehash();
+        }
+        int mask = indexKeys.length - 1;
+        int index = mix(primaryKey) & mask;
+        while (indexKeys[index] != EMPTY) {
+            index = (index + 1) & mask;
+        }
+        indexKeys[index] = primaryKey;
+        indexSlots[index] = slot;
+        indexOccupied++;
+    }
+
+    // Перестраивает индекс, удаляя надгробия и увеличивая емкость при необходимости
+    private void rehash() {
+        int capacity = indexKeys.length;
+        while ((size + 1) * 3 > capacity) {
+            capacity <<= 1;
+        }
+        long[] newKeys = new long[capacity];
+        int[] newSlots = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < indexKeys.length; i++) {
+            long key = indexKeys[i];
+            if (key != EMPTY && key != TOMBSTONE) {
+                int index = mix(key) & mask;
+                while (newKeys[index] != EMPTY) {
+                    index = (index + 1) & mask;
+                }
+                newKeys[index] = key;
+                newSlots[index] = indexSlots[i];
+            }
+        }
+        indexKeys = newKeys;
+        indexSlots = newSlots;
+        indexOccupied = (int) size;
+    }
+
+    // Выделяет запись: сначала из освобожденных, затем новую с отображением следующего блока файла
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        int slot = nextSlot;
+        int chunk = slot >>> CHUNK_BITS;
+        if (chunk == chunks.length) {
+            try {
+                // Отображение за концом файла увеличивает файл
+                MappedByteBuffer mapped = records.map(FileChannel.MapMode.READ_WRITE,
+                        (long) chunk * CHUNK_RECORDS * RECORD_SIZE, (long) CHUNK_RECORDS * RECORD_SIZE);
+                chunks = Arrays.copyOf(chunks, chunk + 1);
+                chunks[chunk] = mapped;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось расширить файл " + recordsPath + ".", e);
+            }
+        }
+        nextSlot++;
+        return slot;
+    }
+
+    // Освобождает запись для повторного использования и учитывает текст URL как удаленный
+    private void releaseSlot(int slot) {
+        ByteBuffer chunk = chunks[slot >>> CHUNK_BITS];
+        int base = (slot & CHUNK_MASK) * RECORD_SIZE;
+        chunk.putLong(base + PRIMARY_KEY, 0L);
+        urlGarbage += chunk.getInt(base + URL_LENGTH);
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+        if (urlGarbage > URL_COMPACTION_THRESHOLD && urlGarbage * 2 > urlEnd) {
+            compactUrls();
+        }
+    }
+
+    // Перемешивает биты ключа, чтобы последовательные идентификаторы равномерно ложились в индекс
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,786 @@
+package main.java.com.linkshortener;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+
+//Компактное хранилище ссылок: вместо объекта UrlData на каждую ссылку поля хранятся в параллельных
+//примитивных массивах (колонках), а первичный ключ отображается на номер слота через индекс с открытой адресацией.
+//Нет упакованных Long, записей Map, объектов Instant и ссылок на UUID для каждой ссылки. Оригинальные URL хранятся
+//не строками, а записями CompactUrlPool (номер префикса хоста и остаток в UTF-8) и собираются в строку только при чтении.
+//Колонки разбиты на блоки фиксированного размера, которые никогда не перемещаются. Структура меняется только под
+//эксклюзивной блокировкой, а поиск, чтение и переходы идут без блокировки: оптимистическое чтение StampedLock
+//проверяется через validate, при неудаче операция повторяется под разделяемой блокировкой. Переход меняет счетчик
+//операцией CAS; слово счетчика несет поколение слота (ClickWord), которое меняется, когда слот отдают другой ссылке,
+//поэтому переход, начатый до удаления ссылки, не попадет в счетчик новой ссылки того же слота.
+//Время жизни проверяется с точностью до секунды.
+public class ColumnarLinkStore implements LinkStore {
+
+    // Размер блока колонок (количество слотов), степень двойки
+    private static final int CHUNK_BITS = 14;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // Начальная емкость индекса, степень двойки
+    private static final int INITIAL_INDEX_CAPACITY = 1024;
+
+    // Пустая ячейка индекса и удаленная ячейка (первичные ключи всегда положительные)
+    private static final long EMPTY = 0L;
+    private static final long TOMBSTONE = -1L;
+
+    // Атомарный доступ к элементам long[] для счетчика переходов и лимита
+    private static final VarHandle LONG_ELEMENTS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    // Резерв нужно повторить под блокировкой: поколение счетчика изменилось (резерв не бывает отрицательным)
+    private static final long RETRY = Long.MIN_VALUE;
+
+    // Блокировка: оптимистическое чтение и разделяемая для операций над слотом, эксклюзивная для изменения структуры
+    private final StampedLock lock = new StampedLock();
+
+    // Индекс первичный ключ -> слот (открытая адресация, линейное пробирование)
+    private long[] indexKeys = new long[INITIAL_INDEX_CAPACITY];
+    private int[] indexSlots = new int[INITIAL_INDEX_CAPACITY];
+    private int indexOccupied; // Занятые ячейки индекса вместе с удаленными
+
+    // Колонки, разбитые на блоки по CHUNK_SIZE слотов
+    private long[][] primaryKeys = new long[0][]; // Первичный ключ ссылки в слоте (0 - слот свободен)
+    private long[][] clickLimits = new long[0][]; // Лимит переходов
+    private long[][] clicks = new long[0][]; // Количество совершенных переходов с поколением (ClickWord)
+    private long[][] expirations = new long[0][]; // Секунда, начиная с которой ссылка истекла
+    private int[][] lifetimes = new int[0][]; // Время жизни ссылки в секундах
+    private int[][] owners = new int[0][]; // Номер владельца в таблице пользователей
+    private long[][] urlHandles = new long[0][]; // Дескрипторы оригинальных URL в пуле urls
+
+    // Оригинальные URL (меняются под эксклюзивной блокировкой)
+    private final CompactUrlPool urls = new CompactUrlPool();
+
+    // Свободные слоты, освобожденные при удалении
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+
+    // Следующий никогда не использованный слот
+    private int nextSlot;
+
+    // Таблица владельцев: номер -> UUID и UUID -> номер
+    private UUID[] ownerIds = new UUID[16];
+    private final Map<UUID, Integer> ownerNumbers = new HashMap<>();
+
+    // Количество ссылок в хранилище
+    private volatile long size;
+
+    @Override
+    public void put(long primaryKey, UrlData urlData) {
+        if (primaryKey <= 0) {
+            throw new IllegalArgumentException("Первичный ключ должен быть положительным.");
+        }
+        long stamp = lock.writeLock();
+        try {
+            int slot = findSlot(primaryKey);
+            int chunk;
+            int offset;
+            if (slot < 0) {
+                slot = allocateSlot();
+                insertIntoIndex(primaryKey, slot);
+                size++;
+                chunk = slot >>> CHUNK_BITS;
+                offset = slot & CHUNK_MASK;
+            } else {
+                chunk = slot >>> CHUNK_BITS;
+                offset = slot & CHUNK_MASK;
+                urls.remove(urlHandles[chunk][offset]); // Ссылка заменяется: прежний URL больше не нужен
+            }
+            primaryKeys[chunk][offset] = primaryKey;
+            clickLimits[chunk][offset] = urlData.getClickLimit();
+            // Поколение слота продолжается: резервы прежней ссылки слота не возвращаются в новую
+            long previous = (long) LONG_ELEMENTS.getVolatile(clicks[chunk], offset);
+            LONG_ELEMENTS.setVolatile(clicks[chunk], offset,
+                    ClickWord.of(ClickWord.generation(previous) + 1, urlData.getClicks()));
+            expirations[chunk][offset] = urlData.getExpirationEpochSecond();
+            lifetimes[chunk][offset] = urlData.getLifetimeSeconds();
+            owners[chunk][offset] = ownerNumber(urlData.getUserId());
+            urlHandles[chunk][offset] = urls.add(urlData.getLongUrl());
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public UrlData get(long primaryKey) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            int slot = findSlot(primaryKey);
+            UrlData urlData = slot < 0 ? null : tryReadSnapshot(slot);
+            if ((slot < 0 || urlData != null) && lock.validate(stamp)) {
+                return urlData;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            int slot = findSlot(primaryKey);
+            if (slot < 0) {
+                return null;
+            }
+            return snapshot(slot >>> CHUNK_BITS, slot & CHUNK_MASK);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public UUID getUserId(long primaryKey) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            int slot = findSlot(primaryKey);
+            UUID userId = slot < 0 ? null : tryReadOwner(slot);
+            if ((slot < 0 || userId != null) && lock.validate(stamp)) {
+                return userId;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            int slot = findSlot(primaryKey);
+            return slot < 0 ? null : ownerIds[owners[slot >>> CHUNK_BITS][slot & CHUNK_MASK]];
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public String getLongUrl(long primaryKey) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            int slot = findSlot(primaryKey);
+            long[] handleChunk = slot < 0 ? null : chunkOf(urlHandles, slot >>> CHUNK_BITS);
+            String longUrl = handleChunk == null ? null : urls.tryGet(handleChunk[slot & CHUNK_MASK]);
+            if ((slot < 0 || longUrl != null) && lock.validate(stamp)) {
+                return longUrl;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            int slot = findSlot(primaryKey);
+            return slot < 0 ? null : urls.get(urlHandles[slot >>> CHUNK_BITS][slot & CHUNK_MASK]);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public long getClicks(long primaryKey) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            int slot = findSlot(primaryKey);
+            long[] clickChunk = slot < 0 ? null : chunkOf(clicks, slot >>> CHUNK_BITS);
+            long word = clickChunk == null ? -1 : (long) LONG_ELEMENTS.getVolatile(clickChunk, slot & CHUNK_MASK);
+            if ((slot < 0 || word >= 0) && lock.validate(stamp)) {
+                return slot < 0 ? -1 : ClickWord.clicks(word);
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            int slot = findSlot(primaryKey);
+            return slot < 0 ? -1
+                    : ClickWord.clicks((long) LONG_ELEMENTS.getVolatile(clicks[slot >>> CHUNK_BITS], slot & CHUNK_MASK));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public ClickCounter getClickCounter(long primaryKey) {
+        long stamp = lock.readLock();
+        try {
+            int slot = findSlot(primaryKey);
+            return slot < 0 ? null : new SlotClickCounter(primaryKey, slot >>> CHUNK_BITS, slot & CHUNK_MASK);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public ClickStatus tryClick(long primaryKey, UUID userId) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            ClickStatus status = tryClickOptimistic(stamp, primaryKey, userId);
+            if (status != null) {
+                return status;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            int slot = findSlot(primaryKey);
+            if (slot < 0) {
+                return ClickStatus.NOT_FOUND;
+            }
+            int chunk = slot >>> CHUNK_BITS;
+            int offset = slot & CHUNK_MASK;
+            if (!ownerIds[owners[chunk][offset]].equals(userId)) {
+                return ClickStatus.NOT_OWNER;
+            }
+            if (System.currentTimeMillis() / 1000 >= expirations[chunk][offset]) {
+                return ClickStatus.EXPIRED;
+            }
+            // Проверка лимита и учет перехода выполняются одной атомарной операцией
+            return incrementClicks(chunk, offset);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean updateClickLimit(long primaryKey, long newClickLimit) {
+        long stamp = lock.readLock();
+        try {
+            int slot = findSlot(primaryKey);
+            if (slot < 0) {
+                return false;
+            }
+            int chunk = slot >>> CHUNK_BITS;
+            int offset = slot & CHUNK_MASK;
+            LONG_ELEMENTS.setVolatile(clickLimits[chunk], offset, newClickLimit);
+            // Сбрасываем счетчик переходов: поколение увеличивается, резервы до сброса не возвращаются
+            long[] clickChunk = clicks[chunk];
+            while (true) {
+                long current = (long) LONG_ELEMENTS.getVolatile(clickChunk, offset);
+                if (LONG_ELEMENTS.compareAndSet(clickChunk, offset, current, ClickWord.reset(current))) {
+                    return true;
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean raiseClicks(long primaryKey, long value) {
+        long stamp = lock.readLock();
+        try {
+            int slot = findSlot(primaryKey);
+            if (slot < 0) {
+                return false;
+            }
+            long[] clickChunk = clicks[slot >>> CHUNK_BITS];
+            int offset = slot & CHUNK_MASK;
+            while (true) {
+                long current = (long) LONG_ELEMENTS.getVolatile(clickChunk, offset);
+                if (ClickWord.clicks(current) >= value
+                        || LONG_ELEMENTS.compareAndSet(clickChunk, offset, current, ClickWord.withClicks(current, value))) {
+                    return true;
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean isExpiredOrExhausted(long primaryKey) {
+        long stamp = lock.readLock();
+        try {
+            int slot = findSlot(primaryKey);
+            if (slot < 0) {
+                return false;
+            }
+            int chunk = slot >>> CHUNK_BITS;
+            int offset = slot & CHUNK_MASK;
+            return System.currentTimeMillis() / 1000 >= expirations[chunk][offset]
+                    || ClickWord.clicks((long) LONG_ELEMENTS.getVolatile(clicks[chunk], offset))
+                    >= ClickWord.limit((long) LONG_ELEMENTS.getVolatile(clickLimits[chunk], offset));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean remove(long primaryKey) {
+        if (primaryKey <= 0) {
+            return false;
+        }
+        long stamp = lock.writeLock();
+        try {
+            int mask = indexKeys.length - 1;
+            int index = mix(primaryKey) & mask;
+            while (indexKeys[index] != EMPTY) {
+                if (indexKeys[index] == primaryKey) {
+                    int slot = indexSlots[index];
+                    indexKeys[index] = TOMBSTONE;
+                    releaseSlot(slot);
+                    size--;
+                    if (urls.needsCompaction()) {
+                        compactUrls();
+                    }
+                    return true;
+                }
+                index = (index + 1) & mask;
+            }
+            return false;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    // Возвращает объем памяти оригинальных URL в байтах (слябы и словарь префиксов пула)
+    public long urlSizeInBytes() {
+        long stamp = lock.readLock();
+        try {
+            return urls.sizeInBytes();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void forEach(LinkVisitor visitor) {
+        // Блок копируется под разделяемой блокировкой, а посетитель вызывается уже без нее,
+        // чтобы долгий обход (например, запись снимка) не задерживал добавление и удаление ссылок
+        long[] chunkKeys = new long[CHUNK_SIZE];
+        UrlData[] chunkData = new UrlData[CHUNK_SIZE];
+        for (int chunk = 0; ; chunk++) {
+            int count = 0;
+            long stamp = lock.readLock();
+            try {
+                if (chunk >= primaryKeys.length) {
+                    return;
+                }
+                for (int offset = 0; offset < CHUNK_SIZE; offset++) {
+                    long primaryKey = primaryKeys[chunk][offset];
+                    if (primaryKey != 0) {
+                        chunkKeys[count] = primaryKey;
+                        chunkData[count++] = snapshot(chunk, offset);
+                    }
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+            for (int i = 0; i < count; i++) {
+                visitor.visit(chunkKeys[i], chunkData[i]);
+                chunkData[i] = null;
+            }
+        }
+    }
+
+    // Переход без блокировки: слот, владелец, срок, счетчик и лимит читаются оптимистически и проверяются
+    // через validate. Возвращает null, если переход нужно повторить под разделяемой блокировкой
+    private ClickStatus tryClickOptimistic(long stamp, long primaryKey, UUID userId) {
+        int slot = findSlot(primaryKey);
+        if (slot < 0) {
+            return lock.validate(stamp) ? ClickStatus.NOT_FOUND : null;
+        }
+        int chunk = slot >>> CHUNK_BITS;
+        int offset = slot & CHUNK_MASK;
+        UUID owner = tryReadOwner(slot);
+        long[] expirationChunk = chunkOf(expirations, chunk);
+        long[] clickChunk = chunkOf(clicks, chunk);
+        long[] limitChunk = chunkOf(clickLimits, chunk);
+        if (owner == null || expirationChunk == null || clickChunk == null || limitChunk == null) {
+            return null;
+        }
+        long expiration = expirationChunk[offset];
+        long word = (long) LONG_ELEMENTS.getVolatile(clickChunk, offset);
+        long limit = (long) LONG_ELEMENTS.getVolatile(limitChunk, offset);
+        if (!lock.validate(stamp)) {
+            return null;
+        }
+        if (!owner.equals(userId)) {
+            return ClickStatus.NOT_OWNER;
+        }
+        if (System.currentTimeMillis() / 1000 >= expiration) {
+            return ClickStatus.EXPIRED;
+        }
+        return incrementClicks(clickChunk, limitChunk, offset, word, limit);
+    }
+
+    // Проверяет лимит и увеличивает счетчик переходов слота. Вызывается под разделяемой блокировкой
+    private ClickStatus incrementClicks(int chunk, int offset) {
+        long[] clickChunk = clicks[chunk];
+        long[] limitChunk = clickLimits[chunk];
+        while (true) {
+            ClickStatus status = incrementClicks(clickChunk, limitChunk, offset,
+                    (long) LONG_ELEMENTS.getVolatile(clickChunk, offset),
+                    (long) LONG_ELEMENTS.getVolatile(limitChunk, offset));
+            if (status != null) {
+                return status;
+            }
+            // Счетчик сбросили при изменении лимита: повторяем с новым словом
+        }
+    }
+
+    // Проверяет лимит и увеличивает счетчик переходов слота, начиная со слова и лимита, прочитанных при проверке
+    // слота. Возвращает null, если поколение слова изменилось (счетчик сбросили или слот отдали другой ссылке)
+    private static ClickStatus incrementClicks(long[] clickChunk, long[] limitChunk, int offset, long word, long limit) {
+        long current = word;
+        long currentLimit = ClickWord.limit(limit);
+        while (true) {
+            if (ClickWord.clicks(current) >= currentLimit) {
+                return ClickStatus.LIMIT_EXHAUSTED;
+            }
+            if (LONG_ELEMENTS.compareAndSet(clickChunk, offset, current, current + 1)) {
+                return ClickWord.clicks(current) + 1 < currentLimit ? ClickStatus.ACCEPTED : ClickStatus.ACCEPTED_LAST;
+            }
+            long latest = (long) LONG_ELEMENTS.getVolatile(clickChunk, offset);
+            if (ClickWord.generation(latest) != ClickWord.generation(current)) {
+                return null;
+            }
+            current = latest;
+            currentLimit = ClickWord.limit((long) LONG_ELEMENTS.getVolatile(limitChunk, offset));
+        }
+    }
+
+    // Резервирует до requested переходов слота в пределах лимита и возвращает резерв вместе с поколением.
+    // Вызывается под разделяемой блокировкой
+    private long reserveClicks(int chunk, int offset, long requested) {
+        long[] clickChunk = clicks[chunk];
+        long[] limitChunk = clickLimits[chunk];
+        while (true) {
+            long reservation = reserveClicks(clickChunk, limitChunk, offset, requested,
+                    (long) LONG_ELEMENTS.getVolatile(clickChunk, offset),
+                    (long) LONG_ELEMENTS.getVolatile(limitChunk, offset));
+            if (reservation != RETRY) {
+                return reservation;
+            }
+        }
+    }
+
+    // Резервирует до requested переходов слота, начиная со слова и лимита, прочитанных при проверке слота.
+    // Возвращает RETRY, если поколение слова изменилось
+    private static long reserveClicks(long[] clickChunk, long[] limitChunk, int offset, long requested,
+                                      long word, long limit) {
+        long current = word;
+        long currentLimit = ClickWord.limit(limit);
+        while (true) {
+            long granted = Math.min(requested, currentLimit - ClickWord.clicks(current));
+            if (granted <= 0) {
+                return ClickWord.withClicks(current, 0);
+            }
+            if (LONG_ELEMENTS.compareAndSet(clickChunk, offset, current, current + granted)) {
+                return ClickWord.withClicks(current, granted);
+            }
+            long latest = (long) LONG_ELEMENTS.getVolatile(clickChunk, offset);
+            if (ClickWord.generation(latest) != ClickWord.generation(current)) {
+                return RETRY;
+            }
+            current = latest;
+            currentLimit = ClickWord.limit((long) LONG_ELEMENTS.getVolatile(limitChunk, offset));
+        }
+    }
+
+    // Возвращает резерв в счетчик слота, не опуская его ниже нуля. Блокировка не нужна: резерв прежнего поколения
+    // (счетчик сбросили или слот отдали другой ссылке) не возвращается, а счетчик освобожденного слота
+    // перезапишет следующая ссылка
+    private static void releaseClicks(long[] clickChunk, int offset, long reservation) {
+        while (true) {
+            long current = (long) LONG_ELEMENTS.getVolatile(clickChunk, offset);
+            if (LONG_ELEMENTS.compareAndSet(clickChunk, offset, current, ClickWord.release(current, reservation))) {
+                return;
+            }
+        }
+    }
+
+    // Собирает снимок ссылки из колонок при чтении без блокировки. Возвращает null, если колонки слота прочитать
+    // не удалось; результат проверяется вызывающим кодом через validate
+    private UrlData tryReadSnapshot(int slot) {
+        int chunk = slot >>> CHUNK_BITS;
+        int offset = slot & CHUNK_MASK;
+        long[] limitChunk = chunkOf(clickLimits, chunk);
+        long[] clickChunk = chunkOf(clicks, chunk);
+        long[] expirationChunk = chunkOf(expirations, chunk);
+        int[] lifetimeChunk = chunkOf(lifetimes, chunk);
+        long[] handleChunk = chunkOf(urlHandles, chunk);
+        UUID owner = tryReadOwner(slot);
+        if (limitChunk == null || clickChunk == null || expirationChunk == null || lifetimeChunk == null
+                || handleChunk == null || owner == null) {
+            return null;
+        }
+        String longUrl = urls.tryGet(handleChunk[offset]);
+        if (longUrl == null) {
+            return null;
+        }
+        int lifetime = lifetimeChunk[offset];
+        Instant creationTime = Instant.ofEpochSecond(expirationChunk[offset] - 1 - lifetime);
+        return new UrlData(longUrl, owner, (long) LONG_ELEMENTS.getVolatile(limitChunk, offset),
+                ClickWord.clicks((long) LONG_ELEMENTS.getVolatile(clickChunk, offset)), creationTime, lifetime);
+    }
+
+    // Читает владельца слота без блокировки. Возвращает null, если прочитать не удалось
+    private UUID tryReadOwner(int slot) {
+        int[] ownerChunk = chunkOf(owners, slot >>> CHUNK_BITS);
+        UUID[] currentOwnerIds = ownerIds;
+        if (ownerChunk == null) {
+            return null;
+        }
+        int owner = ownerChunk[slot & CHUNK_MASK];
+        return owner < currentOwnerIds.length ? currentOwnerIds[owner] : null;
+    }
+
+    // Блок колонки при чтении без блокировки: null, если колонку расширяют и блока в прочитанной версии еще нет
+    private static long[] chunkOf(long[][] column, int chunk) {
+        return chunk < column.length ? column[chunk] : null;
+    }
+
+    private static int[] chunkOf(int[][] column, int chunk) {
+        return chunk < column.length ? column[chunk] : null;
+    }
+
+    // Собирает снимок ссылки из колонок. Вызывается под блокировкой
+    private UrlData snapshot(int chunk, int offset) {
+        int lifetime = lifetimes[chunk][offset];
+        // Время создания восстанавливается по секунде истечения (см. UrlData.getExpirationEpochSecond)
+        Instant creationTime = Instant.ofEpochSecond(expirations[chunk][offset] - 1 - lifetime);
+        return new UrlData(urls.get(urlHandles[chunk][offset]), ownerIds[owners[chunk][offset]],
+                (long) LONG_ELEMENTS.getVolatile(clickLimits[chunk], offset),
+                ClickWord.clicks((long) LONG_ELEMENTS.getVolatile(clicks[chunk], offset)),
+                creationTime, lifetime);
+    }
+
+    // Ищет слот по первичному ключу. Возвращает -1, если ключа нет. Под блокировкой индекс не меняется;
+    // при чтении без блокировки индекс могут перестраивать, поэтому количество шагов ограничено его размером,
+    // а результат проверяется вызывающим кодом через validate
+    private int findSlot(long primaryKey) {
+        // Неположительный ключ совпал бы с пустой или удаленной ячейкой индекса и вернул чужой слот
+        if (primaryKey <= 0) {
+            return -1;
+        }
+        long[] keys = indexKeys;
+        int[] slots = indexSlots;
+        if (keys.length != slots.length) {
+            return -1; // Индекс перестраивают: validate не пройдет
+        }
+        int mask = keys.length - 1;
+        int index = mix(primaryKey) & mask;
+        for (int step = 0; step <= mask; step++) {
+            long key = keys[index];
+            if (key == EMPTY) {
+                return -1;
+            }
+            if (key == primaryKey) {
+                return slots[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    // Добавляет ключ в индекс, при необходимости увеличивая его. Вызывается под эксклюзивной блокировкой
+    private void insertIntoIndex(long primaryKey, int slot) {
+        // Держим заполнение (вместе с удаленными ячейками) не выше 2/3
+        if ((indexOccupied + 1) * 3 > indexKeys.length * 2) {
+            rehash();
+        }
+        int mask = indexKeys.length - 1;
+        int index = mix(primaryKey) & mask;
+        while (indexKeys[index] != EMPTY) {
+            index = (index + 1) & mask;
+        }
+        indexKeys[index] = primaryKey;
+        indexSlots[index] = slot;
+        indexOccupied++;
+    }
+
+    // Перестраивает индекс, удаляя надгробия и увеличивая емкость при необходимости
+    private void rehash() {
+        long live = size;
+        int capacity = indexKeys.length;
+        while ((live + 1) * 3 > capacity) {
+            capacity <<= 1;
+        }
+        long[] oldKeys = indexKeys;
+        int[] oldSlots = indexSlots;
+        long[] newKeys = new long[capacity];
+        int[] newSlots = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != EMPTY && key != TOMBSTONE) {
+                int index = mix(key) & mask;
+                while (newKeys[index] != EMPTY) {
+                    index = (index + 1) & mask;
+                }
+                newKeys[index] = key;
+                newSlots[index] = oldSlots[i];
+            }
+        }
+        indexKeys = newKeys;
+        indexSlots = newSlots;
+        indexOccupied = (int) live;
+    }
+
+    // Выделяет слот: сначала из освобожденных, затем новый с выделением блока колонок
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        int slot = nextSlot++;
+        int chunk = slot >>> CHUNK_BITS;
+        if (chunk == primaryKeys.length) {
+            primaryKeys = Arrays.copyOf(primaryKeys, chunk + 1);
+            clickLimits = Arrays.copyOf(clickLimits, chunk + 1);
+            clicks = Arrays.copyOf(clicks, chunk + 1);
+            expirations = Arrays.copyOf(expirations, chunk + 1);
+            lifetimes = Arrays.copyOf(lifetimes, chunk + 1);
+            owners = Arrays.copyOf(owners, chunk + 1);
+            urlHandles = Arrays.copyOf(urlHandles, chunk + 1);
+            primaryKeys[chunk] = new long[CHUNK_SIZE];
+            clickLimits[chunk] = new long[CHUNK_SIZE];
+            clicks[chunk] = new long[CHUNK_SIZE];
+            expirations[chunk] = new long[CHUNK_SIZE];
+            lifetimes[chunk] = new int[CHUNK_SIZE];
+            owners[chunk] = new int[CHUNK_SIZE];
+            urlHandles[chunk] = new long[CHUNK_SIZE];
+        }
+        return slot;
+    }
+
+    // Освобождает слот для повторного использования
+    private void releaseSlot(int slot) {
+        int chunk = slot >>> CHUNK_BITS;
+        int offset = slot & CHUNK_MASK;
+        primaryKeys[chunk][offset] = 0;
+        urls.remove(urlHandles[chunk][offset]);
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    // Переносит URL из разреженных слябов пула в новые, чтобы освободить память удаленных ссылок.
+    // Вызывается под эксклюзивной блокировкой, когда удаленных байтов в пуле больше, чем живых
+    private void compactUrls() {
+        urls.beginCompaction();
+        for (int chunk = 0; chunk < primaryKeys.length; chunk++) {
+            for (int offset = 0; offset < CHUNK_SIZE; offset++) {
+                if (primaryKeys[chunk][offset] != 0) {
+                    urlHandles[chunk][offset] = urls.relocate(urlHandles[chunk][offset]);
+                }
+            }
+        }
+    }
+
+    // Возвращает номер владельца в таблице пользователей, добавляя его при необходимости
+    private int ownerNumber(UUID userId) {
+        Integer number = ownerNumbers.get(userId);
+        if (number == null) {
+            number = ownerNumbers.size();
+            if (number == ownerIds.length) {
+                ownerIds = Arrays.copyOf(ownerIds, number * 2);
+            }
+            ownerIds[number] = userId;
+            ownerNumbers.put(userId, number);
+        }
+        return number;
+    }
+
+    // Перемешивает биты ключа, чтобы последовательные идентификаторы равномерно ложились в индекс
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    //Счетчик переходов слота. Блоки колонок не перемещаются, поэтому поиск по индексу не нужен и блоки слота
+    //запоминаются при создании счетчика. Слот могут освободить и отдать другой ссылке, поэтому при оптимистическом
+    //чтении (или под блокировкой, если оно не прошло validate) проверяется, что в нем та же ссылка.
+    private class SlotClickCounter implements ClickCounter {
+        private final long primaryKey; // Первичный ключ ссылки
+        private final int chunk; // Номер блока колонок
+        private final int offset; // Смещение в блоке
+        private final long[] keyChunk; // Блок первичных ключей
+        private final long[] clickChunk; // Блок счетчиков переходов
+        private final long[] limitChunk; // Блок лимитов
+
+        // Создается под блокировкой хранилища
+        SlotClickCounter(long primaryKey, int chunk, int offset) {
+            this.primaryKey = primaryKey;
+            this.chunk = chunk;
+            this.offset = offset;
+            this.keyChunk = primaryKeys[chunk];
+            this.clickChunk = clicks[chunk];
+            this.limitChunk = clickLimits[chunk];
+        }
+
+        @Override
+        public ClickStatus tryClick() {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                long key = keyChunk[offset];
+                long word = (long) LONG_ELEMENTS.getVolatile(clickChunk, offset);
+                long limit = (long) LONG_ELEMENTS.getVolatile(limitChunk, offset);
+                if (lock.validate(stamp)) {
+                    if (key != primaryKey) {
+                        return ClickStatus.NOT_FOUND;
+                    }
+                    ClickStatus status = incrementClicks(clickChunk, limitChunk, offset, word, limit);
+                    if (status != null) {
+                        return status;
+                    }
+                }
+            }
+            stamp = lock.readLock();
+            try {
+                if (keyChunk[offset] != primaryKey) {
+                    return ClickStatus.NOT_FOUND;
+                }
+                return incrementClicks(chunk, offset);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        @Override
+        public long getClicks() {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                long key = keyChunk[offset];
+                long word = (long) LONG_ELEMENTS.getVolatile(clickChunk, offset);
+                if (lock.validate(stamp)) {
+                    return key == primaryKey ? ClickWord.clicks(word) : -1;
+                }
+            }
+            stamp = lock.readLock();
+            try {
+                return keyChunk[offset] == primaryKey
+                        ? ClickWord.clicks((long) LONG_ELEMENTS.getVolatile(clickChunk, offset)) : -1;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        @Override
+        public long reserve(long requested) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                long key = keyChunk[offset];
+                long word = (long) LONG_ELEMENTS.getVolatile(clickChunk, offset);
+                long limit = (long) LONG_ELEMENTS.getVolatile(limitChunk, offset);
+                if (lock.validate(stamp)) {
+                    if (key != primaryKey) {
+                        return -1;
+                    }
+                    long reservation = reserveClicks(clickChunk, limitChunk, offset, requested, word, limit);
+                    if (reservation != RETRY) {
+                        return reservation;
+                    }
+                }
+            }
+            stamp = lock.readLock();
+            try {
+                return keyChunk[offset] == primaryKey ? reserveClicks(chunk, offset, requested) : -1;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        @Override
+        public void release(long reservation) {
+            releaseClicks(clickChunk, offset, reservation);
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package main.java.com.linkshortener;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+//Компактное хранение оригинальных URL: вместо отдельной строки на ссылку URL делится на префикс (схема и хост,
+//"https://example.com/") и остаток. Префиксы у большинства ссылок общие, поэтому они хранятся один раз в словаре,
+//а запись ссылки - это номер префикса и остаток в UTF-8, дописанные подряд в пулы байтов (слябы) фиксированного
+//размера. Запись адресуется дескриптором long (номер сляба и смещение), строка собирается только при чтении.
+//Удаленные записи не переиспользуются: пустой сляб освобождается целиком, а записи из слябов, где больше четверти
+//байтов уже удалены, хранилище переносит в новые слябы (relocate), когда удаленных байтов становится больше половины.
+//Класс не потокобезопасен: хранилище вызывает его под своей блокировкой (запись - под эксклюзивной),
+//кроме tryGet для чтения без блокировки.
+public final class CompactUrlPool {
+
+    // Размер сляба в байтах (степень двойки); запись длиннее сляба получает отдельный сляб
+    private static final int SLAB_BITS = 18;
+    private static final int SLAB_SIZE = 1 << SLAB_BITS;
+
+    // Наибольшее количество префиксов в словаре (остальные URL хранятся целиком, с пустым префиксом)
+    private static final int MAX_PREFIXES = 1 << 16;
+
+    private final Map<String, Integer> prefixIds = new HashMap<>(); // Префикс -> номер
+    private String[] prefixes = {""}; // Номер -> префикс (0 - пустой префикс)
+
+    private byte[][] slabs = new byte[0][]; // Слябы (null - освобожденный сляб)
+    private int[] filled = new int[0]; // Записанные байты сляба
+    private int[] live = new int[0]; // Байты живых записей сляба
+    private int[] freeSlabs = new int[0]; // Номера освобожденных слябов
+    private int freeSlabCount;
+    private int current = -1; // Сляб, в который дописываются записи
+    private long filledBytes; // Записанные байты во всех слябах
+    private long garbageBytes; // Байты удаленных записей во всех слябах
+
+    // Записывает URL и возвращает дескриптор записи
+    public long add(String url) {
+        int prefixId = prefixId(url);
+        byte[] suffix = url.substring(prefixes[prefixId].length()).getBytes(StandardCharsets.UTF_8);
+        int size = varIntSize(prefixId) + varIntSize(suffix.length) + suffix.length;
+        int slab = reserve(size);
+        byte[] bytes = slabs[slab];
+        int offset = filled[slab];
+        int position = writeVarInt(bytes, offset, prefixId);
+        position = writeVarInt(bytes, position, suffix.length);
+        System.arraycopy(suffix, 0, bytes, position, suffix.length);
+        filled[slab] += size;
+        live[slab] += size;
+        filledBytes += size;
+        return handle(slab, offset);
+    }
+
+    // Возвращает URL записи
+    public String get(long handle) {
+        byte[] bytes = slabs[slabOf(handle)];
+        int position = offsetOf(handle);
+        int prefixId = readVarInt(bytes, position);
+        position += varIntSize(prefixId);
+        int length = readVarInt(bytes, position);
+        position += varIntSize(length);
+        String suffix = new String(bytes, position, length, StandardCharsets.UTF_8);
+        return prefixId == 0 ? suffix : prefixes[prefixId].concat(suffix);
+    }
+
+    // Возвращает URL записи при чтении без блокировки хранилища или null, если запись прочитать не удалось:
+    // пул может меняться параллельно, поэтому границы проверяются, а результат хранилище проверяет через validate
+    public String tryGet(long handle) {
+        byte[][] currentSlabs = slabs;
+        String[] currentPrefixes = prefixes;
+        int slab = slabOf(handle);
+        int position = offsetOf(handle);
+        if (slab < 0 || slab >= currentSlabs.length || position < 0) {
+            return null;
+        }
+        byte[] bytes = currentSlabs[slab];
+        if (bytes == null) {
+            return null;
+        }
+        int prefixId = readVarInt(bytes, position, bytes.length);
+        if (prefixId < 0 || prefixId >= currentPrefixes.length) {
+            return null;
+        }
+        position += varIntSize(prefixId);
+        int length = readVarInt(bytes, position, bytes.length);
+        if (length < 0) {
+            return null;
+        }
+        position += varIntSize(length);
+        String prefix = currentPrefixes[prefixId];
+        if (prefix == null || length > bytes.length - position) {
+            return null;
+        }
+        String suffix = new String(bytes, position, length, StandardCharsets.UTF_8);
+        return prefixId == 0 ? suffix : prefix.concat(suffix);
+    }
+
+    // Удаляет запись. Сляб, в котором не осталось живых записей, освобождается
+    public void remove(long handle) {
+        int slab = slabOf(handle);
+        int size = entrySize(slabs[slab], offsetOf(handle));
+        live[slab] -= size;
+        garbageBytes += size;
+        if (live[slab] == 0 && slab != current) {
+            releaseSlab(slab);
+        }
+    }
+
+    // Проверяет, пора ли переносить записи: удаленных байтов больше половины и больше одного сляба
+    public boolean needsCompaction() {
+        return garbageBytes * 2 > filledBytes && garbageBytes > SLAB_SIZE;
+    }
+
+    // Начинает перенос записей: следующие записи пойдут в новый сляб, чтобы не дописывать в переносимые
+    public void beginCompaction() {
+        if (current >= 0 && live[current] == 0) {
+            releaseSlab(current);
+        }
+        current = -1;
+    }
+
+    // Переносит запись из разреженного сляба (удалено больше четверти байтов) в текущий и возвращает новый
+    // дескриптор. Запись из плотного сляба остается на месте
+    public long relocate(long handle) {
+        int slab = slabOf(handle);
+        if (slab == current || (filled[slab] - live[slab]) * 4 <= filled[slab]) {
+            return handle;
+        }
+        byte[] bytes = slabs[slab];
+        int offset = offsetOf(handle);
+        int size = entrySize(bytes, offset);
+        int target = reserve(size);
+        int targetOffset = filled[target];
+        System.arraycopy(slabs[slab], offset, slabs[target], targetOffset, size);
+        filled[target] += size;
+        live[target] += size;
+        filledBytes += size;
+        remove(handle);
+        return handle(target, targetOffset);
+    }
+
+    // Возвращает объем слябов и словаря префиксов в байтах (без заголовков объектов)
+    public long sizeInBytes() {
+        long bytes = 0;
+        for (byte[] slab : slabs) {
+            bytes += slab == null ? 0 : slab.length;
+        }
+        for (int i = 1; i <= prefixIds.size(); i++) {
+            bytes += prefixes[i].length();
+        }
+        return bytes;
+    }
+
+    // Возвращает количество префиксов в словаре
+    public int prefixCount() {
+        return prefixIds.size();
+    }
+
+    // Возвращает номер префикса URL, добавляя префикс в словарь при необходимости
+    private int prefixId(String url) {
+        int end = prefixEnd(url);
+        if (end <= 0) {
+            return 0;
+        }
+        String prefix = url.substring(0, end);
+        Integer id = prefixIds.get(prefix);
+        if (id != null) {
+            return id;
+        }
+        if (prefixIds.size() + 1 == MAX_PREFIXES) {
+            return 0;
+        }
+        id = prefixIds.size() + 1;
+        if (id == prefixes.length) {
+            prefixes = Arrays.copyOf(prefixes, id * 2);
+        }
+        prefixes[id] = prefix;
+        prefixIds.put(prefix, id);
+        return id;
+    }
+
+    // Конец префикса: схема, "://" и хост вместе со следующим за ним символом "/". 0 - префикса нет
+    private static int prefixEnd(String url) {
+        int scheme = url.indexOf("://");
+        if (scheme <= 0) {
+            return 0;
+        }
+        int slash = url.indexOf('/', scheme + 3);
+        return slash < 0 ? 0 : slash + 1;
+    }
+
+    // Возвращает сляб, в котором есть size свободных байтов, при необходимости начиная новый
+    private int reserve(int size) {
+        if (size > SLAB_SIZE) {
+            // Отдельный сляб для длинной записи: дописывать в него нечего, текущий сляб не меняется
+            return newSlab(size);
+        }
+        if (current >= 0 && SLAB_SIZE - filled[current] >= size) {
+            return current;
+        }
+        if (current >= 0 && live[current] == 0) {
+            releaseSlab(current);
+        }
+        current = newSlab(SLAB_SIZE);
+        return current;
+    }
+
+    // Выделяет сляб размером size, занимая номер освобожденного сляба, если он есть
+    private int newSlab(int size) {
+        int slab;
+        if (freeSlabCount > 0) {
+            slab = freeSlabs[--freeSlabCount];
+        } else {
+            slab = slabs.length;
+            slabs = Arrays.copyOf(slabs, slab + 1);
+            filled = Arrays.copyOf(filled, slab + 1);
+            live = Arrays.copyOf(live, slab + 1);
+        }
+        slabs[slab] = new byte[size];
+        return slab;
+    }
+
+    // Освобождает сляб без живых записей
+    private void releaseSlab(int slab) {
+        filledBytes -= filled[slab];
+        garbageBytes -= filled[slab];
+        slabs[slab] = null;
+        filled[slab] = 0;
+        live[slab] = 0;
+        if (freeSlabCount == freeSlabs.length) {
+            freeSlabs = Arrays.copyOf(freeSlabs, Math.max(4, freeSlabCount * 2));
+        }
+        freeSlabs[freeSlabCount++] = slab;
+    }
+
+    // Размер записи в байтах
+    private static int entrySize(byte[] bytes, int offset) {
+        int prefixId = readVarInt(bytes, offset);
+        int headerSize = varIntSize(prefixId);
+        int length = readVarInt(bytes, offset + headerSize);
+        return headerSize + varIntSize(length) + length;
+    }
+
+    private static long handle(int slab, int offset) {
+        return ((long) slab << 32) | offset;
+    }
+
+    private static int slabOf(long handle) {
+        return (int) (handle >>> 32);
+    }
+
+    private static int offsetOf(long handle) {
+        return (int) handle;
+    }
+
+    // Записывает неотрицательное число по 7 бит в байт и возвращает позицию после него
+    private static int writeVarInt(byte[] bytes, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+        return position;
+    }
+
+    // Читает число, записанное writeVarInt
+    private static int readVarInt(byte[] bytes, int position) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = bytes[position++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    // Читает число, записанное writeVarInt, не выходя за end. Возвращает -1, если число не помещается
+    private static int readVarInt(byte[] bytes, int position, int end) {
+        int value = 0;
+        for (int shift = 0; shift < Integer.SIZE && position < end; shift += 7) {
+            byte b = bytes[position++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value < 0 ? -1 : value;
+            }
+        }
+        return -1;
+    }
+
+    // Количество байтов числа в записи writeVarInt
+    private static int varIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
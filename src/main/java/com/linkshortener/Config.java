@@ -2,42 +2,395 @@ package main.java.com.linkshortener;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
 import java.util.Properties;
+import java.util.Set;
 
 //Класс для работы с конфигурационным файлом.Загружает параметры из файла config.properties и предоставляет методы для их получения.
+//Параметры разбираются один раз в неизменяемый снимок ConfigSnapshot, который публикуется через volatile-ссылку:
+//методы получения параметров читают поле текущего снимка, а reload заменяет снимок целиком, не останавливая запросы.
+//Код, который проверяет несколько параметров вместе, берет снимок один раз (snapshot()), чтобы они были согласованы.
+//При перечитывании меняются только параметры из ConfigSnapshot.RELOADABLE_KEYS; остальные переносятся из прежнего
+//снимка, потому что сервис читает часть из них при каждом вызове, а применяются они только при запуске.
 public class Config {
-    private Properties properties; // Хранилище свойств конфигурации
+    private final Path sourceFile; // Файл конфигурации на диске или null, если конфигурация не из файла
+    private final Properties overrides; // Свойства, замененные методом with: сохраняются при перечитывании файла
+    private volatile ConfigSnapshot snapshot; // Текущий снимок параметров
+    private volatile Set<String> pendingRestartKeys = Collections.emptySet(); // Параметры файла, ждущие перезапуска
 
     // Конструктор класса Config
     public Config(String configFilePath) throws IOException {
-        properties = new Properties();
-        try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream(configFilePath)) {
-            if (inputStream == null) {
-                throw new IOException("Файл " + configFilePath + " не найден в ресурсах.");
-            }
+        Properties properties = new Properties();
+        URL resource = getClass().getClassLoader().getResource(configFilePath);
+        if (resource == null) {
+            throw new IOException("Файл " + configFilePath + " не найден в ресурсах.");
+        }
+        try (InputStream inputStream = resource.openStream()) {
             properties.load(inputStream); // Загружаем свойства из файла
         }
+        this.sourceFile = toFile(resource);
+        this.overrides = new Properties();
+        this.snapshot = parse(properties);
+    }
+
+    // Конструктор класса Config из файла на диске
+    public Config(Path configFile) throws IOException {
+        this.sourceFile = configFile.toAbsolutePath();
+        this.overrides = new Properties();
+        this.snapshot = parse(load(sourceFile));
+    }
+
+    // Конструктор класса Config из готового набора свойств (например, для бенчмарков и встраивания)
+    public Config(Properties properties) {
+        this.sourceFile = null;
+        this.overrides = new Properties();
+        this.snapshot = new ConfigSnapshot(properties);
+    }
+
+    // Конструктор копии с дополнительными замененными свойствами
+    private Config(Path sourceFile, Properties overrides, ConfigSnapshot snapshot) {
+        this.sourceFile = sourceFile;
+        this.overrides = overrides;
+        this.snapshot = snapshot;
+    }
+
+    // Возвращает копию конфигурации, в которой свойство key заменено значением value.
+    // Замена сохраняется, когда копия перечитывает файл
+    public Config with(String key, String value) {
+        Properties copyOverrides = new Properties();
+        copyOverrides.putAll(overrides);
+        copyOverrides.setProperty(key, value);
+        Properties properties = snapshot.toProperties();
+        properties.setProperty(key, value);
+        return new Config(sourceFile, copyOverrides, new ConfigSnapshot(properties));
+    }
+
+    // Возвращает текущий снимок параметров
+    public ConfigSnapshot snapshot() {
+        return snapshot;
+    }
+
+    // Возвращает файл конфигурации на диске или null, если конфигурация загружена не из файла
+    // (из готовых свойств или из ресурса внутри jar)
+    public Path getSourceFile() {
+        return sourceFile;
+    }
+
+    // Возвращает параметры, значения которых в последнем перечитанном файле отличаются от действующих:
+    // они не перечитываются и вступят в силу после перезапуска
+    public Set<String> getPendingRestartKeys() {
+        return pendingRestartKeys;
+    }
+
+    // Перечитывает файл конфигурации и публикует новый снимок; замены метода with применяются поверх файла.
+    // Если файл не читается или параметры неверны, бросает исключение, и продолжает действовать прежний снимок.
+    // Возвращает действующий снимок (прежний, если перечитываемые параметры не изменились)
+    public ConfigSnapshot reload() throws IOException {
+        if (sourceFile == null) {
+            throw new IllegalStateException("Конфигурация загружена не из файла на диске.");
+        }
+        return reload(load(sourceFile));
+    }
+
+    // Публикует снимок, в котором параметры из RELOADABLE_KEYS взяты из указанных свойств (замены метода with
+    // применяются поверх них), а остальные - из прежнего снимка. Проверяются все указанные свойства: бросает
+    // IllegalArgumentException, если какой-либо параметр неверен; тогда продолжает действовать прежний снимок
+    public synchronized ConfigSnapshot reload(Properties properties) {
+        Properties merged = new Properties();
+        merged.putAll(properties);
+        merged.putAll(overrides);
+        ConfigSnapshot requested = new ConfigSnapshot(merged);
+        ConfigSnapshot current = snapshot;
+        Properties effective = current.toProperties();
+        for (String key : ConfigSnapshot.RELOADABLE_KEYS) {
+            String value = merged.getProperty(key);
+            if (value == null) {
+                effective.remove(key);
+            } else {
+                effective.setProperty(key, value);
+            }
+        }
+        ConfigSnapshot next = new ConfigSnapshot(effective);
+        pendingRestartKeys = Collections.unmodifiableSet(next.changedKeys(requested));
+        if (current.changedKeys(next).isEmpty()) {
+            return current;
+        }
+        snapshot = next;
+        return next;
+    }
+
+    // Читает свойства из файла на диске
+    private static Properties load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            properties.load(inputStream);
+        }
+        return properties;
+    }
+
+    // Разбирает свойства файла; неверные параметры считаются ошибкой загрузки конфигурации
+    private static ConfigSnapshot parse(Properties properties) throws IOException {
+        try {
+            return new ConfigSnapshot(properties);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    // Возвращает файл ресурса на диске или null, если ресурс находится внутри архива
+    private static Path toFile(URL resource) {
+        if (!"file".equals(resource.getProtocol())) {
+            return null;
+        }
+        try {
+            return Paths.get(resource.toURI());
+        } catch (URISyntaxException e) {
+            return null;
+        }
     }
 
     // Возвращает время жизни ссылки по умолчанию (в секундах)
     // Этот метод не используется, но не стал его удалять, так как думал, что можно будет заюзать как параметр, если пользоваетль не задал время жизни ссылки
     public int getDefaultLinkLifetimeSeconds() {
-        return Integer.parseInt(properties.getProperty("default.link.lifetime.seconds"));
+        return snapshot.getDefaultLinkLifetimeSeconds();
     }
 
     // Возвращает максимальное время жизни ссылки (в секундах)
     public int getMaxLinkLifetimeSeconds() {
-        return Integer.parseInt(properties.getProperty("max.link.lifetime.seconds"));
+        return snapshot.getMaxLinkLifetimeSeconds();
     }
 
     // Возвращает лимит переходов по умолчанию.
     // Этот метод не используется, но не стал его удалять, так как думал, что можно будет заюзать как параметр, если пользоваетль не задал количество переходов
     public int getDefaultClickLimit() {
-        return Integer.parseInt(properties.getProperty("default.click.limit"));
+        return snapshot.getDefaultClickLimit();
     }
 
     // Возвращает максимальный лимит переходов
     public long getMaxClickLimit() {
-        return Long.parseLong(properties.getProperty("max.click.limit"));
+        return snapshot.getMaxClickLimit();
+    }
+
+    // Возвращает тип хранилища ссылок: map (объект UrlData на ссылку), columnar (колоночное хранилище)
+    // или tiered (недавно использованные ссылки в куче, остальные - в файле, отображенном в память)
+    public String getLinkStoreType() {
+        return snapshot.getLinkStoreType();
+    }
+
+    // Возвращает файл холодного уровня хранилища tiered (очищается при запуске и удаляется при остановке)
+    public String getTieredSegmentFile() {
+        return snapshot.getTieredSegmentFile();
+    }
+
+    // Возвращает бюджет кучи хранилища tiered: наибольшее количество ссылок в куче
+    public long getTieredHeapLinks() {
+        return snapshot.getTieredHeapLinks();
+    }
+
+    // Возвращает время без переходов (в секундах), после которого ссылка вытесняется из кучи в файл
+    public long getTieredIdleSeconds() {
+        return snapshot.getTieredIdleSeconds();
+    }
+
+    // Возвращает период вытеснения ссылок из кучи (в миллисекундах)
+    public long getTieredDemoteIntervalMillis() {
+        return snapshot.getTieredDemoteIntervalMillis();
+    }
+
+    // Возвращает период фоновой очистки просроченных ссылок (в миллисекундах)
+    public long getExpirySweepIntervalMillis() {
+        return snapshot.getExpirySweepIntervalMillis();
+    }
+
+    // Возвращает порт HTTP-сервера
+    public int getHttpPort() {
+        return snapshot.getHttpPort();
+    }
+
+    // Возвращает код ответа для перенаправления: 302 (каждый переход доходит до сервиса) или 301
+    public int getHttpRedirectStatus() {
+        return snapshot.getHttpRedirectStatus();
+    }
+
+    // Возвращает каталог для сохранения данных на диск или null, если сохранение отключено
+    public String getPersistenceDir() {
+        return snapshot.getPersistenceDir();
+    }
+
+    // Возвращает интервал групповой фиксации журнала (в миллисекундах): столько могут ждать записи о переходах
+    public long getPersistenceFsyncIntervalMillis() {
+        return snapshot.getPersistenceFsyncIntervalMillis();
+    }
+
+    // Возвращает период записи снимков (в секундах)
+    public long getPersistenceSnapshotIntervalSeconds() {
+        return snapshot.getPersistenceSnapshotIntervalSeconds();
+    }
+
+    // Возвращает размер кэша горячих ссылок (0 - кэш отключен)
+    public int getHotLinkCacheSize() {
+        return snapshot.getHotLinkCacheSize();
+    }
+
+    // Возвращает режим учета переходов: exact (общий счетчик ссылки) или striped (полосатые счетчики горячих ссылок)
+    public String getClickCountingMode() {
+        return snapshot.getClickCountingMode();
+    }
+
+    // Возвращает размер пакета переходов, который полоса резервирует у счетчика ссылки
+    public int getClickStripeBatch() {
+        return snapshot.getClickStripeBatch();
+    }
+
+    // Возвращает период записи полосатых счетчиков в журнал (в миллисекундах)
+    public long getClickFoldIntervalMillis() {
+        return snapshot.getClickFoldIntervalMillis();
+    }
+
+    // Возвращает количество строк в пакете массового импорта
+    public int getBulkBatchSize() {
+        return snapshot.getBulkBatchSize();
+    }
+
+    // Возвращает количество потоков массового импорта (0 - по числу процессоров)
+    public int getBulkParallelism() {
+        return snapshot.getBulkParallelism();
+    }
+
+    // Возвращает, включена ли дедупликация: повторное создание ссылки на тот же URL возвращает действующую ссылку
+    public boolean isLinkDedupEnabled() {
+        return snapshot.isLinkDedupEnabled();
+    }
+
+    // Возвращает количество ссылок на странице при просмотре ссылок в консоли
+    public int getListingPageSize() {
+        return snapshot.getListingPageSize();
+    }
+
+    // Возвращает, включены ли метрики операций (гистограммы задержек и счетчики исходов переходов)
+    public boolean isMetricsEnabled() {
+        return snapshot.isMetricsEnabled();
+    }
+
+    // Возвращает, регистрировать ли метрики в JMX
+    public boolean isMetricsJmxEnabled() {
+        return snapshot.isMetricsJmxEnabled();
+    }
+
+    // Возвращает получателя уведомлений пользователей: console, file или none
+    public String getNotificationSink() {
+        return snapshot.getNotificationSink();
+    }
+
+    // Возвращает файл уведомлений для notifications.sink=file
+    public String getNotificationFile() {
+        return snapshot.getNotificationFile();
+    }
+
+    // Возвращает емкость очереди уведомлений
+    public int getNotificationBufferSize() {
+        return snapshot.getNotificationBufferSize();
+    }
+
+    // Возвращает действие при переполнении очереди уведомлений: drop (отбросить) или block (ждать места)
+    public String getNotificationOverflow() {
+        return snapshot.getNotificationOverflow();
+    }
+
+    // Возвращает наибольшее количество уведомлений, которые передаются получателю за один раз
+    public int getNotificationBatchSize() {
+        return snapshot.getNotificationBatchSize();
+    }
+
+    // Возвращает, включен ли фильтр выданных кодов, который отклоняет переходы по несуществующим кодам без обращения к хранилищу
+    public boolean isLinkFilterEnabled() {
+        return snapshot.isLinkFilterEnabled();
+    }
+
+    // Возвращает вероятность ложного срабатывания фильтра выданных кодов
+    public double getLinkFilterFpp() {
+        return snapshot.getLinkFilterFpp();
+    }
+
+    // Возвращает размер блока первичных ключей, который поток арендует у общего счетчика
+    public int getIdLeaseSize() {
+        return snapshot.getIdLeaseSize();
+    }
+
+    // Возвращает секретный ключ перестановки коротких кодов (16-ричное число, 0 - коды совпадают с первичными ключами).
+    // Коды выданных ссылок зависят от ключа, поэтому после выдачи ссылок его нельзя менять
+    public long getShortCodeKey() {
+        return snapshot.getShortCodeKey();
+    }
+
+    // Возвращает true, если включена поминутная аналитика переходов по ссылкам
+    public boolean isAnalyticsEnabled() {
+        return snapshot.isAnalyticsEnabled();
+    }
+
+    // Возвращает длину окна поминутной аналитики в минутах
+    public int getAnalyticsWindowMinutes() {
+        return snapshot.getAnalyticsWindowMinutes();
+    }
+
+    // Возвращает емкость буфера событий переходов
+    public int getAnalyticsBufferSize() {
+        return snapshot.getAnalyticsBufferSize();
+    }
+
+    // Возвращает действие при переполнении буфера событий переходов: drop или block
+    public String getAnalyticsOverflow() {
+        return snapshot.getAnalyticsOverflow();
+    }
+
+    // Возвращает количество потоков построения отчетов по ссылкам (0 - по числу процессоров)
+    public int getReportParallelism() {
+        return snapshot.getReportParallelism();
+    }
+
+    // Возвращает true, если сервис работает шардом: в первичных ключах хранится слот владельца (см. ShardSlots).
+    // Коды ссылок зависят от режима, поэтому после выдачи ссылок его нельзя менять
+    public boolean isShardEnabled() {
+        return snapshot.isShardEnabled();
+    }
+
+    // Возвращает роль узла в репликации: none, leader (передает изменения репликам) или follower (реплика)
+    public String getReplicationRole() {
+        return snapshot.getReplicationRole();
+    }
+
+    // Возвращает порт сервера репликации ведущего узла
+    public int getReplicationPort() {
+        return snapshot.getReplicationPort();
+    }
+
+    // Возвращает адрес сервера репликации ведущего узла для реплики (host:port)
+    public String getReplicationLeader() {
+        return snapshot.getReplicationLeader();
+    }
+
+    // Возвращает объем журнала репликации в памяти ведущего узла (в байтах); реплика, отставшая дальше, получает снимок заново
+    public long getReplicationLogBytes() {
+        return snapshot.getReplicationLogBytes();
+    }
+
+    // Возвращает наибольшую задержку закрытия пакета изменений для реплик (в миллисекундах)
+    public long getReplicationBatchMillis() {
+        return snapshot.getReplicationBatchMillis();
+    }
+
+    // Возвращает размер квоты переходов, которую реплика запрашивает у ведущего узла за один раз
+    public int getReplicationQuotaBatch() {
+        return snapshot.getReplicationQuotaBatch();
+    }
+
+    // Возвращает true, если файл конфигурации перечитывается при изменении (ConfigReloader)
+    public boolean isReloadEnabled() {
+        return snapshot.isReloadEnabled();
     }
-}
\ No newline at end of file
+}
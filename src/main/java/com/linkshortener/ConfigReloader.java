@@ -0,0 +1,127 @@
+package main.java.com.linkshortener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Перечитывание файла конфигурации при изменении (config.reload.enabled). Фоновый поток ждет событий WatchService
+//для каталога файла и после изменения файла вызывает Config.reload: новый снимок публикуется одной записью
+//volatile-ссылки, запросы при этом не останавливаются. Файл с неверными параметрами отклоняется целиком,
+//и продолжает действовать прежний снимок. Сразу действуют параметры из ConfigSnapshot.RELOADABLE_KEYS; остальные
+//остаются прежними до перезапуска, и об их изменении выводится предупреждение.
+public final class ConfigReloader implements Closeable {
+
+    // Пауза после события, чтобы редактор успел дописать файл (запись часто идет несколькими событиями)
+    private static final long SETTLE_MILLIS = 100;
+
+    private final Config config; // Перечитываемая конфигурация
+    private final Path file; // Файл конфигурации
+    private final WatchService watchService; // Наблюдение за каталогом файла
+    private final Thread thread; // Поток перечитывания
+    private final AtomicLong reloads = new AtomicLong(); // Количество опубликованных снимков
+    private final AtomicLong rejected = new AtomicLong(); // Количество отклоненных версий файла
+    private volatile boolean closed; // true после close
+
+    // Конструктор класса ConfigReloader. Наблюдение начинается методом start
+    public ConfigReloader(Config config) throws IOException {
+        if (config.getSourceFile() == null) {
+            throw new IllegalArgumentException("Конфигурация загружена не из файла на диске, перечитывать нечего.");
+        }
+        this.config = config;
+        this.file = config.getSourceFile();
+        this.watchService = file.getFileSystem().newWatchService();
+        file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        this.thread = new Thread(this::run, "config-reloader");
+        thread.setDaemon(true);
+    }
+
+    // Запускает наблюдение за файлом
+    public void start() {
+        thread.start();
+    }
+
+    // Возвращает количество опубликованных снимков
+    public long getReloadCount() {
+        return reloads.get();
+    }
+
+    // Возвращает количество отклоненных версий файла
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    // Останавливает наблюдение
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        watchService.close();
+    }
+
+    // Цикл потока: ждет изменения файла и перечитывает его
+    private void run() {
+        try {
+            while (!closed) {
+                WatchKey key = watchService.take();
+                boolean changed = touchesFile(key);
+                if (!key.reset()) {
+                    System.out.println("Каталог файла конфигурации " + file.getParent() + " больше недоступен, перечитывание остановлено.");
+                    return;
+                }
+                if (!changed) {
+                    continue;
+                }
+                // Собираем события, пришедшие, пока файл дописывается, и перечитываем его один раз
+                Thread.sleep(SETTLE_MILLIS);
+                WatchKey pending;
+                while ((pending = watchService.poll()) != null) {
+                    pending.pollEvents();
+                    pending.reset();
+                }
+                reload();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Наблюдение остановлено
+        }
+    }
+
+    // Возвращает true, если среди событий ключа есть изменение файла конфигурации (или события потеряны)
+    private boolean touchesFile(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context())) {
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    // Перечитывает файл и сообщает результат
+    private void reload() {
+        ConfigSnapshot previous = config.snapshot();
+        Set<String> previousPending = config.getPendingRestartKeys();
+        ConfigSnapshot next;
+        try {
+            next = config.reload();
+        } catch (IOException | IllegalArgumentException e) {
+            rejected.incrementAndGet();
+            System.out.println("Файл конфигурации " + file + " отклонен: " + e.getMessage() + " Действует прежняя конфигурация.");
+            return;
+        }
+        Set<String> pending = config.getPendingRestartKeys();
+        if (next == previous && pending.equals(previousPending)) {
+            return;
+        }
+        if (next != previous) {
+            reloads.incrementAndGet();
+        }
+        System.out.println("Конфигурация перечитана из " + file + "."
+                + (pending.isEmpty() ? "" : " Параметры " + pending + " вступят в силу после перезапуска."));
+    }
+}
@@ -0,0 +1,510 @@
+package main.java.com.linkshortener;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+//Неизменяемый снимок конфигурации: все параметры разбираются и проверяются один раз при создании снимка,
+//поэтому чтение параметра - чтение поля. Config публикует текущий снимок через volatile-ссылку и заменяет его
+//целиком при перечитывании файла (ConfigReloader), так что параметры одного снимка всегда согласованы между собой.
+//Неверное значение любого параметра отклоняет весь снимок (IllegalArgumentException с именем параметра).
+public final class ConfigSnapshot {
+
+    // Параметры, изменение которых действует сразу после перечитывания файла; остальные читаются
+    // при запуске сервиса и вступают в силу после перезапуска
+    static final Set<String> RELOADABLE_KEYS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "default.link.lifetime.seconds", "max.link.lifetime.seconds", "default.click.limit", "max.click.limit",
+            "http.redirect.status", "listing.page.size")));
+
+    private final Properties properties; // Исходные свойства снимка
+
+    // Ссылки и переходы
+    private final int defaultLinkLifetimeSeconds; // Время жизни ссылки по умолчанию (в секундах)
+    private final int maxLinkLifetimeSeconds; // Максимальное время жизни ссылки (в секундах)
+    private final int defaultClickLimit; // Лимит переходов по умолчанию
+    private final long maxClickLimit; // Максимальный лимит переходов
+    private final String linkStoreType; // Тип хранилища ссылок
+    private final long expirySweepIntervalMillis; // Период очистки истекших ссылок (в миллисекундах)
+    private final String clickCountingMode; // Режим учета переходов
+    private final int clickStripeBatch; // Размер квоты полосы счетчика переходов
+    private final long clickFoldIntervalMillis; // Период записи полосатых счетчиков в журнал (в миллисекундах)
+    private final boolean linkDedupEnabled; // Дедупликация ссылок пользователя
+    private final int listingPageSize; // Размер страницы списка ссылок
+
+    // Многоуровневое хранилище
+    private final String tieredSegmentFile; // Файл холодного сегмента
+    private final long tieredHeapLinks; // Наибольшее количество ссылок в куче
+    private final long tieredIdleSeconds; // Время простоя, после которого ссылка вытесняется (в секундах)
+    private final long tieredDemoteIntervalMillis; // Период вытеснения (в миллисекундах)
+
+    // HTTP
+    private final int httpPort; // Порт HTTP-сервера
+    private final int httpRedirectStatus; // Код ответа перенаправления
+
+    // Сохранение на диск
+    private final String persistenceDir; // Каталог данных или null
+    private final long persistenceFsyncIntervalMillis; // Интервал групповой фиксации журнала (в миллисекундах)
+    private final long persistenceSnapshotIntervalSeconds; // Период записи снимков (в секундах)
+
+    // Кэш, пакетные операции, отчеты
+    private final int hotLinkCacheSize; // Размер кэша горячих ссылок
+    private final int bulkBatchSize; // Размер пакета массового импорта
+    private final int bulkParallelism; // Количество потоков массового импорта (0 - по числу процессоров)
+    private final int reportParallelism; // Параллелизм отчетов (0 - по числу процессоров)
+
+    // Метрики и уведомления
+    private final boolean metricsEnabled; // Сбор метрик
+    private final boolean metricsJmxEnabled; // Публикация метрик через JMX
+    private final String notificationSink; // Получатель уведомлений
+    private final String notificationFile; // Файл уведомлений
+    private final int notificationBufferSize; // Размер очереди уведомлений
+    private final String notificationOverflow; // Действие при переполнении очереди уведомлений
+    private final int notificationBatchSize; // Размер пакета вывода уведомлений
+
+    // Фильтр ключей и идентификаторы
+    private final boolean linkFilterEnabled; // Фильтр несуществующих кодов
+    private final double linkFilterFpp; // Доля ложных срабатываний фильтра
+    private final int idLeaseSize; // Размер блока первичных ключей потока
+    private final long shortCodeKey; // Ключ перестановки кодов
+
+    // Аналитика
+    private final boolean analyticsEnabled; // Аналитика переходов
+    private final int analyticsWindowMinutes; // Окно аналитики (в минутах)
+    private final int analyticsBufferSize; // Размер кольца событий переходов
+    private final String analyticsOverflow; // Действие при переполнении кольца событий
+
+    // Шардирование и репликация
+    private final boolean shardEnabled; // Шардированный режим ключей
+    private final String replicationRole; // Роль узла репликации
+    private final int replicationPort; // Порт сервера репликации
+    private final String replicationLeader; // Адрес ведущего узла для реплики
+    private final long replicationLogBytes; // Объем журнала репликации в памяти (в байтах)
+    private final long replicationBatchMillis; // Наибольшая задержка закрытия пакета (в миллисекундах)
+    private final int replicationQuotaBatch; // Размер квоты переходов реплики
+
+    // Перечитывание файла
+    private final boolean reloadEnabled; // Следить за файлом конфигурации и перечитывать его
+
+    // Конструктор класса ConfigSnapshot: разбирает и проверяет все параметры
+    public ConfigSnapshot(Properties source) {
+        this.properties = new Properties();
+        this.properties.putAll(source);
+
+        // Максимальные значения обязательны; значения по умолчанию без параметра равны максимальным
+        this.maxLinkLifetimeSeconds = positiveInt("max.link.lifetime.seconds", null);
+        this.maxClickLimit = positiveLong("max.click.limit", null);
+        this.defaultLinkLifetimeSeconds = positiveInt("default.link.lifetime.seconds", Integer.toString(maxLinkLifetimeSeconds));
+        this.defaultClickLimit = rangeInt("default.click.limit", Long.toString(Math.min(maxClickLimit, Integer.MAX_VALUE)),
+                1, Integer.MAX_VALUE);
+        if (defaultLinkLifetimeSeconds > maxLinkLifetimeSeconds) {
+            throw new IllegalArgumentException("Параметр default.link.lifetime.seconds не может превышать max.link.lifetime.seconds.");
+        }
+        if (defaultClickLimit > maxClickLimit) {
+            throw new IllegalArgumentException("Параметр default.click.limit не может превышать max.click.limit.");
+        }
+        this.linkStoreType = oneOf("link.store", "map", "map", "columnar", "tiered");
+        this.expirySweepIntervalMillis = positiveLong("expiry.sweep.interval.millis", "1000");
+        this.clickCountingMode = oneOf("click.counting", "exact", "exact", "striped");
+        this.clickStripeBatch = positiveInt("click.stripe.batch", "16");
+        this.clickFoldIntervalMillis = positiveLong("click.fold.interval.millis", "1000");
+        this.linkDedupEnabled = bool("links.dedup", "false");
+        this.listingPageSize = positiveInt("listing.page.size", "20");
+
+        this.tieredSegmentFile = string("tiered.segment.file", "cold-links.seg");
+        this.tieredHeapLinks = positiveLong("tiered.heap.links", "1000000");
+        this.tieredIdleSeconds = positiveLong("tiered.idle.seconds", "86400");
+        this.tieredDemoteIntervalMillis = positiveLong("tiered.demote.interval.millis", "60000");
+
+        this.httpPort = rangeInt("http.port", "8080", 0, 65535);
+        this.httpRedirectStatus = rangeInt("http.redirect.status", "302", 300, 399);
+
+        String directory = string("persistence.dir", "").trim();
+        this.persistenceDir = directory.isEmpty() ? null : directory;
+        this.persistenceFsyncIntervalMillis = nonNegativeLong("persistence.fsync.interval.millis", "10");
+        this.persistenceSnapshotIntervalSeconds = positiveLong("persistence.snapshot.interval.seconds", "300");
+
+        this.hotLinkCacheSize = rangeInt("cache.hot.links.size", "0", 0, Integer.MAX_VALUE);
+        this.bulkBatchSize = positiveInt("bulk.batch.size", "1000");
+        this.bulkParallelism = rangeInt("bulk.parallelism", "0", 0, Integer.MAX_VALUE);
+        this.reportParallelism = rangeInt("reports.parallelism", "0", 0, Integer.MAX_VALUE);
+
+        this.metricsEnabled = bool("metrics.enabled", "true");
+        this.metricsJmxEnabled = bool("metrics.jmx.enabled", "true");
+        this.notificationSink = oneOf("notifications.sink", "console", "console", "file", "none");
+        this.notificationFile = string("notifications.file", "notifications.log");
+        this.notificationBufferSize = positiveInt("notifications.buffer.size", "8192");
+        this.notificationOverflow = overflow("notifications.overflow");
+        this.notificationBatchSize = positiveInt("notifications.batch.size", "256");
+
+        this.linkFilterEnabled = bool("links.filter.enabled", "false");
+        this.linkFilterFpp = parseDouble("links.filter.fpp", "0.01");
+        if (!(linkFilterFpp > 0 && linkFilterFpp < 1)) {
+            throw new IllegalArgumentException("Параметр links.filter.fpp должен быть больше 0 и меньше 1: " + linkFilterFpp + ".");
+        }
+        this.idLeaseSize = positiveInt("ids.lease.size", "256");
+        // Пустой ключ - ключ не задан: перестановка отключена
+        String codeKey = string("ids.code.key", "").trim();
+        try {
+            this.shortCodeKey = codeKey.isEmpty() ? 0 : Long.parseUnsignedLong(codeKey, 16);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Параметр ids.code.key должен быть шестнадцатеричным числом до 64 бит: " + codeKey + ".");
+        }
+
+        this.analyticsEnabled = bool("analytics.enabled", "false");
+        this.analyticsWindowMinutes = positiveInt("analytics.window.minutes", "60");
+        this.analyticsBufferSize = positiveInt("analytics.buffer.size", "65536");
+        this.analyticsOverflow = overflow("analytics.overflow");
+
+        this.shardEnabled = bool("shard.enabled", "false");
+        this.replicationRole = oneOf("replication.role", "none", "none", "leader", "follower");
+        this.replicationPort = rangeInt("replication.port", "9300", 0, 65535);
+        this.replicationLeader = string("replication.leader", "127.0.0.1:9300").trim();
+        if ("follower".equals(replicationRole)) {
+            ReplicationFollower.parseAddress(replicationLeader);
+        }
+        this.replicationLogBytes = positiveLong("replication.log.bytes", "16777216");
+        this.replicationBatchMillis = positiveLong("replication.batch.millis", "5");
+        this.replicationQuotaBatch = positiveInt("replication.quota.batch", "16");
+
+        this.reloadEnabled = bool("config.reload.enabled", "true");
+    }
+
+    // Возвращает копию исходных свойств снимка
+    Properties toProperties() {
+        Properties copy = new Properties();
+        copy.putAll(properties);
+        return copy;
+    }
+
+    // Возвращает имена параметров, значения которых в снимке next отличаются от этого снимка
+    Set<String> changedKeys(ConfigSnapshot next) {
+        Set<String> keys = new TreeSet<>(properties.stringPropertyNames());
+        keys.addAll(next.properties.stringPropertyNames());
+        keys.removeIf(key -> String.valueOf(properties.getProperty(key)).equals(String.valueOf(next.properties.getProperty(key))));
+        return keys;
+    }
+
+    // Возвращает строковое значение параметра или значение по умолчанию
+    private String string(String key, String defaultValue) {
+        String value = properties.getProperty(key, defaultValue);
+        if (value == null) {
+            throw new IllegalArgumentException("Не задан параметр " + key + ".");
+        }
+        return value;
+    }
+
+    // Разбирает дробный параметр
+    private double parseDouble(String key, String defaultValue) {
+        String value = string(key, defaultValue).trim();
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Параметр " + key + " должен быть числом: " + value + ".");
+        }
+    }
+
+    // Разбирает целочисленный параметр в диапазоне [min, max]
+    private int rangeInt(String key, String defaultValue, int min, int max) {
+        long value = parseLong(key, defaultValue);
+        if (value < min || value > max) {
+            throw new IllegalArgumentException("Параметр " + key + " должен быть в диапазоне от " + min + " до " + max + ": " + value + ".");
+        }
+        return (int) value;
+    }
+
+    // Разбирает положительный целочисленный параметр типа int
+    private int positiveInt(String key, String defaultValue) {
+        return rangeInt(key, defaultValue, 1, Integer.MAX_VALUE);
+    }
+
+    // Разбирает положительный целочисленный параметр типа long
+    private long positiveLong(String key, String defaultValue) {
+        long value = parseLong(key, defaultValue);
+        if (value <= 0) {
+            throw new IllegalArgumentException("Параметр " + key + " должен быть положительным числом: " + value + ".");
+        }
+        return value;
+    }
+
+    // Разбирает неотрицательный целочисленный параметр типа long
+    private long nonNegativeLong(String key, String defaultValue) {
+        long value = parseLong(key, defaultValue);
+        if (value < 0) {
+            throw new IllegalArgumentException("Параметр " + key + " не может быть отрицательным: " + value + ".");
+        }
+        return value;
+    }
+
+    // Разбирает целочисленный параметр
+    private long parseLong(String key, String defaultValue) {
+        String value = string(key, defaultValue).trim();
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Параметр " + key + " должен быть целым числом: " + value + ".");
+        }
+    }
+
+    // Разбирает логический параметр (true или false)
+    private boolean bool(String key, String defaultValue) {
+        String value = string(key, defaultValue).trim();
+        if (!"true".equalsIgnoreCase(value) && !"false".equalsIgnoreCase(value)) {
+            throw new IllegalArgumentException("Параметр " + key + " должен быть true или false: " + value + ".");
+        }
+        return Boolean.parseBoolean(value);
+    }
+
+    // Возвращает значение параметра, если оно одно из допустимых
+    private String oneOf(String key, String defaultValue, String... allowed) {
+        String value = string(key, defaultValue).trim();
+        if (!Arrays.asList(allowed).contains(value)) {
+            throw new IllegalArgumentException("Параметр " + key + " должен быть одним из " + Arrays.toString(allowed) + ": " + value + ".");
+        }
+        return value;
+    }
+
+    // Возвращает действие при переполнении очереди, проверив его
+    private String overflow(String key) {
+        String value = string(key, "drop");
+        NotificationQueue.Overflow.parse(value);
+        return value;
+    }
+
+    // Возвращает время жизни ссылки по умолчанию (в секундах)
+    public int getDefaultLinkLifetimeSeconds() {
+        return defaultLinkLifetimeSeconds;
+    }
+
+    // Возвращает максимальное время жизни ссылки (в секундах)
+    public int getMaxLinkLifetimeSeconds() {
+        return maxLinkLifetimeSeconds;
+    }
+
+    // Возвращает лимит переходов по умолчанию
+    public int getDefaultClickLimit() {
+        return defaultClickLimit;
+    }
+
+    // Возвращает максимальный лимит переходов
+    public long getMaxClickLimit() {
+        return maxClickLimit;
+    }
+
+    // Возвращает тип хранилища ссылок: map, columnar или tiered
+    public String getLinkStoreType() {
+        return linkStoreType;
+    }
+
+    // Возвращает файл холодного сегмента многоуровневого хранилища
+    public String getTieredSegmentFile() {
+        return tieredSegmentFile;
+    }
+
+    // Возвращает наибольшее количество ссылок в куче многоуровневого хранилища
+    public long getTieredHeapLinks() {
+        return tieredHeapLinks;
+    }
+
+    // Возвращает время простоя, после которого ссылка вытесняется в холодный сегмент (в секундах)
+    public long getTieredIdleSeconds() {
+        return tieredIdleSeconds;
+    }
+
+    // Возвращает период вытеснения простаивающих ссылок (в миллисекундах)
+    public long getTieredDemoteIntervalMillis() {
+        return tieredDemoteIntervalMillis;
+    }
+
+    // Возвращает период фоновой очистки истекших ссылок (в миллисекундах)
+    public long getExpirySweepIntervalMillis() {
+        return expirySweepIntervalMillis;
+    }
+
+    // Возвращает порт HTTP-сервера
+    public int getHttpPort() {
+        return httpPort;
+    }
+
+    // Возвращает код ответа перенаправления
+    public int getHttpRedirectStatus() {
+        return httpRedirectStatus;
+    }
+
+    // Возвращает каталог для сохранения данных на диск или null, если сохранение отключено
+    public String getPersistenceDir() {
+        return persistenceDir;
+    }
+
+    // Возвращает интервал групповой фиксации журнала (в миллисекундах)
+    public long getPersistenceFsyncIntervalMillis() {
+        return persistenceFsyncIntervalMillis;
+    }
+
+    // Возвращает период записи снимков (в секундах)
+    public long getPersistenceSnapshotIntervalSeconds() {
+        return persistenceSnapshotIntervalSeconds;
+    }
+
+    // Возвращает размер кэша горячих ссылок (0 - кэш отключен)
+    public int getHotLinkCacheSize() {
+        return hotLinkCacheSize;
+    }
+
+    // Возвращает режим учета переходов: exact или striped
+    public String getClickCountingMode() {
+        return clickCountingMode;
+    }
+
+    // Возвращает размер квоты полосы счетчика переходов
+    public int getClickStripeBatch() {
+        return clickStripeBatch;
+    }
+
+    // Возвращает период записи полосатых счетчиков в журнал (в миллисекундах)
+    public long getClickFoldIntervalMillis() {
+        return clickFoldIntervalMillis;
+    }
+
+    // Возвращает размер пакета массового импорта
+    public int getBulkBatchSize() {
+        return bulkBatchSize;
+    }
+
+    // Возвращает количество потоков массового импорта (0 - по числу процессоров)
+    public int getBulkParallelism() {
+        return bulkParallelism;
+    }
+
+    // Возвращает true, если включена дедупликация ссылок пользователя
+    public boolean isLinkDedupEnabled() {
+        return linkDedupEnabled;
+    }
+
+    // Возвращает размер страницы списка ссылок
+    public int getListingPageSize() {
+        return listingPageSize;
+    }
+
+    // Возвращает true, если включен сбор метрик
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    // Возвращает true, если метрики публикуются через JMX
+    public boolean isMetricsJmxEnabled() {
+        return metricsJmxEnabled;
+    }
+
+    // Возвращает получателя уведомлений: console, file или none
+    public String getNotificationSink() {
+        return notificationSink;
+    }
+
+    // Возвращает файл уведомлений
+    public String getNotificationFile() {
+        return notificationFile;
+    }
+
+    // Возвращает размер очереди уведомлений
+    public int getNotificationBufferSize() {
+        return notificationBufferSize;
+    }
+
+    // Возвращает действие при переполнении очереди уведомлений
+    public String getNotificationOverflow() {
+        return notificationOverflow;
+    }
+
+    // Возвращает размер пакета вывода уведомлений
+    public int getNotificationBatchSize() {
+        return notificationBatchSize;
+    }
+
+    // Возвращает true, если включен фильтр несуществующих кодов
+    public boolean isLinkFilterEnabled() {
+        return linkFilterEnabled;
+    }
+
+    // Возвращает долю ложных срабатываний фильтра
+    public double getLinkFilterFpp() {
+        return linkFilterFpp;
+    }
+
+    // Возвращает размер блока первичных ключей потока
+    public int getIdLeaseSize() {
+        return idLeaseSize;
+    }
+
+    // Возвращает ключ перестановки коротких кодов
+    public long getShortCodeKey() {
+        return shortCodeKey;
+    }
+
+    // Возвращает true, если включена аналитика переходов
+    public boolean isAnalyticsEnabled() {
+        return analyticsEnabled;
+    }
+
+    // Возвращает окно аналитики (в минутах)
+    public int getAnalyticsWindowMinutes() {
+        return analyticsWindowMinutes;
+    }
+
+    // Возвращает размер кольца событий переходов
+    public int getAnalyticsBufferSize() {
+        return analyticsBufferSize;
+    }
+
+    // Возвращает действие при переполнении кольца событий
+    public String getAnalyticsOverflow() {
+        return analyticsOverflow;
+    }
+
+    // Возвращает параллелизм отчетов (0 - по числу процессоров)
+    public int getReportParallelism() {
+        return reportParallelism;
+    }
+
+    // Возвращает true, если включен шардированный режим ключей
+    public boolean isShardEnabled() {
+        return shardEnabled;
+    }
+
+    // Возвращает роль узла репликации: none, leader или follower
+    public String getReplicationRole() {
+        return replicationRole;
+    }
+
+    // Возвращает порт сервера репликации
+    public int getReplicationPort() {
+        return replicationPort;
+    }
+
+    // Возвращает адрес ведущего узла для реплики
+    public String getReplicationLeader() {
+        return replicationLeader;
+    }
+
+    // Возвращает объем журнала репликации в памяти (в байтах)
+    public long getReplicationLogBytes() {
+        return replicationLogBytes;
+    }
+
+    // Возвращает наибольшую задержку закрытия пакета изменений (в миллисекундах)
+    public long getReplicationBatchMillis() {
+        return replicationBatchMillis;
+    }
+
+    // Возвращает размер квоты переходов реплики
+    public int getReplicationQuotaBatch() {
+        return replicationQuotaBatch;
+    }
+
+    // Возвращает true, если файл конфигурации перечитывается при изменении
+    public boolean isReloadEnabled() {
+        return reloadEnabled;
+    }
+}
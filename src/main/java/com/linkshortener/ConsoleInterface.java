@@ -15,7 +15,12 @@ public class ConsoleInterface {
 
     // Конструктор класса ConsoleInterface
     public ConsoleInterface(String configFilePath) throws IOException {
-        this.config = new Config(configFilePath); // Загружаем конфигурацию
+        this(new Config(configFilePath)); // Загружаем конфигурацию
+    }
+
+    // Конструктор класса ConsoleInterface с готовой конфигурацией
+    public ConsoleInterface(Config config) {
+        this.config = config;
         this.urlShortener = new UrlShortener(this.config); // Инициализируем сервис
         this.scanner = new Scanner(System.in); // Инициализируем сканер
     }
@@ -36,6 +41,10 @@ public class ConsoleInterface {
                 System.out.println("2. Выбрать существующего пользователя");
                 System.out.println("3. Выйти");
                 System.out.print("Ваш выбор: ");
+                if (!scanner.hasNextLine()) {
+                    exitOnEndOfInput();
+                    return;
+                }
 
                 String input = scanner.nextLine();
                 try {
@@ -50,6 +59,7 @@ public class ConsoleInterface {
                             break;
                         case 3:
                             System.out.println("Выход из программы.");
+                            urlShortener.shutdown(); // Останавливаем фоновую очистку
                             return; // Завершаем программу
                         default:
                             System.out.println("Неверный выбор. Попробуйте снова.");
@@ -68,6 +78,10 @@ public class ConsoleInterface {
                 System.out.println("6. Сменить пользователя");
                 System.out.println("7. Выйти");
                 System.out.print("Ваш выбор: ");
+                if (!scanner.hasNextLine()) {
+                    exitOnEndOfInput();
+                    return;
+                }
 
                 String input = scanner.nextLine();
                 try {
@@ -93,6 +107,7 @@ public class ConsoleInterface {
                             break;
                         case 7:
                             System.out.println("Выход из программы.");
+                            urlShortener.shutdown(); // Останавливаем фоновую очистку
                             return; // Завершаем программу
                         default:
                             System.out.println("Неверный выбор. Попробуйте снова.");
@@ -104,6 +119,12 @@ public class ConsoleInterface {
         }
     }
 
+    // Завершает работу, когда ввод закончился (например, команды переданы через канал и закончились)
+    private void exitOnEndOfInput() {
+        System.out.println("\nВвод завершен. Выход из программы.");
+        urlShortener.shutdown();
+    }
+
     // Отображает текущего пользователя
     private void displayCurrentUser(UUID userId) {
         if (userId == null) {
@@ -118,7 +139,9 @@ public class ConsoleInterface {
         System.out.print("Введите длинный URL: ");
         String longUrl = scanner.nextLine();
 
-        System.out.print("Введите лимит переходов (максимум " + config.getMaxClickLimit() + "): ");
+        // Лимиты берутся из одного снимка конфигурации: перечитывание файла во время ввода их не меняет
+        ConfigSnapshot limits = config.snapshot();
+        System.out.print("Введите лимит переходов (максимум " + limits.getMaxClickLimit() + "): ");
         long clickLimit = 0;
         boolean validInput = false;
         while (!validInput) {
@@ -127,8 +150,8 @@ public class ConsoleInterface {
                 clickLimit = Long.parseLong(input);
                 if (clickLimit <= 0) {
                     System.out.println("Лимит переходов должен быть положительным числом. Попробуйте снова:");
-                } else if (clickLimit > config.getMaxClickLimit()) {
-                    System.out.println("Лимит переходов не может превышать " + config.getMaxClickLimit() + ". Попробуйте снова:");
+                } else if (clickLimit > limits.getMaxClickLimit()) {
+                    System.out.println("Лимит переходов не может превышать " + limits.getMaxClickLimit() + ". Попробуйте снова:");
                 } else {
                     validInput = true;
                 }
@@ -137,7 +160,7 @@ public class ConsoleInterface {
             }
         }
 
-        System.out.print("Введите время жизни ссылки в секундах (максимум " + config.getMaxLinkLifetimeSeconds() + "): ");
+        System.out.print("Введите время жизни ссылки в секундах (максимум " + limits.getMaxLinkLifetimeSeconds() + "): ");
         int lifetimeSeconds = 0;
         validInput = false;
         while (!validInput) {
@@ -145,8 +168,8 @@ public class ConsoleInterface {
                 lifetimeSeconds = Integer.parseInt(scanner.nextLine());
                 if (lifetimeSeconds <= 0) {
                     System.out.println("Время жизни ссылки должно быть положительным числом. Попробуйте снова:");
-                } else if (lifetimeSeconds > config.getMaxLinkLifetimeSeconds()) {
-                    System.out.println("Время жизни ссылки не может превышать " + config.getMaxLinkLifetimeSeconds() + ". Попробуйте снова:");
+                } else if (lifetimeSeconds > limits.getMaxLinkLifetimeSeconds()) {
+                    System.out.println("Время жизни ссылки не может превышать " + limits.getMaxLinkLifetimeSeconds() + ". Попробуйте снова:");
                 } else {
                     validInput = true;
                 }
@@ -177,25 +200,61 @@ public class ConsoleInterface {
             } catch (Exception e) {
                 System.out.println("Не удалось открыть ссылку в браузере: " + e.getMessage());
             }
+        } else {
+            // Причину отказа выводит фоновый поток уведомлений: дожидаемся ее, чтобы она не попала после меню
+            urlShortener.flushNotifications();
         }
     }
 
-    // Показывает все ссылки текущего пользователя
+    // Показывает ссылки текущего пользователя постранично (по listing.page.size ссылок)
     private void showUserLinks(UUID userId) {
-        Map<String, UrlData> links = urlShortener.getUserLinks(userId);
-        if (links.isEmpty()) {
-            System.out.println("У вас нет созданных ссылок.");
-        } else {
-            System.out.println("Ваши ссылки:");
-            for (Map.Entry<String, UrlData> entry : links.entrySet()) {
-                UrlData urlData = entry.getValue();
+        System.out.print("Какие ссылки показать (1 - все, 2 - активные, 3 - истекшие, 4 - исчерпанные) [1]: ");
+        String input = scanner.nextLine().trim();
+        LinkState state;
+        switch (input) {
+            case "":
+            case "1":
+                state = null;
+                break;
+            case "2":
+                state = LinkState.ACTIVE;
+                break;
+            case "3":
+                state = LinkState.EXPIRED;
+                break;
+            case "4":
+                state = LinkState.EXHAUSTED;
+                break;
+            default:
+                System.out.println("Неверный выбор.");
+                return;
+        }
+        String cursor = null;
+        boolean found = false;
+        do {
+            LinkPage page = urlShortener.listUserLinks(userId, state, cursor, config.getListingPageSize());
+            for (LinkPage.Link link : page.getLinks()) {
+                if (!found) {
+                    System.out.println("Ваши ссылки:");
+                    found = true;
+                }
                 System.out.println(
-                        "Короткая ссылка: " + entry.getKey() +
-                                " -> Оригинальный URL: " + urlData.getLongUrl() +
-                                " | Оставшиеся переходы: " + urlData.getRemainingClicks() +
-                                " | Оставшееся время жизни (сек): " + urlData.getRemainingLifetimeSeconds()
+                        "Короткая ссылка: " + link.getShortUrl() +
+                                " -> Оригинальный URL: " + link.getLongUrl() +
+                                " | Оставшиеся переходы: " + link.getRemainingClicks() +
+                                " | Оставшееся время жизни (сек): " + link.getRemainingLifetimeSeconds()
                 );
             }
+            cursor = page.getNextCursor();
+            if (cursor != null) {
+                System.out.print("Показать еще? (Enter - да, любой другой ввод - нет): ");
+                if (!scanner.nextLine().isEmpty()) {
+                    break;
+                }
+            }
+        } while (cursor != null);
+        if (!found) {
+            System.out.println(state == null ? "У вас нет созданных ссылок." : "Ссылок в выбранном состоянии нет.");
         }
     }
 
@@ -217,8 +276,18 @@ public class ConsoleInterface {
         System.out.print("Введите короткую ссылку для изменения лимита переходов: ");
         String shortUrl = scanner.nextLine();
         System.out.print("Введите новый лимит переходов: ");
-        int newClickLimit = scanner.nextInt();
-        scanner.nextLine(); // Очистка буфера
+        // Число читается целой строкой: nextInt оставлял в буфере перевод строки и ломался на нечисловом вводе
+        int newClickLimit;
+        try {
+            newClickLimit = Integer.parseInt(scanner.nextLine().trim());
+        } catch (NumberFormatException e) {
+            System.out.println("Ошибка: введите корректное число.");
+            return;
+        }
+        if (newClickLimit <= 0) {
+            System.out.println("Лимит переходов должен быть положительным числом.");
+            return;
+        }
 
         boolean isUpdated = urlShortener.updateClickLimit(userId, shortUrl, newClickLimit);
         if (isUpdated) {
@@ -244,8 +313,13 @@ public class ConsoleInterface {
         }
 
         System.out.print("Выберите пользователя (введите номер): ");
-        int choice = scanner.nextInt();
-        scanner.nextLine(); // Очистка буфера
+        int choice;
+        try {
+            choice = Integer.parseInt(scanner.nextLine().trim());
+        } catch (NumberFormatException e) {
+            System.out.println("Ошибка: введите номер пользователя.");
+            return null;
+        }
 
         if (choice < 1 || choice > users.size()) {
             System.out.println("Неверный выбор.");
@@ -0,0 +1,250 @@
+package main.java.com.linkshortener;
+
+import java.util.UUID;
+import java.util.concurrent.locks.StampedLock;
+
+//Обратный индекс для режима дедупликации: 64-битный хеш пары (пользователь, нормализованный URL) -> первичный ключ
+//последней созданной ссылки. Хранится в двух примитивных массивах с открытой адресацией (16 байт на ячейку,
+//без объектов на запись). Хеш может совпасть у разных URL, поэтому найденную ссылку вызывающий код сверяет
+//с хранилищем. Читатели не захватывают блокировок: поиск идет под оптимистичной блокировкой чтения (StampedLock)
+//и повторяется под блокировкой чтения, только если индекс изменился во время поиска. Изменения выполняются
+//под блокировкой записи.
+//Нормализация URL: пробельные символы по краям отбрасываются, схема и хост сравниваются без учета регистра,
+//путь из одного "/" после хоста не учитывается (https://a.ru/ и HTTPS://A.RU - один и тот же URL).
+final class DedupIndex {
+
+    // Пустая ячейка (первичные ключи начинаются с 1)
+    private static final long EMPTY = 0;
+
+    // Результат поиска, если ссылки с таким хешем нет
+    static final long NOT_FOUND = EMPTY;
+
+    // Начальная емкость индекса
+    private static final int INITIAL_CAPACITY = 1024;
+
+    //Таблица индекса. При росте создается новая таблица, поэтому читатель всегда видит согласованные массивы
+    private static final class Table {
+        final long[] hashes; // Хеши ссылок
+        final long[] primaryKeys; // Первичные ключи (EMPTY - свободная ячейка)
+        final int mask; // Маска номера ячейки
+
+        Table(int capacity) {
+            this.hashes = new long[capacity];
+            this.primaryKeys = new long[capacity];
+            this.mask = capacity - 1;
+        }
+    }
+
+    private final StampedLock lock = new StampedLock(); // Проверка согласованности чтения и блокировка изменений
+    private volatile Table table = new Table(INITIAL_CAPACITY); // Текущая таблица
+    private int size; // Количество занятых ячеек (меняется под блокировкой записи)
+
+    // Возвращает первичный ключ ссылки с указанным хешем или NOT_FOUND, если такой нет
+    long get(long hash) {
+        long stamp = lock.tryOptimisticRead();
+        long primaryKey = probe(table, hash);
+        if (lock.validate(stamp)) {
+            return primaryKey;
+        }
+        stamp = lock.readLock();
+        try {
+            return probe(table, hash);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Связывает хеш с первичным ключом, заменяя прежнюю ссылку с тем же хешем
+    void put(long hash, long primaryKey) {
+        long stamp = lock.writeLock();
+        try {
+            Table current = table;
+            if ((size + 1) * 2 > current.primaryKeys.length) {
+                current = resize(current);
+            }
+            int index = (int) hash & current.mask;
+            while (current.primaryKeys[index] != EMPTY && current.hashes[index] != hash) {
+                index = (index + 1) & current.mask;
+            }
+            if (current.primaryKeys[index] == EMPTY) {
+                size++;
+            }
+            current.hashes[index] = hash;
+            current.primaryKeys[index] = primaryKey;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Удаляет хеш, если он связан именно с этой ссылкой (хеш мог уже перейти к новой ссылке с тем же URL).
+    // Следующие ключи цепочки сдвигаются назад, удаленные ячейки не остаются
+    void remove(long hash, long primaryKey) {
+        long stamp = lock.writeLock();
+        try {
+            Table current = table;
+            int index = (int) hash & current.mask;
+            while (current.hashes[index] != hash) {
+                if (current.primaryKeys[index] == EMPTY) {
+                    return;
+                }
+                index = (index + 1) & current.mask;
+            }
+            if (current.primaryKeys[index] != primaryKey) {
+                return;
+            }
+            int hole = index;
+            int next = (hole + 1) & current.mask;
+            while (current.primaryKeys[next] != EMPTY) {
+                // Ключ можно перенести в дыру, если его исходная ячейка не лежит между дырой и текущей позицией
+                int home = (int) current.hashes[next] & current.mask;
+                if (((next - home) & current.mask) >= ((next - hole) & current.mask)) {
+                    current.hashes[hole] = current.hashes[next];
+                    current.primaryKeys[hole] = current.primaryKeys[next];
+                    hole = next;
+                }
+                next = (next + 1) & current.mask;
+            }
+            current.hashes[hole] = 0;
+            current.primaryKeys[hole] = EMPTY;
+            size--;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Возвращает количество ссылок в индексе
+    int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Проходит по цепочке ячеек хеша. При чтении без блокировки таблица может меняться,
+    // поэтому количество шагов ограничено ее размером, а результат проверяется через validate
+    private static long probe(Table current, long hash) {
+        int index = (int) hash & current.mask;
+        for (int step = 0; step <= current.mask; step++) {
+            long primaryKey = current.primaryKeys[index];
+            if (primaryKey == EMPTY) {
+                return EMPTY;
+            }
+            if (current.hashes[index] == hash) {
+                return primaryKey;
+            }
+            index = (index + 1) & current.mask;
+        }
+        return EMPTY;
+    }
+
+    // Переносит ключи в таблицу вдвое большего размера. Вызывается под блокировкой записи
+    private Table resize(Table current) {
+        Table larger = new Table(current.primaryKeys.length * 2);
+        for (int i = 0; i < current.primaryKeys.length; i++) {
+            if (current.primaryKeys[i] != EMPTY) {
+                int index = (int) current.hashes[i] & larger.mask;
+                while (larger.primaryKeys[index] != EMPTY) {
+                    index = (index + 1) & larger.mask;
+                }
+                larger.hashes[index] = current.hashes[i];
+                larger.primaryKeys[index] = current.primaryKeys[i];
+            }
+        }
+        table = larger;
+        return larger;
+    }
+
+    // Вычисляет хеш пары (пользователь, нормализованный URL) без создания промежуточных строк
+    static long hash(UUID userId, String longUrl) {
+        int start = normalizedStart(longUrl);
+        int end = normalizedEnd(longUrl, start);
+        int hostEnd = hostEnd(longUrl, start, end);
+        long h = 0xCBF29CE484222325L ^ mix(userId.getMostSignificantBits()) ^ Long.rotateLeft(mix(userId.getLeastSignificantBits()), 29);
+        for (int i = start; i < end; i++) {
+            h = (h ^ normalizedChar(longUrl, i, hostEnd)) * 0x100000001B3L;
+        }
+        return mix(h ^ (end - start));
+    }
+
+    // Сравнивает два URL после нормализации
+    static boolean sameUrl(String first, String second) {
+        if (first == null || second == null) {
+            return false;
+        }
+        int firstStart = normalizedStart(first);
+        int firstEnd = normalizedEnd(first, firstStart);
+        int secondStart = normalizedStart(second);
+        int secondEnd = normalizedEnd(second, secondStart);
+        if (firstEnd - firstStart != secondEnd - secondStart) {
+            return false;
+        }
+        int firstHostEnd = hostEnd(first, firstStart, firstEnd);
+        int secondHostEnd = hostEnd(second, secondStart, secondEnd);
+        for (int i = 0; i < firstEnd - firstStart; i++) {
+            if (normalizedChar(first, firstStart + i, firstHostEnd) != normalizedChar(second, secondStart + i, secondHostEnd)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Начало URL без пробельных символов
+    private static int normalizedStart(String url) {
+        int start = 0;
+        while (start < url.length() && url.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    // Конец URL без пробельных символов и без завершающего "/" сразу после хоста
+    private static int normalizedEnd(String url, int start) {
+        int end = url.length();
+        while (end > start && url.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (end > start && url.charAt(end - 1) == '/' && hostEnd(url, start, end) == end - 1) {
+            end--;
+        }
+        return end;
+    }
+
+    // Позиция конца хоста (первый "/", "?" или "#" после "://") или start, если схема не указана
+    private static int hostEnd(String url, int start, int end) {
+        int i = start;
+        while (i < end && isSchemeChar(url.charAt(i))) {
+            i++;
+        }
+        if (i == start || i + 3 > end || !url.startsWith("://", i)) {
+            return start;
+        }
+        i += 3;
+        while (i < end) {
+            char c = url.charAt(i);
+            if (c == '/' || c == '?' || c == '#') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    // Проверяет, может ли символ входить в схему URL
+    private static boolean isSchemeChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '+' || c == '-' || c == '.';
+    }
+
+    // Символ нормализованного URL: в схеме и хосте латинские буквы приводятся к нижнему регистру
+    private static char normalizedChar(String url, int index, int hostEnd) {
+        char c = url.charAt(index);
+        return index < hostEnd && c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    // Перемешивает биты значения
+    private static long mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+}
@@ -0,0 +1,173 @@
+package main.java.com.linkshortener;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+//Иерархическое колесо таймеров для сроков жизни ссылок. Хранит пары (идентификатор ссылки, секунда истечения)
+//и позволяет за O(1) добавить ссылку и постепенно выбирать истекшие без обхода всего хранилища.
+//Добавлять записи можно из любых потоков: они попадают в полосы входного буфера и переносятся в колесо при продвижении.
+public class ExpiryWheel {
+
+    // Количество полос входного буфера (степень двойки)
+    private static final int INTAKE_STRIPES = 16;
+
+    // Количество бит на уровень колеса (256 слотов на уровень)
+    private static final int SLOT_BITS = 8;
+
+    // Количество слотов на одном уровне
+    private static final int SLOTS = 1 << SLOT_BITS;
+
+    // Маска для вычисления номера слота
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    // Количество уровней: 256 сек, ~18 часов, ~194 дня. Все, что дальше, попадает в overflow
+    private static final int LEVELS = 3;
+
+    // Слоты колеса по уровням
+    private final Bucket[][] levels = new Bucket[LEVELS][SLOTS];
+
+    // Записи со сроком дальше последнего уровня
+    private final Bucket overflow = new Bucket();
+
+    // Записи, срок которых уже наступил к моменту добавления
+    private final Bucket due = new Bucket();
+
+    // Входной буфер: потоки добавляют записи в свою полосу, не мешая друг другу
+    private final Bucket[] intake = new Bucket[INTAKE_STRIPES];
+
+    // Последняя обработанная секунда (epoch seconds)
+    private long currentTick;
+
+    // Количество записей в колесе (без учета входного буфера)
+    private volatile long size;
+
+    // Конструктор класса ExpiryWheel
+    public ExpiryWheel(long startEpochSecond) {
+        this.currentTick = startEpochSecond;
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                levels[level][slot] = new Bucket();
+            }
+        }
+        for (int stripe = 0; stripe < INTAKE_STRIPES; stripe++) {
+            intake[stripe] = new Bucket();
+        }
+    }
+
+    // Добавляет ссылку с указанной секундой истечения. Безопасно вызывать из нескольких потоков
+    public void schedule(long id, long deadlineEpochSecond) {
+        Bucket stripe = intake[(int) (Thread.currentThread().getId() & (INTAKE_STRIPES - 1))];
+        synchronized (stripe) {
+            stripe.add(id, deadlineEpochSecond);
+        }
+    }
+
+    // Продвигает колесо до указанной секунды и передает идентификаторы истекших записей обработчику.
+    // Одновременно колесо продвигает только один поток
+    public synchronized void advance(long nowEpochSecond, LongConsumer onExpired) {
+        drainIntake();
+        fire(due, onExpired);
+        while (currentTick < nowEpochSecond) {
+            long tick = ++currentTick;
+            // Перекладываем записи старших уровней, когда младший уровень прошел полный оборот
+            if ((tick & SLOT_MASK) == 0) {
+                if ((tick & ((1L << (2 * SLOT_BITS)) - 1)) == 0) {
+                    if ((tick & ((1L << (3 * SLOT_BITS)) - 1)) == 0) {
+                        cascade(overflow);
+                    }
+                    cascade(levels[2][(int) ((tick >>> (2 * SLOT_BITS)) & SLOT_MASK)]);
+                }
+                cascade(levels[1][(int) ((tick >>> SLOT_BITS) & SLOT_MASK)]);
+            }
+            fire(due, onExpired);
+            fire(levels[0][(int) (tick & SLOT_MASK)], onExpired);
+        }
+    }
+
+    // Возвращает количество записей в колесе
+    public long size() {
+        return size;
+    }
+
+    // Переносит записи из входного буфера в слоты колеса
+    private void drainIntake() {
+        for (Bucket stripe : intake) {
+            int count;
+            long[] entries;
+            synchronized (stripe) {
+                count = stripe.count;
+                entries = stripe.takeEntries();
+            }
+            for (int i = 0; i < count; i++) {
+                place(entries[2 * i], entries[2 * i + 1]);
+            }
+            size += count;
+        }
+    }
+
+    // Кладет запись в слот, соответствующий ее сроку относительно текущей секунды
+    private void place(long id, long deadline) {
+        if (deadline <= currentTick) {
+            due.add(id, deadline);
+        } else if ((deadline >>> SLOT_BITS) == (currentTick >>> SLOT_BITS)) {
+            levels[0][(int) (deadline & SLOT_MASK)].add(id, deadline);
+        } else if ((deadline >>> (2 * SLOT_BITS)) == (currentTick >>> (2 * SLOT_BITS))) {
+            levels[1][(int) ((deadline >>> SLOT_BITS) & SLOT_MASK)].add(id, deadline);
+        } else if ((deadline >>> (3 * SLOT_BITS)) == (currentTick >>> (3 * SLOT_BITS))) {
+            levels[2][(int) ((deadline >>> (2 * SLOT_BITS)) & SLOT_MASK)].add(id, deadline);
+        } else {
+            overflow.add(id, deadline);
+        }
+    }
+
+    // Перераспределяет записи слота старшего уровня по младшим уровням
+    private void cascade(Bucket bucket) {
+        int count = bucket.count;
+        if (count == 0) {
+            return;
+        }
+        long[] entries = bucket.takeEntries();
+        for (int i = 0; i < count; i++) {
+            place(entries[2 * i], entries[2 * i + 1]);
+        }
+    }
+
+    // Передает обработчику все записи слота и очищает его
+    private void fire(Bucket bucket, LongConsumer onExpired) {
+        int count = bucket.count;
+        if (count == 0) {
+            return;
+        }
+        long[] entries = bucket.takeEntries();
+        size -= count;
+        for (int i = 0; i < count; i++) {
+            onExpired.accept(entries[2 * i]);
+        }
+    }
+
+    //Слот колеса: растущий массив пар (идентификатор, срок) без упаковки в Long
+    private static final class Bucket {
+        private static final long[] EMPTY = new long[0];
+
+        private long[] entries = EMPTY; // Пары (идентификатор, срок) подряд
+        private int count; // Количество пар
+
+        // Добавляет пару в слот
+        void add(long id, long deadline) {
+            if (2 * count == entries.length) {
+                entries = Arrays.copyOf(entries, Math.max(8, entries.length * 2));
+            }
+            entries[2 * count] = id;
+            entries[2 * count + 1] = deadline;
+            count++;
+        }
+
+        // Забирает содержимое слота, оставляя его пустым
+        long[] takeEntries() {
+            long[] taken = entries;
+            entries = EMPTY;
+            count = 0;
+            return taken;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package main.java.com.linkshortener;
+
+//Приблизительный счетчик частоты обращений к ключам (Count-Min Sketch) для допуска в кэш по частоте (TinyLFU).
+//Каждый ключ отображается на четыре 4-битных счетчика, оценка частоты - минимальный из них (не больше 15).
+//После числа увеличений, в 10 раз превышающего размер кэша, все счетчики делятся пополам,
+//поэтому старая популярность постепенно забывается. Не потокобезопасен: изменяется под блокировкой кэша,
+//а оценки без блокировки допустимо читать приблизительными.
+final class FrequencySketch {
+
+    // Маска для деления пополам всех шестнадцати 4-битных счетчиков в одном long
+    private static final long HALF_MASK = 0x7777777777777777L;
+
+    // Затравки хеш-функций
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L
+    };
+
+    private final long[] table; // По 16 счетчиков в каждом элементе
+    private final int tableMask; // Маска индекса таблицы
+    private final int sampleSize; // Количество увеличений до деления счетчиков пополам
+    private int additions; // Увеличения с последнего деления
+
+    // Создает счетчик для кэша указанного размера
+    FrequencySketch(int maximumSize) {
+        int length = Integer.highestOneBit(Math.max(64, maximumSize) - 1) << 1;
+        this.table = new long[length];
+        this.tableMask = length - 1;
+        this.sampleSize = 10 * Math.max(64, maximumSize);
+    }
+
+    // Возвращает оценку частоты ключа
+    int frequency(long key) {
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < SEEDS.length; i++) {
+            long hash = hash(key, i);
+            int shift = (int) (hash >>> 60) << 2;
+            frequency = Math.min(frequency, (int) ((table[(int) hash & tableMask] >>> shift) & 15));
+        }
+        return frequency;
+    }
+
+    // Учитывает обращение к ключу
+    void increment(long key) {
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            long hash = hash(key, i);
+            int index = (int) hash & tableMask;
+            int shift = (int) (hash >>> 60) << 2;
+            if (((table[index] >>> shift) & 15) != 15) {
+                table[index] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++additions == sampleSize) {
+            reset();
+        }
+    }
+
+    // Делит все счетчики пополам
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & HALF_MASK;
+        }
+        additions /= 2;
+    }
+
+    // Хеш ключа для i-й строки: младшие биты выбирают элемент таблицы, старшие - счетчик внутри него
+    private static long hash(long key, int i) {
+        long h = (key + i) * SEEDS[i];
+        return h ^ (h >>> 29);
+    }
+}
@@ -0,0 +1,490 @@
+package main.java.com.linkshortener;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+
+//Ограниченный по размеру кэш горячих ссылок с допуском по частоте (W-TinyLFU).
+//Новые ссылки попадают в небольшое окно LRU (1% емкости), вытесненные из окна соревнуются за место в основной
+//области (сегментированный LRU: испытательный и защищенный сегменты) по оценке частоты из FrequencySketch,
+//поэтому редкие ссылки не вытесняют популярные. Поиск идет по индексу с открытой адресацией без упакованных Long
+//под оптимистичной блокировкой чтения (StampedLock), которую читатели не захватывают;
+//обращения записываются в полосатые кольцевые буферы с потерями и применяются к политике вытеснения
+//пакетами под блокировкой, которую читатели только пытаются захватить и никогда не ждут.
+public class HotLinkCache {
+
+    // Доля окна и защищенного сегмента основной области (в процентах)
+    private static final int WINDOW_PERCENT = 1;
+    private static final int PROTECTED_PERCENT = 80;
+
+    // Размер одного буфера обращений (степень двойки) и заполнение, при котором он сбрасывается
+    private static final int READ_BUFFER_SIZE = 64;
+    private static final int READ_BUFFER_DRAIN_THRESHOLD = READ_BUFFER_SIZE / 2;
+
+    // Пустая ячейка индекса (первичные ключи всегда положительные)
+    private static final long EMPTY = 0L;
+
+    // Сегменты, в которых может находиться запись
+    private static final byte WINDOW = 0;
+    private static final byte PROBATION = 1;
+    private static final byte PROTECTED = 2;
+
+    //Закэшированная ссылка: все, что нужно для перехода без обращения к хранилищу.
+    //Первичные ключи не используются повторно, поэтому владелец, URL и срок жизни записи не устаревают;
+    //переходы учитываются счетчиком хранилища (напрямую или через StripedClickCounter), поэтому лимит остается точным.
+    public static final class CachedLink {
+        private final long primaryKey; // Первичный ключ
+        private final UUID userId; // Владелец
+        private final String longUrl; // Оригинальный URL
+        private final long expirationEpochSecond; // Секунда, начиная с которой ссылка истекла
+        private final ClickCounter clickCounter; // Счетчик переходов в хранилище
+
+        public CachedLink(long primaryKey, UUID userId, String longUrl, long expirationEpochSecond, ClickCounter clickCounter) {
+            this.primaryKey = primaryKey;
+            this.userId = userId;
+            this.longUrl = longUrl;
+            this.expirationEpochSecond = expirationEpochSecond;
+            this.clickCounter = clickCounter;
+        }
+
+        public long getPrimaryKey() {
+            return primaryKey;
+        }
+
+        public UUID getUserId() {
+            return userId;
+        }
+
+        public String getLongUrl() {
+            return longUrl;
+        }
+
+        public long getExpirationEpochSecond() {
+            return expirationEpochSecond;
+        }
+
+        public ClickCounter getClickCounter() {
+            return clickCounter;
+        }
+    }
+
+    // Узел двусвязного списка сегмента
+    private static final class Node {
+        final CachedLink link;
+        byte segment;
+        boolean linked; // Узел находится в списке (false после вытеснения или удаления)
+        Node previous;
+        Node next;
+
+        Node(CachedLink link) {
+            this.link = link;
+        }
+    }
+
+    // Кольцевой буфер обращений одной полосы. Ключ 0 означает пустую ячейку (первичные ключи положительные)
+    private static final class ReadBuffer {
+        final AtomicLongArray keys = new AtomicLongArray(READ_BUFFER_SIZE);
+        final AtomicLong writeCount = new AtomicLong();
+        volatile long readCount; // Меняется только под блокировкой политики
+    }
+
+    private final int maximumSize; // Максимальное количество записей
+    private final int windowMaximum; // Емкость окна
+    private final int protectedMaximum; // Емкость защищенного сегмента
+    private final long[] indexKeys; // Индекс первичный ключ -> запись (открытая адресация, линейное пробирование)
+    private final Node[] indexNodes; // Записи в ячейках индекса
+    private final int indexMask; // Маска номера ячейки; индекс заполнен не больше чем наполовину
+    private final StampedLock indexLock = new StampedLock(); // Проверка согласованности чтения индекса
+    private volatile int size; // Количество записей
+    private final FrequencySketch sketch; // Оценка частоты обращений
+    private final ReadBuffer[] readBuffers; // Буферы обращений по полосам
+    private final ReentrantLock policyLock = new ReentrantLock(); // Блокировка политики вытеснения и изменения индекса
+
+    // Списки сегментов (голова - давно использованные), изменяются под policyLock
+    private final Node window = sentinel();
+    private final Node probation = sentinel();
+    private final Node protectedSegment = sentinel();
+    private int windowSize;
+    private int probationSize;
+    private int protectedSize;
+    private volatile int admissionFrequency; // Частота последней записи, проигравшей при вытеснении
+
+    // Статистика
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    // Конструктор класса HotLinkCache
+    public HotLinkCache(int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Размер кэша должен быть положительным.");
+        }
+        this.maximumSize = maximumSize;
+        this.windowMaximum = Math.max(1, maximumSize * WINDOW_PERCENT / 100);
+        this.protectedMaximum = (maximumSize - windowMaximum) * PROTECTED_PERCENT / 100;
+        int indexCapacity = Integer.highestOneBit(maximumSize) << 2;
+        this.indexKeys = new long[indexCapacity];
+        this.indexNodes = new Node[indexCapacity];
+        this.indexMask = indexCapacity - 1;
+        this.sketch = new FrequencySketch(maximumSize);
+        int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1;
+        this.readBuffers = new ReadBuffer[stripes];
+        for (int i = 0; i < stripes; i++) {
+            readBuffers[i] = new ReadBuffer();
+        }
+    }
+
+    // Возвращает ссылку из кэша или null и учитывает обращение (попадание или промах).
+    // Неположительный ключ не выдается и не записывается в буфер обращений: 0 в нем означает незаписанную ячейку
+    public CachedLink get(long primaryKey) {
+        if (primaryKey <= 0) {
+            misses.increment();
+            return null;
+        }
+        Node node = find(primaryKey);
+        recordAccess(primaryKey);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return node.link;
+    }
+
+    // Возвращает ссылку из кэша или null, не учитывая обращение
+    public CachedLink peek(long primaryKey) {
+        Node node = find(primaryKey);
+        return node == null ? null : node.link;
+    }
+
+    // Проверяет, стоит ли добавлять ссылку после промаха. Пока кэш не заполнен - если ключ уже встречался раньше,
+    // затем - если его частота выше частоты записи, проигравшей последнее вытеснение. Иначе новая запись почти
+    // наверняка была бы сразу вытеснена, а ее добавление стоило бы блокировки и лишних объектов
+    public boolean isWorthCaching(long primaryKey) {
+        int frequency = sketch.frequency(primaryKey);
+        return frequency > 0 && (size < maximumSize || frequency > admissionFrequency);
+    }
+
+    // Добавляет ссылку в кэш. Если ссылка уже есть, ничего не меняет
+    public void put(CachedLink link) {
+        if (link.getPrimaryKey() <= 0) {
+            throw new IllegalArgumentException("Первичный ключ должен быть положительным.");
+        }
+        policyLock.lock();
+        try {
+            if (probe(link.getPrimaryKey()) == null) {
+                Node node = new Node(link);
+                insertIntoIndex(node);
+                node.segment = WINDOW;
+                linkLast(window, node);
+                windowSize++;
+                evict();
+            }
+            drainReadBuffers();
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    // Удаляет ссылку из кэша (удаление, изменение лимита, истечение срока)
+    public void invalidate(long primaryKey) {
+        if (find(primaryKey) == null) {
+            return;
+        }
+        policyLock.lock();
+        try {
+            Node node = probe(primaryKey);
+            if (node != null) {
+                removeFromIndex(primaryKey);
+                unlinkNode(node);
+                node.link.getClickCounter().close();
+            }
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    // Удаляет из кэша все ссылки
+    public void clear() {
+        policyLock.lock();
+        try {
+            for (Node list : new Node[]{window, probation, protectedSegment}) {
+                while (list.next != list) {
+                    Node node = list.next;
+                    removeFromIndex(node.link.getPrimaryKey());
+                    unlinkNode(node);
+                    node.link.getClickCounter().close();
+                }
+            }
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    // Возвращает количество записей
+    public int size() {
+        return size;
+    }
+
+    // Возвращает максимальное количество записей
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    // Возвращает количество попаданий
+    public long getHits() {
+        return hits.sum();
+    }
+
+    // Возвращает количество промахов
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    // Возвращает количество вытесненных записей
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    // Возвращает долю попаданий среди всех обращений
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    // Записывает обращение в буфер полосы текущего потока. При заполненном буфере обращение теряется:
+    // для оценки частоты и порядка LRU это допустимо, а читатель не ждет
+    private void recordAccess(long primaryKey) {
+        ReadBuffer buffer = readBuffers[(int) mix(Thread.currentThread().getId()) & (readBuffers.length - 1)];
+        long writeCount = buffer.writeCount.get();
+        long pending = writeCount - buffer.readCount;
+        if (pending < READ_BUFFER_SIZE && buffer.writeCount.compareAndSet(writeCount, writeCount + 1)) {
+            buffer.keys.lazySet((int) writeCount & (READ_BUFFER_SIZE - 1), primaryKey);
+            pending++;
+        }
+        if (pending >= READ_BUFFER_DRAIN_THRESHOLD && policyLock.tryLock()) {
+            try {
+                drainReadBuffers();
+            } finally {
+                policyLock.unlock();
+            }
+        }
+    }
+
+    // Применяет накопленные обращения к оценке частоты и порядку LRU. Вызывается под policyLock
+    private void drainReadBuffers() {
+        for (ReadBuffer buffer : readBuffers) {
+            long readCount = buffer.readCount;
+            long writeCount = buffer.writeCount.get();
+            while (readCount < writeCount) {
+                int index = (int) readCount & (READ_BUFFER_SIZE - 1);
+                long primaryKey = buffer.keys.get(index);
+                if (primaryKey == 0) {
+                    break; // Ячейка занята, но ключ еще не записан
+                }
+                buffer.keys.lazySet(index, 0);
+                readCount++;
+                sketch.increment(primaryKey);
+                Node node = probe(primaryKey);
+                if (node != null) {
+                    onAccess(node);
+                }
+            }
+            buffer.readCount = readCount;
+        }
+    }
+
+    // Обновляет положение записи после обращения. Вызывается под policyLock
+    private void onAccess(Node node) {
+        if (!node.linked) {
+            return;
+        }
+        if (node.segment == PROBATION) {
+            // Повторное обращение переводит запись в защищенный сегмент
+            unlink(node);
+            probationSize--;
+            node.segment = PROTECTED;
+            linkLast(protectedSegment, node);
+            protectedSize++;
+            while (protectedSize > protectedMaximum && protectedSegment.next != protectedSegment) {
+                Node demoted = protectedSegment.next;
+                unlink(demoted);
+                protectedSize--;
+                demoted.segment = PROBATION;
+                linkLast(probation, demoted);
+                probationSize++;
+            }
+        } else {
+            unlink(node);
+            linkLast(node.segment == WINDOW ? window : protectedSegment, node);
+        }
+    }
+
+    // Вытесняет записи сверх емкости. Запись, вытесненная из окна, попадает в основную область, только если
+    // ее частота больше частоты самой давней записи испытательного сегмента. Вызывается под policyLock
+    private void evict() {
+        while (windowSize > windowMaximum) {
+            Node candidate = window.next;
+            unlink(candidate);
+            windowSize--;
+            candidate.segment = PROBATION;
+            linkLast(probation, candidate);
+            probationSize++;
+            if (windowSize + probationSize + protectedSize <= maximumSize) {
+                continue;
+            }
+            Node victim = probation.next;
+            if (victim == candidate) {
+                victim = protectedSegment.next != protectedSegment ? protectedSegment.next : candidate;
+            }
+            int candidateFrequency = sketch.frequency(candidate.link.getPrimaryKey());
+            int victimFrequency = sketch.frequency(victim.link.getPrimaryKey());
+            if (candidateFrequency > victimFrequency) {
+                evictNode(victim);
+                admissionFrequency = victimFrequency;
+            } else {
+                evictNode(candidate);
+                admissionFrequency = candidateFrequency;
+            }
+        }
+    }
+
+    // Удаляет вытесненную запись из списка и из словаря. Вызывается под policyLock
+    private void evictNode(Node node) {
+        unlinkNode(node);
+        removeFromIndex(node.link.getPrimaryKey());
+        node.link.getClickCounter().close();
+        evictions.increment();
+    }
+
+    // Ищет запись без блокировки. Если во время поиска индекс изменился, поиск повторяется под блокировкой чтения
+    private Node find(long primaryKey) {
+        long stamp = indexLock.tryOptimisticRead();
+        Node node = probe(primaryKey);
+        if (indexLock.validate(stamp)) {
+            return node;
+        }
+        stamp = indexLock.readLock();
+        try {
+            return probe(primaryKey);
+        } finally {
+            indexLock.unlockRead(stamp);
+        }
+    }
+
+    // Проходит по цепочке ячеек ключа. Под policyLock индекс не меняется; при чтении без блокировки индекс может меняться,
+    // поэтому количество шагов ограничено размером индекса, а результат проверяется вызывающим кодом
+    private Node probe(long primaryKey) {
+        if (primaryKey <= 0) {
+            return null;
+        }
+        int index = (int) mix(primaryKey) & indexMask;
+        for (int step = 0; step <= indexMask; step++) {
+            long key = indexKeys[index];
+            if (key == EMPTY) {
+                return null;
+            }
+            if (key == primaryKey) {
+                return indexNodes[index];
+            }
+            index = (index + 1) & indexMask;
+        }
+        return null;
+    }
+
+    // Добавляет запись в индекс. Вызывается под policyLock
+    private void insertIntoIndex(Node node) {
+        long primaryKey = node.link.getPrimaryKey();
+        int index = (int) mix(primaryKey) & indexMask;
+        while (indexKeys[index] != EMPTY) {
+            index = (index + 1) & indexMask;
+        }
+        long stamp = indexLock.writeLock();
+        indexNodes[index] = node;
+        indexKeys[index] = primaryKey;
+        indexLock.unlockWrite(stamp);
+        size++;
+    }
+
+    // Удаляет ключ из индекса, сдвигая назад следующие ключи цепочки (без удаленных ячеек). Вызывается под policyLock
+    private void removeFromIndex(long primaryKey) {
+        int index = (int) mix(primaryKey) & indexMask;
+        while (indexKeys[index] != primaryKey) {
+            if (indexKeys[index] == EMPTY) {
+                return;
+            }
+            index = (index + 1) & indexMask;
+        }
+        long stamp = indexLock.writeLock();
+        try {
+            int hole = index;
+            int next = (hole + 1) & indexMask;
+            while (indexKeys[next] != EMPTY) {
+                // Ключ можно перенести в дыру, если его исходная ячейка не лежит между дырой и текущей позицией
+                int home = (int) mix(indexKeys[next]) & indexMask;
+                if (((next - home) & indexMask) >= ((next - hole) & indexMask)) {
+                    indexKeys[hole] = indexKeys[next];
+                    indexNodes[hole] = indexNodes[next];
+                    hole = next;
+                }
+                next = (next + 1) & indexMask;
+            }
+            indexKeys[hole] = EMPTY;
+            indexNodes[hole] = null;
+        } finally {
+            indexLock.unlockWrite(stamp);
+        }
+        size--;
+    }
+
+    // Убирает запись из ее сегмента. Вызывается под policyLock
+    private void unlinkNode(Node node) {
+        if (!node.linked) {
+            return;
+        }
+        unlink(node);
+        if (node.segment == WINDOW) {
+            windowSize--;
+        } else if (node.segment == PROBATION) {
+            probationSize--;
+        } else {
+            protectedSize--;
+        }
+    }
+
+    // Создает пустой кольцевой список
+    private static Node sentinel() {
+        Node sentinel = new Node(null);
+        sentinel.previous = sentinel;
+        sentinel.next = sentinel;
+        return sentinel;
+    }
+
+    // Добавляет узел в конец списка
+    private static void linkLast(Node list, Node node) {
+        node.previous = list.previous;
+        node.next = list;
+        list.previous.next = node;
+        list.previous = node;
+        node.linked = true;
+    }
+
+    // Исключает узел из списка
+    private static void unlink(Node node) {
+        node.previous.next = node.next;
+        node.next.previous = node.previous;
+        node.previous = null;
+        node.next = null;
+        node.linked = false;
+    }
+
+    // Перемешивает биты ключа или идентификатора потока
+    private static long mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+}
@@ -0,0 +1,446 @@
+package main.java.com.linkshortener;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+//HTTP-интерфейс сервиса. Перенаправляет GET /{код} на оригинальный URL и предоставляет небольшие JSON-методы
+//для создания пользователей и ссылок, удаления ссылок и изменения лимита переходов.
+//Пользователь передается в заголовке X-User-Id: как и в консоли, перейти по ссылке и управлять ею может только владелец.
+//Каждый запрос выполняется в отдельном виртуальном потоке (Java 21+); на более старых JVM используется пул потоков.
+public class HttpRedirectServer {
+
+    // Заголовок с идентификатором пользователя
+    public static final String USER_HEADER = "X-User-Id";
+
+    // Префикс JSON-методов
+    private static final String API_PREFIX = "/api/";
+
+    // Размер страницы списка ссылок по умолчанию и наибольший допустимый
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    static {
+        // Без TCP_NODELAY короткие ответы-перенаправления ждут алгоритм Нейгла и задерживаются на десятки миллисекунд.
+        // Свойство читается встроенным сервером JDK один раз, поэтому задается до его первого использования
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final UrlShortener urlShortener; // Сервис сокращения ссылок
+    private final Config config; // Конфигурация сервиса
+    private final HttpServer server; // Встроенный HTTP-сервер JDK
+    private final ExecutorService executor; // Исполнитель запросов
+    private final BulkLinkTransfer bulkTransfer; // Массовый импорт и экспорт ссылок
+
+    // Конструктор класса HttpRedirectServer. Порт 0 означает любой свободный порт
+    public HttpRedirectServer(UrlShortener urlShortener, Config config, int port) throws IOException {
+        this.urlShortener = urlShortener;
+        this.config = config;
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        this.executor = newRequestExecutor();
+        this.bulkTransfer = new BulkLinkTransfer(urlShortener, config);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    // Запускает сервер
+    public void start() {
+        server.start();
+    }
+
+    // Останавливает сервер
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    // Возвращает порт, на котором работает сервер
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Создает исполнитель: виртуальный поток на каждый запрос, если JVM это поддерживает (Java 21+).
+    // Проект собирается под Java 11, поэтому фабрика ищется через reflection
+    private static ExecutorService newRequestExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    // Обрабатывает запрос и переводит ошибки в ответы с кодом 4xx/5xx. Если заголовки ответа уже отправлены
+    // (ошибка посреди потокового импорта или выгрузки), код ответа изменить нельзя и обмен только закрывается
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getRawPath();
+            if (path.startsWith(API_PREFIX)) {
+                handleApi(exchange, path.substring(API_PREFIX.length()));
+            } else {
+                handleRedirect(exchange, path);
+            }
+        } catch (IllegalArgumentException e) {
+            if (!headersSent(exchange)) {
+                sendError(exchange, 400, e.getMessage());
+            }
+        } catch (RuntimeException e) {
+            if (!headersSent(exchange)) {
+                sendError(exchange, 500, "Внутренняя ошибка сервера.");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // GET /{код}: перенаправление на оригинальный URL. HEAD отвечает так же, но переход не учитывает,
+    // чтобы боты предпросмотра ссылок и проверки доступности не расходовали лимит
+    private void handleRedirect(HttpExchange exchange, String path) throws IOException {
+        boolean head = "HEAD".equals(exchange.getRequestMethod());
+        if (!head && !"GET".equals(exchange.getRequestMethod())) {
+            sendError(exchange, 405, "Метод не поддерживается.");
+            return;
+        }
+        UUID userId = requireUser(exchange);
+        long primaryKey = urlShortener.decodeShortCode(path, 1, path.length() - 1);
+        ClickResult result = head
+                ? urlShortener.previewClick(userId, primaryKey) : urlShortener.resolveClick(userId, primaryKey);
+        ClickStatus status = result.getStatus();
+        String longUrl = result.getLongUrl();
+        if (longUrl != null) {
+            exchange.getResponseHeaders().set("Location", longUrl);
+            exchange.getResponseHeaders().set("Cache-Control", "no-store");
+            exchange.sendResponseHeaders(config.getHttpRedirectStatus(), -1);
+            return;
+        }
+        switch (status) {
+            case NOT_OWNER:
+                sendError(exchange, 403, "Ссылка не принадлежит вам.");
+                break;
+            case EXPIRED:
+                sendError(exchange, 410, "Ссылка истекла.");
+                break;
+            case LIMIT_EXHAUSTED:
+                sendError(exchange, 410, "Лимит переходов исчерпан.");
+                break;
+            default:
+                sendError(exchange, 404, "Ссылка не найдена.");
+        }
+    }
+
+    // JSON-методы:
+    // POST /api/users - создать пользователя
+    // POST /api/links - создать ссылку {"longUrl", "clickLimit", "lifetimeSeconds"}
+    // DELETE /api/links/{код} - удалить ссылку
+    // PUT /api/links/{код}/click-limit - изменить лимит переходов {"clickLimit"}
+    // POST /api/links/import - массовый импорт (CSV или NDJSON при Content-Type: application/x-ndjson)
+    // GET /api/links/export[?format=ndjson] - экспорт ссылок пользователя
+    // GET /api/links[?state=active|expired|exhausted&cursor=...&limit=100] - страница ссылок пользователя
+    // GET /api/links/{код}/clicks[?minutes=60] - поминутная гистограмма переходов по ссылке
+    // GET /api/metrics - метрики сервиса в текстовом формате Prometheus (без X-User-Id)
+    private void handleApi(HttpExchange exchange, String route) throws IOException {
+        String method = exchange.getRequestMethod();
+        if ("users".equals(route) && "POST".equals(method)) {
+            UUID userId = urlShortener.createUser();
+            sendJson(exchange, 201, "{\"userId\":" + Json.quote(userId.toString()) + "}");
+        } else if ("links".equals(route) && "POST".equals(method)) {
+            createLink(exchange);
+        } else if ("links".equals(route) && "GET".equals(method)) {
+            listLinks(exchange);
+        } else if ("links/import".equals(route) && "POST".equals(method)) {
+            importLinks(exchange);
+        } else if ("links/export".equals(route) && "GET".equals(method)) {
+            exportLinks(exchange);
+        } else if ("metrics".equals(route) && "GET".equals(method)) {
+            sendMetrics(exchange);
+        } else if (route.startsWith("links/") && route.endsWith("/click-limit") && "PUT".equals(method)) {
+            String code = route.substring("links/".length(), route.length() - "/click-limit".length());
+            updateClickLimit(exchange, code);
+        } else if (route.startsWith("links/") && route.endsWith("/clicks") && "GET".equals(method)) {
+            String code = route.substring("links/".length(), route.length() - "/clicks".length());
+            sendClickHistogram(exchange, code);
+        } else if (route.startsWith("links/") && "DELETE".equals(method)) {
+            deleteLink(exchange, route.substring("links/".length()));
+        } else {
+            sendError(exchange, 404, "Метод API не найден.");
+        }
+    }
+
+    // Создает короткую ссылку для пользователя из заголовка
+    private void createLink(HttpExchange exchange) throws IOException {
+        UUID userId = requireUser(exchange);
+        Map<String, String> body = Json.parseObject(readBody(exchange));
+        String longUrl = body.get("longUrl");
+        if (longUrl == null || longUrl.isEmpty()) {
+            throw new IllegalArgumentException("Не указан longUrl.");
+        }
+        long clickLimit = parsePositive(body.get("clickLimit"), "clickLimit");
+        long lifetimeSeconds = parsePositive(body.get("lifetimeSeconds"), "lifetimeSeconds");
+        ConfigSnapshot limits = config.snapshot();
+        if (clickLimit > limits.getMaxClickLimit()) {
+            throw new IllegalArgumentException("Лимит переходов не может превышать " + limits.getMaxClickLimit() + ".");
+        }
+        if (lifetimeSeconds > limits.getMaxLinkLifetimeSeconds()) {
+            throw new IllegalArgumentException("Время жизни ссылки не может превышать " + limits.getMaxLinkLifetimeSeconds() + ".");
+        }
+        String shortUrl;
+        try {
+            shortUrl = urlShortener.buildShortUrl(userId, longUrl, clickLimit, (int) lifetimeSeconds);
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 404, e.getMessage());
+            return;
+        }
+        String code = shortUrl.substring(UrlShortener.SHORT_URL_PREFIX.length());
+        sendJson(exchange, 201, "{\"shortUrl\":" + Json.quote(shortUrl) + ",\"code\":" + Json.quote(code) + "}");
+    }
+
+    // Импортирует ссылки из тела запроса и потоково возвращает результат по каждой строке
+    private void importLinks(HttpExchange exchange) throws IOException {
+        UUID userId = requireUser(exchange);
+        if (!urlShortener.getAllUsers().containsKey(userId)) {
+            sendError(exchange, 404, "Пользователь не найден.");
+            return;
+        }
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        BulkLinkTransfer.Format format = contentType != null && contentType.contains("ndjson")
+                ? BulkLinkTransfer.Format.NDJSON : BulkLinkTransfer.Format.CSV;
+        sendStreamHeaders(exchange, format);
+        try (BufferedReader input = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8));
+             Writer output = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8))) {
+            bulkTransfer.importLinks(userId, input, output, format);
+        }
+    }
+
+    // Потоково выгружает ссылки пользователя из заголовка
+    private void exportLinks(HttpExchange exchange) throws IOException {
+        UUID userId = requireUser(exchange);
+        if (!urlShortener.getAllUsers().containsKey(userId)) {
+            sendError(exchange, 404, "Пользователь не найден.");
+            return;
+        }
+        BulkLinkTransfer.Format format = "ndjson".equals(queryParameter(exchange, "format"))
+                ? BulkLinkTransfer.Format.NDJSON : BulkLinkTransfer.Format.CSV;
+        sendStreamHeaders(exchange, format);
+        try (Writer output = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8))) {
+            bulkTransfer.exportLinks(userId, output, format);
+        }
+    }
+
+    // Возвращает страницу ссылок пользователя из заголовка: {"links": [...], "nextCursor": "..." или null}
+    private void listLinks(HttpExchange exchange) throws IOException {
+        UUID userId = requireUser(exchange);
+        String stateName = queryParameter(exchange, "state");
+        LinkState state = stateName == null ? null : LinkState.parse(stateName);
+        String limitValue = queryParameter(exchange, "limit");
+        long limit = limitValue == null ? DEFAULT_PAGE_SIZE : parsePositive(limitValue, "limit");
+        if (limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Размер страницы не может превышать " + MAX_PAGE_SIZE + ".");
+        }
+        LinkPage page;
+        try {
+            page = urlShortener.listUserLinks(userId, state, queryParameter(exchange, "cursor"), (int) limit);
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, urlShortener.getAllUsers().containsKey(userId) ? 400 : 404, e.getMessage());
+            return;
+        }
+        StringBuilder json = new StringBuilder("{\"links\":[");
+        for (LinkPage.Link link : page.getLinks()) {
+            if (json.charAt(json.length() - 1) != '[') {
+                json.append(',');
+            }
+            json.append("{\"shortUrl\":").append(Json.quote(link.getShortUrl()))
+                    .append(",\"longUrl\":").append(Json.quote(link.getLongUrl()))
+                    .append(",\"clickLimit\":").append(link.getClickLimit())
+                    .append(",\"clicks\":").append(link.getClicks())
+                    .append(",\"remainingLifetimeSeconds\":").append(link.getRemainingLifetimeSeconds())
+                    .append(",\"state\":").append(Json.quote(link.getState().name().toLowerCase()))
+                    .append('}');
+        }
+        json.append("],\"nextCursor\":").append(page.getNextCursor() == null ? "null" : Json.quote(page.getNextCursor())).append('}');
+        sendJson(exchange, 200, json.toString());
+    }
+
+    // Возвращает значение параметра строки запроса или null, если параметра нет
+    private static String queryParameter(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            String key = separator < 0 ? pair : pair.substring(0, separator);
+            if (key.equals(name)) {
+                return separator < 0 ? "" : URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    // Проверяет, отправлены ли заголовки ответа (код ответа устанавливается вместе с ними)
+    private static boolean headersSent(HttpExchange exchange) {
+        return exchange.getResponseCode() != -1;
+    }
+
+    // Отправляет заголовки потокового ответа (chunked) заданного формата
+    private static void sendStreamHeaders(HttpExchange exchange, BulkLinkTransfer.Format format) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", format == BulkLinkTransfer.Format.NDJSON
+                ? "application/x-ndjson; charset=utf-8" : "text/csv; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+    }
+
+    // Удаляет ссылку пользователя из заголовка
+    private void deleteLink(HttpExchange exchange, String code) throws IOException {
+        UUID userId = requireUser(exchange);
+        boolean deleted;
+        try {
+            deleted = urlShortener.deleteLink(userId, UrlShortener.SHORT_URL_PREFIX + code);
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 404, e.getMessage());
+            return;
+        }
+        if (deleted) {
+            exchange.sendResponseHeaders(204, -1);
+        } else {
+            sendError(exchange, 404, "Ссылка не найдена или не принадлежит вам.");
+        }
+    }
+
+    // Изменяет лимит переходов ссылки пользователя из заголовка
+    private void updateClickLimit(HttpExchange exchange, String code) throws IOException {
+        UUID userId = requireUser(exchange);
+        Map<String, String> body = Json.parseObject(readBody(exchange));
+        long clickLimit = parsePositive(body.get("clickLimit"), "clickLimit");
+        if (clickLimit > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Слишком большой лимит переходов.");
+        }
+        boolean updated;
+        try {
+            updated = urlShortener.updateClickLimit(userId, UrlShortener.SHORT_URL_PREFIX + code, (int) clickLimit);
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 404, e.getMessage());
+            return;
+        }
+        if (updated) {
+            sendJson(exchange, 200, "{\"code\":" + Json.quote(code) + ",\"clickLimit\":" + clickLimit + "}");
+        } else {
+            sendError(exchange, 404, "Ссылка не найдена или не принадлежит вам.");
+        }
+    }
+
+    // Возвращает поминутную гистограмму переходов по ссылке пользователя из заголовка:
+    // {"code", "startEpochMinute", "counts": [...]} - переходы по минутам от старых к новым
+    private void sendClickHistogram(HttpExchange exchange, String code) throws IOException {
+        UUID userId = requireUser(exchange);
+        int window = urlShortener.getAnalyticsWindowMinutes();
+        if (window == 0) {
+            sendError(exchange, 404, "Аналитика переходов отключена (analytics.enabled=false).");
+            return;
+        }
+        String minutesValue = queryParameter(exchange, "minutes");
+        long minutes = minutesValue == null ? window : parsePositive(minutesValue, "minutes");
+        if (minutes > window) {
+            throw new IllegalArgumentException("Количество минут не может превышать " + window + ".");
+        }
+        ClickHistogram histogram;
+        try {
+            histogram = urlShortener.getClickHistogram(userId, UrlShortener.SHORT_URL_PREFIX + code, (int) minutes);
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 404, e.getMessage());
+            return;
+        }
+        if (histogram == null) {
+            sendError(exchange, 404, "Ссылка не найдена или не принадлежит вам.");
+            return;
+        }
+        StringBuilder json = new StringBuilder(32 + histogram.getMinutes() * 4);
+        json.append("{\"code\":").append(Json.quote(code))
+                .append(",\"startEpochMinute\":").append(histogram.getStartEpochMinute())
+                .append(",\"counts\":[");
+        for (int i = 0; i < histogram.getMinutes(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(histogram.getCount(i));
+        }
+        json.append("]}");
+        sendJson(exchange, 200, json.toString());
+    }
+
+    // Возвращает пользователя из заголовка X-User-Id
+    private static UUID requireUser(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst(USER_HEADER);
+        if (header == null) {
+            throw new IllegalArgumentException("Не указан заголовок " + USER_HEADER + ".");
+        }
+        return UUID.fromString(header.trim());
+    }
+
+    // Разбирает положительное целое число из поля запроса
+    private static long parsePositive(String value, String field) {
+        if (value == null) {
+            throw new IllegalArgumentException("Не указано поле " + field + ".");
+        }
+        long number = Long.parseLong(value);
+        if (number <= 0) {
+            throw new IllegalArgumentException("Поле " + field + " должно быть положительным числом.");
+        }
+        return number;
+    }
+
+    // Читает тело запроса
+    private static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream inputStream = exchange.getRequestBody()) {
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    // Отправляет метрики сервиса в текстовом формате Prometheus
+    private void sendMetrics(HttpExchange exchange) throws IOException {
+        ServiceMetrics metrics = urlShortener.getMetrics();
+        if (metrics == null) {
+            sendError(exchange, 404, "Метрики отключены (metrics.enabled=false).");
+            return;
+        }
+        StringBuilder text = new StringBuilder(4096);
+        metrics.writePrometheus(text);
+        byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(body);
+        }
+    }
+
+    // Отправляет JSON-ответ
+    private static void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(body);
+        }
+    }
+
+    // Отправляет JSON-ответ с ошибкой
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        sendJson(exchange, status, "{\"error\":" + Json.quote(message) + "}");
+    }
+}
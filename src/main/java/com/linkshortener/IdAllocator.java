@@ -0,0 +1,85 @@
+package main.java.com.linkshortener;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+//Выдача первичных ключей без общего счетчика на каждое создание. Ключи выдаются из полос: каждая полоса
+//арендует у общего счетчика блок из leaseSize подряд идущих ключей и раздает его потокам, которые на нее
+//попадают (полоса выбирается по идентификатору потока, как у полосатых счетчиков переходов). Общий счетчик
+//меняется один раз на блок, а потоки разных полос не пишут в одну кэш-линию.
+//Ключи уникальны и положительны, но идут по возрастанию только внутри блока. Неизрасходованные остатки блоков
+//при перезапуске пропускаются: счетчик восстанавливается до наибольшего выданного блоком ключа.
+final class IdAllocator {
+
+    //Полоса: арендованный блок ключей. Поля-заполнители не дают полосам оказаться в одной кэш-линии
+    private static final class Lease {
+        long p1, p2, p3, p4, p5, p6, p7;
+        long next; // Следующий ключ блока (меняется под монитором полосы)
+        long end; // Ключ после последнего ключа блока
+        long q1, q2, q3, q4, q5, q6, q7;
+    }
+
+    private final AtomicLong leased = new AtomicLong(); // Наибольший ключ, выданный полосам или пакетам
+    private final Lease[] leases; // Полосы (степень двойки)
+    private final int leaseSize; // Размер арендуемого блока
+
+    // Конструктор класса IdAllocator
+    IdAllocator(int leaseSize, int stripes) {
+        if (leaseSize <= 0 || stripes <= 0) {
+            throw new IllegalArgumentException("Размер блока ключей и количество полос должны быть положительными.");
+        }
+        this.leaseSize = leaseSize;
+        this.leases = new Lease[Integer.highestOneBit(stripes * 2 - 1)];
+        for (int i = 0; i < leases.length; i++) {
+            leases[i] = new Lease();
+        }
+    }
+
+    // Выдает новый первичный ключ
+    long next() {
+        Lease lease = leases[stripeIndex(leases.length)];
+        synchronized (lease) {
+            if (lease.next == lease.end) {
+                lease.next = leased.getAndAdd(leaseSize) + 1;
+                lease.end = lease.next + leaseSize;
+            }
+            return lease.next++;
+        }
+    }
+
+    // Выделяет блок из count подряд идущих ключей (мимо полос) и возвращает первый из них
+    long allocate(int count) {
+        return leased.getAndAdd(count) + 1;
+    }
+
+    // Возвращает наибольший выданный ключ (ключи до него включительно повторно не выдаются)
+    long getHighWaterMark() {
+        return leased.get();
+    }
+
+    // Продолжает выдачу ключей после highWaterMark (восстановление). Вызывается до выдачи первого ключа
+    void restore(long highWaterMark) {
+        leased.set(highWaterMark);
+    }
+
+    // Поднимает счетчик не ниже highWaterMark во время работы (ключи, перенесенные с другого шарда).
+    // Остатки блоков полос сбрасываются, чтобы ни одна полоса не выдала ключ до highWaterMark
+    void raise(long highWaterMark) {
+        if (leased.get() >= highWaterMark) {
+            return;
+        }
+        leased.accumulateAndGet(highWaterMark, Math::max);
+        for (Lease lease : leases) {
+            synchronized (lease) {
+                if (lease.next <= highWaterMark) {
+                    lease.next = lease.end;
+                }
+            }
+        }
+    }
+
+    // Номер полосы текущего потока
+    private static int stripeIndex(int length) {
+        long h = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & (length - 1);
+    }
+}
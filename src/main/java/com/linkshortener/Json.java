@@ -0,0 +1,161 @@
+package main.java.com.linkshortener;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//Минимальная поддержка JSON для HTTP-интерфейса: разбор плоского объекта и экранирование строк.
+//Значения объекта (строки, числа, true/false/null) возвращаются как строки.
+public final class Json {
+
+    private Json() {
+    }
+
+    // Разбирает плоский JSON-объект. Вложенные объекты и массивы не поддерживаются
+    public static Map<String, String> parseObject(String text) {
+        Map<String, String> result = new LinkedHashMap<>();
+        int[] position = {skipWhitespace(text, 0)};
+        expect(text, position, '{');
+        if (peek(text, position) == '}') {
+            position[0]++;
+            return result;
+        }
+        while (true) {
+            String key = readString(text, position);
+            expect(text, position, ':');
+            String value = peek(text, position) == '"' ? readString(text, position) : readLiteral(text, position);
+            result.put(key, value);
+            char next = peek(text, position);
+            position[0]++;
+            if (next == '}') {
+                return result;
+            }
+            if (next != ',') {
+                throw new IllegalArgumentException("Некорректный JSON: ожидалась ',' или '}'.");
+            }
+        }
+    }
+
+    // Экранирует строку и заключает ее в кавычки
+    public static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    // Возвращает следующий значимый символ, не сдвигая позицию
+    private static char peek(String text, int[] position) {
+        position[0] = skipWhitespace(text, position[0]);
+        if (position[0] >= text.length()) {
+            throw new IllegalArgumentException("Некорректный JSON: неожиданный конец.");
+        }
+        return text.charAt(position[0]);
+    }
+
+    // Проверяет, что следующий значимый символ совпадает с ожидаемым
+    private static void expect(String text, int[] position, char expected) {
+        if (peek(text, position) != expected) {
+            throw new IllegalArgumentException("Некорректный JSON: ожидался '" + expected + "'.");
+        }
+        position[0]++;
+    }
+
+    // Читает строку в кавычках
+    private static String readString(String text, int[] position) {
+        expect(text, position, '"');
+        StringBuilder sb = new StringBuilder();
+        int i = position[0];
+        while (i < text.length()) {
+            char c = text.charAt(i++);
+            if (c == '"') {
+                position[0] = i;
+                return sb.toString();
+            }
+            if (c == '\\') {
+                if (i >= text.length()) {
+                    break;
+                }
+                char escaped = text.charAt(i++);
+                switch (escaped) {
+                    case 'n':
+                        sb.append('\n');
+                        break;
+                    case 'r':
+                        sb.append('\r');
+                        break;
+                    case 't':
+                        sb.append('\t');
+                        break;
+                    case 'b':
+                        sb.append('\b');
+                        break;
+                    case 'f':
+                        sb.append('\f');
+                        break;
+                    case 'u':
+                        if (i + 4 > text.length()) {
+                            throw new IllegalArgumentException("Некорректный JSON: неполная escape-последовательность.");
+                        }
+                        sb.append((char) Integer.parseInt(text.substring(i, i + 4), 16));
+                        i += 4;
+                        break;
+                    default:
+                        sb.append(escaped);
+                }
+            } else {
+                sb.append(c);
+            }
+        }
+        throw new IllegalArgumentException("Некорректный JSON: незакрытая строка.");
+    }
+
+    // Читает число или литерал true/false/null
+    private static String readLiteral(String text, int[] position) {
+        int start = position[0];
+        int i = start;
+        while (i < text.length() && ",} \t\r\n".indexOf(text.charAt(i)) < 0) {
+            i++;
+        }
+        if (i == start) {
+            throw new IllegalArgumentException("Некорректный JSON: пустое значение.");
+        }
+        position[0] = i;
+        String literal = text.substring(start, i);
+        return "null".equals(literal) ? null : literal;
+    }
+
+    // Пропускает пробельные символы
+    private static int skipWhitespace(String text, int i) {
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+}
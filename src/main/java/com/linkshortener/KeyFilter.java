@@ -0,0 +1,172 @@
+package main.java.com.linkshortener;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+//Фильтр Блума выданных первичных ключей: защита от переходов по несуществующим кодам (перебор кодов ботами).
+//Если фильтр отвечает "нет", ссылки точно нет и хранилище не проверяется; "возможно" (в том числе для удаленных
+//ссылок и с вероятностью ложного срабатывания fpp для остальных) означает обычную проверку в хранилище.
+//Фильтр блочный: все биты ключа лежат в одном блоке из 512 бит (одна кэш-линия), поэтому проверка обращается
+//к памяти один раз. Проверка и добавление идут без блокировок (биты устанавливаются атомарно).
+//Удалить ключ из фильтра Блума нельзя, поэтому фильтр считает добавленные и удаленные ключи и перестраивается
+//по хранилищу (rebuild), когда ключей стало больше расчетных или большая часть ключей фильтра уже удалена.
+final class KeyFilter {
+
+    // Начальное расчетное количество ключей
+    private static final long INITIAL_CAPACITY = 1 << 16;
+
+    // Битов в блоке (одна кэш-линия) и слов long в блоке
+    private static final int BLOCK_BITS = 512;
+    private static final int BLOCK_WORDS = BLOCK_BITS / Long.SIZE;
+
+    //Битовый массив фильтра для фиксированного расчетного количества ключей
+    private static final class Bits {
+        final AtomicLongArray words; // Биты фильтра
+        final long blocks; // Количество блоков
+        final int hashes; // Количество битов на ключ
+        final long capacity; // Расчетное количество ключей
+
+        Bits(long capacity, double fpp) {
+            // Расчет для обычного фильтра Блума. Блочный фильтр при том же размере ошибается чаще (ключи
+            // распределяются по блокам неравномерно), поэтому битов берется больше: на 20% на каждый порядок fpp
+            double optimalBitsPerKey = -Math.log(fpp) / (Math.log(2) * Math.log(2));
+            double bitsPerKey = optimalBitsPerKey * (1 - 0.2 * Math.log10(fpp));
+            long words = Math.max(BLOCK_WORDS, (long) Math.ceil(capacity * bitsPerKey / BLOCK_BITS) * BLOCK_WORDS);
+            if (words > Integer.MAX_VALUE - BLOCK_WORDS) {
+                throw new IllegalArgumentException("Слишком большой фильтр ключей: " + capacity + " ключей.");
+            }
+            this.words = new AtomicLongArray((int) words);
+            this.blocks = words / BLOCK_WORDS;
+            this.hashes = (int) Math.max(1, Math.min(16, Math.round(optimalBitsPerKey * Math.log(2))));
+            this.capacity = capacity;
+        }
+
+        // Проверяет, установлены ли все биты ключа
+        boolean mightContain(long key) {
+            long h = mix(key);
+            int base = blockOf(h);
+            int step = (int) (h >>> 41) | 1;
+            int bit = (int) (h >>> 32);
+            for (int i = 0; i < hashes; i++, bit += step) {
+                int index = bit & (BLOCK_BITS - 1);
+                if ((words.get(base + (index >>> 6)) & (1L << index)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Устанавливает биты ключа
+        void add(long key) {
+            long h = mix(key);
+            int base = blockOf(h);
+            int step = (int) (h >>> 41) | 1;
+            int bit = (int) (h >>> 32);
+            for (int i = 0; i < hashes; i++, bit += step) {
+                int index = bit & (BLOCK_BITS - 1);
+                int word = base + (index >>> 6);
+                long mask = 1L << index;
+                long current = words.get(word);
+                while ((current & mask) == 0 && !words.weakCompareAndSetVolatile(word, current, current | mask)) {
+                    current = words.get(word);
+                }
+            }
+        }
+
+        // Номер первого слова блока ключа: младшие 32 бита хеша, отображенные на количество блоков без деления
+        private int blockOf(long h) {
+            return (int) (((h & 0xFFFFFFFFL) * blocks) >>> 32) * BLOCK_WORDS;
+        }
+    }
+
+    private final double fpp; // Вероятность ложного срабатывания при расчетном количестве ключей
+    private final StampedLock lock = new StampedLock(); // Добавление (чтение) против замены битового массива (запись)
+    private volatile Bits bits; // Текущий битовый массив
+    private Bits next; // Массив, который строится при перестроении (меняется под блокировкой записи)
+    private final LongAdder added = new LongAdder(); // Ключи, добавленные с последнего перестроения
+    private final LongAdder removed = new LongAdder(); // Ключи, удаленные с последнего перестроения
+
+    // Конструктор класса KeyFilter
+    KeyFilter(double fpp) {
+        if (!(fpp > 0 && fpp < 1)) {
+            throw new IllegalArgumentException("Вероятность ложного срабатывания фильтра должна быть между 0 и 1.");
+        }
+        this.fpp = fpp;
+        this.bits = new Bits(INITIAL_CAPACITY, fpp);
+    }
+
+    // Возвращает false, если ключ точно не добавлялся
+    boolean mightContain(long key) {
+        return bits.mightContain(key);
+    }
+
+    // Добавляет ключ. Вызывается после добавления ссылки в хранилище: тогда перестроение, идущее одновременно,
+    // либо найдет ссылку в хранилище, либо увидит новый массив и добавит ключ в него
+    void add(long key) {
+        long stamp = lock.readLock();
+        try {
+            bits.add(key);
+            if (next != null) {
+                next.add(key);
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        added.increment();
+    }
+
+    // Учитывает удаление ключа из хранилища
+    void removed() {
+        removed.increment();
+    }
+
+    // Проверяет, пора ли перестроить фильтр: ключей больше расчетных (растет вероятность ложного срабатывания)
+    // или больше половины ключей фильтра удалены (фильтр пропускает к хранилищу запросы удаленных ссылок)
+    boolean needsRebuild() {
+        long addedKeys = added.sum();
+        return addedKeys > bits.capacity || removed.sum() * 2 > Math.max(addedKeys, INITIAL_CAPACITY);
+    }
+
+    // Перестраивает фильтр по ключам хранилища с запасом вдвое. Поиск и добавление ключей не останавливаются.
+    // Вызывается одним потоком (фоновой очисткой)
+    void rebuild(LinkStore db) {
+        Bits rebuilt = new Bits(Math.max(INITIAL_CAPACITY, db.size() * 2), fpp);
+        long stamp = lock.writeLock();
+        try {
+            next = rebuilt;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        LongAdder visited = new LongAdder();
+        db.forEach((primaryKey, urlData) -> {
+            rebuilt.add(primaryKey);
+            visited.increment();
+        });
+        stamp = lock.writeLock();
+        try {
+            bits = rebuilt;
+            next = null;
+            // Ключи, добавленные во время обхода, могут быть учтены дважды: счетчики нужны только для решения
+            // о перестроении
+            added.reset();
+            added.add(visited.sum());
+            removed.reset();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Возвращает размер фильтра в байтах
+    long sizeInBytes() {
+        return (long) bits.words.length() * Long.BYTES;
+    }
+
+    // Перемешивает биты ключа: первичные ключи идут подряд
+    private static long mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        h *= 0xD6E8FEB86659FD93L;
+        return h ^ (h >>> 32);
+    }
+}
@@ -0,0 +1,113 @@
+package main.java.com.linkshortener;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+//Гистограмма задержек в духе HdrHistogram: логарифмически-линейные интервалы с 32 интервалами на каждую степень
+//двойки, поэтому погрешность значения не больше 1/32 (~3%) во всем диапазоне от 1 нс до 2^45 нс (~9,8 часа;
+//большие значения попадают в последний интервал). Запись - несколько атомарных увеличений без создания объектов
+//и без блокировок; чтение делает копию счетчиков (Snapshot) и может не учесть записи, идущие одновременно с ним.
+public final class LatencyHistogram {
+
+    // Количество интервалов на степень двойки (2^SUB_BUCKET_BITS)
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // Наибольшее записываемое значение
+    private static final long MAX_VALUE = (1L << 45) - 1;
+
+    // Количество интервалов
+    private static final int BUCKETS = bucketOf(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS); // Количество значений в интервалах
+    private final LongAdder sum = new LongAdder(); // Сумма значений
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0); // Наибольшее значение
+
+    // Записывает значение в наносекундах
+    public void record(long nanos) {
+        long value = Math.max(0, Math.min(nanos, MAX_VALUE));
+        counts.incrementAndGet(bucketOf(value));
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    // Возвращает копию текущего состояния гистограммы
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(copy, count, sum.sum(), max.get());
+    }
+
+    //Неизменяемая копия гистограммы
+    public static final class Snapshot {
+        private final long[] counts; // Количество значений в интервалах
+        private final long count; // Количество значений
+        private final long sum; // Сумма значений
+        private final long max; // Наибольшее значение
+
+        Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        // Возвращает среднее значение или 0, если значений нет
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        // Возвращает значение перцентиля (0..100): верхнюю границу интервала, в который он попал, но не больше max
+        public long getValueAtPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueOf(i), max);
+                }
+            }
+            return max;
+        }
+    }
+
+    // Номер интервала значения: значения меньше SUB_BUCKETS записываются точно, остальные - с шагом 2^shift,
+    // где shift зависит от старшего бита значения
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    // Наибольшее значение, попадающее в интервал
+    static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        long subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
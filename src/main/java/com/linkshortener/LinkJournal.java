@@ -0,0 +1,38 @@
+package main.java.com.linkshortener;
+
+import java.util.UUID;
+
+//Журнал изменений сервиса: получает каждое изменение пользователей и ссылок в порядке их выполнения.
+//Через этот интерфейс изменения записываются на диск (WriteAheadLog) и воспроизводятся при восстановлении.
+//Методы только добавляют запись; дождаться ее сохранения можно методом sync.
+public interface LinkJournal {
+
+    // Журнал, который ничего не записывает (сохранение на диск отключено)
+    LinkJournal NONE = new LinkJournal() {
+    };
+
+    // Создан пользователь
+    default void userCreated(UUID userId) {
+    }
+
+    // Создана ссылка (или восстановлена из снимка вместе со счетчиком переходов)
+    default void linkCreated(long primaryKey, UrlData urlData) {
+    }
+
+    // Совершен переход. clicks - значение счетчика после перехода, а не приращение,
+    // поэтому повторное применение записи не меняет результат
+    default void clicked(long primaryKey, long clicks) {
+    }
+
+    // Изменен лимит переходов (счетчик переходов сброшен)
+    default void clickLimitUpdated(long primaryKey, long clickLimit) {
+    }
+
+    // Ссылка удалена пользователем или очисткой
+    default void linkRemoved(long primaryKey) {
+    }
+
+    // Ждет, пока все добавленные к этому моменту записи будут надежно сохранены
+    default void sync() {
+    }
+}
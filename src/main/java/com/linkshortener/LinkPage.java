@@ -0,0 +1,101 @@
+package main.java.com.linkshortener;
+
+import java.util.Collections;
+import java.util.List;
+
+//Страница ссылок пользователя в порядке создания. Неизменяемый снимок: значения ссылок вычислены в момент
+//чтения страницы по одному показанию часов и не меняются вместе с хранилищем. Следующая страница
+//запрашивается по непрозрачному курсору getNextCursor; null означает, что ссылок больше нет.
+public final class LinkPage {
+
+    //Ссылка на странице
+    public static final class Link {
+        private final String shortUrl; // Короткая ссылка
+        private final String longUrl; // Оригинальный URL
+        private final long clickLimit; // Лимит переходов
+        private final long clicks; // Совершенные переходы
+        private final long remainingLifetimeSeconds; // Оставшееся время жизни в секундах
+        private final LinkState state; // Состояние ссылки
+
+        // Снимает значения ссылки на момент nowEpochSecond
+        Link(String shortUrl, UrlData urlData, long nowEpochSecond) {
+            this.shortUrl = shortUrl;
+            this.longUrl = urlData.getLongUrl();
+            this.clickLimit = urlData.getClickLimit();
+            this.clicks = urlData.getClicks();
+            long expirationEpochSecond = urlData.getExpirationEpochSecond();
+            this.remainingLifetimeSeconds = Math.max(0, expirationEpochSecond - 1 - nowEpochSecond);
+            if (nowEpochSecond >= expirationEpochSecond) {
+                this.state = LinkState.EXPIRED;
+            } else if (clicks >= clickLimit) {
+                this.state = LinkState.EXHAUSTED;
+            } else {
+                this.state = LinkState.ACTIVE;
+            }
+        }
+
+        public String getShortUrl() {
+            return shortUrl;
+        }
+
+        public String getLongUrl() {
+            return longUrl;
+        }
+
+        public long getClickLimit() {
+            return clickLimit;
+        }
+
+        public long getClicks() {
+            return clicks;
+        }
+
+        public long getRemainingClicks() {
+            return Math.max(0, clickLimit - clicks);
+        }
+
+        public long getRemainingLifetimeSeconds() {
+            return remainingLifetimeSeconds;
+        }
+
+        public LinkState getState() {
+            return state;
+        }
+    }
+
+    private final List<Link> links; // Ссылки страницы
+    private final String nextCursor; // Курсор следующей страницы (null - страниц больше нет)
+
+    // Конструктор класса LinkPage
+    LinkPage(List<Link> links, String nextCursor) {
+        this.links = Collections.unmodifiableList(links);
+        this.nextCursor = nextCursor;
+    }
+
+    // Возвращает ссылки страницы
+    public List<Link> getLinks() {
+        return links;
+    }
+
+    // Возвращает курсор следующей страницы или null, если это последняя страница
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    // Кодирует позицию (первичный ключ последней просмотренной ссылки) в курсор
+    static String encodeCursor(long primaryKey) {
+        return ShortCodeCodec.encode(primaryKey);
+    }
+
+    // Разбирает курсор; null или пустой курсор означает начало списка
+    static long decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        long primaryKey = ShortCodeCodec.decode(cursor);
+        if (primaryKey == ShortCodeCodec.INVALID) {
+            throw new IllegalArgumentException("Некорректный курсор.");
+        }
+        return primaryKey;
+    }
+}
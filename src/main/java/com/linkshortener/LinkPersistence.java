@@ -0,0 +1,188 @@
+package main.java.com.linkshortener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+
+//Сохранение данных сервиса на диск: журнал упреждающей записи и периодические снимки.
+//Файлы в каталоге: snapshot-N.bin - состояние на момент перехода журнала в сегмент N, wal-N.log - сегменты журнала.
+//Снимки и сегменты хранят отпечаток ключа кодов (ids.code.key); файлы с другим отпечатком не загружаются.
+//При запуске загружается последний снимок и воспроизводятся сегменты журнала начиная с N, затем журнал
+//продолжается в новом сегменте. После записи снимка старые сегменты и снимки удаляются.
+public class LinkPersistence implements Closeable {
+
+    // Размер буфера журнала (максимальный размер кадра)
+    private static final int LOG_BUFFER_SIZE = 1 << 20;
+
+    private final Path directory; // Каталог с файлами
+    private final long flushIntervalMillis; // Интервал групповой фиксации журнала
+    private final long codeKeyFingerprint; // Отпечаток ключа кодов, с которым записываются и читаются файлы
+    private WriteAheadLog log; // Журнал; открывается после восстановления
+
+    // Конструктор класса LinkPersistence. Каталог создается при необходимости.
+    // codeKey - ключ перестановки кодов: данные, записанные с другим ключом, recover отказывается загружать
+    public LinkPersistence(Path directory, long flushIntervalMillis, long codeKey) throws IOException {
+        this.directory = directory;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.codeKeyFingerprint = ShortCodeCipher.fingerprint(codeKey);
+        Files.createDirectories(directory);
+    }
+
+    // Восстанавливает данные в target из последнего снимка и журнала, затем открывает журнал для записи.
+    // Возвращает наибольший первичный ключ, который мог быть выдан до перезапуска
+    public synchronized long recover(LinkJournal target) throws IOException {
+        if (log != null) {
+            throw new IllegalStateException("Данные уже восстановлены.");
+        }
+        List<Long> snapshots = new ArrayList<>();
+        List<Long> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (SnapshotFile.parseSegment(name) >= 0) {
+                    snapshots.add(SnapshotFile.parseSegment(name));
+                } else if (WriteAheadLog.parseSegment(name) >= 0) {
+                    segments.add(WriteAheadLog.parseSegment(name));
+                } else if (name.endsWith(".tmp")) {
+                    Files.delete(file); // Недописанный снимок
+                }
+            }
+        }
+        Collections.sort(snapshots);
+        Collections.sort(segments);
+
+        // Максимальный ключ: из снимка и из записей о создании ссылок в журнале
+        long[] maxPrimaryKey = new long[1];
+        LinkJournal replayTarget = new LinkJournal() {
+            @Override
+            public void userCreated(UUID userId) {
+                target.userCreated(userId);
+            }
+
+            @Override
+            public void linkCreated(long primaryKey, UrlData urlData) {
+                maxPrimaryKey[0] = Math.max(maxPrimaryKey[0], primaryKey);
+                target.linkCreated(primaryKey, urlData);
+            }
+
+            @Override
+            public void clicked(long primaryKey, long clicks) {
+                target.clicked(primaryKey, clicks);
+            }
+
+            @Override
+            public void clickLimitUpdated(long primaryKey, long clickLimit) {
+                target.clickLimitUpdated(primaryKey, clickLimit);
+            }
+
+            @Override
+            public void linkRemoved(long primaryKey) {
+                target.linkRemoved(primaryKey);
+            }
+        };
+
+        long firstSegment = 0;
+        if (!snapshots.isEmpty()) {
+            // Снимок появляется на диске только целиком (см. SnapshotFile), поэтому берется последний
+            long snapshotSegment = snapshots.get(snapshots.size() - 1);
+            SnapshotFile.Loaded loaded = SnapshotFile.load(SnapshotFile.snapshotFile(directory, snapshotSegment),
+                    codeKeyFingerprint, replayTarget);
+            maxPrimaryKey[0] = Math.max(maxPrimaryKey[0], loaded.primaryKeyCounter);
+            firstSegment = loaded.segment;
+        }
+
+        long lastSegment = firstSegment - 1;
+        for (int i = 0; i < segments.size(); i++) {
+            long segment = segments.get(i);
+            if (segment < firstSegment) {
+                continue;
+            }
+            Path file = WriteAheadLog.segmentFile(directory, segment);
+            long validLength = WriteAheadLog.replay(file, segment, codeKeyFingerprint, replayTarget);
+            boolean last = i == segments.size() - 1;
+            if (validLength < Files.size(file)) {
+                if (!last) {
+                    throw new IOException("Сегмент журнала " + file + " поврежден.");
+                }
+                // Оборванный при сбое конец последнего сегмента отбрасывается
+                if (validLength < 0) {
+                    Files.delete(file);
+                } else {
+                    truncate(file, validLength);
+                }
+            }
+            lastSegment = segment;
+        }
+
+        log = new WriteAheadLog(directory, Math.max(lastSegment + 1, firstSegment), codeKeyFingerprint,
+                flushIntervalMillis, LOG_BUFFER_SIZE);
+        deleteObsolete(firstSegment);
+        return maxPrimaryKey[0];
+    }
+
+    // Возвращает журнал для записи изменений
+    public LinkJournal getJournal() {
+        if (log == null) {
+            throw new IllegalStateException("Данные еще не восстановлены.");
+        }
+        return log;
+    }
+
+    // Записывает снимок и удаляет журнал, который он покрывает. Счетчик первичных ключей читается уже после
+    // перехода журнала в новый сегмент, поэтому покрывает все ссылки, созданные в старых сегментах
+    public synchronized Path snapshot(LongSupplier primaryKeyCounter, Iterable<UUID> userIds, LinkStore store) throws IOException {
+        long segment = log.rotate();
+        Path file = SnapshotFile.write(directory, segment, primaryKeyCounter.getAsLong(), codeKeyFingerprint, userIds, store);
+        deleteObsolete(segment);
+        return file;
+    }
+
+    // Закрывает журнал, дописав в него все изменения
+    @Override
+    public synchronized void close() throws IOException {
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    // Вызывает fsync для каталога, чтобы создание и переименование файлов пережили сбой.
+    // Не все платформы позволяют открыть каталог, поэтому ошибка игнорируется
+    static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Каталог нельзя синхронизировать на этой платформе
+        }
+    }
+
+    // Удаляет снимки и сегменты журнала, предшествующие снимку для сегмента firstSegment
+    private void deleteObsolete(long firstSegment) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                long snapshotSegment = SnapshotFile.parseSegment(name);
+                long logSegment = WriteAheadLog.parseSegment(name);
+                if ((snapshotSegment >= 0 && snapshotSegment < firstSegment) || (logSegment >= 0 && logSegment < firstSegment)) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    // Обрезает файл до указанной длины
+    private static void truncate(Path file, long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+            channel.force(true);
+        }
+    }
+}
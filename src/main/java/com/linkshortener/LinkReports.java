@@ -0,0 +1,437 @@
+package main.java.com.linkshortener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.LongFunction;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+//Отчеты по ссылкам над снимком хранилища. Снимок снимается одним обходом хранилища (LinkStore.forEach, без
+//блокировок на время обхода, поэтому переходы не ждут) в примитивные колонки и дальше не меняется. Обход слабо
+//согласован: ссылки, созданные или удаленные во время обхода, могут попасть или не попасть в снимок, а переходы
+//разных ссылок прочитаны в разные моменты, поэтому снимок не соответствует состоянию хранилища ни в какой один
+//момент, в том числе в getCapturedEpochSecond. Все отчеты одного объекта строятся по одним и тем же колонкам и
+//согласованы между собой. Отчет - параллельная свертка
+//диапазона номеров ссылок (IntStream.parallel, разбиение сплитератором диапазона) в отдельном ForkJoinPool:
+//каждая часть собирает свой частичный итог, итоги частей сливаются попарно.
+//Снимок занимает около 36 байт на ссылку.
+public final class LinkReports {
+
+    //Ссылка в отчете
+    public static final class Link {
+        private final String shortUrl; // Короткая ссылка
+        private final UUID userId; // Владелец
+        private final long clickLimit; // Лимит переходов
+        private final long clicks; // Совершенные переходы
+        private final long expirationEpochSecond; // Первая секунда, в которую ссылка считается истекшей
+
+        Link(String shortUrl, UUID userId, long clickLimit, long clicks, long expirationEpochSecond) {
+            this.shortUrl = shortUrl;
+            this.userId = userId;
+            this.clickLimit = clickLimit;
+            this.clicks = clicks;
+            this.expirationEpochSecond = expirationEpochSecond;
+        }
+
+        public String getShortUrl() {
+            return shortUrl;
+        }
+
+        public UUID getUserId() {
+            return userId;
+        }
+
+        public long getClickLimit() {
+            return clickLimit;
+        }
+
+        public long getClicks() {
+            return clicks;
+        }
+
+        public long getRemainingClicks() {
+            return Math.max(0, clickLimit - clicks);
+        }
+
+        public long getExpirationEpochSecond() {
+            return expirationEpochSecond;
+        }
+
+        @Override
+        public String toString() {
+            return shortUrl + " (" + clicks + "/" + clickLimit + ", истекает " + expirationEpochSecond + ")";
+        }
+    }
+
+    //Использование лимитов пользователем: действующие ссылки и ссылки, выбравшие заданную долю лимита
+    public static final class UserUsage {
+        private final UUID userId; // Пользователь
+        private final long activeLinks; // Действующие ссылки
+        private final long nearLimitLinks; // Действующие ссылки, выбравшие долю лимита
+        private final long remainingClicks; // Оставшиеся переходы по действующим ссылкам
+
+        UserUsage(UUID userId, long activeLinks, long nearLimitLinks, long remainingClicks) {
+            this.userId = userId;
+            this.activeLinks = activeLinks;
+            this.nearLimitLinks = nearLimitLinks;
+            this.remainingClicks = remainingClicks;
+        }
+
+        public UUID getUserId() {
+            return userId;
+        }
+
+        public long getActiveLinks() {
+            return activeLinks;
+        }
+
+        public long getNearLimitLinks() {
+            return nearLimitLinks;
+        }
+
+        public long getRemainingClicks() {
+            return remainingClicks;
+        }
+
+        @Override
+        public String toString() {
+            return userId + ": " + nearLimitLinks + " из " + activeLinks + " ссылок у лимита, осталось переходов " + remainingClicks;
+        }
+    }
+
+    private final long capturedEpochSecond; // Секунда снятия снимка
+    private final int size; // Количество ссылок в снимке
+    private final long[] primaryKeys; // Первичные ключи
+    private final int[] owners; // Номера владельцев в ownerIds
+    private final UUID[] ownerIds; // Владельцы ссылок снимка
+    private final long[] clickLimits; // Лимиты переходов
+    private final long[] clicks; // Совершенные переходы
+    private final long[] expirations; // Первые секунды, в которые ссылки считаются истекшими
+    private final LongFunction<String> shortUrls; // Короткая ссылка по первичному ключу
+    private final ForkJoinPool pool; // Потоки параллельной свертки
+
+    // Конструктор класса LinkReports (массивы не копируются)
+    private LinkReports(long capturedEpochSecond, int size, long[] primaryKeys, int[] owners, UUID[] ownerIds,
+                        long[] clickLimits, long[] clicks, long[] expirations,
+                        LongFunction<String> shortUrls, ForkJoinPool pool) {
+        this.capturedEpochSecond = capturedEpochSecond;
+        this.size = size;
+        this.primaryKeys = primaryKeys;
+        this.owners = owners;
+        this.ownerIds = ownerIds;
+        this.clickLimits = clickLimits;
+        this.clicks = clicks;
+        this.expirations = expirations;
+        this.shortUrls = shortUrls;
+        this.pool = pool;
+    }
+
+    // Снимает слабо согласованный снимок хранилища. Поля каждой ссылки читаются вместе; ссылки, добавленные
+    // и удаленные во время обхода, попадают в снимок как получится (см. LinkStore.forEach)
+    static LinkReports capture(LinkStore store, LongFunction<String> shortUrls, ForkJoinPool pool) {
+        //Колонки снимка, растущие при обходе
+        final class Columns implements LinkStore.LinkVisitor {
+            int size;
+            long[] primaryKeys;
+            int[] owners;
+            long[] clickLimits;
+            long[] clicks;
+            long[] expirations;
+            final Map<UUID, Integer> ownerNumbers = new HashMap<>();
+            final List<UUID> ownerIds = new ArrayList<>();
+
+            Columns(int capacity) {
+                primaryKeys = new long[capacity];
+                owners = new int[capacity];
+                clickLimits = new long[capacity];
+                clicks = new long[capacity];
+                expirations = new long[capacity];
+            }
+
+            @Override
+            public void visit(long primaryKey, UrlData urlData) {
+                if (size == primaryKeys.length) {
+                    int capacity = Math.max(16, size + (size >> 1));
+                    primaryKeys = Arrays.copyOf(primaryKeys, capacity);
+                    owners = Arrays.copyOf(owners, capacity);
+                    clickLimits = Arrays.copyOf(clickLimits, capacity);
+                    clicks = Arrays.copyOf(clicks, capacity);
+                    expirations = Arrays.copyOf(expirations, capacity);
+                }
+                Integer owner = ownerNumbers.get(urlData.getUserId());
+                if (owner == null) {
+                    owner = ownerIds.size();
+                    ownerNumbers.put(urlData.getUserId(), owner);
+                    ownerIds.add(urlData.getUserId());
+                }
+                primaryKeys[size] = primaryKey;
+                owners[size] = owner;
+                clickLimits[size] = urlData.getClickLimit();
+                clicks[size] = urlData.getClicks();
+                expirations[size] = urlData.getExpirationEpochSecond();
+                size++;
+            }
+        }
+
+        long capturedEpochSecond = System.currentTimeMillis() / 1000;
+        // Запас на ссылки, добавленные во время обхода
+        Columns columns = new Columns((int) Math.min(Integer.MAX_VALUE - 8, store.size() + store.size() / 64 + 16));
+        store.forEach(columns);
+        return new LinkReports(capturedEpochSecond, columns.size, columns.primaryKeys, columns.owners,
+                columns.ownerIds.toArray(new UUID[0]), columns.clickLimits, columns.clicks, columns.expirations,
+                shortUrls, pool);
+    }
+
+    // Возвращает секунду начала обхода: от нее отсчитываются сроки в отчетах
+    public long getCapturedEpochSecond() {
+        return capturedEpochSecond;
+    }
+
+    // Возвращает количество ссылок в снимке
+    public int size() {
+        return size;
+    }
+
+    // Возвращает количество пользователей, у которых есть ссылки в снимке
+    public int getUserCount() {
+        return ownerIds.length;
+    }
+
+    // Возвращает до limit действующих ссылок, которые истекут в ближайшие seconds секунд, начиная с ближайших
+    public List<Link> expiringWithin(long seconds, int limit) {
+        requirePositive(limit);
+        long deadline = capturedEpochSecond + seconds;
+        TopIndices top = collect(() -> new TopIndices(limit, expirations, false),
+                (partial, i) -> {
+                    if (isActive(i) && expirations[i] <= deadline) {
+                        partial.offer(i);
+                    }
+                },
+                TopIndices::merge);
+        return toLinks(top.sorted());
+    }
+
+    // Возвращает для каждого пользователя до n его ссылок с наибольшим числом переходов (по убыванию).
+    // Пользователи идут в порядке первой встречи в снимке
+    public Map<UUID, List<Link>> topClickedPerUser(int n) {
+        requirePositive(n);
+        UserTops tops = collect(() -> new UserTops(n), UserTops::offer, UserTops::merge);
+        Map<UUID, List<Link>> result = new LinkedHashMap<>();
+        for (int owner = 0; owner < ownerIds.length; owner++) {
+            TopIndices top = tops.tops[owner];
+            if (top != null) {
+                result.put(ownerIds[owner], toLinks(top.sorted()));
+            }
+        }
+        return result;
+    }
+
+    // Возвращает пользователей, у которых есть действующие ссылки, выбравшие не меньше fraction лимита
+    // переходов, начиная с пользователей с наибольшим числом таких ссылок
+    public List<UserUsage> usersNearLimit(double fraction) {
+        if (!(fraction > 0 && fraction <= 1)) {
+            throw new IllegalArgumentException("Доля лимита должна быть больше 0 и не больше 1.");
+        }
+        long[][] totals = collect(() -> new long[3][ownerIds.length],
+                (partial, i) -> {
+                    if (isActive(i)) {
+                        int owner = owners[i];
+                        partial[0][owner]++;
+                        if (clicks[i] >= fraction * clickLimits[i]) {
+                            partial[1][owner]++;
+                        }
+                        partial[2][owner] += clickLimits[i] - clicks[i];
+                    }
+                },
+                (left, right) -> {
+                    for (int column = 0; column < left.length; column++) {
+                        for (int owner = 0; owner < ownerIds.length; owner++) {
+                            left[column][owner] += right[column][owner];
+                        }
+                    }
+                });
+        List<UserUsage> users = new ArrayList<>();
+        for (int owner = 0; owner < ownerIds.length; owner++) {
+            if (totals[1][owner] > 0) {
+                users.add(new UserUsage(ownerIds[owner], totals[0][owner], totals[1][owner], totals[2][owner]));
+            }
+        }
+        users.sort((a, b) -> Long.compare(b.getNearLimitLinks(), a.getNearLimitLinks()));
+        return users;
+    }
+
+    // Возвращает распределение оставшихся переходов по действующим ссылкам: элемент k - количество ссылок,
+    // у которых осталось от 2^(k-1) до 2^k - 1 переходов (элемент 1 - ровно один переход)
+    public long[] remainingClicksDistribution() {
+        return collect(() -> new long[Long.SIZE],
+                (partial, i) -> {
+                    if (isActive(i)) {
+                        partial[Long.SIZE - Long.numberOfLeadingZeros(clickLimits[i] - clicks[i])]++;
+                    }
+                },
+                (left, right) -> {
+                    for (int k = 0; k < left.length; k++) {
+                        left[k] += right[k];
+                    }
+                });
+    }
+
+    // Сворачивает номера ссылок снимка параллельно в пуле: каждая часть диапазона - в свой итог supplier,
+    // итоги частей сливаются combiner
+    private <R> R collect(Supplier<R> supplier, ObjIntConsumer<R> accumulator, BiConsumer<R, R> combiner) {
+        return pool.submit(() -> IntStream.range(0, size).parallel().collect(supplier, accumulator, combiner)).join();
+    }
+
+    // Проверяет, что ссылка на момент снимка не истекла и не исчерпала лимит
+    private boolean isActive(int i) {
+        return capturedEpochSecond < expirations[i] && clicks[i] < clickLimits[i];
+    }
+
+    // Собирает ссылки отчета по номерам в снимке
+    private List<Link> toLinks(int[] indices) {
+        List<Link> links = new ArrayList<>(indices.length);
+        for (int i : indices) {
+            links.add(new Link(shortUrls.apply(primaryKeys[i]), ownerIds[owners[i]], clickLimits[i], clicks[i], expirations[i]));
+        }
+        return Collections.unmodifiableList(links);
+    }
+
+    // Проверяет размер отчета
+    private static void requirePositive(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Размер отчета должен быть положительным числом.");
+        }
+    }
+
+    //Частичный итог: до capacity номеров ссылок с наибольшими (largest) или наименьшими значениями колонки.
+    //Куча на массиве номеров, в вершине - худший из отобранных
+    private static final class TopIndices {
+        private final int capacity; // Сколько номеров отбирается
+        private final long[] values; // Колонка, по которой идет отбор
+        private final boolean largest; // true - отбираются наибольшие значения
+        private int[] heap = new int[4]; // Отобранные номера
+        private int count; // Количество отобранных номеров
+
+        TopIndices(int capacity, long[] values, boolean largest) {
+            this.capacity = capacity;
+            this.values = values;
+            this.largest = largest;
+        }
+
+        // Предлагает номер ссылки
+        void offer(int index) {
+            if (count < capacity) {
+                if (count == heap.length) {
+                    heap = Arrays.copyOf(heap, Math.min(capacity, count * 2));
+                }
+                heap[count] = index;
+                siftUp(count++);
+            } else if (better(index, heap[0])) {
+                heap[0] = index;
+                siftDown(0);
+            }
+        }
+
+        // Добавляет номера, отобранные другой частью
+        void merge(TopIndices other) {
+            for (int i = 0; i < other.count; i++) {
+                offer(other.heap[i]);
+            }
+        }
+
+        // Возвращает отобранные номера от лучшего к худшему, разбирая кучу (вызывается один раз)
+        int[] sorted() {
+            int[] indices = new int[count];
+            for (int i = indices.length - 1; i >= 0; i--) {
+                indices[i] = heap[0];
+                heap[0] = heap[--count];
+                siftDown(0);
+            }
+            return indices;
+        }
+
+        // Проверяет, что ссылка a лучше ссылки b; при равных значениях лучше ссылка с меньшим номером в снимке,
+        // чтобы результат не зависел от разбиения на части
+        private boolean better(int a, int b) {
+            if (values[a] != values[b]) {
+                return largest ? values[a] > values[b] : values[a] < values[b];
+            }
+            return a < b;
+        }
+
+        private void siftUp(int position) {
+            while (position > 0) {
+                int parent = (position - 1) >>> 1;
+                if (!better(heap[parent], heap[position])) {
+                    return;
+                }
+                swap(parent, position);
+                position = parent;
+            }
+        }
+
+        private void siftDown(int position) {
+            while (true) {
+                int worst = position;
+                for (int child = 2 * position + 1; child <= 2 * position + 2 && child < count; child++) {
+                    if (better(heap[worst], heap[child])) {
+                        worst = child;
+                    }
+                }
+                if (worst == position) {
+                    return;
+                }
+                swap(worst, position);
+                position = worst;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int value = heap[a];
+            heap[a] = heap[b];
+            heap[b] = value;
+        }
+    }
+
+    //Частичный итог: наиболее посещаемые ссылки каждого владельца
+    private final class UserTops {
+        private final int n; // Сколько ссылок отбирается на владельца
+        private final TopIndices[] tops = new TopIndices[ownerIds.length]; // Отбор по номеру владельца
+
+        UserTops(int n) {
+            this.n = n;
+        }
+
+        // Предлагает ссылку с номером index отбору ее владельца
+        void offer(int index) {
+            int owner = owners[index];
+            if (tops[owner] == null) {
+                tops[owner] = new TopIndices(n, clicks, true);
+            }
+            tops[owner].offer(index);
+        }
+
+        // Добавляет отбор другой части
+        void merge(UserTops other) {
+            for (int owner = 0; owner < tops.length; owner++) {
+                if (other.tops[owner] == null) {
+                    continue;
+                }
+                if (tops[owner] == null) {
+                    tops[owner] = other.tops[owner];
+                } else {
+                    tops[owner].merge(other.tops[owner]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package main.java.com.linkshortener;
+
+//Состояние ссылки при постраничном просмотре
+public enum LinkState {
+    ACTIVE, // По ссылке можно перейти
+    EXPIRED, // Время жизни ссылки истекло
+    EXHAUSTED; // Лимит переходов исчерпан
+
+    // Разбирает название состояния без учета регистра (active, expired, exhausted)
+    public static LinkState parse(String name) {
+        for (LinkState state : values()) {
+            if (state.name().equalsIgnoreCase(name)) {
+                return state;
+            }
+        }
+        throw new IllegalArgumentException("Неизвестное состояние ссылки: " + name + ".");
+    }
+}
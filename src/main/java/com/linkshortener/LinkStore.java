@@ -0,0 +1,55 @@
+package main.java.com.linkshortener;
+
+import java.util.UUID;
+
+//Хранилище ссылок по первичному ключу. Реализации должны быть потокобезопасными.
+public interface LinkStore {
+
+    // Получатель ссылок при обходе хранилища
+    interface LinkVisitor {
+        void visit(long primaryKey, UrlData urlData);
+    }
+
+    // Добавляет ссылку в хранилище
+    void put(long primaryKey, UrlData urlData);
+
+    // Возвращает данные о ссылке или null, если ссылки нет.
+    // Реализация может вернуть снимок: изменения в нем не попадают в хранилище
+    UrlData get(long primaryKey);
+
+    // Возвращает идентификатор владельца ссылки или null, если ссылки нет
+    UUID getUserId(long primaryKey);
+
+    // Возвращает оригинальный URL или null, если ссылки нет
+    String getLongUrl(long primaryKey);
+
+    // Возвращает количество совершенных переходов или -1, если ссылки нет
+    long getClicks(long primaryKey);
+
+    // Возвращает счетчик переходов ссылки или null, если ссылки нет
+    ClickCounter getClickCounter(long primaryKey);
+
+    // Проверяет владельца, срок жизни и лимит, и при успехе атомарно учитывает переход
+    ClickStatus tryClick(long primaryKey, UUID userId);
+
+    // Устанавливает новый лимит переходов и сбрасывает счетчик. Возвращает false, если ссылки нет
+    boolean updateClickLimit(long primaryKey, long newClickLimit);
+
+    // Увеличивает счетчик переходов до указанного значения, если он меньше (восстановление из журнала).
+    // Возвращает false, если ссылки нет
+    boolean raiseClicks(long primaryKey, long clicks);
+
+    // Проверяет, что ссылка истекла или исчерпала лимит переходов. Для отсутствующей ссылки возвращает false
+    boolean isExpiredOrExhausted(long primaryKey);
+
+    // Удаляет ссылку. Возвращает false, если ссылки не было
+    boolean remove(long primaryKey);
+
+    // Возвращает количество ссылок в хранилище
+    long size();
+
+    // Обходит все ссылки. Хранилище может меняться во время обхода: ссылка, которая была в нем все время обхода,
+    // будет передана ровно один раз, добавленные и удаленные во время обхода - как получится.
+    // Посетитель вызывается без блокировок хранилища и может его менять
+    void forEach(LinkVisitor visitor);
+}
@@ -0,0 +1,119 @@
+package main.java.com.linkshortener;
+
+//Множество положительных long (первичных ключей) на открытой адресации с линейным пробированием.
+//Ключи хранятся в одном примитивном массиве (8-16 байт на ключ), без объектов на элемент; удаление сдвигает
+//следующие ключи цепочки назад, поэтому удаленных ячеек нет. Все операции O(1) в среднем.
+//Класс не потокобезопасен: синхронизацию обеспечивает владелец (UserLinks).
+final class LongHashSet {
+
+    // Пустая ячейка (первичные ключи начинаются с 1)
+    private static final long EMPTY = 0;
+
+    // Начальная емкость множества
+    private static final int INITIAL_CAPACITY = 8;
+
+    private long[] keys = new long[INITIAL_CAPACITY]; // Ячейки множества
+    private int size; // Количество ключей
+
+    // Добавляет ключ. Возвращает false, если ключ уже есть
+    boolean add(long key) {
+        if ((size + 1) * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        int mask = keys.length - 1;
+        int index = (int) mix(key) & mask;
+        while (keys[index] != EMPTY) {
+            if (keys[index] == key) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        size++;
+        return true;
+    }
+
+    // Проверяет наличие ключа
+    boolean contains(long key) {
+        return find(key) >= 0;
+    }
+
+    // Удаляет ключ. Возвращает false, если ключа не было
+    boolean remove(long key) {
+        int index = find(key);
+        if (index < 0) {
+            return false;
+        }
+        int mask = keys.length - 1;
+        int hole = index;
+        int next = (hole + 1) & mask;
+        while (keys[next] != EMPTY) {
+            // Ключ можно перенести в дыру, если его исходная ячейка не лежит между дырой и текущей позицией
+            int home = (int) mix(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = EMPTY;
+        size--;
+        // Множество пользователя, удалившего большую часть ссылок, не должно занимать память по максимуму
+        if (keys.length > INITIAL_CAPACITY && size * 8 < keys.length) {
+            resize(keys.length / 2);
+        }
+        return true;
+    }
+
+    // Возвращает количество ключей
+    int size() {
+        return size;
+    }
+
+    // Возвращает копию ключей в порядке ячеек
+    long[] toArray() {
+        long[] result = new long[size];
+        int count = 0;
+        for (long key : keys) {
+            if (key != EMPTY) {
+                result[count++] = key;
+            }
+        }
+        return result;
+    }
+
+    // Возвращает номер ячейки ключа или -1, если ключа нет
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int index = (int) mix(key) & mask;
+        while (keys[index] != EMPTY) {
+            if (keys[index] == key) {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    // Переносит ключи в массив указанной емкости
+    private void resize(int capacity) {
+        long[] old = keys;
+        keys = new long[capacity];
+        int mask = capacity - 1;
+        for (long key : old) {
+            if (key != EMPTY) {
+                int index = (int) mix(key) & mask;
+                while (keys[index] != EMPTY) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = key;
+            }
+        }
+    }
+
+    // Перемешивает биты ключа: первичные ключи идут подряд и без перемешивания образуют длинные цепочки
+    private static long mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+}
@@ -1,17 +1,251 @@
 package main.java.com.linkshortener;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.UUID;
 
 public class Main {
-    // Точка входа в программу
+    // Путь к конфигурационному файлу в ресурсах
+    private static final String CONFIG_PATH = "main/resources/config.properties";
+
+    // Точка входа в программу.
+    // Без аргументов запускается консольный интерфейс, с флагом --http [порт] - HTTP-сервер,
+    // с флагами --import <вход> <выход> [UUID] и --export <UUID> <выход> - массовый импорт и экспорт ссылок,
+    // с флагом --shard <порт> [каталог данных] - шард для ShardRouter,
+    // с флагами --leader <порт репликации> [порт HTTP] и --follower <host:port ведущего> [порт HTTP] -
+    // ведущий узел и реплика с HTTP-сервером,
+    // с флагом --batch [файл] - выполнение команд из файла или стандартного ввода (BatchCommandProcessor),
+    // с флагом --workload [ключ=значение ...] - генератор нагрузки (WorkloadGenerator) на сервис в памяти.
+    // В долгоживущих режимах при config.reload.enabled=true файл конфигурации перечитывается при изменении
     public static void main(String[] args) {
         try {
+            if (args.length > 0 && "--http".equals(args[0])) {
+                startHttpServer(args);
+                return;
+            }
+            if (args.length >= 2 && "--leader".equals(args[0])) {
+                startLeader(args);
+                return;
+            }
+            if (args.length >= 2 && "--follower".equals(args[0])) {
+                startFollower(args);
+                return;
+            }
+            if (args.length >= 2 && "--shard".equals(args[0])) {
+                startShardServer(args);
+                return;
+            }
+            if (args.length > 0 && "--batch".equals(args[0])) {
+                runBatch(args);
+                return;
+            }
+            if (args.length > 0 && "--workload".equals(args[0])) {
+                runWorkload(args);
+                return;
+            }
+            if (args.length >= 3 && "--import".equals(args[0])) {
+                importLinks(args);
+                return;
+            }
+            if (args.length >= 3 && "--export".equals(args[0])) {
+                exportLinks(args);
+                return;
+            }
             // Создаем консольный интерфейс и запускаем его
-            ConsoleInterface consoleInterface = new ConsoleInterface("main/resources/config.properties");
+            Config config = new Config(CONFIG_PATH);
+            watchConfig(config);
+            ConsoleInterface consoleInterface = new ConsoleInterface(config);
             consoleInterface.start();
         } catch (IOException e) {
             // Обрабатываем ошибку загрузки конфигурации
             System.out.println("Ошибка при загрузке конфигурации: " + e.getMessage());
+        } catch (UncheckedIOException e) {
+            // Обрабатываем ошибку восстановления данных с диска
+            System.out.println(e.getMessage() + " " + e.getCause().getMessage());
+        }
+    }
+
+    // Запускает HTTP-сервер; порт берется из аргумента или из конфигурации
+    private static void startHttpServer(String[] args) throws IOException {
+        Config config = new Config(CONFIG_PATH);
+        UrlShortener urlShortener = new UrlShortener(config);
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : config.getHttpPort();
+        serveHttp(urlShortener, config, port);
+    }
+
+    // Запускает ведущий узел: сервер репликации и HTTP-сервер (порт HTTP - из аргумента или из конфигурации)
+    private static void startLeader(String[] args) throws IOException {
+        Config config = new Config(CONFIG_PATH).with("replication.role", "leader");
+        UrlShortener urlShortener = new UrlShortener(config);
+        ReplicationServer replicationServer = new ReplicationServer(urlShortener, Integer.parseInt(args[1]));
+        Runtime.getRuntime().addShutdownHook(new Thread(replicationServer::stop));
+        replicationServer.start();
+        System.out.println("Сервер репликации запущен на порту " + replicationServer.getPort());
+        serveHttp(urlShortener, config, args.length > 2 ? Integer.parseInt(args[2]) : config.getHttpPort());
+    }
+
+    // Запускает реплику ведущего узла с HTTP-сервером для перенаправлений (запросы на изменение отклоняются)
+    private static void startFollower(String[] args) throws IOException {
+        Config config = new Config(CONFIG_PATH)
+                .with("replication.role", "follower")
+                .with("replication.leader", args[1]);
+        if (config.getHotLinkCacheSize() == 0) {
+            // Квоты переходов реплики хранятся в кэше горячих ссылок
+            config = config.with("cache.hot.links.size", "100000");
+        }
+        UrlShortener urlShortener = new UrlShortener(config);
+        serveHttp(urlShortener, config, args.length > 2 ? Integer.parseInt(args[2]) : config.getHttpPort());
+    }
+
+    // Запускает HTTP-сервер сервиса и останавливает сервис при завершении процесса
+    private static void serveHttp(UrlShortener urlShortener, Config config, int port) throws IOException {
+        warnIfNoCodeKey(config);
+        watchConfig(config);
+        HttpRedirectServer server = new HttpRedirectServer(urlShortener, config, port);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            urlShortener.shutdown();
+        }));
+        server.start();
+        System.out.println("HTTP-сервер запущен на порту " + server.getPort());
+    }
+
+    // Запускает шард: сервис с shard.enabled=true и сервер протокола шардов. Каталог данных заменяет
+    // persistence.dir, чтобы шарды на одной машине не писали в один журнал
+    private static void startShardServer(String[] args) throws IOException {
+        Config config = new Config(CONFIG_PATH).with("shard.enabled", "true");
+        if (args.length > 2) {
+            config = config.with("persistence.dir", args[2]);
+        }
+        warnIfNoCodeKey(config);
+        watchConfig(config);
+        UrlShortener urlShortener = new UrlShortener(config);
+        ShardServer server = new ShardServer(urlShortener, Integer.parseInt(args[1]));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            urlShortener.shutdown();
+        }));
+        server.start();
+        System.out.println("Шард запущен на порту " + server.getPort());
+    }
+
+    // Предупреждает сетевой сервис, что ключ ids.code.key не задан и коды выдаются подряд
+    private static void warnIfNoCodeKey(Config config) {
+        if (config.getShortCodeKey() == 0) {
+            System.err.println("Параметр ids.code.key не задан: коды ссылок идут подряд, и их можно перебрать. "
+                    + "Задайте собственный секретный ключ до выдачи первых ссылок.");
+        }
+    }
+
+    // Запускает перечитывание файла конфигурации, если оно включено и конфигурация загружена из файла на диске
+    private static void watchConfig(Config config) throws IOException {
+        if (!config.isReloadEnabled() || config.getSourceFile() == null) {
+            return;
+        }
+        ConfigReloader reloader = new ConfigReloader(config);
+        reloader.start();
+        System.out.println("Файл конфигурации " + config.getSourceFile() + " перечитывается при изменении.");
+    }
+
+    // Выполняет команды из файла (или из стандартного ввода, если файл не указан или равен "-") и выводит результаты.
+    // Уведомления в консоль отключаются, чтобы вывод состоял только из результатов команд; итог выводится в stderr
+    private static void runBatch(String[] args) throws IOException {
+        Config config = new Config(CONFIG_PATH);
+        if ("console".equals(config.getNotificationSink())) {
+            config = config.with("notifications.sink", "none");
+        }
+        UrlShortener urlShortener = new UrlShortener(config);
+        try {
+            BatchCommandProcessor processor = new BatchCommandProcessor(urlShortener, config);
+            long startNanos = System.nanoTime();
+            BatchCommandProcessor.Result result;
+            boolean standardInput = args.length < 2 || "-".equals(args[1]);
+            try (BufferedReader input = standardInput
+                    ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                    : Files.newBufferedReader(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+                BufferedWriter output = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+                result = processor.run(input, output);
+            }
+            long millis = (System.nanoTime() - startNanos) / 1_000_000;
+            System.err.println("Выполнено команд: " + result.getCommands() + ", с ошибкой: " + result.getFailed()
+                    + ", время: " + millis + " мс.");
+        } finally {
+            urlShortener.shutdown();
+        }
+    }
+
+    // Запускает генератор нагрузки на сервис без сохранения на диск (каталог данных задается параметром dir=)
+    // и без уведомлений и выводит отчет о пропускной способности и задержках
+    private static void runWorkload(String[] args) throws IOException {
+        Config config = new Config(CONFIG_PATH).with("notifications.sink", "none").with("persistence.dir", "");
+        int from = 1;
+        if (args.length > 1 && args[1].startsWith("dir=")) {
+            config = config.with("persistence.dir", args[1].substring("dir=".length()));
+            from = 2;
+        }
+        WorkloadGenerator.Settings settings;
+        try {
+            settings = WorkloadGenerator.Settings.parse(args, from);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Ошибка параметров нагрузки: " + e.getMessage());
+            return;
+        }
+        UrlShortener urlShortener = new UrlShortener(config);
+        try {
+            System.out.print(new WorkloadGenerator(urlShortener, settings).run().format());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            urlShortener.shutdown();
+        }
+    }
+
+    // Импортирует ссылки из файла; без UUID создается новый пользователь
+    private static void importLinks(String[] args) throws IOException {
+        Config config = new Config(CONFIG_PATH);
+        UrlShortener urlShortener = new UrlShortener(config);
+        try {
+            UUID userId = args.length > 3 ? UUID.fromString(args[3]) : urlShortener.createUser();
+            BulkLinkTransfer transfer = new BulkLinkTransfer(urlShortener, config);
+            long startNanos = System.nanoTime();
+            BulkLinkTransfer.Result result;
+            try (BufferedReader input = Files.newBufferedReader(Paths.get(args[1]), StandardCharsets.UTF_8);
+                 BufferedWriter output = Files.newBufferedWriter(Paths.get(args[2]), StandardCharsets.UTF_8)) {
+                result = transfer.importLinks(userId, input, output, BulkLinkTransfer.Format.forFileName(args[1]));
+            }
+            long millis = (System.nanoTime() - startNanos) / 1_000_000;
+            System.out.println("Пользователь: " + userId);
+            System.out.println("Импортировано ссылок: " + result.getImported() + ", отклонено строк: "
+                    + result.getRejected() + ", время: " + millis + " мс.");
+        } catch (IllegalArgumentException e) {
+            System.out.println("Ошибка импорта: " + e.getMessage());
+        } finally {
+            urlShortener.shutdown();
+        }
+    }
+
+    // Экспортирует ссылки пользователя в файл
+    private static void exportLinks(String[] args) throws IOException {
+        Config config = new Config(CONFIG_PATH);
+        UrlShortener urlShortener = new UrlShortener(config);
+        try {
+            BulkLinkTransfer transfer = new BulkLinkTransfer(urlShortener, config);
+            long exported;
+            try (BufferedWriter output = Files.newBufferedWriter(Paths.get(args[2]), StandardCharsets.UTF_8)) {
+                exported = transfer.exportLinks(UUID.fromString(args[1]), output, BulkLinkTransfer.Format.forFileName(args[2]));
+            }
+            System.out.println("Экспортировано ссылок: " + exported + ".");
+        } catch (IllegalArgumentException e) {
+            System.out.println("Ошибка экспорта: " + e.getMessage());
+        } finally {
+            urlShortener.shutdown();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,104 @@
+package main.java.com.linkshortener;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Хранилище ссылок на основе Map<Long, UrlData>: по одному объекту UrlData на ссылку.
+public class MapLinkStore implements LinkStore {
+
+    // Данные о ссылках (ключ - уникальный идентификатор, значение - данные о ссылке)
+    private final Map<Long, UrlData> db = new ConcurrentHashMap<>();
+
+    @Override
+    public void put(long primaryKey, UrlData urlData) {
+        db.put(primaryKey, urlData);
+    }
+
+    @Override
+    public UrlData get(long primaryKey) {
+        return db.get(primaryKey);
+    }
+
+    @Override
+    public UUID getUserId(long primaryKey) {
+        UrlData urlData = db.get(primaryKey);
+        return urlData == null ? null : urlData.getUserId();
+    }
+
+    @Override
+    public String getLongUrl(long primaryKey) {
+        UrlData urlData = db.get(primaryKey);
+        return urlData == null ? null : urlData.getLongUrl();
+    }
+
+    @Override
+    public long getClicks(long primaryKey) {
+        UrlData urlData = db.get(primaryKey);
+        return urlData == null ? -1 : urlData.getClicks();
+    }
+
+    @Override
+    public ClickCounter getClickCounter(long primaryKey) {
+        // Объект ссылки сам является ее счетчиком
+        return db.get(primaryKey);
+    }
+
+    @Override
+    public ClickStatus tryClick(long primaryKey, UUID userId) {
+        UrlData urlData = db.get(primaryKey);
+        if (urlData == null) {
+            return ClickStatus.NOT_FOUND;
+        }
+        if (!urlData.getUserId().equals(userId)) {
+            return ClickStatus.NOT_OWNER;
+        }
+        if (urlData.isExpired()) {
+            return ClickStatus.EXPIRED;
+        }
+        // Проверка лимита и учет перехода выполняются одной атомарной операцией
+        return urlData.tryClick();
+    }
+
+    @Override
+    public boolean updateClickLimit(long primaryKey, long newClickLimit) {
+        UrlData urlData = db.get(primaryKey);
+        if (urlData == null) {
+            return false;
+        }
+        urlData.setClickLimit(newClickLimit);
+        urlData.resetClicks(); // Сбрасываем счетчик переходов
+        return true;
+    }
+
+    @Override
+    public boolean raiseClicks(long primaryKey, long clicks) {
+        UrlData urlData = db.get(primaryKey);
+        if (urlData == null) {
+            return false;
+        }
+        urlData.raiseClicks(clicks);
+        return true;
+    }
+
+    @Override
+    public boolean isExpiredOrExhausted(long primaryKey) {
+        UrlData urlData = db.get(primaryKey);
+        return urlData != null && (urlData.isExpired() || !urlData.isClickable());
+    }
+
+    @Override
+    public boolean remove(long primaryKey) {
+        return db.remove(primaryKey) != null;
+    }
+
+    @Override
+    public long size() {
+        return db.size();
+    }
+
+    @Override
+    public void forEach(LinkVisitor visitor) {
+        db.forEach(visitor::visit);
+    }
+}
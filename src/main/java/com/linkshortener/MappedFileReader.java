@@ -0,0 +1,77 @@
+package main.java.com.linkshortener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+//Последовательное чтение файла через отображение в память. Один MappedByteBuffer ограничен 2 ГБ,
+//поэтому файл отображается окнами, и окно сдвигается, когда очередная запись не помещается в текущее.
+final class MappedFileReader implements Closeable {
+
+    // Размер окна отображения
+    private static final long WINDOW_SIZE = 256L << 20;
+
+    private final FileChannel channel; // Канал читаемого файла
+    private final long fileSize; // Размер файла
+    private MappedByteBuffer window; // Текущее окно
+    private long windowStart; // Смещение окна в файле
+
+    // Открывает файл и отображает его начало
+    MappedFileReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        map(0);
+    }
+
+    // Возвращает размер файла
+    long size() {
+        return fileSize;
+    }
+
+    // Возвращает текущее смещение в файле
+    long position() {
+        return windowStart + window.position();
+    }
+
+    // Переходит к смещению в файле
+    void seek(long position) throws IOException {
+        if (position >= windowStart && position <= windowStart + window.limit()) {
+            window.position((int) (position - windowStart));
+        } else {
+            map(position);
+        }
+    }
+
+    // Гарантирует, что с текущей позиции в окне доступно bytes байт.
+    // Возвращает false, если до конца файла осталось меньше
+    boolean ensure(int bytes) throws IOException {
+        if (window.remaining() >= bytes) {
+            return true;
+        }
+        if (fileSize - position() < bytes) {
+            return false;
+        }
+        map(position());
+        return true;
+    }
+
+    // Возвращает буфер окна, позиция которого соответствует текущему смещению
+    ByteBuffer buffer() {
+        return window;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // Отображает окно, начинающееся с указанного смещения
+    private void map(long start) throws IOException {
+        windowStart = start;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, fileSize - start));
+    }
+}
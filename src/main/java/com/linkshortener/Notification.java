@@ -0,0 +1,56 @@
+package main.java.com.linkshortener;
+
+import java.util.UUID;
+
+//Уведомление пользователя об отказе в переходе по ссылке: кому, по какой ссылке и почему.
+//Создается фоновым потоком очереди уведомлений, а не на пути перехода.
+public final class Notification {
+    private final UUID userId; // Пользователь, которому адресовано уведомление
+    private final long primaryKey; // Первичный ключ ссылки (ShortCodeCodec.INVALID, если код не разобран)
+    private final String shortUrl; // Короткая ссылка (null, если код не разобран)
+    private final ClickStatus reason; // Причина отказа
+
+    // Конструктор класса Notification
+    public Notification(UUID userId, long primaryKey, String shortUrl, ClickStatus reason) {
+        this.userId = userId;
+        this.primaryKey = primaryKey;
+        this.shortUrl = shortUrl;
+        this.reason = reason;
+    }
+
+    public UUID getUserId() {
+        return userId;
+    }
+
+    public long getPrimaryKey() {
+        return primaryKey;
+    }
+
+    public ClickStatus getReason() {
+        return reason;
+    }
+
+    // Возвращает короткую ссылку или null, если код не удалось разобрать
+    public String getShortUrl() {
+        return shortUrl;
+    }
+
+    // Возвращает текст уведомления для пользователя
+    public String getMessage() {
+        switch (reason) {
+            case NOT_OWNER:
+                return "Ссылка не принадлежит вам.";
+            case EXPIRED:
+                return "Ссылка истекла.";
+            case LIMIT_EXHAUSTED:
+                return "Лимит переходов исчерпан.";
+            default:
+                return "Ссылка не найдена.";
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Пользователь " + userId + ": " + getMessage();
+    }
+}
@@ -0,0 +1,194 @@
+package main.java.com.linkshortener;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongFunction;
+
+//Ограниченная очередь уведомлений пользователей между потоками переходов и фоновым потоком вывода.
+//Кольцевой буфер без блокировок для многих писателей и одного читателя: писатель занимает ячейку одним CAS
+//и записывает в нее поля уведомления (без создания объектов), номер поколения ячейки сообщает читателю,
+//что запись завершена. Фоновый поток забирает уведомления пакетами и передает их получателю (NotificationSink),
+//поэтому вывод в консоль или файл не задерживает переходы.
+//При переполнении новое уведомление отбрасывается (DROP, учитывается в getDropped) или писатель ждет,
+//пока фоновый поток освободит место (BLOCK).
+final class NotificationQueue {
+
+    //Действие при переполнении очереди
+    enum Overflow {
+        DROP, // Отбросить новую запись
+        BLOCK; // Ждать освобождения места
+
+        // Разбирает значение параметра конфигурации
+        static Overflow parse(String value) {
+            for (Overflow overflow : values()) {
+                if (overflow.name().equalsIgnoreCase(value.trim())) {
+                    return overflow;
+                }
+            }
+            throw new IllegalArgumentException("Неизвестное действие при переполнении очереди: " + value + ".");
+        }
+    }
+
+    // Пауза фонового потока, когда очередь пуста
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    // Пауза писателя, ожидающего места в режиме BLOCK
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+
+    private final UUID[] userIds; // Пользователи уведомлений в ячейках
+    private final long[] primaryKeys; // Первичные ключи ссылок в ячейках
+    private final ClickStatus[] reasons; // Причины в ячейках
+    private final AtomicLongArray sequences; // Поколения ячеек: pos - свободна для записи pos, pos + 1 - заполнена
+    private final int mask; // Маска номера ячейки
+    private final AtomicLong tail = new AtomicLong(); // Позиция следующей записи
+    private long head; // Позиция следующего чтения (только для фонового потока)
+    private volatile long published; // Количество уведомлений, переданных получателю
+    private final LongAdder dropped = new LongAdder(); // Отброшенные уведомления
+    private final Overflow overflow; // Действие при переполнении
+    private final int batchSize; // Наибольший размер пакета
+    private final NotificationSink sink; // Получатель уведомлений
+    private final LongFunction<String> shortUrls; // Короткая ссылка по первичному ключу
+    private final Thread consumer; // Фоновый поток вывода
+    private volatile boolean running = true; // false после close
+
+    // Конструктор класса NotificationQueue. Емкость округляется вверх до степени двойки.
+    // Короткие ссылки уведомлений строит shortUrls в фоновом потоке
+    NotificationQueue(NotificationSink sink, LongFunction<String> shortUrls, int capacity, Overflow overflow, int batchSize) {
+        if (capacity <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Емкость очереди и размер пакета уведомлений должны быть положительными.");
+        }
+        int size = Integer.highestOneBit(Math.min(capacity, 1 << 30) * 2 - 1);
+        this.userIds = new UUID[size];
+        this.primaryKeys = new long[size];
+        this.reasons = new ClickStatus[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+        this.overflow = overflow;
+        this.batchSize = batchSize;
+        this.sink = sink;
+        this.shortUrls = shortUrls;
+        this.consumer = new Thread(this::drainLoop, "user-notifier");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    // Ставит уведомление в очередь. Возвращает false, если оно отброшено из-за переполнения или закрытия очереди
+    boolean offer(UUID userId, long primaryKey, ClickStatus reason) {
+        long position = tail.get();
+        while (true) {
+            if (!running) {
+                dropped.increment();
+                return false;
+            }
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // Ячейка еще не прочитана с прошлого круга: очередь заполнена
+                if (overflow == Overflow.DROP) {
+                    dropped.increment();
+                    return false;
+                }
+                LockSupport.unpark(consumer);
+                LockSupport.parkNanos(FULL_PARK_NANOS);
+                position = tail.get();
+            } else {
+                position = tail.get(); // Ячейку занял другой писатель
+            }
+        }
+        int index = (int) position & mask;
+        userIds[index] = userId;
+        primaryKeys[index] = primaryKey;
+        reasons[index] = reason;
+        sequences.lazySet(index, position + 1);
+        return true;
+    }
+
+    // Возвращает количество отброшенных уведомлений
+    long getDropped() {
+        return dropped.sum();
+    }
+
+    // Ждет, пока фоновый поток обработает уведомления, поставленные до вызова (не дольше timeoutMillis)
+    void flush(long timeoutMillis) {
+        long target = tail.get();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (published < target && consumer.isAlive() && System.nanoTime() < deadline) {
+            LockSupport.unpark(consumer);
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+        }
+    }
+
+    // Останавливает прием уведомлений, выводит оставшиеся и закрывает получателя
+    void close() {
+        running = false;
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            sink.close();
+        } catch (IOException e) {
+            System.out.println("Ошибка при закрытии получателя уведомлений: " + e.getMessage());
+        }
+    }
+
+    // Цикл фонового потока: забирает уведомления пакетами, пока очередь не закрыта и не опустела
+    private void drainLoop() {
+        List<Notification> batch = new ArrayList<>(batchSize);
+        while (true) {
+            // Флаг читается до выборки, поэтому после закрытия очередь выбирается до конца. Уведомления,
+            // которые писатели ставят одновременно с закрытием, могут не попасть к получателю
+            boolean closing = !running;
+            drain(batch);
+            if (batch.isEmpty()) {
+                if (closing) {
+                    return;
+                }
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                continue;
+            }
+            try {
+                sink.publish(batch);
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Ошибка при выводе уведомлений: " + e.getMessage());
+            }
+            published = head;
+            batch.clear();
+        }
+    }
+
+    // Переносит из очереди в пакет до batchSize заполненных ячеек подряд
+    private void drain(List<Notification> batch) {
+        long position = head;
+        while (batch.size() < batchSize) {
+            int index = (int) position & mask;
+            if (sequences.get(index) != position + 1) {
+                break; // Ячейка пуста или писатель еще не закончил запись
+            }
+            long primaryKey = primaryKeys[index];
+            String shortUrl = primaryKey == ShortCodeCodec.INVALID ? null : shortUrls.apply(primaryKey);
+            batch.add(new Notification(userIds[index], primaryKey, shortUrl, reasons[index]));
+            userIds[index] = null;
+            sequences.lazySet(index, position + mask + 1);
+            position++;
+        }
+        head = position;
+    }
+}
@@ -0,0 +1,65 @@
+package main.java.com.linkshortener;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+
+//Получатель уведомлений пользователей. Вызывается только фоновым потоком очереди уведомлений,
+//пакетами по несколько уведомлений, поэтому реализация может не быть потокобезопасной.
+public interface NotificationSink {
+
+    // Обрабатывает пакет уведомлений в порядке их появления
+    void publish(List<Notification> notifications) throws IOException;
+
+    // Освобождает ресурсы получателя. Вызывается после обработки последнего пакета
+    default void close() throws IOException {
+    }
+
+    // Выводит уведомления в консоль (System.out на момент вывода): пакет печатается одной записью
+    static NotificationSink console() {
+        return notifications -> {
+            StringBuilder text = new StringBuilder(notifications.size() * 80);
+            for (Notification notification : notifications) {
+                text.append(notification).append(System.lineSeparator());
+            }
+            PrintStream out = System.out;
+            out.print(text);
+            out.flush();
+        };
+    }
+
+    // Дописывает уведомления в файл, по строке на уведомление: UUID, короткая ссылка, причина, текст
+    // (через табуляцию). Файл сбрасывается на диск после каждого пакета
+    static NotificationSink file(Path path) throws IOException {
+        BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+        return new NotificationSink() {
+            @Override
+            public void publish(List<Notification> notifications) throws IOException {
+                for (Notification notification : notifications) {
+                    String shortUrl = notification.getShortUrl();
+                    writer.write(notification.getUserId() + "\t" + (shortUrl != null ? shortUrl : "-") + "\t"
+                            + notification.getReason() + "\t" + notification.getMessage());
+                    writer.newLine();
+                }
+                writer.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                writer.close();
+            }
+        };
+    }
+
+    // Передает каждое уведомление обработчику (например, для встраивания сервиса в другое приложение)
+    static NotificationSink callback(Consumer<Notification> handler) {
+        return notifications -> notifications.forEach(handler);
+    }
+}
@@ -0,0 +1,277 @@
+package main.java.com.linkshortener;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Реплика (replication.role=follower): фоновый поток подключается к ведущему узлу, получает снимок и затем пакеты
+//журнала репликации и применяет их к хранилищу своего UrlShortener (записи каждого пакета - подряд одним потоком).
+//При обрыве соединения поток подключается заново и получает снимок, после которого ссылки, которых в снимке нет,
+//удаляются. Лимит переходов на реплике соблюдается через квоты ведущего узла (LeaderClickCounter).
+final class ReplicationFollower implements Closeable {
+
+    // Пауза перед повторным подключением к ведущему узлу
+    private static final long RECONNECT_MILLIS = 1_000;
+
+    //Получатель записей снимка и пакетов (журнал реплики в UrlShortener)
+    interface Target extends LinkJournal {
+
+        // Начинается снимок: дальше придут все пользователи и ссылки ведущего узла
+        void snapshotStarted();
+
+        // Снимок закончен: ссылки, которых не было в снимке, удаляются
+        void snapshotFinished();
+    }
+
+    private final InetSocketAddress leader; // Адрес сервера репликации ведущего узла
+    private final Target target; // Журнал реплики
+    private final ShardClient grants; // Соединения для запросов квот
+    private final long quotaBatch; // Размер запрашиваемой квоты переходов
+    private final Thread thread; // Поток приема и применения изменений
+    private volatile Socket socket; // Текущее соединение потока изменений
+    private volatile boolean closed; // true после close
+
+    private volatile boolean synced; // Снимок получен хотя бы раз
+    private volatile long appliedPosition; // Позиция журнала ведущего узла после последнего примененного пакета
+    private volatile long leaderPosition; // Последняя известная позиция журнала ведущего узла
+    private volatile long lagMillis; // Время от закрытия последнего пакета на ведущем узле до его применения
+
+    // Конструктор класса ReplicationFollower. Поток запускается методом start
+    ReplicationFollower(InetSocketAddress leader, Target target, long quotaBatch) {
+        if (quotaBatch <= 0) {
+            throw new IllegalArgumentException("Размер квоты переходов должен быть положительным числом.");
+        }
+        this.leader = leader;
+        this.target = target;
+        this.grants = new ShardClient(leader);
+        this.quotaBatch = quotaBatch;
+        this.thread = new Thread(this::run, "replication-follower");
+        thread.setDaemon(true);
+    }
+
+    // Разбирает адрес ведущего узла вида host:port
+    static InetSocketAddress parseAddress(String address) {
+        int colon = address.lastIndexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("Адрес ведущего узла должен иметь вид host:port: " + address + ".");
+        }
+        try {
+            return new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Неверный порт ведущего узла: " + address + ".");
+        }
+    }
+
+    // Запускает прием изменений
+    void start() {
+        thread.start();
+    }
+
+    // Возвращает счетчик переходов ссылки, который берет квоты у ведущего узла
+    ClickCounter clickCounter(long primaryKey) {
+        return new LeaderClickCounter(primaryKey);
+    }
+
+    // Возвращает true, если снимок ведущего узла получен хотя бы раз
+    boolean isSynced() {
+        return synced;
+    }
+
+    // Возвращает позицию журнала ведущего узла, до которой применены изменения
+    long getAppliedPosition() {
+        return appliedPosition;
+    }
+
+    // Возвращает отставание в байтах журнала от последней известной позиции ведущего узла
+    long getLagBytes() {
+        return Math.max(0, leaderPosition - appliedPosition);
+    }
+
+    // Возвращает время от закрытия последнего примененного пакета на ведущем узле до его применения
+    // (0, если с последним сигналом ведущего узла реплика догнала его)
+    long getLagMillis() {
+        return lagMillis;
+    }
+
+    // Останавливает прием изменений и закрывает соединения
+    @Override
+    public void close() {
+        closed = true;
+        Socket current = socket;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                // Соединение уже закрыто
+            }
+        }
+        thread.interrupt();
+        grants.close();
+    }
+
+    // Цикл потока: подключение, снимок, пакеты; при обрыве - повторное подключение
+    private void run() {
+        boolean connected = true;
+        while (!closed) {
+            try (Socket connection = new Socket()) {
+                socket = connection;
+                connection.setTcpNoDelay(true);
+                connection.connect(leader, 5_000);
+                connected = true;
+                follow(connection);
+            } catch (IOException | RuntimeException e) {
+                if (!closed && connected) {
+                    String reason = e instanceof EOFException ? "ведущий узел закрыл соединение" : e.getMessage();
+                    System.out.println("Соединение реплики с ведущим узлом " + leader + " потеряно: " + reason);
+                }
+                connected = false;
+            }
+            if (closed) {
+                return;
+            }
+            try {
+                Thread.sleep(RECONNECT_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // Подписывается на изменения и применяет кадры, пока соединение открыто
+    private void follow(Socket connection) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(connection.getInputStream(), 64 * 1024));
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+        output.writeByte(ReplicationProtocol.SUBSCRIBE);
+        output.flush();
+        byte[] records = new byte[64 * 1024];
+        byte[] scratch = new byte[256];
+        target.snapshotStarted();
+        while (!closed) {
+            byte frame = input.readByte();
+            switch (frame) {
+                case ReplicationProtocol.SNAPSHOT_RECORDS: {
+                    int length = input.readInt();
+                    records = read(input, records, length);
+                    scratch = WriteAheadLog.replayFrame(ByteBuffer.wrap(records, 0, length), target, scratch);
+                    break;
+                }
+                case ReplicationProtocol.SNAPSHOT_END: {
+                    long position = input.readLong();
+                    target.snapshotFinished();
+                    appliedPosition = position;
+                    leaderPosition = position;
+                    synced = true;
+                    break;
+                }
+                case ReplicationProtocol.BATCH: {
+                    long start = input.readLong();
+                    long position = input.readLong();
+                    long sealedMillis = input.readLong();
+                    int length = input.readInt();
+                    records = read(input, records, length);
+                    scratch = WriteAheadLog.replayFrame(ByteBuffer.wrap(records, 0, length), target, scratch);
+                    appliedPosition = start + length;
+                    leaderPosition = Math.max(position, appliedPosition);
+                    lagMillis = Math.max(0, System.currentTimeMillis() - sealedMillis);
+                    break;
+                }
+                case ReplicationProtocol.HEARTBEAT:
+                    leaderPosition = Math.max(input.readLong(), appliedPosition);
+                    if (leaderPosition == appliedPosition) {
+                        lagMillis = 0;
+                    }
+                    break;
+                default:
+                    throw new IOException("Неизвестный кадр репликации: " + frame + ".");
+            }
+        }
+    }
+
+    // Читает length байт в буфер (увеличивая его при необходимости) и возвращает буфер
+    private static byte[] read(DataInputStream input, byte[] buffer, int length) throws IOException {
+        if (length < 0) {
+            throw new IOException("Неверная длина кадра репликации: " + length + ".");
+        }
+        if (length > buffer.length) {
+            buffer = new byte[Math.max(length, buffer.length * 2)];
+        }
+        input.readFully(buffer, 0, length);
+        return buffer;
+    }
+
+    //Счетчик переходов ссылки на реплике. Переходы расходуют квоту, выделенную ведущим узлом: ведущий узел
+    //сразу учитывает всю квоту в своем счетчике, поэтому реплики вместе не превысят лимит. Квота запрашивается
+    //по replication.quota.batch переходов; если ведущий узел выделил меньше, лимит исчерпан и новых квот не будет.
+    //Неизрасходованный остаток квоты не возвращается (изменение лимита на ведущем узле сбрасывает его счетчик,
+    //и возврат старой квоты уменьшил бы новый), поэтому при вытеснении счетчика реплика недосчитывает переходы,
+    //но никогда не превышает лимит. Если ведущий узел недоступен, запрос квоты бросает UncheckedIOException.
+    private final class LeaderClickCounter implements ClickCounter {
+        private final long primaryKey; // Первичный ключ ссылки
+        private final AtomicLong budget = new AtomicLong(); // Остаток квоты
+        private volatile boolean exhausted; // Ведущий узел выделил меньше запрошенного
+
+        LeaderClickCounter(long primaryKey) {
+            this.primaryKey = primaryKey;
+        }
+
+        @Override
+        public ClickStatus tryClick() {
+            while (true) {
+                long remaining = budget.get();
+                if (remaining > 0) {
+                    if (budget.compareAndSet(remaining, remaining - 1)) {
+                        return exhausted && remaining == 1 ? ClickStatus.ACCEPTED_LAST : ClickStatus.ACCEPTED;
+                    }
+                    continue;
+                }
+                if (exhausted) {
+                    return ClickStatus.LIMIT_EXHAUSTED;
+                }
+                synchronized (this) {
+                    // Квоту мог получить другой поток, пока этот ждал монитора
+                    if (budget.get() > 0 || exhausted) {
+                        continue;
+                    }
+                    long reservation = reserve(quotaBatch);
+                    if (reservation < 0) {
+                        return ClickStatus.NOT_FOUND;
+                    }
+                    long granted = ClickWord.clicks(reservation);
+                    if (granted < quotaBatch) {
+                        exhausted = true;
+                    }
+                    budget.addAndGet(granted);
+                }
+            }
+        }
+
+        // Переходы по ссылке реплика знает из журнала ведущего узла (хранилище), а не из счетчика квот
+        @Override
+        public long getClicks() {
+            return -1;
+        }
+
+        // Ведущий узел возвращает размер квоты; поколения у квот нет, так как они не возвращаются
+        @Override
+        public long reserve(long requested) {
+            long granted = grants.call(ReplicationProtocol.GRANT_CLICKS, output -> {
+                output.writeLong(primaryKey);
+                output.writeLong(requested);
+            }, DataInputStream::readLong);
+            return granted < 0 ? granted : ClickWord.of(0, granted);
+        }
+
+        @Override
+        public void release(long reservation) {
+            // Квоты не возвращаются (см. описание класса)
+        }
+    }
+}
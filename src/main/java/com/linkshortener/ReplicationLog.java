@@ -0,0 +1,217 @@
+package main.java.com.linkshortener;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+//Журнал изменений ведущего узла для реплик. Передает каждое изменение основному журналу (на диск или LinkJournal.NONE)
+//и копирует его в буфер в памяти в формате WriteAheadLog. Буфер закрывается в пакет, когда заполнен или когда
+//реплика ждет новых записей дольше replication.batch.millis; пакеты хранятся, пока их общий размер не превысит
+//replication.log.bytes. Позиция - количество байт записей, добавленных с запуска; реплика читает пакеты по порядку
+//с позиции, на которой остановилась. Реплика, отставшая дальше хранимых пакетов, получает снимок заново.
+//Запись перехода фиксированного размера и не создает объектов (кроме закрытия пакета).
+final class ReplicationLog implements LinkJournal {
+
+    // Размер буфера, который закрывается в один пакет
+    private static final int BATCH_BYTES = 64 * 1024;
+
+    //Закрытый пакет записей
+    static final class Batch {
+        final long start; // Позиция первой записи
+        final long end; // Позиция после последней записи
+        final long sealedMillis; // Время закрытия пакета
+        final byte[] records; // Записи в формате WriteAheadLog
+
+        Batch(long start, byte[] records, long sealedMillis) {
+            this.start = start;
+            this.end = start + records.length;
+            this.records = records;
+            this.sealedMillis = sealedMillis;
+        }
+    }
+
+    private final LinkJournal delegate; // Основной журнал
+    private final long retainedLimit; // Наибольший общий размер хранимых пакетов
+    private final long batchNanos; // Сколько реплика ждет заполнения пакета
+
+    private final ReentrantLock lock = new ReentrantLock(); // Блокировка буфера и пакетов
+    private final Condition changed = lock.newCondition(); // Сигнал о первой записи буфера и о новом пакете
+    private final ByteBuffer active = ByteBuffer.allocate(BATCH_BYTES); // Буфер незакрытого пакета
+    private final ArrayDeque<Batch> batches = new ArrayDeque<>(); // Хранимые пакеты по порядку
+    private long activeStart; // Позиция первой записи буфера
+    private long retainedBytes; // Общий размер хранимых пакетов
+
+    // Конструктор класса ReplicationLog
+    ReplicationLog(LinkJournal delegate, long retainedLimit, long batchMillis) {
+        this.delegate = delegate;
+        this.retainedLimit = Math.max(retainedLimit, BATCH_BYTES);
+        this.batchNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, batchMillis));
+    }
+
+    @Override
+    public void userCreated(UUID userId) {
+        delegate.userCreated(userId);
+        lock.lock();
+        try {
+            WriteAheadLog.putUserCreated(reserve(WriteAheadLog.USER_CREATED_SIZE), userId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void linkCreated(long primaryKey, UrlData urlData) {
+        delegate.linkCreated(primaryKey, urlData);
+        byte[] longUrl = urlData.getLongUrl().getBytes(StandardCharsets.UTF_8);
+        int size = WriteAheadLog.LINK_CREATED_HEADER_SIZE + longUrl.length;
+        if (size > BATCH_BYTES) {
+            throw new IllegalArgumentException("Запись журнала длиннее буфера (" + size + " байт).");
+        }
+        lock.lock();
+        try {
+            WriteAheadLog.putLinkCreated(reserve(size), primaryKey, urlData, longUrl);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clicked(long primaryKey, long clicks) {
+        delegate.clicked(primaryKey, clicks);
+        lock.lock();
+        try {
+            WriteAheadLog.putClicked(reserve(WriteAheadLog.CLICKED_SIZE), primaryKey, clicks);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clickLimitUpdated(long primaryKey, long clickLimit) {
+        delegate.clickLimitUpdated(primaryKey, clickLimit);
+        lock.lock();
+        try {
+            WriteAheadLog.putClickLimitUpdated(reserve(WriteAheadLog.CLICK_LIMIT_UPDATED_SIZE), primaryKey, clickLimit);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void linkRemoved(long primaryKey) {
+        delegate.linkRemoved(primaryKey);
+        lock.lock();
+        try {
+            WriteAheadLog.putLinkRemoved(reserve(WriteAheadLog.LINK_REMOVED_SIZE), primaryKey);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Реплики не подтверждают записи: sync ждет только основной журнал
+    @Override
+    public void sync() {
+        delegate.sync();
+    }
+
+    // Закрывает буфер в пакет и возвращает позицию после всех добавленных записей. С этой позиции реплика
+    // читает изменения, которые могли не попасть в снимок, снятый после вызова
+    long sealPosition() {
+        lock.lock();
+        try {
+            seal();
+            return activeStart;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Возвращает позицию после всех добавленных записей
+    long getPosition() {
+        lock.lock();
+        try {
+            return activeStart + active.position();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Возвращает пакет, который начинается с позиции position. Если новых записей нет, ждет до timeoutMillis;
+    // если записи есть, но пакет не заполнен, закрывает его не позже чем через replication.batch.millis.
+    // Возвращает null, если за время ожидания записей не появилось. Бросает IllegalStateException,
+    // если пакет с этой позицией уже не хранится (реплика отстала)
+    Batch next(long position, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        lock.lock();
+        try {
+            while (true) {
+                Batch first = batches.peekFirst();
+                long retainedStart = first != null ? first.start : activeStart;
+                if (position < retainedStart) {
+                    throw new IllegalStateException("Реплика отстала: позиция " + position
+                            + " уже вытеснена из журнала репликации (хранится с " + retainedStart + ").");
+                }
+                if (position < activeStart) {
+                    // Пакеты идут подряд, поэтому нужный находится перебором с конца (реплика обычно близко к концу)
+                    Iterator<Batch> iterator = batches.descendingIterator();
+                    while (iterator.hasNext()) {
+                        Batch batch = iterator.next();
+                        if (batch.start == position) {
+                            return batch;
+                        }
+                    }
+                    throw new IllegalStateException("Позиция " + position + " не совпадает с началом пакета.");
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return null;
+                }
+                if (active.position() > 0) {
+                    // Записи есть: даем пакету заполниться, но не дольше batch.millis
+                    changed.awaitNanos(Math.min(remaining, batchNanos));
+                    if (activeStart == position && active.position() > 0) {
+                        seal();
+                    }
+                } else {
+                    changed.awaitNanos(remaining);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Возвращает буфер, в котором есть место для записи указанного размера. Вызывается под блокировкой
+    private ByteBuffer reserve(int size) {
+        if (active.remaining() < size) {
+            seal();
+        }
+        if (active.position() == 0) {
+            // Первая запись пакета будит реплики, которые ждут записей; остальные записи их не беспокоят
+            changed.signalAll();
+        }
+        return active;
+    }
+
+    // Закрывает буфер в пакет, вытесняет старые пакеты сверх предела и будит реплики. Вызывается под блокировкой
+    private void seal() {
+        if (active.position() == 0) {
+            return;
+        }
+        Batch batch = new Batch(activeStart, Arrays.copyOf(active.array(), active.position()), System.currentTimeMillis());
+        active.clear();
+        activeStart = batch.end;
+        batches.addLast(batch);
+        retainedBytes += batch.records.length;
+        while (retainedBytes > retainedLimit) {
+            retainedBytes -= batches.removeFirst().records.length;
+        }
+        changed.signalAll();
+    }
+}
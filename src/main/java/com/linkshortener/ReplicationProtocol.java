@@ -0,0 +1,24 @@
+package main.java.com.linkshortener;
+
+//Протокол между ведущим узлом и репликами поверх TCP. Запрос GRANT_CLICKS выполняется как запросы шардов
+//(ShardProtocol: байт состояния и результат), поэтому реплика отправляет его через ShardClient.
+//После SUBSCRIBE соединение переходит в поток кадров от ведущего узла: сначала снимок (пользователи и ссылки
+//в формате WriteAheadLog) и SNAPSHOT_END, затем пакеты журнала репликации и сигналы HEARTBEAT, когда изменений нет.
+final class ReplicationProtocol {
+
+    // Запросы реплики
+    static final byte SUBSCRIBE = 1; // -> поток кадров
+    static final byte GRANT_CLICKS = 2; // primaryKey long, requested long -> выделено long (-1 - ссылки нет)
+
+    // Кадры потока
+    static final byte SNAPSHOT_RECORDS = 1; // длина int, записи
+    static final byte SNAPSHOT_END = 2; // позиция журнала long, с которой идут пакеты
+    static final byte BATCH = 3; // начало long, позиция ведущего long, время закрытия long, длина int, записи
+    static final byte HEARTBEAT = 4; // позиция ведущего long
+
+    // Как часто ведущий узел подтверждает позицию, если изменений нет
+    static final long HEARTBEAT_MILLIS = 1_000;
+
+    private ReplicationProtocol() {
+    }
+}
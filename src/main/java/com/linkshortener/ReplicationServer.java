@@ -0,0 +1,223 @@
+package main.java.com.linkshortener;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+//Сервер репликации ведущего узла (replication.role=leader): отдает репликам снимок и поток изменений
+//из ReplicationLog и выделяет им квоты переходов (GRANT_CLICKS) по протоколу ReplicationProtocol.
+//Каждое соединение обслуживается отдельным потоком.
+public class ReplicationServer {
+
+    // Размер кадра снимка
+    private static final int SNAPSHOT_FRAME_BYTES = 64 * 1024;
+
+    private final UrlShortener urlShortener; // Сервис ведущего узла
+    private final ReplicationLog log; // Журнал репликации сервиса
+    private final ServerSocket serverSocket; // Прием соединений
+    private final ExecutorService executor; // Потоки соединений
+    private final Thread acceptor; // Поток приема соединений (не фоновый: держит процесс, пока сервер не остановлен)
+    private volatile boolean running = true; // false после stop
+
+    // Конструктор класса ReplicationServer. Порт 0 означает любой свободный порт
+    public ReplicationServer(UrlShortener urlShortener, int port) throws IOException {
+        this.urlShortener = urlShortener;
+        this.log = urlShortener.getReplicationLog();
+        this.serverSocket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "replication-connection");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.acceptor = new Thread(this::acceptLoop, "replication-acceptor");
+    }
+
+    // Запускает прием соединений
+    public void start() {
+        acceptor.start();
+    }
+
+    // Останавливает прием соединений и закрывает открытые соединения
+    public void stop() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            System.out.println("Ошибка при закрытии сервера репликации: " + e.getMessage());
+        }
+        executor.shutdownNow();
+    }
+
+    // Возвращает порт, на котором работает сервер
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    // Принимает соединения, пока сервер не остановлен
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                executor.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (running) {
+                    System.out.println("Ошибка при приеме соединения реплики: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Выполняет запросы соединения, пока его не закроет реплика
+    private void serve(Socket socket) {
+        try (Socket connection = socket;
+             DataInputStream input = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()))) {
+            while (running) {
+                int operation = input.read();
+                if (operation < 0) {
+                    return;
+                }
+                if (operation == ReplicationProtocol.SUBSCRIBE) {
+                    stream(output);
+                    return;
+                }
+                if (operation != ReplicationProtocol.GRANT_CLICKS) {
+                    throw new IOException("Неизвестный запрос реплики: " + operation + ".");
+                }
+                long primaryKey = input.readLong();
+                long requested = input.readLong();
+                try {
+                    long granted = urlShortener.grantClicks(primaryKey, requested);
+                    output.writeByte(ShardProtocol.STATUS_OK);
+                    output.writeLong(granted);
+                } catch (RuntimeException e) {
+                    output.writeByte(ShardProtocol.STATUS_FAILED);
+                    ShardProtocol.writeString(output, String.valueOf(e.getMessage()));
+                }
+                output.flush();
+            }
+        } catch (EOFException | SocketException e) {
+            // Реплика отключилась; при повторном подключении она получит снимок или продолжит с новой квотой
+        } catch (IOException e) {
+            if (running) {
+                System.out.println("Ошибка соединения реплики: " + e.getMessage());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Передает реплике снимок и затем поток изменений. Позиция журнала фиксируется до снимка, поэтому изменения,
+    // сделанные во время обхода, придут пакетами после снимка; применять записи повторно безопасно
+    private void stream(DataOutputStream output) throws IOException, InterruptedException {
+        long position = log.sealPosition();
+        SnapshotWriter snapshot = new SnapshotWriter(output);
+        try {
+            urlShortener.replicateState(snapshot);
+        } catch (SnapshotFailure e) {
+            throw e.getCause();
+        }
+        snapshot.flushFrame();
+        output.writeByte(ReplicationProtocol.SNAPSHOT_END);
+        output.writeLong(position);
+        output.flush();
+        while (running) {
+            ReplicationLog.Batch batch;
+            try {
+                batch = log.next(position, ReplicationProtocol.HEARTBEAT_MILLIS);
+            } catch (IllegalStateException e) {
+                // Реплика отстала дальше хранимых пакетов: закрываем соединение, при повторном подключении - снимок
+                System.out.println(e.getMessage());
+                return;
+            }
+            if (batch == null) {
+                output.writeByte(ReplicationProtocol.HEARTBEAT);
+                output.writeLong(log.getPosition());
+            } else {
+                output.writeByte(ReplicationProtocol.BATCH);
+                output.writeLong(batch.start);
+                output.writeLong(log.getPosition());
+                output.writeLong(batch.sealedMillis);
+                output.writeInt(batch.records.length);
+                output.write(batch.records);
+                position = batch.end;
+            }
+            output.flush();
+        }
+    }
+
+    //Ошибка записи снимка в соединение (LinkJournal не объявляет IOException)
+    private static final class SnapshotFailure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        SnapshotFailure(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+
+    //Запись снимка кадрами SNAPSHOT_RECORDS в формате WriteAheadLog
+    private static final class SnapshotWriter implements LinkJournal {
+        private final DataOutputStream output;
+        private final ByteBuffer frame = ByteBuffer.allocate(SNAPSHOT_FRAME_BYTES);
+
+        SnapshotWriter(DataOutputStream output) {
+            this.output = output;
+        }
+
+        @Override
+        public void userCreated(UUID userId) {
+            WriteAheadLog.putUserCreated(reserve(WriteAheadLog.USER_CREATED_SIZE), userId);
+        }
+
+        @Override
+        public void linkCreated(long primaryKey, UrlData urlData) {
+            byte[] longUrl = urlData.getLongUrl().getBytes(StandardCharsets.UTF_8);
+            WriteAheadLog.putLinkCreated(reserve(WriteAheadLog.LINK_CREATED_HEADER_SIZE + longUrl.length),
+                    primaryKey, urlData, longUrl);
+        }
+
+        // Возвращает буфер кадра, в котором есть место для записи, отправив заполненный кадр
+        private ByteBuffer reserve(int size) {
+            if (size > frame.capacity()) {
+                throw new IllegalArgumentException("Запись снимка длиннее кадра (" + size + " байт).");
+            }
+            if (frame.remaining() < size) {
+                try {
+                    flushFrame();
+                } catch (IOException e) {
+                    throw new SnapshotFailure(e);
+                }
+            }
+            return frame;
+        }
+
+        // Отправляет накопленные записи кадром
+        void flushFrame() throws IOException {
+            if (frame.position() == 0) {
+                return;
+            }
+            output.writeByte(ReplicationProtocol.SNAPSHOT_RECORDS);
+            output.writeInt(frame.position());
+            output.write(frame.array(), 0, frame.position());
+            frame.clear();
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package main.java.com.linkshortener;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+//Метрики сервиса: гистограммы задержек операций, счетчики исходов переходов и показатели (размер хранилища,
+//очередь истечения, память). Запись не создает объектов и не захватывает блокировок. Метрики доступны через JMX
+//(MBean com.linkshortener:type=ServiceMetrics, атрибуты - плоские имена вида restore.p99Micros) и в текстовом
+//формате Prometheus (writePrometheus), который отдает HTTP-сервер.
+public final class ServiceMetrics implements DynamicMBean {
+
+    //Измеряемые операции
+    public enum Operation {
+        CREATE, // Создание ссылки
+        RESTORE, // Переход по ссылке
+        DELETE, // Удаление ссылки
+        UPDATE_CLICK_LIMIT, // Изменение лимита переходов
+        CLEANUP; // Проход фоновой очистки
+
+        // Имя операции в метриках
+        String metricName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    // Перцентили, которые выводятся для каждой операции
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    // Номер следующего экземпляра для имени MBean (в одной JVM может работать несколько сервисов)
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    //Показатель, значение которого читается при выводе метрик
+    private static final class Gauge {
+        final String name; // Имя в Prometheus
+        final String help; // Описание
+        final LongSupplier value; // Источник значения
+
+        Gauge(String name, String help, LongSupplier value) {
+            this.name = name;
+            this.help = help;
+            this.value = value;
+        }
+    }
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Operation.values().length]; // Задержки операций
+    private final LongAdder[] clickOutcomes = new LongAdder[ClickStatus.values().length]; // Исходы переходов
+    private final List<Gauge> gauges = new ArrayList<>(); // Показатели
+    private volatile ObjectName objectName; // Имя зарегистрированного MBean (null, если не зарегистрирован)
+
+    // Конструктор класса ServiceMetrics
+    public ServiceMetrics() {
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+        for (int i = 0; i < clickOutcomes.length; i++) {
+            clickOutcomes[i] = new LongAdder();
+        }
+        addGauge("jvm_heap_used_bytes", "Занятая память кучи", () -> ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+        addGauge("jvm_heap_max_bytes", "Наибольший размер кучи", () -> {
+            MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+            return heap.getMax() >= 0 ? heap.getMax() : heap.getCommitted();
+        });
+    }
+
+    // Добавляет показатель. Вызывается до регистрации в JMX
+    public void addGauge(String name, String help, LongSupplier value) {
+        gauges.add(new Gauge(name, help, value));
+    }
+
+    // Записывает длительность операции, начатой в startNanos (System.nanoTime)
+    public void recordLatency(Operation operation, long startNanos) {
+        latencies[operation.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+    // Учитывает исход перехода
+    public void recordClick(ClickStatus status) {
+        clickOutcomes[status.ordinal()].increment();
+    }
+
+    // Возвращает копию гистограммы задержек операции
+    public LatencyHistogram.Snapshot getLatency(Operation operation) {
+        return latencies[operation.ordinal()].snapshot();
+    }
+
+    // Возвращает количество переходов с указанным исходом
+    public long getClickCount(ClickStatus status) {
+        return clickOutcomes[status.ordinal()].sum();
+    }
+
+    // Регистрирует метрики в JMX
+    public void registerMBean() {
+        try {
+            ObjectName name = new ObjectName("com.linkshortener:type=ServiceMetrics,id=" + INSTANCES.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            objectName = name;
+        } catch (Exception e) {
+            System.out.println("Не удалось зарегистрировать метрики в JMX: " + e.getMessage());
+        }
+    }
+
+    // Снимает регистрацию метрик в JMX
+    public void unregisterMBean() {
+        ObjectName name = objectName;
+        if (name == null) {
+            return;
+        }
+        objectName = null;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (Exception e) {
+            // MBean уже снят
+        }
+    }
+
+    // Выводит метрики в текстовом формате Prometheus
+    public void writePrometheus(StringBuilder output) {
+        output.append("# HELP linkshortener_operation_duration_seconds Длительность операций сервиса\n");
+        output.append("# TYPE linkshortener_operation_duration_seconds summary\n");
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram.Snapshot snapshot = getLatency(operation);
+            String label = "operation=\"" + operation.metricName() + "\"";
+            for (double percentile : PERCENTILES) {
+                output.append("linkshortener_operation_duration_seconds{").append(label)
+                        .append(",quantile=\"").append(formatNumber(percentile / 100)).append("\"} ")
+                        .append(formatNumber(snapshot.getValueAtPercentile(percentile) / 1e9)).append('\n');
+            }
+            output.append("linkshortener_operation_duration_seconds_sum{").append(label).append("} ")
+                    .append(formatNumber(snapshot.getSum() / 1e9)).append('\n');
+            output.append("linkshortener_operation_duration_seconds_count{").append(label).append("} ")
+                    .append(snapshot.getCount()).append('\n');
+        }
+        output.append("# HELP linkshortener_clicks_total Переходы по исходу\n");
+        output.append("# TYPE linkshortener_clicks_total counter\n");
+        for (ClickStatus status : ClickStatus.values()) {
+            output.append("linkshortener_clicks_total{outcome=\"").append(status.name().toLowerCase(Locale.ROOT)).append("\"} ")
+                    .append(getClickCount(status)).append('\n');
+        }
+        for (Gauge gauge : gauges) {
+            String name = gauge.name.startsWith("jvm_") ? gauge.name : "linkshortener_" + gauge.name;
+            output.append("# HELP ").append(name).append(' ').append(gauge.help).append('\n');
+            output.append("# TYPE ").append(name).append(" gauge\n");
+            output.append(name).append(' ').append(gauge.value.getAsLong()).append('\n');
+        }
+    }
+
+    // Возвращает текущие значения метрик для JMX: имя атрибута -> значение
+    private Map<String, Object> attributes() {
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram.Snapshot snapshot = getLatency(operation);
+            String prefix = toCamelCase(operation.metricName());
+            attributes.put(prefix + ".count", snapshot.getCount());
+            attributes.put(prefix + ".meanMicros", snapshot.getMean() / 1000);
+            for (double percentile : PERCENTILES) {
+                attributes.put(prefix + ".p" + formatNumber(percentile).replace(".", "") + "Micros",
+                        snapshot.getValueAtPercentile(percentile) / 1000.0);
+            }
+            attributes.put(prefix + ".maxMicros", snapshot.getMax() / 1000.0);
+        }
+        for (ClickStatus status : ClickStatus.values()) {
+            attributes.put("clicks." + toCamelCase(status.name().toLowerCase(Locale.ROOT)), getClickCount(status));
+        }
+        for (Gauge gauge : gauges) {
+            attributes.put(toCamelCase(gauge.name), gauge.value.getAsLong());
+        }
+        return attributes;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Object value = attributes().get(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value;
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] names) {
+        Map<String, Object> attributes = attributes();
+        AttributeList list = new AttributeList();
+        for (String name : names) {
+            if (attributes.containsKey(name)) {
+                list.add(new Attribute(name, attributes.get(name)));
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) {
+        throw new UnsupportedOperationException("Метрики доступны только для чтения.");
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) {
+        throw new UnsupportedOperationException("Операции не поддерживаются.");
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        Map<String, Object> attributes = attributes();
+        MBeanAttributeInfo[] infos = new MBeanAttributeInfo[attributes.size()];
+        int i = 0;
+        for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+            infos[i++] = new MBeanAttributeInfo(entry.getKey(), entry.getValue().getClass().getName(),
+                    entry.getKey(), true, false, false);
+        }
+        return new MBeanInfo(getClass().getName(), "Метрики сервиса сокращения ссылок", infos, null, null, null);
+    }
+
+    // Переводит имя вида update_click_limit в updateClickLimit
+    private static String toCamelCase(String name) {
+        StringBuilder result = new StringBuilder(name.length());
+        boolean upper = false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '_') {
+                upper = true;
+            } else {
+                result.append(upper ? Character.toUpperCase(c) : c);
+                upper = false;
+            }
+        }
+        return result.toString();
+    }
+
+    // Форматирует число без лишних нулей и без экспоненты для небольших значений
+    private static String formatNumber(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return String.format(Locale.ROOT, "%.9f", value).replaceAll("0+$", "");
+    }
+}
@@ -0,0 +1,128 @@
+package main.java.com.linkshortener;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+//Клиент одного шарда (и запросов квот реплики к ведущему узлу): пул соединений по протоколу ShardProtocol. Поток берет свободное соединение
+//(или открывает новое), выполняет запрос и возвращает соединение в пул; соединение с ошибкой закрывается.
+final class ShardClient implements Closeable {
+
+    // Наибольшее количество свободных соединений в пуле
+    private static final int MAX_IDLE_CONNECTIONS = 64;
+
+    // Время ожидания подключения и ответа шарда
+    private static final int CONNECT_TIMEOUT_MILLIS = 5_000;
+    private static final int READ_TIMEOUT_MILLIS = 60_000;
+
+    //Запись полей запроса
+    interface RequestWriter {
+        void write(DataOutputStream output) throws IOException;
+    }
+
+    //Чтение результата при STATUS_OK
+    interface ResponseReader<T> {
+        T read(DataInputStream input) throws IOException;
+    }
+
+    //Соединение с шардом
+    private static final class Connection {
+        final Socket socket;
+        final DataInputStream input;
+        final DataOutputStream output;
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Соединение уже закрыто шардом
+            }
+        }
+    }
+
+    private final InetSocketAddress address; // Адрес шарда
+    private final ConcurrentLinkedQueue<Connection> idle = new ConcurrentLinkedQueue<>(); // Свободные соединения
+    private volatile boolean closed; // true после close
+
+    // Конструктор класса ShardClient. Соединения открываются при первых запросах
+    ShardClient(InetSocketAddress address) {
+        this.address = address;
+    }
+
+    // Возвращает адрес шарда
+    InetSocketAddress getAddress() {
+        return address;
+    }
+
+    // Выполняет запрос operation и возвращает результат. Отказ шарда (STATUS_REJECTED) становится
+    // IllegalArgumentException, ошибка шарда - IllegalStateException, сбой соединения - UncheckedIOException
+    <T> T call(byte operation, RequestWriter request, ResponseReader<T> response) {
+        if (closed) {
+            throw new IllegalStateException("Клиент шарда " + address + " закрыт.");
+        }
+        Connection connection = idle.poll();
+        try {
+            if (connection == null) {
+                Socket socket = new Socket();
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(READ_TIMEOUT_MILLIS);
+                socket.connect(address, CONNECT_TIMEOUT_MILLIS);
+                connection = new Connection(socket);
+            }
+            connection.output.writeByte(operation);
+            request.write(connection.output);
+            connection.output.flush();
+            byte status = connection.input.readByte();
+            T result;
+            if (status == ShardProtocol.STATUS_OK) {
+                result = response.read(connection.input);
+            } else {
+                String message = ShardProtocol.readString(connection.input);
+                release(connection);
+                if (status == ShardProtocol.STATUS_REJECTED) {
+                    throw new IllegalArgumentException(message);
+                }
+                throw new IllegalStateException("Ошибка шарда " + address + ": " + message);
+            }
+            release(connection);
+            return result;
+        } catch (IOException e) {
+            if (connection != null) {
+                connection.close();
+            }
+            throw new UncheckedIOException("Шард " + address + " недоступен.", e);
+        }
+    }
+
+    // Возвращает соединение в пул или закрывает его, если пул заполнен или клиент закрыт
+    private void release(Connection connection) {
+        if (closed || idle.size() >= MAX_IDLE_CONNECTIONS) {
+            connection.close();
+        } else {
+            idle.offer(connection);
+        }
+    }
+
+    // Закрывает свободные соединения; занятые закрываются по завершении запросов
+    @Override
+    public void close() {
+        closed = true;
+        Connection connection;
+        while ((connection = idle.poll()) != null) {
+            connection.close();
+        }
+    }
+}
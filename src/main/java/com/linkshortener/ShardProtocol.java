@@ -0,0 +1,98 @@
+package main.java.com.linkshortener;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.UUID;
+
+//Двоичный протокол между маршрутизатором и шардами поверх TCP на локальном интерфейсе.
+//Запрос: байт операции и ее поля; ответ: байт состояния и, при STATUS_OK, результат. Числа - в порядке big-endian
+//(DataOutputStream), строки - длина int и байты UTF-8, идентификаторы - два long. Соединение держит
+//последовательность запросов: следующий запрос отправляется после чтения ответа на предыдущий.
+final class ShardProtocol {
+
+    // Операции
+    static final byte REGISTER_USER = 1; // uuid -> boolean
+    static final byte CREATE_LINK = 2; // uuid, longUrl, clickLimit long, lifetimeSeconds int -> shortUrl
+    static final byte RESTORE = 3; // uuid, shortUrl -> boolean (найден) [, longUrl]
+    static final byte DELETE_LINK = 4; // uuid, shortUrl -> boolean
+    static final byte UPDATE_CLICK_LIMIT = 5; // uuid, shortUrl, clickLimit int -> boolean
+    static final byte LIST_USERS = 6; // -> количество int, uuid...
+    static final byte EXPORT_SLOT = 7; // slot int -> количество int, ссылка...
+    static final byte IMPORT_LINKS = 8; // количество int, ссылка... -> добавлено int
+    static final byte REMOVE_SLOT = 9; // slot int -> удалено int
+    static final byte LINK_COUNT = 10; // -> количество ссылок long
+
+    // Состояния ответа
+    static final byte STATUS_OK = 0; // Результат следует за состоянием
+    static final byte STATUS_REJECTED = 1; // Запрос отклонен (IllegalArgumentException), следует сообщение
+    static final byte STATUS_FAILED = 2; // Ошибка шарда, следует сообщение
+
+    private ShardProtocol() {
+    }
+
+    // Записывает строку: длина в байтах и байты UTF-8
+    static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    // Читает строку, записанную writeString
+    static String readString(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0) {
+            throw new IOException("Неверная длина строки в запросе: " + length + ".");
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Записывает идентификатор
+    static void writeUuid(DataOutputStream output, UUID value) throws IOException {
+        output.writeLong(value.getMostSignificantBits());
+        output.writeLong(value.getLeastSignificantBits());
+    }
+
+    // Читает идентификатор
+    static UUID readUuid(DataInputStream input) throws IOException {
+        return new UUID(input.readLong(), input.readLong());
+    }
+
+    // Записывает ссылку со всеми полями (как запись о создании в журнале)
+    static void writeLink(DataOutputStream output, long primaryKey, UrlData urlData) throws IOException {
+        output.writeLong(primaryKey);
+        writeUuid(output, urlData.getUserId());
+        output.writeLong(urlData.getClickLimit());
+        output.writeLong(urlData.getClicks());
+        output.writeLong(urlData.getCreationTime().toEpochMilli());
+        output.writeInt(urlData.getLifetimeSeconds());
+        writeString(output, urlData.getLongUrl());
+    }
+
+    //Ссылка, прочитанная из потока
+    static final class Link {
+        final long primaryKey;
+        final UrlData urlData;
+
+        Link(long primaryKey, UrlData urlData) {
+            this.primaryKey = primaryKey;
+            this.urlData = urlData;
+        }
+    }
+
+    // Читает ссылку, записанную writeLink
+    static Link readLink(DataInputStream input) throws IOException {
+        long primaryKey = input.readLong();
+        UUID userId = readUuid(input);
+        long clickLimit = input.readLong();
+        long clicks = input.readLong();
+        Instant creationTime = Instant.ofEpochMilli(input.readLong());
+        int lifetimeSeconds = input.readInt();
+        String longUrl = readString(input);
+        return new Link(primaryKey, new UrlData(longUrl, userId, clickLimit, clicks, creationTime, lifetimeSeconds));
+    }
+}
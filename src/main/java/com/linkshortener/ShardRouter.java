@@ -0,0 +1,280 @@
+package main.java.com.linkshortener;
+
+import java.io.Closeable;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+//Маршрутизатор шардированного режима: принимает те же вызовы, что и UrlShortener, и передает каждый шарду,
+//которому принадлежит слот ссылки (ShardSlots): при создании - слот владельца, при переходе, удалении
+//и изменении лимита - слот из кода (код расшифровывается ключом ids.code.key, общим для всех шардов).
+//Таблица слотов хранится в маршрутизаторе; на кластер нужен один маршрутизатор. Пользователи создаются
+//на всех шардах, ссылки - только на шарде своего слота; истечение ссылок каждый шард обрабатывает сам.
+//Добавленный шард получает слоты у самых загруженных шардов: слот переносится целиком вместе со счетчиками
+//переходов, коды его ссылок не меняются. На время переноса запросы к слоту ждут, запросы к остальным слотам идут.
+public class ShardRouter implements Closeable {
+
+    private final ShortCodeCipher codeCipher; // Расшифровка кодов (общий ключ шардов)
+    private final List<ShardClient> shards = new CopyOnWriteArrayList<>(); // Шарды в порядке добавления
+    private final List<ShardClient> pendingShards = new CopyOnWriteArrayList<>(); // Шарды, на которые копируются пользователи
+    private final AtomicIntegerArray slotOwners = new AtomicIntegerArray(ShardSlots.SLOTS); // Номер шарда слота
+    private final ReentrantReadWriteLock[] slotLocks = new ReentrantReadWriteLock[ShardSlots.SLOTS]; // Запросы и перенос слота
+
+    // Конструктор класса ShardRouter. Слоты раздаются шардам по кругу: слот s - шарду s % количество шардов
+    public ShardRouter(Config config, List<InetSocketAddress> shardAddresses) {
+        this(config, shardAddresses, null);
+    }
+
+    // Конструктор класса ShardRouter с сохраненной таблицей слотов (getSlotTable после переноса слотов)
+    public ShardRouter(Config config, List<InetSocketAddress> shardAddresses, int[] slotTable) {
+        if (shardAddresses.isEmpty() || shardAddresses.size() > ShardSlots.SLOTS) {
+            throw new IllegalArgumentException("Количество шардов должно быть от 1 до " + ShardSlots.SLOTS + ".");
+        }
+        if (slotTable != null && slotTable.length != ShardSlots.SLOTS) {
+            throw new IllegalArgumentException("Таблица слотов должна содержать " + ShardSlots.SLOTS + " номеров шардов.");
+        }
+        this.codeCipher = new ShortCodeCipher(config.getShortCodeKey());
+        for (InetSocketAddress address : shardAddresses) {
+            shards.add(new ShardClient(address));
+        }
+        for (int slot = 0; slot < ShardSlots.SLOTS; slot++) {
+            int owner = slotTable == null ? slot % shards.size() : slotTable[slot];
+            if (owner < 0 || owner >= shards.size()) {
+                throw new IllegalArgumentException("Слот " + slot + " назначен несуществующему шарду " + owner + ".");
+            }
+            slotOwners.set(slot, owner);
+            slotLocks[slot] = new ReentrantReadWriteLock();
+        }
+    }
+
+    // Создает пользователя на всех шардах, включая добавляемый
+    public UUID createUser() {
+        UUID userId = UUID.randomUUID();
+        List<ShardClient> registered = new ArrayList<>(shards);
+        for (ShardClient shard : registered) {
+            registerUser(shard, userId);
+        }
+        // Добавляемый шард мог получить список пользователей до регистрации на шарде 0, поэтому после нее
+        // пользователь регистрируется и на нем. Ожидающие шарды читаются раньше шардов: шард сначала попадает
+        // в shards и только потом удаляется из pendingShards, так что хотя бы в одном списке он будет
+        List<ShardClient> current = new ArrayList<>(pendingShards);
+        current.addAll(shards);
+        for (ShardClient shard : current) {
+            if (!registered.contains(shard)) {
+                registerUser(shard, userId);
+                registered.add(shard);
+            }
+        }
+        return userId;
+    }
+
+    // Создает короткую ссылку на шарде слота пользователя
+    public String buildShortUrl(UUID userId, String longUrl, long customClickLimit, int lifetimeSeconds) {
+        int slot = ShardSlots.slotOf(userId);
+        slotLocks[slot].readLock().lock();
+        try {
+            return owner(slot).call(ShardProtocol.CREATE_LINK, output -> {
+                ShardProtocol.writeUuid(output, userId);
+                ShardProtocol.writeString(output, longUrl);
+                output.writeLong(customClickLimit);
+                output.writeInt(lifetimeSeconds);
+            }, ShardProtocol::readString);
+        } finally {
+            slotLocks[slot].readLock().unlock();
+        }
+    }
+
+    // Восстанавливает оригинальный URL на шарде слота ссылки. Возвращает null, если переход не принят
+    public String restoreLongUrl(UUID userId, String shortUrl) {
+        long primaryKey = decodeShortUrl(shortUrl);
+        if (primaryKey == ShortCodeCodec.INVALID) {
+            return null;
+        }
+        int slot = ShardSlots.slotOfKey(primaryKey);
+        slotLocks[slot].readLock().lock();
+        try {
+            return owner(slot).call(ShardProtocol.RESTORE, output -> {
+                ShardProtocol.writeUuid(output, userId);
+                ShardProtocol.writeString(output, shortUrl);
+            }, input -> input.readBoolean() ? ShardProtocol.readString(input) : null);
+        } finally {
+            slotLocks[slot].readLock().unlock();
+        }
+    }
+
+    // Удаляет короткую ссылку на шарде слота ссылки, если она принадлежит пользователю
+    public boolean deleteLink(UUID userId, String shortUrl) {
+        long primaryKey = decodeShortUrl(shortUrl);
+        if (primaryKey == ShortCodeCodec.INVALID) {
+            return false;
+        }
+        int slot = ShardSlots.slotOfKey(primaryKey);
+        slotLocks[slot].readLock().lock();
+        try {
+            return owner(slot).call(ShardProtocol.DELETE_LINK, output -> {
+                ShardProtocol.writeUuid(output, userId);
+                ShardProtocol.writeString(output, shortUrl);
+            }, input -> input.readBoolean());
+        } finally {
+            slotLocks[slot].readLock().unlock();
+        }
+    }
+
+    // Изменяет лимит переходов ссылки на шарде слота ссылки
+    public boolean updateClickLimit(UUID userId, String shortUrl, int newClickLimit) {
+        long primaryKey = decodeShortUrl(shortUrl);
+        if (primaryKey == ShortCodeCodec.INVALID) {
+            return false;
+        }
+        int slot = ShardSlots.slotOfKey(primaryKey);
+        slotLocks[slot].readLock().lock();
+        try {
+            return owner(slot).call(ShardProtocol.UPDATE_CLICK_LIMIT, output -> {
+                ShardProtocol.writeUuid(output, userId);
+                ShardProtocol.writeString(output, shortUrl);
+                output.writeInt(newClickLimit);
+            }, input -> input.readBoolean());
+        } finally {
+            slotLocks[slot].readLock().unlock();
+        }
+    }
+
+    // Добавляет шард и переносит на него слоты с самых загруженных шардов, пока слоты не распределятся
+    // поровну (с точностью до одного). Пользователи копируются на новый шард до переноса; пользователей,
+    // созданных во время копирования, createUser регистрирует на нем сам.
+    // Возвращает количество перенесенных слотов
+    public int addShard(InetSocketAddress address) {
+        if (shards.size() == ShardSlots.SLOTS) {
+            throw new IllegalStateException("Количество шардов не может превышать " + ShardSlots.SLOTS + ".");
+        }
+        ShardClient shard = new ShardClient(address);
+        // Шард становится ожидающим до чтения списка пользователей, чтобы createUser не пропустил его
+        pendingShards.add(shard);
+        try {
+            List<UUID> users = shards.get(0).call(ShardProtocol.LIST_USERS, output -> { }, input -> {
+                int count = input.readInt();
+                List<UUID> result = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    result.add(ShardProtocol.readUuid(input));
+                }
+                return result;
+            });
+            for (UUID userId : users) {
+                registerUser(shard, userId);
+            }
+            shards.add(shard);
+        } finally {
+            pendingShards.remove(shard);
+        }
+        int target = shards.size() - 1;
+        int moved = 0;
+        while (true) {
+            int[] slotCounts = new int[shards.size()];
+            for (int slot = 0; slot < ShardSlots.SLOTS; slot++) {
+                slotCounts[slotOwners.get(slot)]++;
+            }
+            int busiest = 0;
+            for (int i = 1; i < slotCounts.length; i++) {
+                if (slotCounts[i] > slotCounts[busiest]) {
+                    busiest = i;
+                }
+            }
+            if (slotCounts[busiest] - slotCounts[target] <= 1) {
+                return moved;
+            }
+            for (int slot = ShardSlots.SLOTS - 1; slot >= 0; slot--) {
+                if (slotOwners.get(slot) == busiest) {
+                    moveSlot(slot, target);
+                    moved++;
+                    break;
+                }
+            }
+        }
+    }
+
+    // Переносит слот на шард с номером target: ссылки слота копируются на новый шард, слот переключается
+    // на него, и только затем ссылки удаляются со старого шарда. Запросы к слоту на это время ждут
+    public void moveSlot(int slot, int target) {
+        if (target < 0 || target >= shards.size()) {
+            throw new IllegalArgumentException("Шарда с номером " + target + " нет.");
+        }
+        slotLocks[slot].writeLock().lock();
+        try {
+            int source = slotOwners.get(slot);
+            if (source == target) {
+                return;
+            }
+            List<ShardProtocol.Link> links = shards.get(source).call(ShardProtocol.EXPORT_SLOT,
+                    output -> output.writeInt(slot), input -> {
+                        int count = input.readInt();
+                        List<ShardProtocol.Link> result = new ArrayList<>(count);
+                        for (int i = 0; i < count; i++) {
+                            result.add(ShardProtocol.readLink(input));
+                        }
+                        return result;
+                    });
+            shards.get(target).call(ShardProtocol.IMPORT_LINKS, output -> {
+                output.writeInt(links.size());
+                for (ShardProtocol.Link link : links) {
+                    ShardProtocol.writeLink(output, link.primaryKey, link.urlData);
+                }
+            }, input -> input.readInt());
+            slotOwners.set(slot, target);
+            // Если удаление не удалось, копии слота на старом шарде недостижимы для запросов и удалятся по истечении
+            shards.get(source).call(ShardProtocol.REMOVE_SLOT, output -> output.writeInt(slot), input -> input.readInt());
+        } finally {
+            slotLocks[slot].writeLock().unlock();
+        }
+    }
+
+    // Возвращает таблицу слотов: номер шарда (в порядке добавления) для каждого слота
+    public int[] getSlotTable() {
+        int[] table = new int[ShardSlots.SLOTS];
+        for (int slot = 0; slot < table.length; slot++) {
+            table[slot] = slotOwners.get(slot);
+        }
+        return table;
+    }
+
+    // Возвращает адреса шардов в порядке добавления
+    public List<InetSocketAddress> getShardAddresses() {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (ShardClient shard : shards) {
+            addresses.add(shard.getAddress());
+        }
+        return addresses;
+    }
+
+    // Возвращает количество ссылок на шарде с номером shard
+    public long getLinkCount(int shard) {
+        return shards.get(shard).call(ShardProtocol.LINK_COUNT, output -> { }, input -> input.readLong());
+    }
+
+    // Закрывает соединения с шардами
+    @Override
+    public void close() {
+        for (ShardClient shard : shards) {
+            shard.close();
+        }
+    }
+
+    // Возвращает клиент шарда, которому принадлежит слот. Вызывается под блокировкой слота
+    private ShardClient owner(int slot) {
+        return shards.get(slotOwners.get(slot));
+    }
+
+    // Создает пользователя на шарде
+    private static void registerUser(ShardClient shard, UUID userId) {
+        shard.call(ShardProtocol.REGISTER_USER, output -> ShardProtocol.writeUuid(output, userId), input -> input.readBoolean());
+    }
+
+    // Возвращает первичный ключ по короткой ссылке (с префиксом или без него) или ShortCodeCodec.INVALID
+    private long decodeShortUrl(String shortUrl) {
+        int offset = shortUrl.startsWith(UrlShortener.SHORT_URL_PREFIX) ? UrlShortener.SHORT_URL_PREFIX.length() : 0;
+        return codeCipher.decrypt(ShortCodeCodec.decode(shortUrl, offset, shortUrl.length() - offset));
+    }
+}
@@ -0,0 +1,234 @@
+package main.java.com.linkshortener;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+//Сервер шарда: принимает запросы маршрутизатора (ShardRouter) по двоичному протоколу ShardProtocol на локальном
+//интерфейсе и выполняет их на своем UrlShortener, запущенном с shard.enabled=true. Каждое соединение
+//обслуживается отдельным потоком и выполняет запросы по очереди; маршрутизатор держит несколько соединений.
+public class ShardServer {
+
+    private final UrlShortener urlShortener; // Сервис шарда
+    private final ServerSocket serverSocket; // Прием соединений
+    private final ExecutorService executor; // Потоки соединений
+    private final Thread acceptor; // Поток приема соединений (не фоновый: держит процесс шарда, пока сервер не остановлен)
+    private volatile boolean running = true; // false после stop
+
+    // Конструктор класса ShardServer. Порт 0 означает любой свободный порт
+    public ShardServer(UrlShortener urlShortener, int port) throws IOException {
+        this.urlShortener = urlShortener;
+        this.serverSocket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "shard-connection");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.acceptor = new Thread(this::acceptLoop, "shard-acceptor");
+    }
+
+    // Запускает прием соединений
+    public void start() {
+        acceptor.start();
+    }
+
+    // Останавливает прием соединений и закрывает открытые соединения
+    public void stop() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            System.out.println("Ошибка при закрытии сервера шарда: " + e.getMessage());
+        }
+        executor.shutdownNow();
+    }
+
+    // Возвращает порт, на котором работает сервер
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    // Принимает соединения, пока сервер не остановлен
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                executor.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (running) {
+                    System.out.println("Ошибка при приеме соединения шарда: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Выполняет запросы соединения, пока его не закроет маршрутизатор
+    private void serve(Socket socket) {
+        try (Socket connection = socket;
+             DataInputStream input = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()))) {
+            while (running) {
+                int operation = input.read();
+                if (operation < 0) {
+                    return;
+                }
+                handle((byte) operation, input, output);
+                output.flush();
+            }
+        } catch (EOFException | SocketException e) {
+            // Соединение закрыто посреди запроса: маршрутизатор повторит запрос по другому соединению
+        } catch (IOException e) {
+            if (running) {
+                System.out.println("Ошибка соединения шарда: " + e.getMessage());
+            }
+        }
+    }
+
+    // Читает поля запроса, выполняет его и пишет ответ. Отказы сервиса передаются маршрутизатору сообщением
+    private void handle(byte operation, DataInputStream input, DataOutputStream output) throws IOException {
+        Request request = readRequest(operation, input);
+        try {
+            Object result = request.execute();
+            output.writeByte(ShardProtocol.STATUS_OK);
+            writeResult(operation, result, output);
+        } catch (IllegalArgumentException e) {
+            output.writeByte(ShardProtocol.STATUS_REJECTED);
+            ShardProtocol.writeString(output, String.valueOf(e.getMessage()));
+        } catch (RuntimeException e) {
+            output.writeByte(ShardProtocol.STATUS_FAILED);
+            ShardProtocol.writeString(output, String.valueOf(e.getMessage()));
+        }
+    }
+
+    //Прочитанный запрос, готовый к выполнению
+    private interface Request {
+        Object execute();
+    }
+
+    // Читает поля запроса целиком до выполнения, чтобы отказ не оставил в соединении непрочитанные байты
+    private Request readRequest(byte operation, DataInputStream input) throws IOException {
+        switch (operation) {
+            case ShardProtocol.REGISTER_USER: {
+                UUID userId = ShardProtocol.readUuid(input);
+                return () -> urlShortener.registerUser(userId);
+            }
+            case ShardProtocol.CREATE_LINK: {
+                UUID userId = ShardProtocol.readUuid(input);
+                String longUrl = ShardProtocol.readString(input);
+                long clickLimit = input.readLong();
+                int lifetimeSeconds = input.readInt();
+                return () -> urlShortener.buildShortUrl(userId, longUrl, clickLimit, lifetimeSeconds);
+            }
+            case ShardProtocol.RESTORE: {
+                UUID userId = ShardProtocol.readUuid(input);
+                String shortUrl = ShardProtocol.readString(input);
+                return () -> urlShortener.restoreLongUrl(userId, shortUrl);
+            }
+            case ShardProtocol.DELETE_LINK: {
+                UUID userId = ShardProtocol.readUuid(input);
+                String shortUrl = ShardProtocol.readString(input);
+                return () -> urlShortener.deleteLink(userId, shortUrl);
+            }
+            case ShardProtocol.UPDATE_CLICK_LIMIT: {
+                UUID userId = ShardProtocol.readUuid(input);
+                String shortUrl = ShardProtocol.readString(input);
+                int clickLimit = input.readInt();
+                return () -> urlShortener.updateClickLimit(userId, shortUrl, clickLimit);
+            }
+            case ShardProtocol.LIST_USERS:
+                return () -> new ArrayList<>(urlShortener.getAllUsers().keySet());
+            case ShardProtocol.EXPORT_SLOT: {
+                int slot = input.readInt();
+                return () -> {
+                    List<ShardProtocol.Link> links = new ArrayList<>();
+                    urlShortener.exportSlot(slot, (primaryKey, urlData) -> links.add(new ShardProtocol.Link(primaryKey, urlData)));
+                    return links;
+                };
+            }
+            case ShardProtocol.IMPORT_LINKS: {
+                int count = input.readInt();
+                List<ShardProtocol.Link> links = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    links.add(ShardProtocol.readLink(input));
+                }
+                return () -> {
+                    int imported = 0;
+                    for (ShardProtocol.Link link : links) {
+                        if (urlShortener.importLink(link.primaryKey, link.urlData)) {
+                            imported++;
+                        }
+                    }
+                    return imported;
+                };
+            }
+            case ShardProtocol.REMOVE_SLOT: {
+                int slot = input.readInt();
+                return () -> urlShortener.removeSlot(slot);
+            }
+            case ShardProtocol.LINK_COUNT:
+                return urlShortener::getLinkCount;
+            default:
+                // Границу следующего запроса найти нельзя, поэтому соединение закрывается
+                throw new IOException("Неизвестная операция шарда: " + operation + ".");
+        }
+    }
+
+    // Пишет результат операции
+    @SuppressWarnings("unchecked")
+    private static void writeResult(byte operation, Object result, DataOutputStream output) throws IOException {
+        switch (operation) {
+            case ShardProtocol.REGISTER_USER:
+            case ShardProtocol.DELETE_LINK:
+            case ShardProtocol.UPDATE_CLICK_LIMIT:
+                output.writeBoolean((Boolean) result);
+                break;
+            case ShardProtocol.CREATE_LINK:
+                ShardProtocol.writeString(output, (String) result);
+                break;
+            case ShardProtocol.RESTORE:
+                output.writeBoolean(result != null);
+                if (result != null) {
+                    ShardProtocol.writeString(output, (String) result);
+                }
+                break;
+            case ShardProtocol.LIST_USERS: {
+                List<UUID> users = (List<UUID>) result;
+                output.writeInt(users.size());
+                for (UUID userId : users) {
+                    ShardProtocol.writeUuid(output, userId);
+                }
+                break;
+            }
+            case ShardProtocol.EXPORT_SLOT: {
+                List<ShardProtocol.Link> links = (List<ShardProtocol.Link>) result;
+                output.writeInt(links.size());
+                for (ShardProtocol.Link link : links) {
+                    ShardProtocol.writeLink(output, link.primaryKey, link.urlData);
+                }
+                break;
+            }
+            case ShardProtocol.IMPORT_LINKS:
+            case ShardProtocol.REMOVE_SLOT:
+                output.writeInt((Integer) result);
+                break;
+            case ShardProtocol.LINK_COUNT:
+                output.writeLong((Long) result);
+                break;
+            default:
+                break;
+        }
+    }
+}
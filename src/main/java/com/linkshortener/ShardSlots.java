@@ -0,0 +1,39 @@
+package main.java.com.linkshortener;
+
+import java.util.UUID;
+
+//Слоты шардирования. В шардированном режиме (shard.enabled) младшие SLOT_BITS бит первичного ключа - номер слота,
+//остальные - порядковый номер из пространства ключей шарда: ключ = номер << SLOT_BITS | слот. Слот ссылки
+//определяется ее владельцем (все ссылки пользователя в одном слоте), поэтому маршрутизатор находит шард
+//и по пользователю при создании, и по коду при переходе, а ссылки пользователя живут на одном шарде.
+//Слоты, а не шарды, закреплены в кодах: при добавлении шарда слоты переносятся целиком, коды не меняются.
+public final class ShardSlots {
+
+    // Разрядность номера слота и количество слотов (наибольшее количество шардов)
+    public static final int SLOT_BITS = 8;
+    public static final int SLOTS = 1 << SLOT_BITS;
+
+    private ShardSlots() {
+    }
+
+    // Возвращает слот ссылок пользователя
+    public static int slotOf(UUID userId) {
+        long h = (userId.getMostSignificantBits() ^ userId.getLeastSignificantBits()) * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> (Long.SIZE - SLOT_BITS));
+    }
+
+    // Возвращает слот первичного ключа
+    public static int slotOfKey(long primaryKey) {
+        return (int) primaryKey & (SLOTS - 1);
+    }
+
+    // Возвращает порядковый номер первичного ключа в пространстве ключей шарда
+    static long sequenceOf(long primaryKey) {
+        return primaryKey >>> SLOT_BITS;
+    }
+
+    // Собирает первичный ключ из порядкового номера и слота
+    static long compose(long sequence, int slot) {
+        return sequence << SLOT_BITS | slot;
+    }
+}
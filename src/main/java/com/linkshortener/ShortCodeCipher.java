@@ -0,0 +1,148 @@
+package main.java.com.linkshortener;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+//Обратимая перестановка первичных ключей с секретным ключом: короткий код строится не из первичного ключа,
+//а из его образа, поэтому соседние ссылки получают несвязанные коды и коды нельзя перебирать подряд.
+//Перестановка - сеть Фейстеля из 4 раундов с обходом цикла (cycle walking) внутри диапазона значений одной длины
+//кода: [0, 62^6) для 6 символов, [62^(L-1), 62^L) для L символов. Поэтому код остается той же длины, что и без
+//перестановки, разные ключи дают разные коды, а ключ восстанавливается из кода за O(1) (в среднем меньше
+//полутора проходов сети). Значения от 62^10 (коды из 11 символов) не переставляются.
+//С нулевым ключом перестановка тождественная (коды как у первичных ключей).
+//Снимок и журнал хранят отпечаток ключа (fingerprint), чтобы смена ключа не переназначила молча выданные коды.
+final class ShortCodeCipher {
+
+    // Количество раундов сети Фейстеля
+    private static final int ROUNDS = 4;
+
+    // Наибольшая длина кода, значения которой переставляются
+    private static final int MAX_PERMUTED_LENGTH = ShortCodeCodec.MAX_LENGTH - 1;
+
+    // Тождественная перестановка
+    static final ShortCodeCipher IDENTITY = new ShortCodeCipher(0);
+
+    //Диапазон значений кодов одной длины и сеть Фейстеля над ним
+    private static final class Band {
+        final long low; // Наименьшее значение
+        final long size; // Количество значений
+        final int halfBits; // Разрядность половины блока сети (блок не меньше size)
+        final long halfMask; // Маска половины блока
+
+        Band(long low, long size) {
+            this.low = low;
+            this.size = size;
+            int bits = 64 - Long.numberOfLeadingZeros(size - 1);
+            this.halfBits = (bits + 1) / 2;
+            this.halfMask = (1L << halfBits) - 1;
+        }
+    }
+
+    private final long[] roundKeys = new long[ROUNDS]; // Ключи раундов
+    private final Band[] bands = new Band[MAX_PERMUTED_LENGTH + 1]; // Диапазоны по длине кода
+    private final boolean identity; // Перестановка отключена
+
+    // Конструктор класса ShortCodeCipher
+    ShortCodeCipher(long key) {
+        this.identity = key == 0;
+        long state = key;
+        for (int i = 0; i < ROUNDS; i++) {
+            state += 0x9E3779B97F4A7C15L;
+            roundKeys[i] = mix(state);
+        }
+        long power = 1;
+        for (int i = 1; i < ShortCodeCodec.MIN_LENGTH; i++) {
+            power *= 62;
+        }
+        for (int length = ShortCodeCodec.MIN_LENGTH; length <= MAX_PERMUTED_LENGTH; length++) {
+            long next = power * 62;
+            bands[length] = length == ShortCodeCodec.MIN_LENGTH ? new Band(0, next) : new Band(power, next - power);
+            power = next;
+        }
+    }
+
+    // Возвращает значение кода для первичного ключа
+    long encrypt(long primaryKey) {
+        Band band = bandOf(primaryKey);
+        if (band == null) {
+            return primaryKey;
+        }
+        long value = primaryKey - band.low;
+        do {
+            value = forward(band, value);
+        } while (value >= band.size);
+        return band.low + value;
+    }
+
+    // Возвращает первичный ключ по значению кода (ShortCodeCodec.INVALID остается INVALID)
+    long decrypt(long code) {
+        Band band = bandOf(code);
+        if (band == null) {
+            return code;
+        }
+        long value = code - band.low;
+        do {
+            value = backward(band, value);
+        } while (value >= band.size);
+        return band.low + value;
+    }
+
+    // Возвращает отпечаток ключа: первые 8 байт SHA-256, по которым ключ нельзя восстановить
+    static long fingerprint(long key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update("ids.code.key".getBytes(StandardCharsets.US_ASCII));
+            digest.update(ByteBuffer.allocate(8).putLong(key).array());
+            return ByteBuffer.wrap(digest.digest()).getLong();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен.", e); // Обязателен для любой реализации Java
+        }
+    }
+
+    // Диапазон значения или null, если значение не переставляется
+    private Band bandOf(long value) {
+        if (identity || value < 0) {
+            return null;
+        }
+        int length = ShortCodeCodec.encodedLength(value);
+        return length <= MAX_PERMUTED_LENGTH ? bands[length] : null;
+    }
+
+    // Прямой проход сети Фейстеля
+    private long forward(Band band, long value) {
+        long left = value >>> band.halfBits;
+        long right = value & band.halfMask;
+        for (int round = 0; round < ROUNDS; round++) {
+            long next = left ^ (roundFunction(band, round, right) & band.halfMask);
+            left = right;
+            right = next;
+        }
+        return (left << band.halfBits) | right;
+    }
+
+    // Обратный проход сети Фейстеля
+    private long backward(Band band, long value) {
+        long left = value >>> band.halfBits;
+        long right = value & band.halfMask;
+        for (int round = ROUNDS - 1; round >= 0; round--) {
+            long previous = right ^ (roundFunction(band, round, left) & band.halfMask);
+            right = left;
+            left = previous;
+        }
+        return (left << band.halfBits) | right;
+    }
+
+    // Функция раунда: зависит от ключа раунда и диапазона, чтобы диапазоны переставлялись независимо
+    private long roundFunction(Band band, int round, long half) {
+        return mix(half ^ roundKeys[round] ^ (band.halfBits * 0xC2B2AE3D27D4EB4FL));
+    }
+
+    // Перемешивает биты значения (финализатор SplitMix64)
+    private static long mix(long value) {
+        long h = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+}
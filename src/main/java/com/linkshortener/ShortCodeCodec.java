@@ -0,0 +1,130 @@
+package main.java.com.linkshortener;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+//Кодек коротких кодов в base62. Кодирует неотрицательный long в код переменной длины (не короче MIN_LENGTH символов,
+//без обрезки, поэтому разные значения всегда дают разные коды) и декодирует код прямо из CharSequence
+//или ByteBuffer по смещению, не создавая промежуточных строк. Недопустимые коды отвергаются.
+public final class ShortCodeCodec {
+
+    // Алфавит для кодирования коротких ссылок
+    public static final String ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+
+    // Минимальная длина кода: короткие значения дополняются первым символом алфавита
+    public static final int MIN_LENGTH = 6;
+
+    // Максимальная длина кода (62^11 > Long.MAX_VALUE)
+    public static final int MAX_LENGTH = 11;
+
+    // Возвращается при разборе недопустимого кода
+    public static final long INVALID = -1L;
+
+    // Основание для кодирования (длина алфавита)
+    private static final int BASE = ALPHABET.length();
+
+    // Символы алфавита по значению цифры
+    private static final char[] DIGITS = ALPHABET.toCharArray();
+
+    // Обратная таблица: ASCII-символ -> значение цифры или -1
+    private static final byte[] REVERSE = new byte[128];
+
+    // Степени основания: POWERS[i] = 62^i - наименьшее значение кода из i + 1 символов (без дополнения)
+    private static final long[] POWERS = new long[MAX_LENGTH];
+
+    static {
+        Arrays.fill(REVERSE, (byte) -1);
+        for (int i = 0; i < DIGITS.length; i++) {
+            REVERSE[DIGITS[i]] = (byte) i;
+        }
+        POWERS[0] = 1;
+        for (int i = 1; i < MAX_LENGTH; i++) {
+            POWERS[i] = POWERS[i - 1] * BASE;
+        }
+    }
+
+    private ShortCodeCodec() {
+    }
+
+    // Кодирует значение в короткий код
+    public static String encode(long value) {
+        char[] buffer = new char[MAX_LENGTH];
+        int length = encodeTo(value, buffer, 0);
+        return new String(buffer, 0, length);
+    }
+
+    // Записывает код значения в массив по смещению и возвращает длину кода.
+    // В массиве должно быть не меньше MAX_LENGTH свободных символов
+    public static int encodeTo(long value, char[] destination, int offset) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Кодировать можно только неотрицательные значения.");
+        }
+        int length = encodedLength(value);
+        for (int i = offset + length - 1; i >= offset; i--) {
+            destination[i] = DIGITS[(int) (value % BASE)];
+            value /= BASE;
+        }
+        return length;
+    }
+
+    // Возвращает длину кода для значения. Длина находится сравнением со степенями основания, без деления
+    public static int encodedLength(long value) {
+        int length = MIN_LENGTH;
+        while (length < MAX_LENGTH && value >= POWERS[length]) {
+            length++;
+        }
+        return length;
+    }
+
+    // Декодирует код целиком
+    public static long decode(CharSequence code) {
+        return decode(code, 0, code.length());
+    }
+
+    // Декодирует код из части последовательности символов. Возвращает INVALID для недопустимого кода
+    public static long decode(CharSequence source, int offset, int length) {
+        if (length < MIN_LENGTH || length > MAX_LENGTH || offset < 0 || offset + length > source.length()) {
+            return INVALID;
+        }
+        long result = 0;
+        for (int i = offset; i < offset + length; i++) {
+            result = appendDigit(result, source.charAt(i));
+            if (result < 0) {
+                return INVALID;
+            }
+        }
+        return isCanonical(result, length) ? result : INVALID;
+    }
+
+    // Декодирует код из буфера ASCII-байтов по абсолютному смещению, не меняя позицию буфера
+    public static long decode(ByteBuffer source, int offset, int length) {
+        if (length < MIN_LENGTH || length > MAX_LENGTH || offset < 0 || offset + length > source.limit()) {
+            return INVALID;
+        }
+        long result = 0;
+        for (int i = offset; i < offset + length; i++) {
+            result = appendDigit(result, (char) (source.get(i) & 0xFF));
+            if (result < 0) {
+                return INVALID;
+            }
+        }
+        return isCanonical(result, length) ? result : INVALID;
+    }
+
+    // Добавляет к значению очередную цифру. Возвращает INVALID для чужого символа или переполнения
+    private static long appendDigit(long value, char character) {
+        if (character >= REVERSE.length || REVERSE[character] < 0) {
+            return INVALID;
+        }
+        int digit = REVERSE[character];
+        if (value > (Long.MAX_VALUE - digit) / BASE) {
+            return INVALID;
+        }
+        return value * BASE + digit;
+    }
+
+    // Проверяет, что код записан в единственной допустимой форме (без лишних ведущих нулевых символов)
+    private static boolean isCanonical(long value, int length) {
+        return encodedLength(value) == length;
+    }
+}
@@ -0,0 +1,265 @@
+package main.java.com.linkshortener;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+//Компактный снимок всех пользователей и ссылок. Пишется через FileChannel во временный файл,
+//который после fsync атомарно переименовывается, поэтому на диске никогда не бывает недописанного снимка.
+//Загружается через отображение файла в память.
+//Формат: заголовок [магическое число][версия][номер сегмента журнала][счетчик первичных ключей][отпечаток ids.code.key],
+//ссылки [ключ][номер владельца][лимит][переходы][время создания, мс][время жизни][длина URL][URL в UTF-8],
+//признак конца ссылок (ключ -1), таблица владельцев (UUID), и в конце файла
+//[смещение таблицы владельцев][количество владельцев][количество ссылок][магическое число].
+final class SnapshotFile {
+
+    // Магическое число снимка ("LSNP") и версия формата. Снимки версии 1 не хранят отпечаток ключа кодов
+    private static final int MAGIC = 0x4C534E50;
+    private static final int VERSION = 2;
+    private static final int VERSION_WITHOUT_FINGERPRINT = 1;
+
+    // Размеры заголовка (версий 2 и 1), окончания файла и заголовка записи ссылки
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8;
+    private static final int HEADER_SIZE_WITHOUT_FINGERPRINT = 4 + 4 + 8 + 8;
+    private static final int TRAILER_SIZE = 8 + 4 + 8 + 4;
+    private static final int LINK_HEADER_SIZE = 8 + 4 + 8 + 8 + 8 + 4 + 4;
+
+    // Признак конца списка ссылок
+    private static final long END_OF_LINKS = -1L;
+
+    // Размер буфера записи
+    private static final int WRITE_BUFFER_SIZE = 4 << 20;
+
+    private SnapshotFile() {
+    }
+
+    // Результат загрузки снимка
+    static final class Loaded {
+        final long segment; // Сегмент журнала, с которого нужно продолжить воспроизведение
+        final long primaryKeyCounter; // Счетчик первичных ключей на момент снимка
+        final long links; // Количество ссылок в снимке
+
+        Loaded(long segment, long primaryKeyCounter, long links) {
+            this.segment = segment;
+            this.primaryKeyCounter = primaryKeyCounter;
+            this.links = links;
+        }
+    }
+
+    // Возвращает путь к файлу снимка, после которого журнал продолжается с указанного сегмента
+    static Path snapshotFile(Path directory, long segment) {
+        return directory.resolve(String.format("snapshot-%016d.bin", segment));
+    }
+
+    // Возвращает номер сегмента по имени файла снимка или -1, если это не снимок
+    static long parseSegment(String fileName) {
+        if (!fileName.startsWith("snapshot-") || !fileName.endsWith(".bin")) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(fileName.substring(9, fileName.length() - 4));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // Пишет снимок хранилища и пользователей. Хранилище может меняться во время записи:
+    // изменения, попавшие в снимок частично, повторно применяются из журнала начиная с segment
+    static Path write(Path directory, long segment, long primaryKeyCounter, long codeKeyFingerprint,
+                      Iterable<UUID> userIds, LinkStore store) throws IOException {
+        Path target = snapshotFile(directory, segment);
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+        Map<UUID, Integer> ownerNumbers = new HashMap<>();
+        List<UUID> owners = new ArrayList<>();
+        for (UUID userId : userIds) {
+            ownerNumbers.put(userId, owners.size());
+            owners.add(userId);
+        }
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(segment).putLong(primaryKeyCounter).putLong(codeKeyFingerprint);
+            long[] linkCount = new long[1];
+            IOException[] error = new IOException[1];
+            store.forEach((primaryKey, urlData) -> {
+                if (error[0] != null) {
+                    return;
+                }
+                try {
+                    Integer owner = ownerNumbers.get(urlData.getUserId());
+                    if (owner == null) {
+                        // Пользователь создан уже после начала записи снимка
+                        owner = owners.size();
+                        ownerNumbers.put(urlData.getUserId(), owner);
+                        owners.add(urlData.getUserId());
+                    }
+                    byte[] longUrl = urlData.getLongUrl().getBytes(StandardCharsets.UTF_8);
+                    ensureSpace(channel, buffer, LINK_HEADER_SIZE);
+                    buffer.putLong(primaryKey)
+                            .putInt(owner)
+                            .putLong(urlData.getClickLimit())
+                            .putLong(urlData.getClicks())
+                            .putLong(urlData.getCreationTime().toEpochMilli())
+                            .putInt(urlData.getLifetimeSeconds())
+                            .putInt(longUrl.length);
+                    putBytes(channel, buffer, longUrl);
+                    linkCount[0]++;
+                } catch (IOException e) {
+                    error[0] = e;
+                }
+            });
+            if (error[0] != null) {
+                throw error[0];
+            }
+            ensureSpace(channel, buffer, 8);
+            buffer.putLong(END_OF_LINKS);
+            long ownersOffset = channel.position() + buffer.position();
+            for (UUID owner : owners) {
+                ensureSpace(channel, buffer, 16);
+                buffer.putLong(owner.getMostSignificantBits()).putLong(owner.getLeastSignificantBits());
+            }
+            ensureSpace(channel, buffer, TRAILER_SIZE);
+            buffer.putLong(ownersOffset).putInt(owners.size()).putLong(linkCount[0]).putInt(MAGIC);
+            drain(channel, buffer);
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+        LinkPersistence.syncDirectory(directory);
+        return target;
+    }
+
+    // Загружает снимок: сначала владельцев, затем ссылки. Снимок, записанный с другим ключом кодов, не загружается
+    static Loaded load(Path file, long codeKeyFingerprint, LinkJournal target) throws IOException {
+        try (MappedFileReader reader = new MappedFileReader(file)) {
+            long size = reader.size();
+            if (size < HEADER_SIZE_WITHOUT_FINGERPRINT + 8 + TRAILER_SIZE) {
+                throw new IOException("Снимок " + file + " поврежден.");
+            }
+            reader.seek(size - TRAILER_SIZE);
+            reader.ensure(TRAILER_SIZE);
+            ByteBuffer buffer = reader.buffer();
+            long ownersOffset = buffer.getLong();
+            int ownerCount = buffer.getInt();
+            long linkCount = buffer.getLong();
+            if (buffer.getInt() != MAGIC || ownersOffset < HEADER_SIZE_WITHOUT_FINGERPRINT || ownerCount < 0
+                    || ownersOffset + 16L * ownerCount != size - TRAILER_SIZE) {
+                throw new IOException("Снимок " + file + " поврежден.");
+            }
+
+            reader.seek(0);
+            reader.ensure(HEADER_SIZE_WITHOUT_FINGERPRINT);
+            buffer = reader.buffer();
+            int version = buffer.getInt() == MAGIC ? buffer.getInt() : -1;
+            if (version != VERSION && version != VERSION_WITHOUT_FINGERPRINT) {
+                throw new IOException("Неподдерживаемый формат снимка " + file + ".");
+            }
+            long segment = buffer.getLong();
+            long primaryKeyCounter = buffer.getLong();
+            int headerSize = HEADER_SIZE_WITHOUT_FINGERPRINT;
+            if (version == VERSION) {
+                headerSize = HEADER_SIZE;
+                if (ownersOffset < HEADER_SIZE || !reader.ensure(8)) {
+                    throw new IOException("Снимок " + file + " поврежден.");
+                }
+                if (reader.buffer().getLong() != codeKeyFingerprint) {
+                    throw new IOException("Снимок " + file + " записан с другим ключом ids.code.key: "
+                            + "с текущим ключом выданные коды указывали бы на другие ссылки.");
+                }
+            }
+
+            UUID[] owners = new UUID[ownerCount];
+            reader.seek(ownersOffset);
+            for (int i = 0; i < ownerCount; i++) {
+                reader.ensure(16);
+                buffer = reader.buffer();
+                owners[i] = new UUID(buffer.getLong(), buffer.getLong());
+                target.userCreated(owners[i]);
+            }
+
+            reader.seek(headerSize);
+            byte[] scratch = new byte[256];
+            long loaded = 0;
+            while (true) {
+                if (!reader.ensure(8)) {
+                    throw new IOException("Снимок " + file + " поврежден.");
+                }
+                buffer = reader.buffer();
+                long primaryKey = buffer.getLong();
+                if (primaryKey == END_OF_LINKS) {
+                    break;
+                }
+                if (!reader.ensure(LINK_HEADER_SIZE - 8)) {
+                    throw new IOException("Снимок " + file + " поврежден.");
+                }
+                buffer = reader.buffer();
+                int owner = buffer.getInt();
+                long clickLimit = buffer.getLong();
+                long clicks = buffer.getLong();
+                Instant creationTime = Instant.ofEpochMilli(buffer.getLong());
+                int lifetimeSeconds = buffer.getInt();
+                int urlLength = buffer.getInt();
+                if (owner < 0 || owner >= ownerCount || urlLength < 0 || !reader.ensure(urlLength)) {
+                    throw new IOException("Снимок " + file + " поврежден.");
+                }
+                if (urlLength > scratch.length) {
+                    scratch = new byte[Math.max(urlLength, scratch.length * 2)];
+                }
+                buffer = reader.buffer();
+                buffer.get(scratch, 0, urlLength);
+                String longUrl = new String(scratch, 0, urlLength, StandardCharsets.UTF_8);
+                target.linkCreated(primaryKey,
+                        new UrlData(longUrl, owners[owner], clickLimit, clicks, creationTime, lifetimeSeconds));
+                loaded++;
+            }
+            if (loaded != linkCount) {
+                throw new IOException("Снимок " + file + " поврежден.");
+            }
+            return new Loaded(segment, primaryKeyCounter, loaded);
+        }
+    }
+
+    // Освобождает в буфере место под запись указанного размера, записывая накопленное в файл
+    private static void ensureSpace(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            drain(channel, buffer);
+        }
+    }
+
+    // Добавляет массив байт; длинный массив пишется в файл напрямую
+    private static void putBytes(FileChannel channel, ByteBuffer buffer, byte[] bytes) throws IOException {
+        if (bytes.length <= buffer.remaining()) {
+            buffer.put(bytes);
+            return;
+        }
+        drain(channel, buffer);
+        if (bytes.length <= buffer.remaining()) {
+            buffer.put(bytes);
+            return;
+        }
+        ByteBuffer wrapped = ByteBuffer.wrap(bytes);
+        while (wrapped.hasRemaining()) {
+            channel.write(wrapped);
+        }
+    }
+
+    // Записывает содержимое буфера в файл и очищает буфер
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
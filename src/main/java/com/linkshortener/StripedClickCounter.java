@@ -0,0 +1,263 @@
+package main.java.com.linkshortener;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Полосатый счетчик переходов горячей ссылки (по образцу LongAdder). Переходы не меняют общий счетчик хранилища:
+//каждая полоса резервирует у него пакет из batchSize переходов в пределах лимита и расходует его локально,
+//поэтому потоки разных полос не пишут в одну кэш-линию. Полос сначала одна, их число удваивается
+//при конкуренции за полосу (до maxStripes). Когда резерв хранилища исчерпан, переход забирает остаток
+//из других полос, поэтому лимит соблюдается точно: отказ выдается, только когда не осталось ни одного резерва,
+//в том числе взятого у хранилища, но еще не добавленного в полосу.
+//Счетчик хранилища включает неиспользованные резервы, поэтому лимит никогда не превышается;
+//фактическое число переходов - счетчик хранилища минус резервы полос. Все резервы полос взяты в одном поколении
+//счетчика хранилища (ClickWord): резерв другого поколения (счетчик сбросили после создания этого объекта) сразу
+//возвращается, а переход учитывается напрямую; при закрытии остаток возвращается с поколением полос, поэтому
+//после сброса счетчика он не уменьшит новый. Изменившиеся счетчики попадают в очередь, из которой фоновая задача
+//записывает их значения в журнал.
+final class StripedClickCounter implements ClickCounter {
+
+    // Поколение резервов еще не известно (резервов не было)
+    private static final long UNKNOWN_GENERATION = -1;
+
+    // Атомарный доступ к резерву полосы и к поколению резервов
+    private static final VarHandle BUDGET;
+    private static final VarHandle GENERATION;
+
+    static {
+        try {
+            BUDGET = MethodHandles.lookup().findVarHandle(Stripe.class, "budget", long.class);
+            GENERATION = MethodHandles.lookup().findVarHandle(StripedClickCounter.class, "generation", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    //Полоса: резерв переходов. Поля-заполнители не дают резервам соседних полос оказаться в одной кэш-линии
+    static final class Stripe {
+        long p1, p2, p3, p4, p5, p6, p7;
+        volatile long budget; // Оставшиеся зарезервированные переходы
+        long q1, q2, q3, q4, q5, q6, q7;
+    }
+
+    private final long primaryKey; // Первичный ключ ссылки
+    private final ClickCounter source; // Счетчик хранилища
+    private final long batchSize; // Размер резервируемого пакета
+    private final int maxStripes; // Максимальное количество полос (степень двойки)
+    private final Queue<StripedClickCounter> changed; // Очередь счетчиков для записи в журнал
+    private final AtomicBoolean queued = new AtomicBoolean(); // Счетчик уже стоит в очереди
+    private final AtomicInteger pending = new AtomicInteger(); // Резервы, взятые у хранилища и еще не добавленные в полосу
+    private volatile Stripe[] stripes = {new Stripe()}; // Полосы
+    private volatile long generation = UNKNOWN_GENERATION; // Поколение счетчика хранилища, в котором взяты резервы
+    private volatile boolean exhausted; // Хранилище выдало меньше, чем запрошено: новых резервов не будет
+    private volatile boolean closed; // Счетчик больше не используется кэшем
+
+    // Конструктор класса StripedClickCounter
+    StripedClickCounter(long primaryKey, ClickCounter source, long batchSize, int maxStripes, Queue<StripedClickCounter> changed) {
+        this.primaryKey = primaryKey;
+        this.source = source;
+        this.batchSize = batchSize;
+        this.maxStripes = maxStripes;
+        this.changed = changed;
+    }
+
+    // Возвращает первичный ключ ссылки
+    long getPrimaryKey() {
+        return primaryKey;
+    }
+
+    // Снимает отметку о постановке в очередь перед записью значения в журнал
+    void markWritten() {
+        queued.set(false);
+    }
+
+    @Override
+    public ClickStatus tryClick() {
+        if (closed) {
+            return clickSource();
+        }
+        Stripe[] current = stripes;
+        Stripe stripe = current[stripeIndex(current.length)];
+        while (true) {
+            long budget = stripe.budget;
+            if (budget > 0) {
+                if (BUDGET.compareAndSet(stripe, budget, budget - 1)) {
+                    return accepted(budget - 1);
+                }
+                // Полосу делит несколько потоков: увеличиваем число полос и пробуем снова
+                current = grow(current);
+                stripe = current[stripeIndex(current.length)];
+                continue;
+            }
+            if (exhausted) {
+                return takeFromAnyStripe();
+            }
+            // Пока остаток резерва не добавлен в полосу, он учтен в pending: другие потоки не выдадут отказ
+            // и не сочтут свой переход последним, иначе ссылку удалили бы вместе с еще не выданными переходами
+            pending.incrementAndGet();
+            long reservation;
+            long granted = 0;
+            long rest = 0;
+            try {
+                reservation = source.reserve(batchSize);
+                if (reservation >= 0 && sameGeneration(reservation)) {
+                    granted = ClickWord.clicks(reservation);
+                    if (granted < batchSize) {
+                        exhausted = true;
+                    }
+                    if (granted > 0) {
+                        // Первый переход из пакета учитывается сразу, остальные остаются в полосе
+                        rest = (long) BUDGET.getAndAdd(stripe, granted - 1) + granted - 1;
+                    }
+                }
+            } finally {
+                pending.decrementAndGet();
+            }
+            if (reservation < 0) {
+                return ClickStatus.NOT_FOUND;
+            }
+            if (!sameGeneration(reservation)) {
+                // Счетчик хранилища сбросили после первого резерва: запись кэша устарела и будет удалена
+                source.release(reservation);
+                return clickSource();
+            }
+            if (granted == 0) {
+                return takeFromAnyStripe();
+            }
+            if (closed) {
+                // Счетчик закрыли во время резервирования: возвращаем остаток, чтобы он не потерялся
+                drain();
+            }
+            return accepted(rest);
+        }
+    }
+
+    @Override
+    public long getClicks() {
+        long clicks = source.getClicks();
+        return clicks < 0 ? clicks : Math.max(0, clicks - unusedBudget());
+    }
+
+    @Override
+    public long reserve(long requested) {
+        return source.reserve(requested);
+    }
+
+    @Override
+    public void release(long reservation) {
+        source.release(reservation);
+    }
+
+    // Возвращает неиспользованные резервы в хранилище. Дальнейшие переходы идут напрямую в счетчик хранилища
+    @Override
+    public void close() {
+        closed = true;
+        drain();
+    }
+
+    // Учитывает принятый переход: ставит счетчик в очередь на запись и определяет, был ли переход последним
+    private ClickStatus accepted(long remainingInStripe) {
+        markChanged();
+        if (exhausted && remainingInStripe == 0 && pending.get() == 0 && unusedBudget() == 0) {
+            return ClickStatus.ACCEPTED_LAST;
+        }
+        return ClickStatus.ACCEPTED;
+    }
+
+    // Учитывает переход напрямую в счетчике хранилища (счетчик закрыт или его резервы устарели)
+    private ClickStatus clickSource() {
+        ClickStatus status = source.tryClick();
+        if (status.isAccepted()) {
+            markChanged();
+        }
+        return status;
+    }
+
+    // Ставит счетчик в очередь на запись в журнал, если он еще не стоит в ней
+    private void markChanged() {
+        if (!queued.get() && queued.compareAndSet(false, true)) {
+            changed.add(this);
+        }
+    }
+
+    // Забирает переход из любой полосы с остатком резерва. Если резервы еще добавляются в полосы, ждет их
+    private ClickStatus takeFromAnyStripe() {
+        while (true) {
+            // pending читается до просмотра полос: если он нулевой, все взятые резервы уже в полосах
+            boolean settled = pending.get() == 0;
+            for (Stripe stripe : stripes) {
+                long budget = stripe.budget;
+                while (budget > 0) {
+                    if (BUDGET.compareAndSet(stripe, budget, budget - 1)) {
+                        return accepted(budget - 1);
+                    }
+                    budget = stripe.budget;
+                }
+            }
+            if (settled) {
+                return ClickStatus.LIMIT_EXHAUSTED;
+            }
+            Thread.yield();
+        }
+    }
+
+    // Удваивает число полос, если оно не достигло максимума. Резервы остаются в прежних полосах
+    private Stripe[] grow(Stripe[] current) {
+        if (current.length >= maxStripes) {
+            return current;
+        }
+        synchronized (this) {
+            Stripe[] latest = stripes;
+            if (latest == current) {
+                latest = Arrays.copyOf(current, current.length * 2);
+                for (int i = current.length; i < latest.length; i++) {
+                    latest[i] = new Stripe();
+                }
+                stripes = latest;
+            }
+            return latest;
+        }
+    }
+
+    // Сумма неиспользованных резервов всех полос
+    private long unusedBudget() {
+        long total = 0;
+        for (Stripe stripe : stripes) {
+            total += stripe.budget;
+        }
+        return total;
+    }
+
+    // Проверяет, что резерв взят в том же поколении счетчика хранилища, что и резервы полос.
+    // Поколение запоминается по первому резерву
+    private boolean sameGeneration(long reservation) {
+        long reserved = ClickWord.generation(reservation);
+        long current = generation;
+        if (current == UNKNOWN_GENERATION) {
+            current = GENERATION.compareAndSet(this, UNKNOWN_GENERATION, reserved) ? reserved : generation;
+        }
+        return current == reserved;
+    }
+
+    // Забирает резервы всех полос и возвращает их в хранилище с поколением, в котором они взяты: если счетчик
+    // хранилища с тех пор сбросили, возврат ничего не меняет
+    private void drain() {
+        long total = 0;
+        for (Stripe stripe : stripes) {
+            total += (long) BUDGET.getAndSet(stripe, 0L);
+        }
+        if (total > 0) {
+            source.release(ClickWord.of(generation, total));
+        }
+    }
+
+    // Номер полосы текущего потока
+    private static int stripeIndex(int length) {
+        long h = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & (length - 1);
+    }
+}
@@ -0,0 +1,476 @@
+package main.java.com.linkshortener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+//Многоуровневое хранилище ссылок: недавно использованные ссылки лежат в куче (объект UrlData на ссылку, как
+//в MapLinkStore), а ссылки без недавних переходов вытесняются в холодный уровень - записи фиксированной ширины
+//в файле, отображенном в память (ColdLinkSegment). Большинство ссылок используются в первый день и до истечения
+//срока не нужны, поэтому куча держит только рабочий набор.
+//Вытеснение (demoteIdle) выполняет фоновая задача: уходят ссылки без переходов дольше idleSeconds, а если ссылок
+//в куче больше бюджета heapLinks - еще и самые давно использованные. Принятый переход по холодной ссылке и запрос
+//ее счетчика переходов возвращают ссылку в кучу; остальные операции (чтение, изменение лимита, восстановление
+//счетчика, проверка срока) выполняются в записи на месте.
+//Перенос ссылки между уровнями идет под эксклюзивной блокировкой полосы ключа, а операции над ссылкой - под
+//разделяемой, поэтому переход не теряется, даже если ссылку вытесняют одновременно с ним.
+public class TieredLinkStore implements LinkStore, Closeable {
+
+    // Количество полос блокировок (степень двойки)
+    private static final int STRIPES = 64;
+
+    //Ссылка в куче и секунда последнего обращения к ней
+    private static final class HotLink {
+        final UrlData urlData; // Данные ссылки
+        volatile long lastAccessSecond; // Секунда последнего перехода (или создания)
+
+        HotLink(UrlData urlData, long lastAccessSecond) {
+            this.urlData = urlData;
+            this.lastAccessSecond = lastAccessSecond;
+        }
+
+        // Отмечает обращение; поле пишется, только если секунда сменилась, чтобы не гонять кэш-линию
+        void touch(long nowSecond) {
+            if (lastAccessSecond != nowSecond) {
+                lastAccessSecond = nowSecond;
+            }
+        }
+    }
+
+    private final Map<Long, HotLink> hot = new ConcurrentHashMap<>(); // Теплый уровень (куча)
+    private final ColdLinkSegment cold; // Холодный уровень (файл, отображенный в память)
+    private final StampedLock[] stripes = new StampedLock[STRIPES]; // Блокировки полос ключей
+    private final AtomicInteger traversals = new AtomicInteger(); // Идущие обходы (переносы на это время запрещены)
+    private final long heapLinks; // Бюджет кучи: наибольшее количество ссылок в куче
+    private final long idleSeconds; // Ссылки без переходов дольше этого времени вытесняются
+    private final LongAdder demoted = new LongAdder(); // Вытесненные ссылки
+    private final LongAdder promoted = new LongAdder(); // Возвращенные в кучу ссылки
+
+    // Конструктор класса TieredLinkStore. Файл холодного уровня создается (очищается) заново
+    public TieredLinkStore(Path segmentFile, long heapLinks, long idleSeconds) throws IOException {
+        if (heapLinks < 0 || idleSeconds < 0) {
+            throw new IllegalArgumentException("Бюджет кучи и время простоя не могут быть отрицательными.");
+        }
+        this.cold = new ColdLinkSegment(segmentFile);
+        this.heapLinks = heapLinks;
+        this.idleSeconds = idleSeconds;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new StampedLock();
+        }
+    }
+
+    @Override
+    public void put(long primaryKey, UrlData urlData) {
+        if (primaryKey <= 0) {
+            throw new IllegalArgumentException("Первичный ключ должен быть положительным.");
+        }
+        StampedLock lock = stripe(primaryKey);
+        long stamp = lock.writeLock();
+        try {
+            cold.remove(primaryKey); // Ссылка заменяется целиком
+            hot.put(primaryKey, new HotLink(urlData, nowSecond()));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public UrlData get(long primaryKey) {
+        StampedLock lock = stripe(primaryKey);
+        long stamp = lock.readLock();
+        try {
+            HotLink link = hot.get(primaryKey);
+            return link != null ? link.urlData : cold.get(primaryKey);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public UUID getUserId(long primaryKey) {
+        StampedLock lock = stripe(primaryKey);
+        long stamp = lock.readLock();
+        try {
+            HotLink link = hot.get(primaryKey);
+            return link != null ? link.urlData.getUserId() : cold.getUserId(primaryKey);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public String getLongUrl(long primaryKey) {
+        StampedLock lock = stripe(primaryKey);
+        long stamp = lock.readLock();
+        try {
+            HotLink link = hot.get(primaryKey);
+            return link != null ? link.urlData.getLongUrl() : cold.getLongUrl(primaryKey);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public long getClicks(long primaryKey) {
+        StampedLock lock = stripe(primaryKey);
+        long stamp = lock.readLock();
+        try {
+            HotLink link = hot.get(primaryKey);
+            return link != null ? link.urlData.getClicks() : cold.getClicks(primaryKey);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public ClickCounter getClickCounter(long primaryKey) {
+        // Счетчик запрашивают для кэша горячих ссылок: ссылка возвращается в кучу
+        if (!promote(primaryKey)) {
+            return null;
+        }
+        return new TieredClickCounter(primaryKey);
+    }
+
+    @Override
+    public ClickStatus tryClick(long primaryKey, UUID userId) {
+        StampedLock lock = stripe(primaryKey);
+        long stamp = lock.readLock();
+        try {
+            HotLink link = hot.get(primaryKey);
+            if (link != null) {
+                return clickHot(link, userId);
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        // Холодная ссылка: переход учитывается в записи, принятый переход возвращает ссылку в кучу
+        stamp = lock.writeLock();
+        try {
+            HotLink link = hot.get(primaryKey);
+            if (link != null) {
+                return clickHot(link, userId); // Ссылку уже вернули в кучу
+            }
+            ClickStatus status = cold.tryClick(primaryKey, userId);
+            if (status.isAccepted() && traversals.get() == 0) {
+                moveToHeap(primaryKey);
+            }
+            return status;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean updateClickLimit(long primaryKey, long newClickLimit) {
+        StampedLock lock = stripe(primaryKey);
+        long stamp = lock.readLock();
+        try {
+            HotLink link = hot.get(primaryKey);
+            if (link == null) {
+                return cold.updateClickLimit(primaryKey, newClickLimit);
+            }
+            link.urlData.setClickLimit(newClickLimit);
+            link.urlData.resetClicks(); // Сбрасываем счетчик переходов
+            return true;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean raiseClicks(long primaryKey, long clicks) {
+        StampedLock lock = stripe(primaryKey);
+        long stamp = lock.readLock();
+        try {
+            HotLink link = hot.get(primaryKey);
+            if (link == null) {
+                return cold.raiseClicks(primaryKey, clicks);
+            }
+            link.urlData.raiseClicks(clicks);
+            return true;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean isExpiredOrExhausted(long primaryKey) {
+        StampedLock lock = stripe(primaryKey);
+        long stamp = lock.readLock();
+        try {
+            HotLink link = hot.get(primaryKey);
+            if (link == null) {
+                return cold.isExpiredOrExhausted(primaryKey);
+            }
+            return link.urlData.isExpired() || !link.urlData.isClickable();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean remove(long primaryKey) {
+        StampedLock lock = stripe(primaryKey);
+        long stamp = lock.writeLock();
+        try {
+            return hot.remove(primaryKey) != null || cold.remove(primaryKey) != null;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public long size() {
+        return hot.size() + cold.size();
+    }
+
+    @Override
+    public void forEach(LinkVisitor visitor) {
+        // На время обхода ссылки не переносятся между уровнями, иначе ссылку можно пропустить или передать дважды.
+        // Захват каждой полосы на запись дожидается переносов, начатых до запрета
+        traversals.incrementAndGet();
+        try {
+            for (StampedLock lock : stripes) {
+                lock.unlockWrite(lock.writeLock());
+            }
+            hot.forEach((primaryKey, link) -> visitor.visit(primaryKey, link.urlData));
+            cold.forEach(visitor);
+        } finally {
+            traversals.decrementAndGet();
+        }
+    }
+
+    // Вытесняет в холодный уровень ссылки без переходов дольше idleSeconds, а при превышении бюджета кучи - самые
+    // давно использованные. Возвращает количество вытесненных ссылок. Вызывается одним фоновым потоком
+    public long demoteIdle() {
+        long idleCutoff = nowSecond() - idleSeconds; // Ссылки с последним обращением раньше вытесняются
+        long moved = 0;
+        for (Map.Entry<Long, HotLink> entry : hot.entrySet()) {
+            if (entry.getValue().lastAccessSecond < idleCutoff && demote(entry.getKey(), idleCutoff)) {
+                moved++;
+            }
+        }
+        long excess = hot.size() - heapLinks;
+        if (excess <= 0) {
+            return moved;
+        }
+        // Бюджет превышен: вытесняются excess самых давно использованных ссылок. Порог - секунда обращения
+        // excess-й из них; ссылок с обращением ровно в эту секунду вытесняется столько, сколько не хватает
+        long[] accessSeconds = new long[Math.min(Integer.MAX_VALUE - 8, hot.size())];
+        int count = 0;
+        for (HotLink link : hot.values()) {
+            if (count == accessSeconds.length) {
+                break;
+            }
+            accessSeconds[count++] = link.lastAccessSecond;
+        }
+        if (count == 0) {
+            return moved;
+        }
+        Arrays.sort(accessSeconds, 0, count);
+        int last = (int) Math.min(excess, count) - 1;
+        long threshold = accessSeconds[last];
+        long ties = last + 1 - lowerBound(accessSeconds, count, threshold);
+        for (Map.Entry<Long, HotLink> entry : hot.entrySet()) {
+            long lastAccess = entry.getValue().lastAccessSecond;
+            if (lastAccess < threshold) {
+                if (demote(entry.getKey(), threshold)) {
+                    moved++;
+                }
+            } else if (lastAccess == threshold && ties > 0 && demote(entry.getKey(), threshold + 1)) {
+                moved++;
+                ties--;
+            }
+        }
+        return moved;
+    }
+
+    // Возвращает количество ссылок в куче
+    public long getHeapSize() {
+        return hot.size();
+    }
+
+    // Возвращает количество ссылок в холодном уровне
+    public long getColdSize() {
+        return cold.size();
+    }
+
+    // Возвращает количество вытесненных ссылок
+    public long getDemotedCount() {
+        return demoted.sum();
+    }
+
+    // Возвращает количество ссылок, возвращенных в кучу
+    public long getPromotedCount() {
+        return promoted.sum();
+    }
+
+    // Закрывает и удаляет файлы холодного уровня
+    @Override
+    public void close() throws IOException {
+        cold.close();
+    }
+
+    // Переход по ссылке в куче. Вызывается под блокировкой полосы
+    private ClickStatus clickHot(HotLink link, UUID userId) {
+        UrlData urlData = link.urlData;
+        if (!urlData.getUserId().equals(userId)) {
+            return ClickStatus.NOT_OWNER;
+        }
+        if (urlData.isExpired()) {
+            return ClickStatus.EXPIRED;
+        }
+        // Проверка лимита и учет перехода выполняются одной атомарной операцией
+        ClickStatus status = urlData.tryClick();
+        if (status.isAccepted()) {
+            link.touch(nowSecond());
+        }
+        return status;
+    }
+
+    // Переносит ссылку в холодный уровень, если к ней по-прежнему не обращались с cutoff
+    private boolean demote(long primaryKey, long cutoff) {
+        if (traversals.get() != 0) {
+            return false;
+        }
+        StampedLock lock = stripe(primaryKey);
+        long stamp = lock.writeLock();
+        try {
+            HotLink link = hot.get(primaryKey);
+            if (link == null || link.lastAccessSecond >= cutoff || traversals.get() != 0) {
+                return false;
+            }
+            cold.put(primaryKey, link.urlData);
+            hot.remove(primaryKey);
+            demoted.increment();
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Возвращает ссылку в кучу, если она в холодном уровне. Возвращает false, если ссылки нет
+    private boolean promote(long primaryKey) {
+        StampedLock lock = stripe(primaryKey);
+        long stamp = lock.writeLock();
+        try {
+            if (hot.containsKey(primaryKey)) {
+                return true;
+            }
+            if (traversals.get() != 0) {
+                return cold.contains(primaryKey);
+            }
+            return moveToHeap(primaryKey);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Переносит ссылку из холодного уровня в кучу. Вызывается под эксклюзивной блокировкой полосы
+    private boolean moveToHeap(long primaryKey) {
+        UrlData urlData = cold.remove(primaryKey);
+        if (urlData == null) {
+            return false;
+        }
+        hot.put(primaryKey, new HotLink(urlData, nowSecond()));
+        promoted.increment();
+        return true;
+    }
+
+    // Количество значений меньше value в отсортированной части массива
+    private static int lowerBound(long[] sorted, int count, long value) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Блокировка полосы ключа
+    private StampedLock stripe(long primaryKey) {
+        long h = primaryKey * 0x9E3779B97F4A7C15L;
+        return stripes[(int) (h >>> 58) & (STRIPES - 1)];
+    }
+
+    private static long nowSecond() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    //Счетчик переходов ссылки, которая может переходить между уровнями: каждая операция находит ссылку заново
+    private class TieredClickCounter implements ClickCounter {
+        private final long primaryKey; // Первичный ключ ссылки
+
+        TieredClickCounter(long primaryKey) {
+            this.primaryKey = primaryKey;
+        }
+
+        @Override
+        public ClickStatus tryClick() {
+            StampedLock lock = stripe(primaryKey);
+            long stamp = lock.readLock();
+            try {
+                HotLink link = hot.get(primaryKey);
+                if (link == null) {
+                    return cold.incrementClicks(primaryKey);
+                }
+                ClickStatus status = link.urlData.tryClick();
+                if (status.isAccepted()) {
+                    link.touch(nowSecond());
+                }
+                return status;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        @Override
+        public long getClicks() {
+            return TieredLinkStore.this.getClicks(primaryKey);
+        }
+
+        @Override
+        public long reserve(long requested) {
+            StampedLock lock = stripe(primaryKey);
+            long stamp = lock.readLock();
+            try {
+                HotLink link = hot.get(primaryKey);
+                if (link == null) {
+                    return cold.reserve(primaryKey, requested);
+                }
+                link.touch(nowSecond());
+                return link.urlData.reserve(requested);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        @Override
+        public void release(long reservation) {
+            StampedLock lock = stripe(primaryKey);
+            long stamp = lock.readLock();
+            try {
+                HotLink link = hot.get(primaryKey);
+                if (link == null) {
+                    cold.release(primaryKey, reservation);
+                } else {
+                    link.urlData.release(reservation);
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+}
@@ -2,13 +2,14 @@ package main.java.com.linkshortener;
 
 import java.time.Instant;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 //Класс для хранения данных о ссылке.Содержит информацию о длинном URL, пользователе, лимите переходов, времени жизни и т.д.
-public class UrlData {
+public class UrlData implements ClickCounter {
     private String longUrl; // Оригинальный URL
     private UUID userId; // Идентификатор пользователя
-    private long clickLimit; // Лимит переходов
-    private long clicks; // Количество совершенных переходов
+    private volatile long clickLimit; // Лимит переходов
+    private final AtomicLong clicks = new AtomicLong(); // Количество совершенных переходов с поколением (ClickWord)
     private Instant creationTime; // Время создания ссылки
     private int lifetimeSeconds; // Время жизни ссылки в секундах
 
@@ -17,11 +18,20 @@ public class UrlData {
         this.longUrl = longUrl;
         this.userId = userId;
         this.clickLimit = clickLimit;
-        this.clicks = 0;
         this.creationTime = Instant.now();
         this.lifetimeSeconds = lifetimeSeconds;
     }
 
+    // Конструктор для ссылки с уже известными счетчиком переходов и временем создания
+    public UrlData(String longUrl, UUID userId, long clickLimit, long clicks, Instant creationTime, int lifetimeSeconds) {
+        this.longUrl = longUrl;
+        this.userId = userId;
+        this.clickLimit = clickLimit;
+        this.clicks.set(ClickWord.of(0, clicks));
+        this.creationTime = creationTime;
+        this.lifetimeSeconds = lifetimeSeconds;
+    }
+
     // Возвращает оригинальный URL
     public String getLongUrl() {
         return longUrl;
@@ -37,6 +47,32 @@ public class UrlData {
         return clickLimit;
     }
 
+    // Возвращает количество совершенных переходов
+    @Override
+    public long getClicks() {
+        return ClickWord.clicks(clicks.get());
+    }
+
+    // Возвращает слово счетчика (ClickWord) для переноса ссылки между уровнями хранилища
+    long getClickWord() {
+        return clicks.get();
+    }
+
+    // Устанавливает слово счетчика (ClickWord) перенесенной ссылки: поколение сохраняется вместе с переходами
+    void setClickWord(long word) {
+        clicks.set(word);
+    }
+
+    // Возвращает время создания ссылки
+    public Instant getCreationTime() {
+        return creationTime;
+    }
+
+    // Возвращает время жизни ссылки в секундах
+    public int getLifetimeSeconds() {
+        return lifetimeSeconds;
+    }
+
     // Устанавливает новый лимит переходов
     public void setClickLimit(long clickLimit) {
         this.clickLimit = clickLimit;
@@ -44,7 +80,7 @@ public class UrlData {
 
     // Проверяет, доступна ли ссылка для переходов
     public boolean isClickable() {
-        return clicks < clickLimit;
+        return ClickWord.clicks(clicks.get()) < ClickWord.limit(clickLimit);
     }
 
     // Проверяет, истекло ли время жизни ссылки
@@ -52,14 +88,67 @@ public class UrlData {
         return Instant.now().isAfter(creationTime.plusSeconds(lifetimeSeconds));
     }
 
-    // Увеличивает счетчик переходов по ссылке
-    public void incrementClicks() {
-        clicks++;
+    // Атомарно проверяет лимит и увеличивает счетчик переходов (одна операция CAS).
+    // Возвращает записанное значение счетчика или -1, если лимит уже исчерпан
+    public long tryIncrementClicks() {
+        while (true) {
+            long current = clicks.get();
+            if (ClickWord.clicks(current) >= ClickWord.limit(clickLimit)) {
+                return -1;
+            }
+            if (clicks.compareAndSet(current, current + 1)) {
+                return ClickWord.clicks(current) + 1;
+            }
+        }
+    }
+
+    // Увеличивает счетчик переходов до указанного значения, если он меньше
+    public void raiseClicks(long value) {
+        clicks.getAndUpdate(current -> ClickWord.clicks(current) >= value
+                ? current : ClickWord.withClicks(current, value));
+    }
+
+    // Атомарно резервирует до requested переходов в пределах лимита. Возвращает резерв вместе с поколением
+    @Override
+    public long reserve(long requested) {
+        while (true) {
+            long current = clicks.get();
+            long granted = Math.min(requested, ClickWord.limit(clickLimit) - ClickWord.clicks(current));
+            if (granted <= 0) {
+                return ClickWord.withClicks(current, 0);
+            }
+            if (clicks.compareAndSet(current, current + granted)) {
+                return ClickWord.withClicks(current, granted);
+            }
+        }
+    }
+
+    // Возвращает неиспользованные зарезервированные переходы, если счетчик не сбрасывали после резервирования
+    @Override
+    public void release(long reservation) {
+        clicks.getAndUpdate(current -> ClickWord.release(current, reservation));
+    }
+
+    // Атомарно проверяет лимит и учитывает переход
+    @Override
+    public ClickStatus tryClick() {
+        long stored = tryIncrementClicks();
+        if (stored < 0) {
+            return ClickStatus.LIMIT_EXHAUSTED;
+        }
+        // Последний переход определяется по записанному значению, а не по повторному чтению счетчика:
+        // параллельные переходы и сброс счетчика не меняют результат
+        return stored >= ClickWord.limit(clickLimit) ? ClickStatus.ACCEPTED_LAST : ClickStatus.ACCEPTED;
+    }
+
+    // Возвращает первую секунду (epoch seconds), в которую ссылка гарантированно считается истекшей
+    public long getExpirationEpochSecond() {
+        return creationTime.plusSeconds(lifetimeSeconds).getEpochSecond() + 1;
     }
 
     // Возвращает оставшееся количество переходов
     public long getRemainingClicks() {
-        return clickLimit - clicks;
+        return clickLimit - ClickWord.clicks(clicks.get());
     }
 
     // Возвращает оставшееся время жизни ссылки в секундах
@@ -68,8 +157,8 @@ public class UrlData {
         return Math.max(0, lifetimeSeconds - elapsedSeconds);
     }
 
-    // Сбрасывает счетчик переходов
+    // Сбрасывает счетчик переходов. Поколение счетчика увеличивается: резервы, взятые до сброса, не возвращаются
     public void resetClicks() {
-        this.clicks = 0;
+        clicks.getAndUpdate(ClickWord::reset);
     }
 }
\ No newline at end of file
@@ -1,134 +1,984 @@
 package main.java.com.linkshortener;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 //Основной класс сервиса сокращения ссылок. Реализует логику создания, хранения и управления короткими ссылками.
+//Все публичные методы можно вызывать одновременно из нескольких потоков.
+//Если в конфигурации задан каталог persistence.dir, изменения записываются в журнал на диске, а при запуске
+//пользователи, ссылки и счетчик первичных ключей восстанавливаются из последнего снимка и журнала.
+//При replication.role=leader изменения дополнительно передаются репликам (ReplicationServer); при follower
+//сервис - реплика только для чтения: данные приходят от ведущего узла, а переходы расходуют его квоты.
 public class UrlShortener {
 
-    // Алфавит для кодирования коротких ссылок
-    private final String ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+    // Префикс коротких ссылок
+    public static final String SHORT_URL_PREFIX = "clck.ru/";
 
-    // Основание для кодирования (длина алфавита)
-    private final int BASE = ALPHABET.length();
+    // Выдача уникальных первичных ключей для новых ссылок
+    private final IdAllocator idAllocator;
 
-    // Уникальный идентификатор для каждой новой ссылки
-    private Long dbPrimaryKey = 0L;
+    // Шардированный режим: младшие биты первичного ключа - слот владельца (см. ShardSlots)
+    private final boolean sharded;
 
-    // Хранилище данных о ссылках (ключ - уникальный идентификатор, значение - данные о ссылке)
-    private final Map<Long, UrlData> db = new HashMap<>();
+    // Перестановка первичных ключей в значения коротких кодов
+    private final ShortCodeCipher codeCipher;
+
+    // Хранилище данных о ссылках по уникальному идентификатору
+    private final LinkStore db;
+
+    // Многоуровневое хранилище, если выбрано link.store=tiered (то же, что db), иначе null
+    private final TieredLinkStore tieredStore;
 
     // Хранилище пользователей (ключ - UUID пользователя, значение - объект User)
-    private final Map<UUID, User> users = new HashMap<>();
+    private final Map<UUID, User> users = new ConcurrentHashMap<>();
+
+    // Индекс сроков жизни ссылок (колесо таймеров), чтобы не обходить все хранилище при очистке
+    private final ExpiryWheel expiryWheel = new ExpiryWheel(Instant.now().getEpochSecond());
+
+    // Фоновый планировщик, который постепенно удаляет просроченные ссылки
+    private final ScheduledExecutorService cleanupScheduler;
+
+    // Кэш горячих ссылок (null, если отключен)
+    private final HotLinkCache linkCache;
+
+    // Полосатые счетчики горячих ссылок, изменившиеся с последней записи в журнал (null в режиме exact)
+    private final ConcurrentLinkedQueue<StripedClickCounter> changedClickCounters;
+
+    // Обратный индекс повторяющихся URL (null, если дедупликация отключена)
+    private final DedupIndex dedupIndex;
+
+    // Блокировки проверки и создания ссылок в режиме дедупликации (по хешу URL): одинаковые URL одного
+    // пользователя, создаваемые одновременно, получают одну ссылку
+    private final Object[] dedupLocks;
+
+    // Фильтр выданных первичных ключей для быстрого отказа по несуществующим кодам (null, если отключен)
+    private final KeyFilter keyFilter;
+
+    // Сохранение данных на диск (null, если отключено)
+    private final LinkPersistence persistence;
+
+    // Журнал изменений (LinkJournal.NONE, если сохранение отключено и сервис не ведущий узел)
+    private final LinkJournal journal;
+
+    // Журнал репликации ведущего узла (null, если сервис не ведущий узел; тогда же это journal)
+    private final ReplicationLog replicationLog;
+
+    // Прием изменений от ведущего узла (null, если сервис не реплика)
+    private final ReplicationFollower replica;
+
+    // Планировщик записи снимков (null, если сохранение отключено)
+    private final ScheduledExecutorService snapshotScheduler;
+
+    // Очередь уведомлений пользователей (null, если уведомления отключены)
+    private final NotificationQueue notifications;
+
+    // Поминутная аналитика переходов (null, если отключена)
+    private final ClickAnalytics analytics;
+
+    // Потоки построения отчетов по ссылкам (создаются при первом отчете)
+    private final ForkJoinPool reportPool;
+
+    // Метрики операций (null, если отключены)
+    private final ServiceMetrics metrics;
 
     // Объект конфигурации
     private final Config config;
 
-    // Конструктор класса UrlShortener
+    // Конструктор класса UrlShortener. Уведомления выводятся получателем из параметра notifications.sink
     public UrlShortener(Config config) {
+        this(config, createNotificationSink(config));
+    }
+
+    // Конструктор класса UrlShortener с собственным получателем уведомлений (null - уведомления отключены)
+    public UrlShortener(Config config, NotificationSink notificationSink) {
         this.config = config;
+        this.idAllocator = new IdAllocator(config.getIdLeaseSize(), Runtime.getRuntime().availableProcessors() * 2);
+        this.codeCipher = new ShortCodeCipher(config.getShortCodeKey());
+        this.sharded = config.isShardEnabled();
+        this.notifications = notificationSink == null ? null : new NotificationQueue(notificationSink, this::toShortUrl,
+                config.getNotificationBufferSize(), NotificationQueue.Overflow.parse(config.getNotificationOverflow()),
+                config.getNotificationBatchSize());
+        this.reportPool = new ForkJoinPool(config.getReportParallelism() > 0
+                ? config.getReportParallelism() : Runtime.getRuntime().availableProcessors());
+        this.analytics = config.isAnalyticsEnabled() ? new ClickAnalytics(config.getAnalyticsBufferSize(),
+                NotificationQueue.Overflow.parse(config.getAnalyticsOverflow()), config.getAnalyticsWindowMinutes()) : null;
+        if ("tiered".equals(config.getLinkStoreType())) {
+            try {
+                this.tieredStore = new TieredLinkStore(Paths.get(config.getTieredSegmentFile()),
+                        config.getTieredHeapLinks(), config.getTieredIdleSeconds());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось создать файл " + config.getTieredSegmentFile() + ".", e);
+            }
+            this.db = tieredStore;
+        } else {
+            this.tieredStore = null;
+            this.db = "columnar".equals(config.getLinkStoreType()) ? new ColumnarLinkStore() : new MapLinkStore();
+        }
+        this.linkCache = config.getHotLinkCacheSize() > 0 ? new HotLinkCache(config.getHotLinkCacheSize()) : null;
+        if ("striped".equals(config.getClickCountingMode())) {
+            // Полосатые счетчики создаются для записей кэша: конкуренция за счетчик бывает только у горячих ссылок
+            if (linkCache == null) {
+                throw new IllegalArgumentException("Режим click.counting=striped требует кэша горячих ссылок (cache.hot.links.size > 0).");
+            }
+            this.changedClickCounters = new ConcurrentLinkedQueue<>();
+        } else {
+            this.changedClickCounters = null;
+        }
+        if (config.isLinkDedupEnabled()) {
+            this.dedupIndex = new DedupIndex();
+            this.dedupLocks = new Object[64];
+            for (int i = 0; i < dedupLocks.length; i++) {
+                dedupLocks[i] = new Object();
+            }
+        } else {
+            this.dedupIndex = null;
+            this.dedupLocks = null;
+        }
+        // Фильтр создается до восстановления: восстановленные ссылки добавляются в него
+        this.keyFilter = config.isLinkFilterEnabled() ? new KeyFilter(config.getLinkFilterFpp()) : null;
+        String role = config.getReplicationRole();
+        if (!"none".equals(role) && !"leader".equals(role) && !"follower".equals(role)) {
+            throw new IllegalArgumentException("Неизвестная роль репликации: " + role + ".");
+        }
+        if ("follower".equals(role) && linkCache == null) {
+            throw new IllegalArgumentException("Реплика хранит квоты переходов в кэше горячих ссылок (cache.hot.links.size > 0).");
+        }
+        // Реплика получает данные от ведущего узла, поэтому на диск их не сохраняет
+        String persistenceDir = "follower".equals(role) ? null : config.getPersistenceDir();
+        LinkJournal journal;
+        if (persistenceDir != null) {
+            try {
+                this.persistence = new LinkPersistence(Paths.get(persistenceDir), config.getPersistenceFsyncIntervalMillis(),
+                        config.getShortCodeKey());
+                // Счетчик продолжается с наибольшего выданного ключа, чтобы коды не выдавались повторно.
+                // В шардированном режиме снимок и журнал хранят ключи со слотом, а счетчик - порядковые номера
+                long highWaterMark = persistence.recover(new RecoveryJournal());
+                idAllocator.restore(sharded ? ShardSlots.sequenceOf(highWaterMark) : highWaterMark);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось восстановить данные из " + persistenceDir + ".", e);
+            }
+            journal = persistence.getJournal();
+            this.snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "link-snapshot-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long snapshotInterval = config.getPersistenceSnapshotIntervalSeconds();
+            snapshotScheduler.scheduleWithFixedDelay(this::writeSnapshot, snapshotInterval, snapshotInterval, TimeUnit.SECONDS);
+        } else {
+            this.persistence = null;
+            journal = LinkJournal.NONE;
+            this.snapshotScheduler = null;
+        }
+        if ("leader".equals(role)) {
+            this.replicationLog = new ReplicationLog(journal, config.getReplicationLogBytes(), config.getReplicationBatchMillis());
+            journal = replicationLog;
+        } else {
+            this.replicationLog = null;
+        }
+        this.journal = journal;
+        this.replica = "follower".equals(role) ? new ReplicationFollower(
+                ReplicationFollower.parseAddress(config.getReplicationLeader()), new ReplicaJournal(),
+                config.getReplicationQuotaBatch()) : null;
+        this.cleanupScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "link-expiry-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (config.isMetricsEnabled()) {
+            this.metrics = new ServiceMetrics();
+            metrics.addGauge("links", "Количество ссылок в хранилище", db::size);
+            metrics.addGauge("users", "Количество пользователей", users::size);
+            metrics.addGauge("expiry_backlog", "Количество сроков в индексе истечения", expiryWheel::size);
+            if (keyFilter != null) {
+                metrics.addGauge("key_filter_bytes", "Размер фильтра выданных кодов", keyFilter::sizeInBytes);
+            }
+            if (notifications != null) {
+                metrics.addGauge("notifications_dropped", "Уведомления, отброшенные при переполнении очереди", notifications::getDropped);
+            }
+            if (analytics != null) {
+                metrics.addGauge("analytics_dropped", "События переходов, отброшенные при переполнении буфера аналитики", analytics::getDropped);
+                metrics.addGauge("analytics_links", "Количество ссылок с переходами в окне аналитики", analytics::getTrackedLinks);
+            }
+            if (tieredStore != null) {
+                metrics.addGauge("tiered_heap_links", "Количество ссылок в куче многоуровневого хранилища", tieredStore::getHeapSize);
+                metrics.addGauge("tiered_cold_links", "Количество ссылок в файле многоуровневого хранилища", tieredStore::getColdSize);
+                metrics.addGauge("tiered_demoted", "Ссылки, вытесненные из кучи в файл", tieredStore::getDemotedCount);
+                metrics.addGauge("tiered_promoted", "Ссылки, возвращенные из файла в кучу", tieredStore::getPromotedCount);
+            }
+            if (linkCache != null) {
+                metrics.addGauge("hot_cache_links", "Количество ссылок в кэше горячих ссылок", linkCache::size);
+                metrics.addGauge("hot_cache_hits", "Попадания в кэш горячих ссылок", linkCache::getHits);
+                metrics.addGauge("hot_cache_misses", "Промахи кэша горячих ссылок", linkCache::getMisses);
+            }
+            if (replicationLog != null) {
+                metrics.addGauge("replication_position", "Позиция журнала репликации (байт записей с запуска)", replicationLog::getPosition);
+            }
+            if (replica != null) {
+                metrics.addGauge("replication_lag_bytes", "Отставание реплики от ведущего узла в байтах журнала", replica::getLagBytes);
+                metrics.addGauge("replication_lag_millis", "Время от закрытия последнего пакета на ведущем узле до его применения репликой", replica::getLagMillis);
+            }
+            if (config.isMetricsJmxEnabled()) {
+                metrics.registerMBean();
+            }
+        } else {
+            this.metrics = null;
+        }
+        long interval = config.getExpirySweepIntervalMillis();
+        cleanupScheduler.scheduleWithFixedDelay(this::cleanupExpiredLinks, interval, interval, TimeUnit.MILLISECONDS);
+        if (tieredStore != null) {
+            long demoteInterval = config.getTieredDemoteIntervalMillis();
+            cleanupScheduler.scheduleWithFixedDelay(tieredStore::demoteIdle, demoteInterval, demoteInterval, TimeUnit.MILLISECONDS);
+        }
+        if (changedClickCounters != null && journal != LinkJournal.NONE) {
+            long foldInterval = config.getClickFoldIntervalMillis();
+            cleanupScheduler.scheduleWithFixedDelay(this::writeClickCounters, foldInterval, foldInterval, TimeUnit.MILLISECONDS);
+        }
+        if (replica != null) {
+            replica.start();
+        }
+    }
+
+    // Останавливает фоновую очистку ссылок. При включенном сохранении записывает снимок и закрывает журнал,
+    // чтобы следующий запуск не воспроизводил журнал
+    public void shutdown() {
+        if (replica != null) {
+            replica.close();
+        }
+        cleanupScheduler.shutdownNow();
+        reportPool.shutdownNow();
+        if (metrics != null) {
+            metrics.unregisterMBean();
+        }
+        if (notifications != null) {
+            notifications.close();
+        }
+        if (analytics != null) {
+            analytics.close();
+        }
+        if (linkCache != null) {
+            // Неиспользованные резервы полосатых счетчиков возвращаются в хранилище
+            linkCache.clear();
+        }
+        if (persistence == null) {
+            closeLinkStore();
+            return;
+        }
+        writeClickCounters();
+        // Прерывание закрыло бы файл снимка, поэтому ждем завершения текущей записи
+        snapshotScheduler.shutdown();
+        try {
+            snapshotScheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writeSnapshot();
+        closeLinkStore();
+        try {
+            persistence.close();
+        } catch (IOException e) {
+            System.out.println("Ошибка при закрытии журнала: " + e.getMessage());
+        }
+    }
+
+    // Закрывает файлы многоуровневого хранилища (после записи последнего снимка)
+    private void closeLinkStore() {
+        if (tieredStore == null) {
+            return;
+        }
+        try {
+            tieredStore.close();
+        } catch (IOException e) {
+            System.out.println("Ошибка при закрытии хранилища: " + e.getMessage());
+        }
+    }
+
+    // Записывает снимок данных на диск
+    public void writeSnapshot() {
+        if (persistence == null) {
+            return;
+        }
+        try {
+            persistence.snapshot(sharded
+                    ? () -> ShardSlots.compose(idAllocator.getHighWaterMark(), ShardSlots.SLOTS - 1)
+                    : idAllocator::getHighWaterMark, users.keySet(), db);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Ошибка при сохранении снимка: " + e.getMessage());
+        }
+    }
+
+    // Создает получателя уведомлений по параметру notifications.sink (null для none)
+    private static NotificationSink createNotificationSink(Config config) {
+        switch (config.getNotificationSink()) {
+            case "none":
+                return null;
+            case "file":
+                try {
+                    return NotificationSink.file(Paths.get(config.getNotificationFile()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Не удалось открыть файл уведомлений " + config.getNotificationFile() + ".", e);
+                }
+            case "console":
+                return NotificationSink.console();
+            default:
+                throw new IllegalArgumentException("Неизвестный получатель уведомлений: " + config.getNotificationSink() + ".");
+        }
+    }
+
+    // Ждет вывода уведомлений, поставленных в очередь этим и другими потоками до вызова
+    // (например, чтобы консоль показала причину отказа до следующего меню)
+    public void flushNotifications() {
+        if (notifications != null) {
+            notifications.flush(1000);
+        }
     }
 
     // Создает нового пользователя
     public UUID createUser() {
+        requireWritable();
         UUID userId = UUID.randomUUID();
         users.put(userId, new User(userId));
+        journal.userCreated(userId);
+        journal.sync();
         return userId;
     }
 
+    // Добавляет пользователя с известным идентификатором (пользователь, созданный на другом шарде).
+    // Возвращает false, если пользователь уже есть
+    public boolean registerUser(UUID userId) {
+        requireWritable();
+        if (users.putIfAbsent(userId, new User(userId)) != null) {
+            return false;
+        }
+        journal.userCreated(userId);
+        journal.sync();
+        return true;
+    }
+
+    // Передает visitor все ссылки слота (шардированный режим; перенос слота на другой шард)
+    public void exportSlot(int slot, LinkStore.LinkVisitor visitor) {
+        requireSharded();
+        db.forEach((primaryKey, urlData) -> {
+            if (ShardSlots.slotOfKey(primaryKey) == slot) {
+                visitor.visit(primaryKey, urlData);
+            }
+        });
+    }
+
+    // Добавляет ссылку, перенесенную с другого шарда, с ее первичным ключом и счетчиком переходов.
+    // Счетчик ключей поднимается выше ключа ссылки, чтобы новые ссылки слота не получили ее код.
+    // Возвращает false, если ссылка уже есть (повторный перенос)
+    public boolean importLink(long primaryKey, UrlData urlData) {
+        requireSharded();
+        idAllocator.raise(ShardSlots.sequenceOf(primaryKey));
+        if (db.get(primaryKey) != null) {
+            return false;
+        }
+        registerUser(urlData.getUserId());
+        User user = users.get(urlData.getUserId());
+        // Ссылка вставляется без поиска повторов: ее код уже выдан и должен остаться рабочим
+        insertLink(user, primaryKey, urlData);
+        if (dedupIndex != null) {
+            dedupIndex.put(DedupIndex.hash(urlData.getUserId(), urlData.getLongUrl()), primaryKey);
+        }
+        if (urlData.getClicks() >= urlData.getClickLimit()) {
+            expiryWheel.schedule(primaryKey, Instant.now().getEpochSecond());
+        }
+        journal.sync();
+        return true;
+    }
+
+    // Удаляет все ссылки слота после его переноса на другой шард. Возвращает количество удаленных ссылок
+    public int removeSlot(int slot) {
+        requireSharded();
+        List<Long> primaryKeys = new ArrayList<>();
+        db.forEach((primaryKey, urlData) -> {
+            if (ShardSlots.slotOfKey(primaryKey) == slot) {
+                primaryKeys.add(primaryKey);
+            }
+        });
+        int removed = 0;
+        for (long primaryKey : primaryKeys) {
+            if (removeLink(primaryKey, db.getUserId(primaryKey))) {
+                journal.linkRemoved(primaryKey);
+                removed++;
+            }
+        }
+        journal.sync();
+        return removed;
+    }
+
+    // Проверяет, что сервис работает в шардированном режиме
+    private void requireSharded() {
+        if (!sharded) {
+            throw new IllegalStateException("Сервис запущен без шардирования (shard.enabled=false).");
+        }
+        requireWritable();
+    }
+
+    // Проверяет, что сервис не реплика: изменения выполняются только на ведущем узле
+    private void requireWritable() {
+        if (replica != null) {
+            throw new IllegalStateException("Реплика доступна только для чтения: изменения выполняются на ведущем узле.");
+        }
+    }
+
+    // Возвращает количество ссылок в хранилище
+    public long getLinkCount() {
+        return db.size();
+    }
+
+    // Возвращает журнал репликации ведущего узла
+    ReplicationLog getReplicationLog() {
+        if (replicationLog == null) {
+            throw new IllegalStateException("Сервис запущен не ведущим узлом (replication.role=leader).");
+        }
+        return replicationLog;
+    }
+
+    // Передает target всех пользователей и все ссылки с текущими счетчиками (снимок для реплики)
+    void replicateState(LinkJournal target) {
+        for (UUID userId : users.keySet()) {
+            target.userCreated(userId);
+        }
+        db.forEach(target::linkCreated);
+    }
+
+    // Выделяет реплике квоту до requested переходов по ссылке. Квота сразу учитывается в счетчике и в журнале,
+    // поэтому вместе с переходами на ведущем узле и других репликах лимит не будет превышен.
+    // Возвращает размер квоты (0, если лимит исчерпан) или -1, если ссылки нет
+    long grantClicks(long primaryKey, long requested) {
+        requireWritable();
+        ClickCounter clickCounter = db.getClickCounter(primaryKey);
+        if (clickCounter == null || requested <= 0) {
+            return clickCounter == null ? -1 : 0;
+        }
+        long reservation = clickCounter.reserve(requested);
+        long granted = reservation < 0 ? reservation : ClickWord.clicks(reservation);
+        if (granted > 0) {
+            journal.clicked(primaryKey, clickCounter.getClicks());
+        }
+        if (granted >= 0 && granted < requested) {
+            // Лимит исчерпан: ставим ссылку в очередь на удаление при ближайшей очистке
+            expiryWheel.schedule(primaryKey, Instant.now().getEpochSecond());
+        }
+        return granted;
+    }
+
+    // Возвращает позицию журнала репликации: на ведущем узле - байт записей с запуска, на реплике - позицию
+    // ведущего узла, до которой применены изменения; 0, если репликация отключена
+    public long getReplicationPosition() {
+        if (replicationLog != null) {
+            return replicationLog.getPosition();
+        }
+        return replica != null ? replica.getAppliedPosition() : 0;
+    }
+
+    // Возвращает отставание реплики: время от закрытия последнего примененного пакета на ведущем узле
+    // до его применения (0 у ведущего узла и у реплики, которая его догнала)
+    public long getReplicationLagMillis() {
+        return replica != null ? replica.getLagMillis() : 0;
+    }
+
+    // Возвращает отставание реплики в байтах журнала от последней известной позиции ведущего узла
+    // (0 у ведущего узла)
+    public long getReplicationLagBytes() {
+        return replica != null ? replica.getLagBytes() : 0;
+    }
+
+    // Возвращает true, если сервис не реплика или реплика уже получила снимок ведущего узла
+    public boolean isReplicaSynced() {
+        return replica == null || replica.isSynced();
+    }
+
     // Возвращает список всех пользователей
     public Map<UUID, User> getAllUsers() {
         return users;
     }
 
-    // Создает короткую ссылку для указанного пользователя
+    // Создает короткую ссылку для указанного пользователя. В режиме дедупликации для URL, у которого
+    // у пользователя уже есть действующая ссылка, возвращает ее код
     public String buildShortUrl(UUID userId, String longUrl, long customClickLimit, int lifetimeSeconds) {
-        // Очищаем просроченные и недоступные ссылки перед созданием новой
-        cleanupExpiredLinks();
+        long start = startTimer();
+        try {
+            return createShortUrl(userId, longUrl, customClickLimit, lifetimeSeconds);
+        } finally {
+            stopTimer(ServiceMetrics.Operation.CREATE, start);
+        }
+    }
 
+    // Создает короткую ссылку (buildShortUrl без замера времени)
+    private String createShortUrl(UUID userId, String longUrl, long customClickLimit, int lifetimeSeconds) {
+        requireWritable();
         // Проверяем, существует ли пользователь
         User user = users.get(userId);
         if (user == null) {
             throw new IllegalArgumentException("Пользователь не найден.");
         }
 
-        // Генерируем уникальный идентификатор для новой ссылки
-        dbPrimaryKey++;
+        // Повторный URL: ссылка находится без блокировок и без создания объектов
+        if (dedupIndex != null) {
+            long existing = findDuplicate(DedupIndex.hash(userId, longUrl), userId, longUrl);
+            if (existing != DedupIndex.NOT_FOUND) {
+                // Ссылку мог создать другой поток, который еще не дождался записи журнала
+                journal.sync();
+                return toShortUrl(existing);
+            }
+        }
 
-        // Ограничиваем лимит переходов и время жизни ссылки значениями из конфигурации
-        long clickLimit = Math.min(customClickLimit, config.getMaxClickLimit());
-        int actualLifetimeSeconds = Math.min(lifetimeSeconds, config.getMaxLinkLifetimeSeconds());
+        // Генерируем уникальный идентификатор для новой ссылки
+        long primaryKey = toPrimaryKey(idAllocator.next(), userId);
 
         // Создаем объект UrlData для хранения информации о ссылке
-        UrlData urlData = new UrlData(longUrl, userId, clickLimit, actualLifetimeSeconds);
+        UrlData urlData = newUrlData(userId, longUrl, customClickLimit, lifetimeSeconds);
 
-        // Добавляем ссылку в хранилище
-        db.put(dbPrimaryKey, urlData);
+        // Добавляем ссылку в хранилище, индекс сроков жизни, коллекцию пользователя и журнал
+        String shortString = addLink(user, primaryKey, urlData);
 
-        // Генерируем короткую ссылку
-        String shortString = "clck.ru/" + encodePrimaryKeyToShortString(dbPrimaryKey);
-
-        // Добавляем ссылку в коллекцию пользователя
-        user.addLink(shortString, urlData);
+        // Код можно отдавать только после сохранения записи, иначе после сбоя он будет выдан повторно
+        journal.sync();
 
         // Возвращаем короткую ссылку
         return shortString;
     }
 
+    // Выделяет блок из count подряд идущих порядковых номеров ключей и возвращает первый из них
+    // (ключ ссылки получается через toPrimaryKey)
+    long allocatePrimaryKeys(int count) {
+        requireWritable();
+        return idAllocator.allocate(count);
+    }
+
+    // Возвращает первичный ключ ссылки пользователя по порядковому номеру. В шардированном режиме
+    // к номеру добавляется слот владельца, иначе номер и есть ключ
+    long toPrimaryKey(long sequence, UUID userId) {
+        return sharded ? ShardSlots.compose(sequence, ShardSlots.slotOf(userId)) : sequence;
+    }
+
+    // Создает данные ссылки, ограничивая лимит переходов и время жизни значениями из текущего снимка конфигурации
+    UrlData newUrlData(UUID userId, String longUrl, long customClickLimit, int lifetimeSeconds) {
+        ConfigSnapshot limits = config.snapshot();
+        long clickLimit = Math.min(customClickLimit, limits.getMaxClickLimit());
+        int actualLifetimeSeconds = Math.min(lifetimeSeconds, limits.getMaxLinkLifetimeSeconds());
+        return new UrlData(longUrl, userId, clickLimit, actualLifetimeSeconds);
+    }
+
+    // Добавляет пакет ссылок с заранее выделенными первичными ключами. Журнал не синхронизируется:
+    // коды можно отдавать только после syncJournal. Возвращает короткие ссылки в порядке пакета
+    String[] addLinks(UUID userId, long[] primaryKeys, UrlData[] links, int count) {
+        User user = users.get(userId);
+        if (user == null) {
+            throw new IllegalArgumentException("Пользователь не найден.");
+        }
+        String[] shortUrls = new String[count];
+        for (int i = 0; i < count; i++) {
+            shortUrls[i] = addLink(user, primaryKeys[i], links[i]);
+        }
+        return shortUrls;
+    }
+
+    // Дожидается записи журнала на диск
+    void syncJournal() {
+        journal.sync();
+    }
+
+    // Добавляет ссылку в хранилище, индекс сроков жизни и коллекцию пользователя и пишет ее в журнал.
+    // В режиме дедупликации вместо новой ссылки возвращает действующую ссылку пользователя с тем же URL
+    // (первичный ключ новой ссылки тогда не используется). Возвращает короткую ссылку
+    private String addLink(User user, long primaryKey, UrlData urlData) {
+        if (dedupIndex == null) {
+            return insertLink(user, primaryKey, urlData);
+        }
+        long hash = DedupIndex.hash(user.getUserId(), urlData.getLongUrl());
+        synchronized (dedupLocks[(int) hash & (dedupLocks.length - 1)]) {
+            long existing = findDuplicate(hash, user.getUserId(), urlData.getLongUrl());
+            if (existing != DedupIndex.NOT_FOUND) {
+                return toShortUrl(existing);
+            }
+            String shortString = insertLink(user, primaryKey, urlData);
+            dedupIndex.put(hash, primaryKey);
+            return shortString;
+        }
+    }
+
+    // Ищет действующую ссылку пользователя с тем же URL. Ссылка из индекса сверяется с хранилищем:
+    // совпадение хеша у разных URL, чужая, истекшая и исчерпавшая лимит ссылка не подходят
+    private long findDuplicate(long hash, UUID userId, String longUrl) {
+        long primaryKey = dedupIndex.get(hash);
+        if (primaryKey == DedupIndex.NOT_FOUND
+                || !userId.equals(db.getUserId(primaryKey))
+                || !DedupIndex.sameUrl(db.getLongUrl(primaryKey), longUrl)
+                || db.isExpiredOrExhausted(primaryKey)) {
+            return DedupIndex.NOT_FOUND;
+        }
+        return primaryKey;
+    }
+
+    // Удаляет ссылку из индекса повторяющихся URL
+    private void unindexDuplicate(long primaryKey, UUID userId, String longUrl) {
+        if (dedupIndex != null && userId != null && longUrl != null) {
+            dedupIndex.remove(DedupIndex.hash(userId, longUrl), primaryKey);
+        }
+    }
+
+    // Добавляет новую ссылку в хранилище, индекс сроков жизни и коллекцию пользователя и пишет ее в журнал
+    private String insertLink(User user, long primaryKey, UrlData urlData) {
+        db.put(primaryKey, urlData);
+        if (keyFilter != null) {
+            keyFilter.add(primaryKey);
+        }
+        expiryWheel.schedule(primaryKey, urlData.getExpirationEpochSecond());
+        String shortString = toShortUrl(primaryKey);
+        user.addLink(primaryKey);
+        journal.linkCreated(primaryKey, urlData);
+        return shortString;
+    }
+
     // Восстанавливает оригинальный URL по короткой ссылке
     public String restoreLongUrl(UUID userId, String shortString) {
-        String shortCode = shortString.replace("clck.ru/", "");
-        Long primaryKey = decodeShortStringToPrimaryKey(shortCode);
-        UrlData urlData = db.get(primaryKey);
+        return restoreLongUrl(userId, decodeShortUrl(shortString));
+    }
 
-        if (urlData == null) {
-            notifyUser(userId, "Ссылка не найдена.");
-            return null;
+    // Учитывает переход по ссылке с указанным первичным ключом и возвращает оригинальный URL
+    // или null, если переход не принят
+    public String restoreLongUrl(UUID userId, long primaryKey) {
+        long start = startTimer();
+        try {
+            HotLinkCache.CachedLink cached = lookupCache(primaryKey);
+            if (cached != null) {
+                // Горячая ссылка: и переход, и URL берутся из одной записи кэша
+                return clickCached(userId, cached).isAccepted() ? cached.getLongUrl() : null;
+            }
+            // URL читается до перехода: ключи не используются повторно, поэтому URL ключа не меняется, а после
+            // последнего перехода очистка может удалить исчерпанную ссылку раньше, чем URL удалось бы прочитать
+            String longUrl = mightExist(primaryKey) ? db.getLongUrl(primaryKey) : null;
+            return clickStored(userId, primaryKey).isAccepted() ? longUrl : null;
+        } finally {
+            stopTimer(ServiceMetrics.Operation.RESTORE, start);
         }
+    }
 
-        if (!urlData.getUserId().equals(userId)) {
-            notifyUser(userId, "Ссылка не принадлежит вам.");
-            return null;
+    // Возвращает первичный ключ по короткой ссылке (с префиксом или без него) или ShortCodeCodec.INVALID.
+    // Код разбирается прямо из строки, без создания промежуточных строк
+    public long decodeShortUrl(String shortString) {
+        int offset = shortString.startsWith(SHORT_URL_PREFIX) ? SHORT_URL_PREFIX.length() : 0;
+        return decodeShortCode(shortString, offset, shortString.length() - offset);
+    }
+
+    // Возвращает первичный ключ по коду из части последовательности символов или ShortCodeCodec.INVALID
+    public long decodeShortCode(CharSequence source, int offset, int length) {
+        return codeCipher.decrypt(ShortCodeCodec.decode(source, offset, length));
+    }
+
+    // Возвращает короткую ссылку (с префиксом) для первичного ключа
+    public String toShortUrl(long primaryKey) {
+        return SHORT_URL_PREFIX + ShortCodeCodec.encode(codeCipher.encrypt(primaryKey));
+    }
+
+    // Учитывает переход по ссылке с указанным первичным ключом. При отказе уведомляет пользователя о причине
+    public ClickStatus click(UUID userId, long primaryKey) {
+        long start = startTimer();
+        try {
+            HotLinkCache.CachedLink cached = lookupCache(primaryKey);
+            return cached != null ? clickCached(userId, cached) : clickStored(userId, primaryKey);
+        } finally {
+            stopTimer(ServiceMetrics.Operation.RESTORE, start);
+        }
+    }
+
+    // Учитывает переход по ссылке с указанным первичным ключом и возвращает результат вместе с оригинальным URL.
+    // В отличие от click и последующего getLongUrl, принятый переход не теряет URL, если ссылку удалили сразу после него
+    public ClickResult resolveClick(UUID userId, long primaryKey) {
+        long start = startTimer();
+        try {
+            HotLinkCache.CachedLink cached = lookupCache(primaryKey);
+            if (cached != null) {
+                return new ClickResult(clickCached(userId, cached), cached.getLongUrl());
+            }
+            // URL читается до перехода, как в restoreLongUrl
+            String longUrl = mightExist(primaryKey) ? db.getLongUrl(primaryKey) : null;
+            return new ClickResult(clickStored(userId, primaryKey), longUrl);
+        } finally {
+            stopTimer(ServiceMetrics.Operation.RESTORE, start);
         }
+    }
 
+    // Проверяет переход по ссылке, не учитывая его (например, для запросов HEAD): возвращает тот же результат,
+    // что и переход, но не меняет счетчик, не удаляет истекшую ссылку и не уведомляет пользователя
+    public ClickResult previewClick(UUID userId, long primaryKey) {
+        UrlData urlData = mightExist(primaryKey) ? db.get(primaryKey) : null;
+        if (urlData == null) {
+            return new ClickResult(ClickStatus.NOT_FOUND, null);
+        }
+        if (!urlData.getUserId().equals(userId)) {
+            return new ClickResult(ClickStatus.NOT_OWNER, null);
+        }
         if (urlData.isExpired()) {
-            notifyUser(userId, "Ссылка истекла.");
-            return null;
+            return new ClickResult(ClickStatus.EXPIRED, null);
         }
+        // Полосатый счетчик кэша резервирует переходы в хранилище пакетами: точное значение знает только он
+        HotLinkCache.CachedLink cached = linkCache == null ? null : linkCache.peek(primaryKey);
+        long clicks = cached != null && cached.getClickCounter() instanceof StripedClickCounter
+                ? cached.getClickCounter().getClicks() : urlData.getClicks();
+        return new ClickResult(clicks < urlData.getClickLimit() ? ClickStatus.ACCEPTED : ClickStatus.LIMIT_EXHAUSTED,
+                urlData.getLongUrl());
+    }
 
-        if (!urlData.isClickable()) {
-            notifyUser(userId, "Лимит переходов исчерпан.");
-            return null;
+    // Возвращает оригинальный URL по первичному ключу или null, если ссылки нет
+    public String getLongUrl(long primaryKey) {
+        HotLinkCache.CachedLink cached = linkCache == null ? null : linkCache.peek(primaryKey);
+        return cached != null ? cached.getLongUrl() : db.getLongUrl(primaryKey);
+    }
+
+    // Возвращает метрики операций или null, если они отключены
+    public ServiceMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Возвращает кэш горячих ссылок (для статистики) или null, если кэш отключен
+    public HotLinkCache getHotLinkCache() {
+        return linkCache;
+    }
+
+    // Ищет ссылку в кэше горячих ссылок
+    private HotLinkCache.CachedLink lookupCache(long primaryKey) {
+        return linkCache == null || primaryKey <= 0 ? null : linkCache.get(primaryKey);
+    }
+
+    // Учитывает переход по ссылке из кэша. Владелец и срок жизни проверяются по записи кэша
+    // (срок - с точностью до секунды), лимит - счетчиком хранилища
+    private ClickStatus clickCached(UUID userId, HotLinkCache.CachedLink cached) {
+        ClickStatus status;
+        if (!cached.getUserId().equals(userId)) {
+            status = ClickStatus.NOT_OWNER;
+        } else if (System.currentTimeMillis() / 1000 >= cached.getExpirationEpochSecond()) {
+            status = ClickStatus.EXPIRED;
+        } else {
+            status = cached.getClickCounter().tryClick();
         }
+        return afterClick(userId, cached.getPrimaryKey(), status, cached.getClickCounter());
+    }
 
-        urlData.incrementClicks();
-        return urlData.getLongUrl();
+    // Учитывает переход по ссылке из хранилища. Ссылку, к которой уже обращались, добавляет в кэш.
+    // Недопустимые коды, неположительные ключи (никогда не выдаются) и коды, которых нет в фильтре
+    // выданных ключей, отклоняются без обращения к хранилищу
+    private ClickStatus clickStored(UUID userId, long primaryKey) {
+        if (!mightExist(primaryKey)) {
+            if (metrics != null) {
+                metrics.recordClick(ClickStatus.NOT_FOUND);
+            }
+            notifyUser(userId, primaryKey, ClickStatus.NOT_FOUND);
+            return ClickStatus.NOT_FOUND;
+        }
+
+        if (replica != null) {
+            return clickReplicated(userId, primaryKey);
+        }
+
+        // Проверка владельца, срока жизни и лимита, а также учет перехода выполняются хранилищем за один шаг
+        ClickStatus status = db.tryClick(primaryKey, userId);
+        if (status.isAccepted() && linkCache != null && linkCache.isWorthCaching(primaryKey)) {
+            cacheLink(primaryKey);
+        }
+        return afterClick(userId, primaryKey, status, null);
     }
 
-    // Возвращает все ссылки, созданные указанным пользователем
+    // Проверяет, что ключ мог быть выдан: он положительный и есть в фильтре выданных ключей (если фильтр включен)
+    private boolean mightExist(long primaryKey) {
+        return primaryKey > 0 && (keyFilter == null || keyFilter.mightContain(primaryKey));
+    }
+
+    // Обрабатывает результат перехода: уведомляет об отказе, удаляет истекшую ссылку, записывает переход в журнал
+    private ClickStatus afterClick(UUID userId, long primaryKey, ClickStatus status, ClickCounter clickCounter) {
+        if (metrics != null) {
+            metrics.recordClick(status);
+        }
+        switch (status) {
+            case NOT_FOUND:
+                if (linkCache != null) {
+                    linkCache.invalidate(primaryKey);
+                }
+                notifyUser(userId, primaryKey, status);
+                break;
+            case NOT_OWNER:
+                notifyUser(userId, primaryKey, status);
+                break;
+            case EXPIRED:
+                // Ленивое удаление: не ждем фоновую очистку
+                if (removeLink(primaryKey, userId)) {
+                    journal.linkRemoved(primaryKey);
+                }
+                notifyUser(userId, primaryKey, status);
+                break;
+            case LIMIT_EXHAUSTED:
+                if (clickCounter instanceof StripedClickCounter) {
+                    // Последние переходы из разных полос могут разойтись так, что ни один не вернет ACCEPTED_LAST.
+                    // Запись кэша убирается (следующие переходы идут в хранилище и сюда не попадают),
+                    // поэтому ссылка ставится в очередь на удаление один раз
+                    linkCache.invalidate(primaryKey);
+                    expiryWheel.schedule(primaryKey, Instant.now().getEpochSecond());
+                }
+                notifyUser(userId, primaryKey, status);
+                break;
+            case ACCEPTED_LAST:
+                // Лимит исчерпан: ставим ссылку в очередь на удаление при ближайшей очистке
+                expiryWheel.schedule(primaryKey, Instant.now().getEpochSecond());
+                logClick(primaryKey, clickCounter);
+                recordClick(primaryKey);
+                break;
+            case ACCEPTED:
+                logClick(primaryKey, clickCounter);
+                recordClick(primaryKey);
+                break;
+            default:
+                break;
+        }
+        return status;
+    }
+
+    // Учитывает переход на реплике. Ссылка всегда добавляется в кэш вместе со счетчиком квот ведущего узла:
+    // квота живет в записи кэша, а счетчик переходов в хранилище реплики меняет только ведущий узел
+    private ClickStatus clickReplicated(UUID userId, long primaryKey) {
+        UrlData urlData = db.get(primaryKey);
+        if (urlData == null) {
+            return afterClick(userId, primaryKey, ClickStatus.NOT_FOUND, null);
+        }
+        linkCache.put(new HotLinkCache.CachedLink(primaryKey, urlData.getUserId(), urlData.getLongUrl(),
+                urlData.getExpirationEpochSecond(), replica.clickCounter(primaryKey)));
+        // Запись могла добавить другой поток (тогда используется его счетчик) или ее сразу вытеснили
+        HotLinkCache.CachedLink cached = linkCache.peek(primaryKey);
+        if (cached == null) {
+            cached = new HotLinkCache.CachedLink(primaryKey, urlData.getUserId(), urlData.getLongUrl(),
+                    urlData.getExpirationEpochSecond(), replica.clickCounter(primaryKey));
+        }
+        return clickCached(userId, cached);
+    }
+
+    // Добавляет ссылку в кэш горячих ссылок
+    private void cacheLink(long primaryKey) {
+        UrlData urlData = db.get(primaryKey);
+        ClickCounter clickCounter = db.getClickCounter(primaryKey);
+        if (urlData == null || clickCounter == null) {
+            return;
+        }
+        if (changedClickCounters != null) {
+            clickCounter = new StripedClickCounter(primaryKey, clickCounter, config.getClickStripeBatch(),
+                    Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1), changedClickCounters);
+        }
+        linkCache.put(new HotLinkCache.CachedLink(primaryKey, urlData.getUserId(), urlData.getLongUrl(),
+                urlData.getExpirationEpochSecond(), clickCounter));
+        // Если ссылку удалили, пока запись добавлялась, ее invalidate мог пройти раньше добавления
+        if (db.getUserId(primaryKey) == null) {
+            linkCache.invalidate(primaryKey);
+        }
+    }
+
+    // Возвращает все ссылки, созданные указанным пользователем. Копирует все ссылки пользователя;
+    // для больших списков используйте listUserLinks
     public Map<String, UrlData> getUserLinks(UUID userId) {
         User user = users.get(userId);
         if (user == null) {
             throw new IllegalArgumentException("Пользователь не найден.");
         }
-        return user.getLinks();
+        // Возвращаем копию, так как коллекцию пользователя могут менять другие потоки
+        Map<String, UrlData> links = new HashMap<>();
+        for (long primaryKey : user.getLinkKeys()) {
+            UrlData urlData = db.get(primaryKey);
+            if (urlData != null) {
+                links.put(toShortUrl(primaryKey), urlData);
+            }
+        }
+        return links;
+    }
+
+    // Возвращает страницу ссылок пользователя в порядке создания, начиная после курсора (null - с начала).
+    // state отбирает ссылки в указанном состоянии (null - все). Ключи читаются из индекса пользователя порциями,
+    // поэтому ни коллекция пользователя, ни хранилище не копируются и не блокируются целиком;
+    // время читается один раз на страницу
+    public LinkPage listUserLinks(UUID userId, LinkState state, String cursor, int limit) {
+        User user = users.get(userId);
+        if (user == null) {
+            throw new IllegalArgumentException("Пользователь не найден.");
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Размер страницы должен быть положительным числом.");
+        }
+        long last = LinkPage.decodeCursor(cursor);
+        long now = System.currentTimeMillis() / 1000;
+        List<LinkPage.Link> links = new ArrayList<>(Math.min(limit, 1024));
+        long[] keys = new long[Math.min(limit, 1024)];
+        boolean exhausted = false;
+        while (links.size() < limit) {
+            int count = user.getLinkKeysAfter(last, keys);
+            if (count == 0) {
+                exhausted = true;
+                break;
+            }
+            for (int i = 0; i < count && links.size() < limit; i++) {
+                last = keys[i];
+                UrlData urlData = db.get(last);
+                if (urlData == null) {
+                    continue; // Ссылку удалили после чтения ключей
+                }
+                LinkPage.Link link = new LinkPage.Link(toShortUrl(last), urlData, now);
+                if (state == null || link.getState() == state) {
+                    links.add(link);
+                }
+            }
+        }
+        // Курсор не выдается, если после последней ссылки страницы ничего нет
+        if (!exhausted && user.getLinkKeysAfter(last, new long[1]) == 0) {
+            exhausted = true;
+        }
+        return new LinkPage(links, exhausted ? null : LinkPage.encodeCursor(last));
     }
 
     // Удаляет короткую ссылку, если она принадлежит указанному пользователю
     public boolean deleteLink(UUID userId, String shortUrl) {
+        long start = startTimer();
+        try {
+            return removeUserLink(userId, shortUrl);
+        } finally {
+            stopTimer(ServiceMetrics.Operation.DELETE, start);
+        }
+    }
+
+    // Удаляет короткую ссылку пользователя (deleteLink без замера времени)
+    private boolean removeUserLink(UUID userId, String shortUrl) {
+        requireWritable();
         User user = users.get(userId);
         if (user == null) {
             throw new IllegalArgumentException("Пользователь не найден.");
         }
 
-        // Проверяем, принадлежит ли ссылка пользователю
-        if (user.getLinks().containsKey(shortUrl)) {
-            // Удаляем ссылку из хранилища
-            db.values().removeIf(urlData -> urlData.getUserId().equals(userId) && urlData.getLongUrl().equals(user.getLinks().get(shortUrl).getLongUrl()));
-
-            // Удаляем ссылку у пользователя
-            user.getLinks().remove(shortUrl);
+        // Код разбирается прямо в первичный ключ. Удаляем ссылку у пользователя; если ее там нет,
+        // значит она не принадлежит пользователю
+        long primaryKey = decodeShortUrl(shortUrl);
+        if (primaryKey != ShortCodeCodec.INVALID && user.removeLink(primaryKey)) {
+            // Удаляем из хранилища только эту ссылку
+            String longUrl = dedupIndex != null ? db.getLongUrl(primaryKey) : null;
+            if (db.remove(primaryKey) && keyFilter != null) {
+                keyFilter.removed();
+            }
+            unindexDuplicate(primaryKey, userId, longUrl);
+            if (linkCache != null) {
+                linkCache.invalidate(primaryKey);
+            }
+            journal.linkRemoved(primaryKey);
+            journal.sync();
             return true;
         }
 
@@ -137,72 +987,267 @@ public class UrlShortener {
 
     // Изменяет лимит переходов для указанной короткой ссылки
     public boolean updateClickLimit(UUID userId, String shortUrl, int newClickLimit) {
+        long start = startTimer();
+        try {
+            return resetClickLimit(userId, shortUrl, newClickLimit);
+        } finally {
+            stopTimer(ServiceMetrics.Operation.UPDATE_CLICK_LIMIT, start);
+        }
+    }
+
+    // Изменяет лимит переходов ссылки пользователя (updateClickLimit без замера времени)
+    private boolean resetClickLimit(UUID userId, String shortUrl, int newClickLimit) {
+        requireWritable();
         User user = users.get(userId);
         if (user == null) {
             throw new IllegalArgumentException("Пользователь не найден.");
         }
 
         // Проверяем, принадлежит ли ссылка пользователю
-        if (user.getLinks().containsKey(shortUrl)) {
-            UrlData urlData = user.getLinks().get(shortUrl);
-            urlData.setClickLimit(newClickLimit);
-            urlData.resetClicks(); // Сбрасываем счетчик переходов
-            return true;
+        long primaryKey = decodeShortUrl(shortUrl);
+        if (primaryKey != ShortCodeCodec.INVALID && user.hasLink(primaryKey)) {
+            // Запись кэша удаляется до сброса счетчика, чтобы новые переходы шли в новый счетчик. Резервы, которые
+            // полосатый счетчик вернет уже после сброса, взяты в прежнем поколении и новый счетчик не уменьшат
+            if (linkCache != null) {
+                linkCache.invalidate(primaryKey);
+            }
+            // Хранилище устанавливает новый лимит и сбрасывает счетчик переходов
+            if (db.updateClickLimit(primaryKey, newClickLimit)) {
+                // Запись, добавленную в кэш между удалением и сбросом, удаляем еще раз: ее полосы могли
+                // зарезервировать переходы прежнего поколения и выдали бы их сверх нового лимита
+                if (linkCache != null) {
+                    linkCache.invalidate(primaryKey);
+                }
+                journal.clickLimitUpdated(primaryKey, newClickLimit);
+                journal.sync();
+                return true;
+            }
         }
 
         return false;
     }
 
-    // Кодирует уникальный идентификатор (primary key) в короткую строку
-    private String encodePrimaryKeyToShortString(Long dbPrimaryKey) {
-        StringBuilder sb = new StringBuilder();
-        while (dbPrimaryKey > 0) {
-            Long remainder = dbPrimaryKey % BASE;
-            sb.append(ALPHABET.charAt(remainder.intValue()));
-            dbPrimaryKey = dbPrimaryKey / BASE;
+    // Снимает снимок всех ссылок для отчетов (истекающие ссылки, самые посещаемые ссылки пользователей,
+    // пользователи у лимитов, распределение оставшихся переходов). Снимок снимается без блокировок хранилища
+    // на время обхода и слабо согласован (см. LinkReports), отчеты по нему строятся параллельно в reports.parallelism потоках
+    public LinkReports captureReports() {
+        return LinkReports.capture(db, this::toShortUrl, reportPool);
+    }
+
+    // Возвращает поминутную гистограмму принятых переходов по ссылке пользователя за последние minutes минут
+    // или null, если ссылка не принадлежит пользователю
+    public ClickHistogram getClickHistogram(UUID userId, String shortUrl, int minutes) {
+        if (analytics == null) {
+            throw new IllegalStateException("Аналитика переходов отключена (analytics.enabled=false).");
+        }
+        User user = users.get(userId);
+        if (user == null) {
+            throw new IllegalArgumentException("Пользователь не найден.");
+        }
+        long primaryKey = decodeShortUrl(shortUrl);
+        if (primaryKey == ShortCodeCodec.INVALID || !user.hasLink(primaryKey)) {
+            return null;
         }
+        return analytics.histogram(primaryKey, minutes);
+    }
+
+    // Возвращает длину окна аналитики переходов в минутах или 0, если аналитика отключена
+    public int getAnalyticsWindowMinutes() {
+        return analytics == null ? 0 : analytics.getWindowMinutes();
+    }
 
-        // Дополняем строку до шести символов, если она короче
-        while (sb.length() < 6) {
-            sb.append(ALPHABET.charAt(0)); // Добавляем первый символ алфавита (например, 'a')
+    // Ждет учета в аналитике переходов, принятых этим и другими потоками до вызова
+    public void flushAnalytics() {
+        if (analytics != null) {
+            analytics.flush(1000);
         }
+    }
 
-        // Обрезаем строку до шести символов, если она длиннее
-        if (sb.length() > 6) {
-            sb.setLength(6);
+    // Записывает принятый переход в аналитику. Событие только ставится в буфер (без создания объектов),
+    // учитывает его фоновый поток
+    private void recordClick(long primaryKey) {
+        if (analytics != null) {
+            analytics.record(primaryKey);
         }
+    }
 
-        return sb.reverse().toString();
+    // Уведомляет пользователя об отказе в переходе. Уведомление только ставится в очередь (без создания объектов),
+    // выводит его фоновый поток
+    private void notifyUser(UUID userId, long primaryKey, ClickStatus reason) {
+        if (notifications != null) {
+            notifications.offer(userId, primaryKey, reason);
+        }
     }
 
-    // Декодирует короткую строку в уникальный идентификатор (primary key)
-    private Long decodeShortStringToPrimaryKey(String shortString) {
-        Long result = 0L;
-        for (char character : shortString.toCharArray()) {
-            int charIndex = ALPHABET.indexOf(character);
-            result = result * BASE + charIndex;
+    // Удаляет просроченные и недоступные ссылки из хранилища.
+    // Обрабатываются только ссылки, срок которых наступил, поэтому стоимость не зависит от размера хранилища
+    public void cleanupExpiredLinks() {
+        long start = startTimer();
+        try {
+            expiryWheel.advance(Instant.now().getEpochSecond(), primaryKey -> {
+                // Ссылка могла быть удалена раньше или получить новый лимит переходов
+                if (db.isExpiredOrExhausted(primaryKey) && removeLink(primaryKey, db.getUserId(primaryKey))) {
+                    journal.linkRemoved(primaryKey);
+                }
+            });
+            // Удаленные ссылки остаются в фильтре, поэтому после массового удаления он перестраивается
+            if (keyFilter != null && keyFilter.needsRebuild()) {
+                keyFilter.rebuild(db);
+            }
+        } finally {
+            stopTimer(ServiceMetrics.Operation.CLEANUP, start);
         }
-        return result;
     }
 
-    // Уведомляет пользователя о событии (например, недоступности ссылки)
-    private void notifyUser(UUID userId, String message) {
-        System.out.println("Пользователь " + userId + ": " + message);
+    // Засекает начало операции (0, если метрики отключены)
+    private long startTimer() {
+        return metrics != null ? System.nanoTime() : 0;
     }
 
-    // Удаляет просроченные и недоступные ссылки из хранилища
-    public void cleanupExpiredLinks() {
-        db.entrySet().removeIf(entry -> {
-            UrlData urlData = entry.getValue();
-            if (urlData.isExpired() || !urlData.isClickable()) {
-                // Удаляем ссылку из коллекции пользователя
-                User user = users.get(urlData.getUserId());
-                if (user != null) {
-                    user.getLinks().values().removeIf(data -> data.equals(urlData));
+    // Записывает длительность операции в метрики
+    private void stopTimer(ServiceMetrics.Operation operation, long start) {
+        if (metrics != null) {
+            metrics.recordLatency(operation, start);
+        }
+    }
+
+    // Записывает переход в журнал. Записывается значение счетчика, а не приращение: записи параллельных переходов
+    // могут попасть в журнал в другом порядке, а при восстановлении берется наибольшее значение
+    private void logClick(long primaryKey, ClickCounter clickCounter) {
+        // Переходы по полосатым счетчикам записываются в журнал фоновой задачей writeClickCounters
+        if (journal != LinkJournal.NONE && !(clickCounter instanceof StripedClickCounter)) {
+            long clicks = clickCounter != null ? clickCounter.getClicks() : db.getClicks(primaryKey);
+            if (clicks >= 0) {
+                journal.clicked(primaryKey, clicks);
+            }
+        }
+    }
+
+    // Записывает в журнал значения полосатых счетчиков, изменившихся с прошлой записи. Как и при записи
+    // каждого перехода, при сбое теряются только переходы после последней записи
+    private void writeClickCounters() {
+        if (changedClickCounters == null) {
+            return;
+        }
+        StripedClickCounter clickCounter;
+        while ((clickCounter = changedClickCounters.poll()) != null) {
+            clickCounter.markWritten();
+            long clicks = clickCounter.getClicks();
+            if (clicks >= 0) {
+                journal.clicked(clickCounter.getPrimaryKey(), clicks);
+            }
+        }
+    }
+
+    // Удаляет ссылку из общего хранилища и из коллекции пользователя. Возвращает false, если ссылки уже нет
+    private boolean removeLink(long primaryKey, UUID userId) {
+        String longUrl = dedupIndex != null ? db.getLongUrl(primaryKey) : null;
+        if (userId == null || !db.remove(primaryKey)) {
+            return false; // Ссылку уже удалил другой поток
+        }
+        if (keyFilter != null) {
+            keyFilter.removed();
+        }
+        unindexDuplicate(primaryKey, userId, longUrl);
+        if (linkCache != null) {
+            linkCache.invalidate(primaryKey);
+        }
+        User user = users.get(userId);
+        if (user != null) {
+            user.removeLink(primaryKey);
+        }
+        return true;
+    }
+
+    //Применяет записи снимка и журнала при запуске. Просроченные ссылки не восстанавливаются.
+    //Если параллельный переход попал в журнал после изменения лимита, восстановленный счетчик может оказаться
+    //больше настоящего, но никогда не меньше, поэтому лимит переходов не будет превышен.
+    private class RecoveryJournal implements LinkJournal {
+
+        // Секунда запуска, с которой сравниваются сроки жизни
+        private final long now = Instant.now().getEpochSecond();
+
+        @Override
+        public void userCreated(UUID userId) {
+            users.putIfAbsent(userId, new User(userId));
+        }
+
+        @Override
+        public void linkCreated(long primaryKey, UrlData urlData) {
+            long expiration = urlData.getExpirationEpochSecond();
+            if (expiration <= now) {
+                return;
+            }
+            User user = users.computeIfAbsent(urlData.getUserId(), User::new);
+            db.put(primaryKey, urlData);
+            if (keyFilter != null) {
+                keyFilter.add(primaryKey);
+            }
+            expiryWheel.schedule(primaryKey, expiration);
+            user.addLink(primaryKey);
+            if (dedupIndex != null) {
+                dedupIndex.put(DedupIndex.hash(urlData.getUserId(), urlData.getLongUrl()), primaryKey);
+            }
+        }
+
+        @Override
+        public void clicked(long primaryKey, long clicks) {
+            db.raiseClicks(primaryKey, clicks);
+        }
+
+        @Override
+        public void clickLimitUpdated(long primaryKey, long clickLimit) {
+            db.updateClickLimit(primaryKey, clickLimit);
+        }
+
+        @Override
+        public void linkRemoved(long primaryKey) {
+            removeLink(primaryKey, db.getUserId(primaryKey));
+        }
+    }
+
+    //Применяет снимок и пакеты ведущего узла на реплике (поток ReplicationFollower). В отличие от восстановления,
+    //изменение лимита сбрасывает запись кэша вместе с квотой старого счетчика, а ссылки, которых нет в новом снимке
+    //(удаленные, пока реплика была отключена), удаляются
+    private class ReplicaJournal extends RecoveryJournal implements ReplicationFollower.Target {
+
+        // Ключи ссылок текущего снимка (null вне снимка)
+        private LongHashSet snapshotKeys;
+
+        @Override
+        public void snapshotStarted() {
+            snapshotKeys = new LongHashSet();
+        }
+
+        @Override
+        public void linkCreated(long primaryKey, UrlData urlData) {
+            if (snapshotKeys != null) {
+                snapshotKeys.add(primaryKey);
+            }
+            super.linkCreated(primaryKey, urlData);
+        }
+
+        @Override
+        public void clickLimitUpdated(long primaryKey, long clickLimit) {
+            if (linkCache != null) {
+                linkCache.invalidate(primaryKey);
+            }
+            super.clickLimitUpdated(primaryKey, clickLimit);
+        }
+
+        @Override
+        public void snapshotFinished() {
+            LongHashSet keys = snapshotKeys;
+            snapshotKeys = null;
+            List<Long> missing = new ArrayList<>();
+            db.forEach((primaryKey, urlData) -> {
+                if (!keys.contains(primaryKey)) {
+                    missing.add(primaryKey);
                 }
-                return true; // Удаляем ссылку из общего хранилища
+            });
+            for (long primaryKey : missing) {
+                removeLink(primaryKey, db.getUserId(primaryKey));
             }
-            return false; // Не удаляем ссылку
-        });
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,13 +1,11 @@
 package main.java.com.linkshortener;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.UUID;
 
-//Класс для хранения информации о пользователе.Содержит идентификатор пользователя и его ссылки
+//Класс для хранения информации о пользователе.Содержит идентификатор пользователя и первичные ключи его ссылок
 public class User {
     private UUID userId; // Идентификатор пользователя
-    private Map<String, UrlData> links = new HashMap<>(); // Ссылки пользователя
+    private final UserLinks links = new UserLinks(); // Первичные ключи ссылок пользователя
 
     // Конструктор класса User
     public User(UUID userId) {
@@ -15,13 +13,34 @@ public class User {
     }
 
     // Добавляет ссылку пользователю
-    public void addLink(String shortUrl, UrlData urlData) {
-        links.put(shortUrl, urlData);
+    public void addLink(long primaryKey) {
+        links.add(primaryKey);
     }
 
-    // Возвращает все ссылки пользователя
-    public Map<String, UrlData> getLinks() {
-        return links;
+    // Удаляет ссылку пользователя. Возвращает false, если такой ссылки у пользователя нет
+    public boolean removeLink(long primaryKey) {
+        return links.remove(primaryKey);
+    }
+
+    // Проверяет, принадлежит ли ссылка пользователю
+    public boolean hasLink(long primaryKey) {
+        return links.contains(primaryKey);
+    }
+
+    // Возвращает количество ссылок пользователя
+    public int getLinkCount() {
+        return links.size();
+    }
+
+    // Возвращает копию первичных ключей ссылок пользователя в порядке создания
+    public long[] getLinkKeys() {
+        return links.toArray();
+    }
+
+    // Записывает в destination первичные ключи следующих после after ссылок в порядке создания
+    // (не больше destination.length) и возвращает их количество
+    public int getLinkKeysAfter(long after, long[] destination) {
+        return links.keysAfter(after, destination);
     }
 
     // Возвращает идентификатор пользователя
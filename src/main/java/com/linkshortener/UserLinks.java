@@ -0,0 +1,107 @@
+package main.java.com.linkshortener;
+
+import java.util.Arrays;
+
+//Первичные ключи ссылок одного пользователя. Множество (LongHashSet) дает проверку принадлежности и удаление за O(1),
+//а журнал ключей по возрастанию - порядок создания для постраничного обхода: первичные ключи выдаются блоками
+//по возрастанию, поэтому новые ключи почти всегда дописываются в конец (ссылки, созданные одновременно в разных
+//потоках, упорядочиваются по ключам). Удаленные ключи остаются в журнале и пропускаются при обходе;
+//журнал сжимается, когда удаленных ключей в нем становится больше, чем живых. Все методы синхронизированы,
+//страница копирует только свои ключи.
+final class UserLinks {
+
+    private final LongHashSet members = new LongHashSet(); // Живые ключи
+    private long[] order = new long[8]; // Журнал ключей по возрастанию (включая удаленные)
+    private int orderSize; // Количество ключей в журнале
+
+    // Добавляет ключ
+    synchronized void add(long primaryKey) {
+        if (!members.add(primaryKey)) {
+            return;
+        }
+        if (orderSize == 0 || order[orderSize - 1] < primaryKey) {
+            ensureCapacity();
+            order[orderSize++] = primaryKey;
+            return;
+        }
+        // Ключи из блоков разных потоков и пакетов, созданных параллельно, могут прийти не по порядку:
+        // вставляем на свое место
+        int position = Arrays.binarySearch(order, 0, orderSize, primaryKey);
+        if (position >= 0) {
+            return; // Ключ уже в журнале (был удален и добавлен снова)
+        }
+        position = -position - 1;
+        ensureCapacity();
+        System.arraycopy(order, position, order, position + 1, orderSize - position);
+        order[position] = primaryKey;
+        orderSize++;
+    }
+
+    // Удаляет ключ. Возвращает false, если ключа не было
+    synchronized boolean remove(long primaryKey) {
+        if (!members.remove(primaryKey)) {
+            return false;
+        }
+        if (orderSize > 2 * members.size() + 16) {
+            compact();
+        }
+        return true;
+    }
+
+    // Проверяет наличие ключа
+    synchronized boolean contains(long primaryKey) {
+        return members.contains(primaryKey);
+    }
+
+    // Возвращает количество ключей
+    synchronized int size() {
+        return members.size();
+    }
+
+    // Возвращает копию всех ключей в порядке создания
+    synchronized long[] toArray() {
+        long[] result = new long[members.size()];
+        int count = 0;
+        for (int i = 0; i < orderSize; i++) {
+            if (members.contains(order[i])) {
+                result[count++] = order[i];
+            }
+        }
+        return result;
+    }
+
+    // Записывает в destination до destination.length живых ключей, больших after, в порядке создания.
+    // Возвращает количество записанных ключей
+    synchronized int keysAfter(long after, long[] destination) {
+        int position = Arrays.binarySearch(order, 0, orderSize, after);
+        position = position >= 0 ? position + 1 : -position - 1;
+        int count = 0;
+        for (int i = position; i < orderSize && count < destination.length; i++) {
+            if (members.contains(order[i])) {
+                destination[count++] = order[i];
+            }
+        }
+        return count;
+    }
+
+    // Удаляет из журнала ключи, которых уже нет во множестве
+    private void compact() {
+        int live = 0;
+        for (int i = 0; i < orderSize; i++) {
+            if (members.contains(order[i])) {
+                order[live++] = order[i];
+            }
+        }
+        orderSize = live;
+        if (order.length > 16 && live * 4 < order.length) {
+            order = Arrays.copyOf(order, Math.max(16, live * 2));
+        }
+    }
+
+    // Увеличивает журнал, если он заполнен
+    private void ensureCapacity() {
+        if (orderSize == order.length) {
+            order = Arrays.copyOf(order, order.length * 2);
+        }
+    }
+}
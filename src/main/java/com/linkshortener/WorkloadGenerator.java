@@ -0,0 +1,301 @@
+package main.java.com.linkshortener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+//Генератор нагрузки на UrlShortener для воспроизведения рабочей нагрузки на одной машине. Сначала создаются
+//пользователи и начальный набор ссылок (пакетами, с одной синхронизацией журнала на пакет), затем заданное число
+//потоков в течение заданного времени выполняет создание, переходы и удаление в заданном соотношении.
+//Переходы выбирают ссылку по закону Ципфа (ZipfianGenerator): ссылка в ячейке 0 самая популярная. Созданная
+//ссылка занимает случайную ячейку, удаленная остается в ячейке, пока ее не заменит новая, поэтому часть
+//переходов приходится на удаленные ссылки, как у настоящих пользователей. Для каждой операции записывается
+//гистограмма задержек; отчет содержит пропускную способность и перцентили задержек.
+public class WorkloadGenerator {
+
+    //Параметры нагрузки
+    public static final class Settings {
+        int threads = 4; // Количество потоков нагрузки
+        int seconds = 10; // Длительность замера (в секундах)
+        int links = 100_000; // Количество ссылок (ячеек популярности)
+        int users = 100; // Количество пользователей
+        int createWeight = 1; // Доля создания
+        int redirectWeight = 20; // Доля переходов
+        int deleteWeight = 1; // Доля удаления
+        double zipfExponent = 0.99; // Показатель распределения Ципфа
+        long clickLimit = Long.MAX_VALUE; // Лимит переходов создаваемых ссылок (ограничивается max.click.limit)
+
+        // Разбирает параметры вида ключ=значение: threads, seconds, links, users, ratio (создание:переходы:удаление),
+        // zipf, clicks. Неуказанные параметры остаются по умолчанию
+        public static Settings parse(String[] args, int from) {
+            Settings settings = new Settings();
+            for (int i = from; i < args.length; i++) {
+                int equals = args[i].indexOf('=');
+                if (equals <= 0) {
+                    throw new IllegalArgumentException("Параметр нагрузки должен иметь вид ключ=значение: " + args[i] + ".");
+                }
+                String key = args[i].substring(0, equals);
+                String value = args[i].substring(equals + 1);
+                try {
+                    switch (key) {
+                        case "threads":
+                            settings.threads = Integer.parseInt(value);
+                            break;
+                        case "seconds":
+                            settings.seconds = Integer.parseInt(value);
+                            break;
+                        case "links":
+                            settings.links = Integer.parseInt(value);
+                            break;
+                        case "users":
+                            settings.users = Integer.parseInt(value);
+                            break;
+                        case "ratio": {
+                            String[] parts = value.split(":");
+                            if (parts.length != 3) {
+                                throw new IllegalArgumentException("Соотношение задается как создание:переходы:удаление, например 1:20:1.");
+                            }
+                            settings.createWeight = Integer.parseInt(parts[0]);
+                            settings.redirectWeight = Integer.parseInt(parts[1]);
+                            settings.deleteWeight = Integer.parseInt(parts[2]);
+                            break;
+                        }
+                        case "zipf":
+                            settings.zipfExponent = Double.parseDouble(value);
+                            break;
+                        case "clicks":
+                            settings.clickLimit = Long.parseLong(value);
+                            break;
+                        default:
+                            throw new IllegalArgumentException("Неизвестный параметр нагрузки: " + key + ".");
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Неверное значение параметра " + key + ": " + value + ".");
+                }
+            }
+            settings.validate();
+            return settings;
+        }
+
+        // Проверяет параметры
+        void validate() {
+            if (threads <= 0 || seconds <= 0 || links <= 0 || users <= 0 || clickLimit <= 0) {
+                throw new IllegalArgumentException("Потоки, длительность, ссылки, пользователи и лимит переходов должны быть положительными.");
+            }
+            if (createWeight < 0 || redirectWeight < 0 || deleteWeight < 0 || createWeight + redirectWeight + deleteWeight == 0) {
+                throw new IllegalArgumentException("Доли операций не могут быть отрицательными, и хотя бы одна должна быть больше нуля.");
+            }
+            if (!(zipfExponent > 0)) {
+                throw new IllegalArgumentException("Показатель распределения Ципфа должен быть положительным.");
+            }
+        }
+    }
+
+    //Операция нагрузки
+    public enum Operation {
+        CREATE("создание"),
+        REDIRECT("переход"),
+        DELETE("удаление");
+
+        private final String title; // Название в отчете
+
+        Operation(String title) {
+            this.title = title;
+        }
+    }
+
+    //Итог нагрузки
+    public static final class Report {
+        private final Settings settings; // Параметры нагрузки
+        private final long elapsedNanos; // Фактическая длительность замера
+        private final LatencyHistogram.Snapshot[] latencies; // Задержки по операциям
+        private final long acceptedRedirects; // Принятые переходы
+        private final long deletedLinks; // Удаленные ссылки
+
+        Report(Settings settings, long elapsedNanos, LatencyHistogram.Snapshot[] latencies, long acceptedRedirects, long deletedLinks) {
+            this.settings = settings;
+            this.elapsedNanos = elapsedNanos;
+            this.latencies = latencies;
+            this.acceptedRedirects = acceptedRedirects;
+            this.deletedLinks = deletedLinks;
+        }
+
+        // Возвращает количество выполненных операций
+        public long getOperations() {
+            long operations = 0;
+            for (LatencyHistogram.Snapshot latency : latencies) {
+                operations += latency.getCount();
+            }
+            return operations;
+        }
+
+        // Возвращает пропускную способность (операций в секунду)
+        public double getThroughput() {
+            return getOperations() * 1e9 / elapsedNanos;
+        }
+
+        // Возвращает задержки операции
+        public LatencyHistogram.Snapshot getLatency(Operation operation) {
+            return latencies[operation.ordinal()];
+        }
+
+        // Возвращает текст отчета
+        public String format() {
+            StringBuilder text = new StringBuilder();
+            text.append(String.format("Нагрузка: потоков %d, ссылок %,d, пользователей %d, соотношение %d:%d:%d, Ципф %.2f%n",
+                    settings.threads, settings.links, settings.users, settings.createWeight, settings.redirectWeight,
+                    settings.deleteWeight, settings.zipfExponent));
+            text.append(String.format("Операций %,d за %.1f с: %,.0f в секунду%n", getOperations(), elapsedNanos / 1e9, getThroughput()));
+            text.append(String.format("%-10s %12s %12s %9s %9s %9s %9s %9s%n",
+                    "операция", "количество", "в секунду", "p50 мкс", "p90 мкс", "p99 мкс", "p99.9 мкс", "max мкс"));
+            for (Operation operation : Operation.values()) {
+                LatencyHistogram.Snapshot latency = getLatency(operation);
+                text.append(String.format("%-10s %,12d %,12.0f %9.1f %9.1f %9.1f %9.1f %9.1f%n", operation.title,
+                        latency.getCount(), latency.getCount() * 1e9 / elapsedNanos,
+                        latency.getValueAtPercentile(50) / 1e3, latency.getValueAtPercentile(90) / 1e3,
+                        latency.getValueAtPercentile(99) / 1e3, latency.getValueAtPercentile(99.9) / 1e3,
+                        latency.getMax() / 1e3));
+            }
+            long redirects = getLatency(Operation.REDIRECT).getCount();
+            text.append(String.format("Принято переходов %,d из %,d; удалено ссылок %,d из %,d попыток%n",
+                    acceptedRedirects, redirects, deletedLinks, getLatency(Operation.DELETE).getCount()));
+            return text.toString();
+        }
+    }
+
+    //Ссылка в ячейке популярности
+    private static final class Slot {
+        final String shortUrl; // Короткая ссылка
+        final UUID userId; // Владелец
+
+        Slot(String shortUrl, UUID userId) {
+            this.shortUrl = shortUrl;
+            this.userId = userId;
+        }
+    }
+
+    private final UrlShortener urlShortener; // Сервис под нагрузкой
+    private final Settings settings; // Параметры нагрузки
+
+    // Конструктор класса WorkloadGenerator
+    public WorkloadGenerator(UrlShortener urlShortener, Settings settings) {
+        settings.validate();
+        this.urlShortener = urlShortener;
+        this.settings = settings;
+    }
+
+    // Создает пользователей и начальные ссылки, выполняет нагрузку и возвращает отчет
+    public Report run() throws InterruptedException {
+        UUID[] users = new UUID[settings.users];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = urlShortener.createUser();
+        }
+        AtomicReferenceArray<Slot> slots = preload(users);
+
+        LatencyHistogram[] latencies = new LatencyHistogram[Operation.values().length];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+        AtomicLong acceptedRedirects = new AtomicLong();
+        AtomicLong deletedLinks = new AtomicLong();
+        ZipfianGenerator popularity = new ZipfianGenerator(settings.links, settings.zipfExponent);
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(settings.seconds);
+        List<Thread> workers = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        for (int t = 0; t < settings.threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    work(users, slots, popularity, latencies, acceptedRedirects, deletedLinks, deadline);
+                } catch (RuntimeException e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            }, "workload-" + t);
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (!failures.isEmpty()) {
+            throw new IllegalStateException("Поток нагрузки завершился с ошибкой: " + failures.get(0).getMessage(), failures.get(0));
+        }
+        LatencyHistogram.Snapshot[] snapshots = new LatencyHistogram.Snapshot[latencies.length];
+        for (int i = 0; i < latencies.length; i++) {
+            snapshots[i] = latencies[i].snapshot();
+        }
+        return new Report(settings, elapsed, snapshots, acceptedRedirects.get(), deletedLinks.get());
+    }
+
+    // Создает начальные ссылки пакетами (ссылка i принадлежит пользователю i % users) и раскладывает их по ячейкам
+    private AtomicReferenceArray<Slot> preload(UUID[] users) {
+        AtomicReferenceArray<Slot> slots = new AtomicReferenceArray<>(settings.links);
+        int batch = 1_000;
+        long[] primaryKeys = new long[1];
+        UrlData[] links = new UrlData[1];
+        for (int from = 0; from < settings.links; from += batch) {
+            int count = Math.min(batch, settings.links - from);
+            long firstSequence = urlShortener.allocatePrimaryKeys(count);
+            for (int i = 0; i < count; i++) {
+                int index = from + i;
+                UUID userId = users[index % users.length];
+                primaryKeys[0] = urlShortener.toPrimaryKey(firstSequence + i, userId);
+                links[0] = urlShortener.newUrlData(userId, longUrl(index), settings.clickLimit, Integer.MAX_VALUE);
+                slots.set(index, new Slot(urlShortener.addLinks(userId, primaryKeys, links, 1)[0], userId));
+            }
+            urlShortener.syncJournal();
+        }
+        return slots;
+    }
+
+    // Цикл потока нагрузки: выбирает операцию по долям и записывает ее задержку
+    private void work(UUID[] users, AtomicReferenceArray<Slot> slots, ZipfianGenerator popularity, LatencyHistogram[] latencies,
+                      AtomicLong acceptedRedirects, AtomicLong deletedLinks, long deadline) {
+        SplittableRandom random = new SplittableRandom(ThreadLocalRandom.current().nextLong());
+        int total = settings.createWeight + settings.redirectWeight + settings.deleteWeight;
+        long accepted = 0;
+        long deleted = 0;
+        while (System.nanoTime() < deadline) {
+            int choice = random.nextInt(total);
+            if (choice < settings.createWeight) {
+                UUID userId = users[random.nextInt(users.length)];
+                String longUrl = longUrl(random.nextLong());
+                long start = System.nanoTime();
+                String shortUrl = urlShortener.buildShortUrl(userId, longUrl, settings.clickLimit, Integer.MAX_VALUE);
+                latencies[Operation.CREATE.ordinal()].record(System.nanoTime() - start);
+                slots.set(random.nextInt(settings.links), new Slot(shortUrl, userId));
+            } else if (choice < settings.createWeight + settings.redirectWeight) {
+                Slot slot = slots.get(popularity.next(random) - 1);
+                long start = System.nanoTime();
+                String longUrl = urlShortener.restoreLongUrl(slot.userId, slot.shortUrl);
+                latencies[Operation.REDIRECT.ordinal()].record(System.nanoTime() - start);
+                if (longUrl != null) {
+                    accepted++;
+                }
+            } else {
+                Slot slot = slots.get(random.nextInt(settings.links));
+                long start = System.nanoTime();
+                boolean removed = urlShortener.deleteLink(slot.userId, slot.shortUrl);
+                latencies[Operation.DELETE.ordinal()].record(System.nanoTime() - start);
+                if (removed) {
+                    deleted++;
+                }
+            }
+        }
+        acceptedRedirects.addAndGet(accepted);
+        deletedLinks.addAndGet(deleted);
+    }
+
+    // Возвращает правдоподобный длинный URL для числа i
+    private static String longUrl(long i) {
+        return "https://example.com/articles/" + Long.toHexString(i * 0x9E3779B97F4A7C15L) + "/page?id=" + i;
+    }
+}
@@ -0,0 +1,476 @@
+package main.java.com.linkshortener;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+//Журнал упреждающей записи (WAL): двоичный файл, в конец которого дописываются изменения.
+//Записи копируются в буфер в памяти под короткой блокировкой, а фоновый поток пишет накопленный буфер одним кадром
+//и вызывает fsync один раз на весь кадр (групповая фиксация). Пока идет fsync, следующие записи копятся во втором буфере.
+//Переход - самое частое изменение, поэтому его запись имеет фиксированный размер 17 байт и не ждет fsync:
+//при сбое теряются только переходы за последний интервал сброса. Остальные изменения вызывающий код подтверждает через sync.
+//Формат файла: заголовок (магическое число, версия, номер сегмента, отпечаток ids.code.key), затем кадры [длина][CRC32C][записи].
+//Кадр с неверной контрольной суммой или оборванный на середине считается концом журнала.
+public class WriteAheadLog implements LinkJournal, Closeable {
+
+    // Магическое число файла журнала ("LWAL") и версия формата. Сегменты версии 1 не хранят отпечаток ключа кодов
+    static final int MAGIC = 0x4C57414C;
+    static final int VERSION = 2;
+    static final int VERSION_WITHOUT_FINGERPRINT = 1;
+
+    // Размер заголовка файла (версий 2 и 1) и заголовка кадра
+    static final int FILE_HEADER_SIZE = 24;
+    static final int FILE_HEADER_SIZE_WITHOUT_FINGERPRINT = 16;
+    static final int FRAME_HEADER_SIZE = 8;
+
+    // Типы записей
+    static final byte USER_CREATED = 1;
+    static final byte LINK_CREATED = 2;
+    static final byte CLICKED = 3;
+    static final byte CLICK_LIMIT_UPDATED = 4;
+    static final byte LINK_REMOVED = 5;
+
+    // Размеры записей фиксированной длины
+    static final int USER_CREATED_SIZE = 1 + 16;
+    static final int LINK_CREATED_HEADER_SIZE = 1 + 8 + 16 + 8 + 8 + 8 + 4 + 4;
+    static final int CLICKED_SIZE = 1 + 8 + 8;
+    static final int CLICK_LIMIT_UPDATED_SIZE = 1 + 8 + 8;
+    static final int LINK_REMOVED_SIZE = 1 + 8;
+
+    private final Path directory; // Каталог с сегментами журнала
+    private final long codeKeyFingerprint; // Отпечаток ключа кодов для заголовков сегментов
+    private final long flushIntervalNanos; // Максимальная задержка сброса записей, которые никто не ждет
+    private final Thread flusher; // Фоновый поток записи и fsync
+
+    private final ReentrantLock lock = new ReentrantLock(); // Блокировка буферов и состояния (не блокирует виртуальные потоки)
+    private final Condition flushRequested = lock.newCondition(); // Сигнал фоновому потоку
+    private final Condition flushed = lock.newCondition(); // Сигнал о завершении сброса
+
+    private ByteBuffer active; // Буфер, в который добавляются записи
+    private ByteBuffer spare; // Буфер, который пишет фоновый поток
+    private long appendedBytes; // Сколько байт записей добавлено за все время
+    private long durableBytes; // Сколько байт записей надежно сохранено
+    private int waiters; // Потоки, которые ждут сброса (sync, нехватка места, смена сегмента)
+    private long segment; // Номер текущего сегмента
+    private long requestedSegment; // Номер сегмента, на который нужно перейти (0 - не нужно)
+    private FileChannel channel; // Файл текущего сегмента
+    private IOException failure; // Ошибка записи; после нее журнал не принимает записи
+    private boolean closing; // Запрошено закрытие
+    private boolean closed; // Фоновый поток завершен
+
+    // Открывает новый сегмент журнала и запускает фоновый поток записи
+    public WriteAheadLog(Path directory, long segment, long codeKeyFingerprint, long flushIntervalMillis, int bufferBytes)
+            throws IOException {
+        this.directory = directory;
+        this.codeKeyFingerprint = codeKeyFingerprint;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, flushIntervalMillis));
+        this.active = ByteBuffer.allocateDirect(bufferBytes);
+        this.spare = ByteBuffer.allocateDirect(bufferBytes);
+        this.segment = segment;
+        this.channel = openSegment(segment);
+        this.flusher = new Thread(this::runFlusher, "wal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    // Возвращает путь к файлу сегмента
+    static Path segmentFile(Path directory, long segment) {
+        return directory.resolve(String.format("wal-%016d.log", segment));
+    }
+
+    // Возвращает номер сегмента по имени файла или -1, если это не сегмент журнала
+    static long parseSegment(String fileName) {
+        if (!fileName.startsWith("wal-") || !fileName.endsWith(".log")) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(fileName.substring(4, fileName.length() - 4));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // Возвращает номер текущего сегмента
+    public long getSegment() {
+        lock.lock();
+        try {
+            return segment;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void userCreated(UUID userId) {
+        lock.lock();
+        try {
+            putUserCreated(reserve(USER_CREATED_SIZE), userId);
+            appendedBytes += USER_CREATED_SIZE;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void linkCreated(long primaryKey, UrlData urlData) {
+        // Кодируем URL до захвата блокировки
+        byte[] longUrl = urlData.getLongUrl().getBytes(StandardCharsets.UTF_8);
+        int size = LINK_CREATED_HEADER_SIZE + longUrl.length;
+        lock.lock();
+        try {
+            putLinkCreated(reserve(size), primaryKey, urlData, longUrl);
+            appendedBytes += size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clicked(long primaryKey, long clicks) {
+        lock.lock();
+        try {
+            putClicked(reserve(CLICKED_SIZE), primaryKey, clicks);
+            appendedBytes += CLICKED_SIZE;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void clickLimitUpdated(long primaryKey, long clickLimit) {
+        lock.lock();
+        try {
+            putClickLimitUpdated(reserve(CLICK_LIMIT_UPDATED_SIZE), primaryKey, clickLimit);
+            appendedBytes += CLICK_LIMIT_UPDATED_SIZE;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void linkRemoved(long primaryKey) {
+        lock.lock();
+        try {
+            putLinkRemoved(reserve(LINK_REMOVED_SIZE), primaryKey);
+            appendedBytes += LINK_REMOVED_SIZE;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void sync() {
+        lock.lock();
+        try {
+            long target = appendedBytes;
+            while (durableBytes < target) {
+                awaitFlush();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Переводит журнал в новый сегмент и возвращает его номер. Все записи, добавленные до вызова,
+    // сохраняются в предыдущем сегменте, все последующие - в новом
+    public long rotate() {
+        lock.lock();
+        try {
+            long next = segment + 1;
+            requestedSegment = next;
+            while (segment != next) {
+                awaitFlush();
+            }
+            return next;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Сохраняет оставшиеся записи и закрывает журнал
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closing = true;
+            flushRequested.signal();
+            while (!closed) {
+                flushed.awaitUninterruptibly();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Записи в формате журнала. Этот же формат передается репликам (ReplicationLog)
+
+    // Пишет запись о создании пользователя (USER_CREATED_SIZE байт)
+    static void putUserCreated(ByteBuffer buffer, UUID userId) {
+        buffer.put(USER_CREATED)
+                .putLong(userId.getMostSignificantBits())
+                .putLong(userId.getLeastSignificantBits());
+    }
+
+    // Пишет запись о создании ссылки (LINK_CREATED_HEADER_SIZE байт и URL в UTF-8)
+    static void putLinkCreated(ByteBuffer buffer, long primaryKey, UrlData urlData, byte[] longUrl) {
+        UUID userId = urlData.getUserId();
+        buffer.put(LINK_CREATED)
+                .putLong(primaryKey)
+                .putLong(userId.getMostSignificantBits())
+                .putLong(userId.getLeastSignificantBits())
+                .putLong(urlData.getClickLimit())
+                .putLong(urlData.getClicks())
+                .putLong(urlData.getCreationTime().toEpochMilli())
+                .putInt(urlData.getLifetimeSeconds())
+                .putInt(longUrl.length)
+                .put(longUrl);
+    }
+
+    // Пишет запись о переходе (CLICKED_SIZE байт)
+    static void putClicked(ByteBuffer buffer, long primaryKey, long clicks) {
+        buffer.put(CLICKED).putLong(primaryKey).putLong(clicks);
+    }
+
+    // Пишет запись об изменении лимита переходов (CLICK_LIMIT_UPDATED_SIZE байт)
+    static void putClickLimitUpdated(ByteBuffer buffer, long primaryKey, long clickLimit) {
+        buffer.put(CLICK_LIMIT_UPDATED).putLong(primaryKey).putLong(clickLimit);
+    }
+
+    // Пишет запись об удалении ссылки (LINK_REMOVED_SIZE байт)
+    static void putLinkRemoved(ByteBuffer buffer, long primaryKey) {
+        buffer.put(LINK_REMOVED).putLong(primaryKey);
+    }
+
+    // Воспроизводит сегмент журнала в target. Возвращает длину целой части файла (после нее - оборванный кадр)
+    // или -1, если у файла нет целого заголовка. Сегмент, записанный с другим ключом кодов, не воспроизводится
+    static long replay(Path file, long segment, long codeKeyFingerprint, LinkJournal target) throws IOException {
+        try (MappedFileReader reader = new MappedFileReader(file)) {
+            if (!reader.ensure(FILE_HEADER_SIZE_WITHOUT_FINGERPRINT)) {
+                return -1;
+            }
+            ByteBuffer header = reader.buffer();
+            int version = header.getInt() == MAGIC ? header.getInt() : -1;
+            if ((version != VERSION && version != VERSION_WITHOUT_FINGERPRINT) || header.getLong() != segment) {
+                throw new IOException("Файл " + file + " не является сегментом журнала " + segment + ".");
+            }
+            if (version == VERSION) {
+                if (!reader.ensure(8)) {
+                    return -1;
+                }
+                if (reader.buffer().getLong() != codeKeyFingerprint) {
+                    throw new IOException("Сегмент журнала " + file + " записан с другим ключом ids.code.key: "
+                            + "с текущим ключом выданные коды указывали бы на другие ссылки.");
+                }
+            }
+            CRC32C crc = new CRC32C();
+            byte[] scratch = new byte[256];
+            while (reader.ensure(FRAME_HEADER_SIZE)) {
+                long frameStart = reader.position();
+                ByteBuffer buffer = reader.buffer();
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length <= 0 || !reader.ensure(length)) {
+                    return frameStart; // Кадр оборван при сбое
+                }
+                buffer = reader.buffer();
+                ByteBuffer frame = buffer.slice();
+                frame.limit(length);
+                crc.reset();
+                crc.update(frame.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    return frameStart;
+                }
+                scratch = replayFrame(frame, target, scratch);
+                buffer.position(buffer.position() + length);
+            }
+            return reader.position();
+        }
+    }
+
+    // Воспроизводит записи одного кадра. Возвращает буфер для URL (он может быть увеличен)
+    static byte[] replayFrame(ByteBuffer frame, LinkJournal target, byte[] scratch) throws IOException {
+        while (frame.hasRemaining()) {
+            byte type = frame.get();
+            switch (type) {
+                case USER_CREATED:
+                    target.userCreated(new UUID(frame.getLong(), frame.getLong()));
+                    break;
+                case LINK_CREATED: {
+                    long primaryKey = frame.getLong();
+                    UUID userId = new UUID(frame.getLong(), frame.getLong());
+                    long clickLimit = frame.getLong();
+                    long clicks = frame.getLong();
+                    Instant creationTime = Instant.ofEpochMilli(frame.getLong());
+                    int lifetimeSeconds = frame.getInt();
+                    int urlLength = frame.getInt();
+                    if (urlLength > scratch.length) {
+                        scratch = new byte[Math.max(urlLength, scratch.length * 2)];
+                    }
+                    frame.get(scratch, 0, urlLength);
+                    String longUrl = new String(scratch, 0, urlLength, StandardCharsets.UTF_8);
+                    target.linkCreated(primaryKey, new UrlData(longUrl, userId, clickLimit, clicks, creationTime, lifetimeSeconds));
+                    break;
+                }
+                case CLICKED:
+                    target.clicked(frame.getLong(), frame.getLong());
+                    break;
+                case CLICK_LIMIT_UPDATED:
+                    target.clickLimitUpdated(frame.getLong(), frame.getLong());
+                    break;
+                case LINK_REMOVED:
+                    target.linkRemoved(frame.getLong());
+                    break;
+                default:
+                    throw new IOException("Неизвестный тип записи журнала: " + type + ".");
+            }
+        }
+        return scratch;
+    }
+
+    // Возвращает активный буфер, в котором есть место для записи указанного размера. Вызывается под блокировкой
+    private ByteBuffer reserve(int size) {
+        if (size > active.capacity()) {
+            throw new IllegalArgumentException("Запись журнала длиннее буфера (" + size + " байт).");
+        }
+        while (active.remaining() < size) {
+            awaitFlush();
+        }
+        checkOpen();
+        if (active.position() == 0) {
+            // Первая запись кадра будит фоновый поток; остальные записи его не беспокоят
+            flushRequested.signal();
+        }
+        return active;
+    }
+
+    // Просит фоновый поток сбросить буфер и ждет окончания сброса. Вызывается под блокировкой
+    private void awaitFlush() {
+        checkOpen();
+        waiters++;
+        try {
+            flushRequested.signal();
+            flushed.awaitUninterruptibly();
+        } finally {
+            waiters--;
+        }
+    }
+
+    // Проверяет, что журнал принимает записи. Вызывается под блокировкой
+    private void checkOpen() {
+        if (failure != null) {
+            throw new UncheckedIOException("Ошибка записи журнала.", failure);
+        }
+        if (closing) {
+            throw new IllegalStateException("Журнал закрыт.");
+        }
+    }
+
+    // Цикл фонового потока: ждет записи, собирает их в кадр, пишет и вызывает fsync
+    private void runFlusher() {
+        lock.lock();
+        try {
+            while (true) {
+                if (active.position() == 0 && requestedSegment == 0 && !closing) {
+                    flushRequested.awaitUninterruptibly();
+                    continue;
+                }
+                if (waiters == 0 && requestedSegment == 0 && !closing && active.position() < active.capacity() / 2) {
+                    // Записи никто не ждет: даем им накопиться, чтобы один fsync покрыл больше записей
+                    try {
+                        flushRequested.awaitNanos(flushIntervalNanos);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                ByteBuffer batch = active;
+                active = spare;
+                spare = batch;
+                long target = appendedBytes;
+                long nextSegment = requestedSegment;
+                boolean stop = closing;
+                lock.unlock();
+                IOException error = null;
+                try {
+                    writeFrame(batch);
+                    if (nextSegment != 0) {
+                        FileChannel next = openSegment(nextSegment);
+                        channel.close();
+                        channel = next;
+                    }
+                    if (stop) {
+                        channel.close();
+                    }
+                } catch (IOException e) {
+                    error = e;
+                } finally {
+                    lock.lock();
+                }
+                batch.clear();
+                if (error != null) {
+                    failure = error;
+                } else {
+                    durableBytes = target;
+                    if (nextSegment != 0) {
+                        segment = nextSegment;
+                        requestedSegment = 0;
+                    }
+                }
+                if (stop || error != null) {
+                    closing = true;
+                    closed = true;
+                    flushed.signalAll();
+                    return;
+                }
+                flushed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Пишет буфер одним кадром и вызывает fsync. Выполняется фоновым потоком без блокировки
+    private void writeFrame(ByteBuffer batch) throws IOException {
+        if (batch.position() == 0) {
+            return;
+        }
+        batch.flip();
+        CRC32C crc = new CRC32C();
+        crc.update(batch.duplicate());
+        ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_SIZE);
+        header.putInt(batch.remaining()).putInt((int) crc.getValue()).flip();
+        ByteBuffer[] frame = {header, batch};
+        while (batch.hasRemaining()) {
+            channel.write(frame);
+        }
+        // Метаданные файла (время изменения) не нужны для восстановления
+        channel.force(false);
+    }
+
+    // Создает файл сегмента с заголовком
+    private FileChannel openSegment(long number) throws IOException {
+        FileChannel file = FileChannel.open(segmentFile(directory, number),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putLong(number).putLong(codeKeyFingerprint).flip();
+        while (header.hasRemaining()) {
+            file.write(header);
+        }
+        file.force(true);
+        LinkPersistence.syncDirectory(directory);
+        return file;
+    }
+}
@@ -0,0 +1,74 @@
+package main.java.com.linkshortener;
+
+import java.util.SplittableRandom;
+
+//Генератор номеров с распределением Ципфа: номер k (от 1 до n) выпадает с вероятностью, пропорциональной 1/k^s.
+//Метод rejection-inversion (Hörmann, Derflinger) не требует таблиц, поэтому подходит и для 10 миллионов ссылок.
+//Генератор не меняет состояние, поэтому его можно использовать из нескольких потоков (у каждого свой SplittableRandom).
+public final class ZipfianGenerator {
+
+    private final int numberOfElements; // Количество номеров
+    private final double exponent; // Показатель s
+    private final double hIntegralX1;
+    private final double hIntegralNumberOfElements;
+    private final double s;
+
+    // Создает генератор номеров от 1 до numberOfElements
+    public ZipfianGenerator(int numberOfElements, double exponent) {
+        if (numberOfElements <= 0 || exponent <= 0) {
+            throw new IllegalArgumentException("Количество номеров и показатель должны быть положительными.");
+        }
+        this.numberOfElements = numberOfElements;
+        this.exponent = exponent;
+        this.hIntegralX1 = hIntegral(1.5) - 1;
+        this.hIntegralNumberOfElements = hIntegral(numberOfElements + 0.5);
+        this.s = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+    }
+
+    // Возвращает следующий номер (1 - самый популярный)
+    public int next(SplittableRandom random) {
+        while (true) {
+            double u = hIntegralNumberOfElements + random.nextDouble() * (hIntegralX1 - hIntegralNumberOfElements);
+            double x = hIntegralInverse(u);
+            int k = (int) (x + 0.5);
+            if (k < 1) {
+                k = 1;
+            } else if (k > numberOfElements) {
+                k = numberOfElements;
+            }
+            if (k - x <= s || u >= hIntegral(k + 0.5) - h(k)) {
+                return k;
+            }
+        }
+    }
+
+    // Первообразная функции h
+    private double hIntegral(double x) {
+        double logX = Math.log(x);
+        return helper2((1 - exponent) * logX) * logX;
+    }
+
+    // h(x) = 1/x^s
+    private double h(double x) {
+        return Math.exp(-exponent * Math.log(x));
+    }
+
+    // Обратная функция к hIntegral
+    private double hIntegralInverse(double x) {
+        double t = x * (1 - exponent);
+        if (t < -1) {
+            t = -1; // Защита от ошибок округления
+        }
+        return Math.exp(helper1(t) * x);
+    }
+
+    // log(1 + x) / x с точностью и около нуля
+    private static double helper1(double x) {
+        return Math.abs(x) > 1e-8 ? Math.log1p(x) / x : 1 - x * (0.5 - x * (1.0 / 3 - 0.25 * x));
+    }
+
+    // (exp(x) - 1) / x с точностью и около нуля
+    private static double helper2(double x) {
+        return Math.abs(x) > 1e-8 ? Math.expm1(x) / x : 1 + x * 0.5 * (1 + x * (1.0 / 3) * (1 + 0.25 * x));
+    }
+}